@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.benchmark;
+
+import static java.lang.Double.NaN;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler and the {@link PeakHeapProfiler} and writes machine
+ * readable results: the JMH results to {@code jmh-result.json} and the processor cost per layout
+ * (processor on minus off: time, allocated bytes in total and per reference, and peak heap usage)
+ * to {@code processor-cost.json}. Additional JMH command line options, e.g. {@code -p
+ * layout=100:100:200}, are passed through.
+ *
+ * @author Michael Schieder
+ */
+public final class BenchmarkRunner {
+  private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+  private BenchmarkRunner() {}
+
+  public static void main(String[] args)
+      throws RunnerException, CommandLineOptionException, IOException {
+    var options =
+        new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ProcessorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .addProfiler(PeakHeapProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result.json")
+            .build();
+    var results = new Runner(options).run();
+    Files.writeString(Path.of("processor-cost.json"), processorCost(results));
+  }
+
+  static String processorCost(Collection<RunResult> results) {
+    // per layout: time, allocations and peak heap usage, each with and without processor
+    Map<String, double[]> scores = new TreeMap<>();
+    for (var result : results) {
+      var params = result.getParams();
+      var layout = params.getParam("layout");
+      int index = Boolean.parseBoolean(params.getParam("processor")) ? 0 : 1;
+      var score =
+          scores.computeIfAbsent(layout, key -> new double[] {NaN, NaN, NaN, NaN, NaN, NaN});
+      score[index] = result.getPrimaryResult().getScore();
+      var allocation = result.getSecondaryResults().get(ALLOCATION);
+      if (allocation != null) {
+        score[2 + index] = allocation.getScore();
+      }
+      var peakHeap = result.getSecondaryResults().get(PeakHeapProfiler.PEAK_HEAP);
+      if (peakHeap != null) {
+        score[4 + index] = peakHeap.getScore();
+      }
+    }
+
+    var json = new StringBuilder("[\n");
+    scores.forEach(
+        (layout, score) -> {
+          var values = layout.split(":");
+          int references = Integer.parseInt(values[0]);
+          double costMillis = score[0] - score[1];
+          double allocatedBytes = score[2] - score[3];
+          double peakHeapBytes = score[4] - score[5];
+          if (json.length() > 2) {
+            json.append(",\n");
+          }
+          json.append(
+              String.format(
+                  Locale.ROOT,
+                  "  {\"layout\": \"%s\", \"references\": %s, \"files\": %s, \"sqlBytes\": %s,"
+                      + " \"processorMs\": %s, \"baselineMs\": %s, \"costMs\": %s,"
+                      + " \"costPerReferenceUs\": %s, \"allocatedBytes\": %s,"
+                      + " \"allocatedBytesPerReference\": %s, \"processorPeakHeapBytes\": %s,"
+                      + " \"baselinePeakHeapBytes\": %s, \"peakHeapBytes\": %s}",
+                  layout,
+                  values[0],
+                  values[1],
+                  values[2],
+                  number(score[0]),
+                  number(score[1]),
+                  number(costMillis),
+                  number(costMillis * 1000 / references),
+                  number(allocatedBytes),
+                  number(allocatedBytes / references),
+                  number(score[4]),
+                  number(score[5]),
+                  number(peakHeapBytes)));
+        });
+    return json.append("\n]\n").toString();
+  }
+
+  private static String number(double value) {
+    return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+  }
+}
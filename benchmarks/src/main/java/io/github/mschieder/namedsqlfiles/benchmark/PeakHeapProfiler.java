@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Measures the peak heap usage of an iteration: the peak usages of the heap memory pools are reset
+ * after a garbage collection before the iteration and summed after it. The sum is an upper bound,
+ * the pools may peak at different times. Reported as {@value #PEAK_HEAP}, the maximum of the
+ * iterations.
+ *
+ * @author Michael Schieder
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+  static final String PEAK_HEAP = "heap.peak";
+
+  private final List<MemoryPoolMXBean> heapPools =
+      ManagementFactory.getMemoryPoolMXBeans().stream()
+          .filter(pool -> pool.getType() == MemoryType.HEAP)
+          .toList();
+
+  @Override
+  public String getDescription() {
+    return "Peak heap usage of the iterations";
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    System.gc();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(
+      BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+    long peak = 0;
+    for (var pool : heapPools) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    return List.of(new ScalarResult(PEAK_HEAP, peak, "bytes", AggregationPolicy.MAX));
+  }
+}
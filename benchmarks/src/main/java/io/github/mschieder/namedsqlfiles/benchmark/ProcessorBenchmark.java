@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end javac time of a {@link SyntheticProject} with the JPA query processor and
+ * without annotation processing. Use the GC profiler ({@code -prof gc}) for allocations and the
+ * {@link PeakHeapProfiler} for the peak heap usage, {@link BenchmarkRunner} adds both.
+ *
+ * @author Michael Schieder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProcessorBenchmark {
+  static final String PROCESSOR = "io.github.mschieder.namedsqlfiles.JpaQueryProcessor";
+
+  /**
+   * The project layout {@code <references>:<distinct SQL files>:<SQL file size in bytes>}: unique
+   * and shared SQL files, small and 1 MB SQL files.
+   */
+  @Param({
+    "100:100:200",
+    "10000:10000:200",
+    "100000:100000:200",
+    "100:10:200",
+    "10000:100:200",
+    "100000:100:200",
+    "100:100:1048576",
+    "10000:100:1048576",
+    "100000:100:1048576"
+  })
+  public String layout;
+
+  @Param({"true", "false"})
+  public boolean processor;
+
+  private SyntheticProject project;
+  private JavaCompiler compiler;
+  private StandardJavaFileManager fileManager;
+
+  @Setup(Level.Trial)
+  public void createProject() throws IOException {
+    var values = layout.split(":");
+    project =
+        new SyntheticProject(
+            Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]));
+    compiler = ToolProvider.getSystemJavaCompiler();
+    fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+  }
+
+  @Setup(Level.Invocation)
+  public void cleanOutput() throws IOException {
+    project.cleanOutput();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteProject() throws IOException {
+    fileManager.close();
+    project.close();
+  }
+
+  @Benchmark
+  public boolean compile() {
+    var classpath = System.getProperty("java.class.path");
+    List<String> options =
+        new ArrayList<>(
+            List.of("-classpath", classpath, "-d", project.classOutput().toString(), "-nowarn"));
+    if (processor) {
+      options.addAll(List.of("-processorpath", classpath, "-processor", PROCESSOR));
+    } else {
+      options.add("-proc:none");
+    }
+
+    var output = new StringWriter();
+    var compilationUnits = fileManager.getJavaFileObjectsFromPaths(project.sources());
+    if (!compiler.getTask(output, fileManager, null, options, null, compilationUnits).call()) {
+      throw new IllegalStateException("compilation failed: " + output);
+    }
+    return true;
+  }
+}
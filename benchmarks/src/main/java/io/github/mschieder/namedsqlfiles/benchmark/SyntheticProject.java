@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A generated Spring Data JPA project: repositories with {@code @Query(name = "sql/...")} methods
+ * and the referenced SQL files, already copied to the class output like maven-resources-plugin
+ * does.
+ *
+ * @author Michael Schieder
+ */
+final class SyntheticProject implements AutoCloseable {
+  static final int METHODS_PER_REPOSITORY = 100;
+  private static final String PACKAGE = "io.github.mschieder.namedsqlfiles.synthetic";
+
+  private final Path root;
+  private final Path sourceDirectory;
+  private final Path classOutput;
+  private final List<Path> sources = new ArrayList<>();
+
+  /**
+   * Generates a project.
+   *
+   * @param references number of {@code @Query} references
+   * @param files number of distinct SQL files, the references are distributed round robin
+   * @param sqlBytes approximate size of each SQL file
+   */
+  SyntheticProject(int references, int files, int sqlBytes) throws IOException {
+    this.root = Files.createTempDirectory("named-sqlfiles-benchmark");
+    this.sourceDirectory = Files.createDirectories(root.resolve("src"));
+    this.classOutput = Files.createDirectories(root.resolve("classes"));
+    writeSqlFiles(files, sqlBytes);
+    writeRepositories(references, files);
+  }
+
+  private void writeSqlFiles(int files, int sqlBytes) throws IOException {
+    var directory = Files.createDirectories(classOutput.resolve("sql/synthetic"));
+    for (int i = 0; i < files; i++) {
+      Files.writeString(directory.resolve("query" + i + ".sql"), sql(i, sqlBytes));
+    }
+  }
+
+  static String sql(int index, int sqlBytes) {
+    var builder = new StringBuilder(sqlBytes + 128);
+    builder.append("-- synthetic query ").append(index).append("\r\n");
+    builder.append("SELECT p.id, p.firstname, p.lastname\r\n  FROM person p\r\n WHERE p.id = ?");
+    int condition = 0;
+    while (builder.length() < sqlBytes) {
+      builder.append("\r\n   AND p.lastname <> 'name").append(condition++).append('\'');
+    }
+    return builder.toString();
+  }
+
+  private void writeRepositories(int references, int files) throws IOException {
+    Files.writeString(
+        sourceDirectory.resolve("Person.java"),
+        "package " + PACKAGE + ";\n\npublic class Person {\n  private Long id;\n}\n");
+    int repositories = (references + METHODS_PER_REPOSITORY - 1) / METHODS_PER_REPOSITORY;
+    int reference = 0;
+    for (int r = 0; r < repositories; r++) {
+      var name = "PersonRepository" + r;
+      var source = new StringBuilder();
+      source
+          .append("package ")
+          .append(PACKAGE)
+          .append(";\n\n")
+          .append("import org.springframework.data.jpa.repository.JpaRepository;\n")
+          .append("import org.springframework.data.jpa.repository.Query;\n\n")
+          .append("public interface ")
+          .append(name)
+          .append(" extends JpaRepository<Person, Long> {\n");
+      for (int m = 0; m < METHODS_PER_REPOSITORY && reference < references; m++, reference++) {
+        source
+            .append("  @Query(name = \"sql/synthetic/query")
+            .append(reference % files)
+            .append(".sql\", nativeQuery = true)\n")
+            .append("  Person find")
+            .append(m)
+            .append("(Long id);\n");
+      }
+      source.append("}\n");
+      var path = sourceDirectory.resolve(name + ".java");
+      Files.writeString(path, source, StandardCharsets.UTF_8);
+    }
+    try (Stream<Path> paths = Files.list(sourceDirectory)) {
+      paths.sorted().forEach(sources::add);
+    }
+  }
+
+  List<Path> sources() {
+    return sources;
+  }
+
+  Path classOutput() {
+    return classOutput;
+  }
+
+  /** Deletes the generated output of a previous compilation, the SQL files are kept. */
+  void cleanOutput() throws IOException {
+    delete(classOutput.resolve("META-INF"));
+    delete(classOutput.resolve(PACKAGE.replace('.', '/')));
+  }
+
+  @Override
+  public void close() throws IOException {
+    delete(root);
+  }
+
+  private static void delete(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      paths
+          .sorted(Comparator.reverseOrder())
+          .forEach(
+              p -> {
+                try {
+                  Files.delete(p);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Points the properties file based named queries of the repository factories at the named queries
+ * files, that the {@link NamedQueriesAotProcessor} resolved at build time. Applications processed
+ * ahead of time, e.g. native images, then load the named queries of each repository configuration
+ * with a single {@code classpath:} lookup instead of scanning the classpath for {@code
+ * classpath*:META-INF/<store>-named-queries.properties}. Other applications are left as they are.
+ *
+ * @author Michael Schieder
+ */
+public class AotNamedQueriesPostProcessor implements BeanFactoryPostProcessor {
+  private static final String LOCATIONS_PROPERTY = "locations";
+
+  private final boolean useGeneratedArtifacts;
+
+  /**
+   * Creates the post processor.
+   *
+   * @param useGeneratedArtifacts whether the application runs with the artifacts generated ahead of
+   *     time
+   */
+  public AotNamedQueriesPostProcessor(boolean useGeneratedArtifacts) {
+    this.useGeneratedArtifacts = useGeneratedArtifacts;
+  }
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    if (!useGeneratedArtifacts) {
+      return;
+    }
+    for (var beanName : beanFactory.getBeanDefinitionNames()) {
+      if (!MappedNamedQueriesPostProcessor.PROPERTIES_BEAN_NAME.matcher(beanName).matches()) {
+        continue;
+      }
+      var location = NamedQueriesAotProcessor.repositoryNamedQueries(beanName);
+      if (new ClassPathResource(location, beanFactory.getBeanClassLoader()).exists()) {
+        beanFactory
+            .getBeanDefinition(beanName)
+            .getPropertyValues()
+            .add(LOCATIONS_PROPERTY, "classpath:" + location);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+
+/**
+ * Prepares a named query as JDBC statement on several connections of the data source, since drivers
+ * and pools cache prepared statements per connection. The connections are taken from the pool on
+ * first use and held until the warm-up is closed, so that the pool hands out distinct connections.
+ * Named parameters are replaced by {@code ?} placeholders, like {@link
+ * org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate} does for single values. The
+ * statements of a statement list are prepared one by one.
+ *
+ * @author Michael Schieder
+ */
+class JdbcStatementPreparer implements NamedQueryWarmUp.Preparer {
+  private static final Log logger = LogFactory.getLog(JdbcStatementPreparer.class);
+
+  private final DataSource dataSource;
+  // the held connections, each used by one thread at a time
+  private final Connection[] connections;
+  private final ReentrantLock[] locks;
+  private final AtomicInteger nextConnection = new AtomicInteger();
+  private volatile boolean closed;
+
+  /**
+   * Creates the preparer.
+   *
+   * @param dataSource the data source
+   * @param connections the number of connections, each query is prepared on
+   * @throws IllegalArgumentException if the number of connections is less than 1
+   */
+  JdbcStatementPreparer(DataSource dataSource, int connections) {
+    if (connections < 1) {
+      throw new IllegalArgumentException("invalid warm-up connections " + connections + ".");
+    }
+    this.dataSource = dataSource;
+    this.connections = new Connection[connections];
+    this.locks = new ReentrantLock[connections];
+    Arrays.setAll(locks, index -> new ReentrantLock());
+  }
+
+  @Override
+  public void prepare(String sql, List<String> statements) throws SQLException {
+    var jdbcStatements =
+        statements.stream()
+            .map(
+                statement ->
+                    NamedParameterUtils.substituteNamedParameters(
+                        NamedParameterUtils.parseSqlStatement(statement), null))
+            .toList();
+    // parallel preparations start on different connections
+    int first = Math.floorMod(nextConnection.getAndIncrement(), connections.length);
+    for (int i = 0; i < connections.length; i++) {
+      prepare((first + i) % connections.length, jdbcStatements);
+    }
+  }
+
+  private void prepare(int index, List<String> jdbcStatements) throws SQLException {
+    locks[index].lock();
+    try {
+      if (closed) {
+        return;
+      }
+      if (connections[index] == null) {
+        connections[index] = dataSource.getConnection();
+      }
+      for (var jdbcSql : jdbcStatements) {
+        try (var prepared = connections[index].prepareStatement(jdbcSql)) {
+          // prepared, not executed
+        }
+      }
+    } finally {
+      locks[index].unlock();
+    }
+    if (closed) {
+      // closed while preparing
+      closeConnection(index);
+    }
+  }
+
+  /**
+   * Returns the held connections to the pool. A connection, that is preparing a statement after the
+   * time budget was exhausted, is returned by its thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (int index = 0; index < connections.length; index++) {
+      closeConnection(index);
+    }
+  }
+
+  private void closeConnection(int index) {
+    if (!locks[index].tryLock()) {
+      return;
+    }
+    try {
+      if (connections[index] != null) {
+        connections[index].close();
+        connections[index] = null;
+      }
+    } catch (SQLException e) {
+      logger.debug("Closing a warm-up connection failed.", e);
+    } finally {
+      locks[index].unlock();
+    }
+  }
+}
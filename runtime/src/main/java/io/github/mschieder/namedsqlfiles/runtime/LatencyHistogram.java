@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of latencies in nanoseconds. The buckets are logarithmic with 8 linear sub
+ * buckets per power of two, so that percentiles have a relative error of at most 12.5%. Recording
+ * is a few atomic increments without allocations. The buckets end at {@value #MAX_TRACKED_NANOS}
+ * nanoseconds (about 68 seconds), longer latencies are counted in the last bucket, the maximum is
+ * exact.
+ *
+ * @author Michael Schieder
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final long MAX_TRACKED_NANOS = (1L << 36) - 1;
+  // 272 buckets instead of 488 up to Long.MAX_VALUE
+  static final int BUCKETS = bucket(MAX_TRACKED_NANOS) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds, negative values are recorded as 0
+   */
+  void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucket(Math.min(value, MAX_TRACKED_NANOS)));
+    count.increment();
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  long totalNanos() {
+    return total.sum();
+  }
+
+  long maxNanos() {
+    return max.get();
+  }
+
+  /**
+   * Returns the upper bound of the bucket, that contains the percentile.
+   *
+   * @param percentile the percentile between 0 and 1
+   * @return the latency in nanoseconds, at most the maximum latency, 0 if nothing is recorded
+   */
+  long percentileNanos(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long recorded = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      recorded += snapshot[i];
+    }
+    if (recorded == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * recorded));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        // the last bucket has no upper bound
+        return i == BUCKETS - 1 ? maxNanos() : Math.min(upperBound(i), maxNanos());
+      }
+    }
+    return maxNanos();
+  }
+
+  static int bucket(long value) {
+    int exponent = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+    return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+  }
+
+  static long upperBound(int bucket) {
+    int exponent = Math.max(0, bucket / SUB_BUCKETS - 1);
+    long mantissa = bucket - (long) exponent * SUB_BUCKETS;
+    return ((mantissa + 1) << exponent) - 1;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.data.repository.core.NamedQueries;
+
+/**
+ * Spring Data {@link NamedQueries} of the binary stores {@code META-INF/<store>-named-queries.bin}
+ * of a Spring Data store, e.g. {@code jpa}, written by the query processors with {@code
+ * -Anamedsqlfiles.binaryStore=true}. Stores in the file system are memory-mapped, stores in
+ * archives are read into a single buffer. A query is found by binary search over the sorted index
+ * and decoded only on first access; decoded queries are kept in a bounded least recently used
+ * cache. Thread safe.
+ *
+ * @author Michael Schieder
+ */
+public class MappedNamedQueries implements NamedQueries {
+  static final int DEFAULT_CACHE_SIZE = 1024;
+  private static final int MAGIC = 0x4E534651;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 12;
+  private static final int INDEX_ENTRY_SIZE = 16;
+
+  private final List<ByteBuffer> stores;
+  private final Map<String, String> cache;
+
+  MappedNamedQueries(List<ByteBuffer> stores, int cacheSize) {
+    stores.forEach(MappedNamedQueries::checkHeader);
+    this.stores = List.copyOf(stores);
+    this.cache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+              }
+            });
+  }
+
+  /**
+   * Maps the binary stores of a Spring Data store of the classpath. The stores of the dialect take
+   * precedence.
+   *
+   * @param resolver the resource resolver
+   * @param storeName the module identifier of the Spring Data store, e.g. {@code jpa}
+   * @param dialect the database dialect of the dialect specific stores, or empty
+   * @param cacheSize the maximum number of cached decoded queries
+   * @return the named queries
+   */
+  public static MappedNamedQueries load(
+      ResourcePatternResolver resolver, String storeName, String dialect, int cacheSize) {
+    List<ByteBuffer> stores = new ArrayList<>();
+    var location = "classpath*:META-INF/" + storeName + "-named-queries";
+    try {
+      if (!dialect.isEmpty()) {
+        for (var resource : resolver.getResources(location + "." + dialect + ".bin")) {
+          stores.add(map(resource));
+        }
+      }
+      for (var resource : resolver.getResources(location + ".bin")) {
+        stores.add(map(resource));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new MappedNamedQueries(stores, cacheSize);
+  }
+
+  private static ByteBuffer map(Resource resource) throws IOException {
+    if (resource.isFile()) {
+      return map(resource.getFile().toPath());
+    }
+    try (InputStream inputStream = resource.getInputStream()) {
+      return ByteBuffer.wrap(inputStream.readAllBytes());
+    }
+  }
+
+  static ByteBuffer map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static void checkHeader(ByteBuffer store) {
+    if (store.limit() < HEADER_SIZE || store.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("no named queries binary store");
+    }
+    if (store.getInt(4) != VERSION) {
+      throw new IllegalArgumentException(
+          "unsupported named queries binary store version " + store.getInt(4));
+    }
+  }
+
+  /** The number of named queries of all stores, including queries of multiple stores. */
+  int size() {
+    return stores.stream().mapToInt(store -> store.getInt(8)).sum();
+  }
+
+  @Override
+  public boolean hasQuery(String queryName) {
+    return lookup(queryName) != null;
+  }
+
+  @Override
+  public String getQuery(String queryName) {
+    var query = lookup(queryName);
+    if (query == null) {
+      throw new IllegalArgumentException(String.format("No query named %s found", queryName));
+    }
+    return query;
+  }
+
+  private String lookup(String queryName) {
+    var cached = cache.get(queryName);
+    if (cached != null) {
+      return cached;
+    }
+    var key = queryName.getBytes(StandardCharsets.UTF_8);
+    for (var store : stores) {
+      int entry = find(store, key);
+      if (entry >= 0) {
+        var query = decode(store, store.getInt(entry + 8), store.getInt(entry + 12));
+        cache.put(queryName, query);
+        return query;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the offset of the index entry of the key or -1. */
+  private static int find(ByteBuffer store, byte[] key) {
+    int low = 0;
+    int high = store.getInt(8) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+      int comparison = compare(store, store.getInt(entry), store.getInt(entry + 4), key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  private static int compare(ByteBuffer store, int offset, int length, byte[] key) {
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int comparison = Byte.compareUnsigned(store.get(offset + i), key[i]);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  private static String decode(ByteBuffer store, int offset, int length) {
+    var bytes = new byte[length];
+    store.get(offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.data.repository.core.NamedQueries;
+
+/**
+ * Replaces the properties file based named queries of the repository factory bean definitions with
+ * the {@link MappedNamedQueries} of their Spring Data store, before any bean is created. The
+ * properties file based named queries are made lazy and only loaded for queries missing from the
+ * binary stores, e.g. of jars compiled without {@code -Anamedsqlfiles.binaryStore=true}. Named
+ * queries that are not a reference to the properties bean of a store, e.g. already replaced by a
+ * generated named queries class, are left as they are.
+ *
+ * @author Michael Schieder
+ */
+public class MappedNamedQueriesPostProcessor implements BeanFactoryPostProcessor {
+  private static final String NAMED_QUERIES_PROPERTY = "namedQueries";
+  // the bean names of Spring Data's RepositoryBeanDefinitionBuilder: <module>.named-queries#<n>
+  static final Pattern PROPERTIES_BEAN_NAME =
+      Pattern.compile("(?<store>[\\w-]+)\\.named-queries#\\d+");
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    for (var beanName : beanFactory.getBeanDefinitionNames()) {
+      var definition = beanFactory.getBeanDefinition(beanName);
+      var namedQueries = definition.getPropertyValues().getPropertyValue(NAMED_QUERIES_PROPERTY);
+      if (namedQueries == null
+          || !(namedQueries.getValue() instanceof RuntimeBeanReference reference)) {
+        continue;
+      }
+      var matcher = PROPERTIES_BEAN_NAME.matcher(reference.getBeanName());
+      if (!matcher.matches() || !beanFactory.containsBeanDefinition(reference.getBeanName())) {
+        continue;
+      }
+      beanFactory.getBeanDefinition(reference.getBeanName()).setLazyInit(true);
+      definition
+          .getPropertyValues()
+          .add(
+              NAMED_QUERIES_PROPERTY,
+              BeanDefinitionBuilder.genericBeanDefinition(StoreNamedQueries.class)
+                  .addConstructorArgValue(matcher.group("store"))
+                  .addConstructorArgValue(reference.getBeanName())
+                  .getBeanDefinition());
+    }
+  }
+
+  /**
+   * The named queries of the binary stores of a Spring Data store, falling back to the properties
+   * file based named queries.
+   */
+  public static final class StoreNamedQueries implements NamedQueries, BeanFactoryAware {
+    private final String storeName;
+    private final String propertiesBeanName;
+    private BeanFactory beanFactory;
+    private MappedNamedQueries mappedNamedQueries;
+    private volatile NamedQueries propertiesNamedQueries;
+
+    public StoreNamedQueries(String storeName, String propertiesBeanName) {
+      this.storeName = storeName;
+      this.propertiesBeanName = propertiesBeanName;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+      this.beanFactory = beanFactory;
+      this.mappedNamedQueries = beanFactory.getBean(MappedNamedQueryStores.class).store(storeName);
+    }
+
+    @Override
+    public boolean hasQuery(String queryName) {
+      return mappedNamedQueries.hasQuery(queryName) || properties().hasQuery(queryName);
+    }
+
+    @Override
+    public String getQuery(String queryName) {
+      return mappedNamedQueries.hasQuery(queryName)
+          ? mappedNamedQueries.getQuery(queryName)
+          : properties().getQuery(queryName);
+    }
+
+    private NamedQueries properties() {
+      var result = propertiesNamedQueries;
+      if (result == null) {
+        result = beanFactory.getBean(propertiesBeanName, NamedQueries.class);
+        propertiesNamedQueries = result;
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/**
+ * The {@link MappedNamedQueries} of the Spring Data stores, mapped on the first lookup of a store.
+ * Thread safe.
+ *
+ * @author Michael Schieder
+ */
+public class MappedNamedQueryStores {
+  private final ResourcePatternResolver resolver;
+  private final String dialect;
+  private final int cacheSize;
+  private final Map<String, MappedNamedQueries> stores = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the stores.
+   *
+   * @param resolver the resource resolver
+   * @param dialect the database dialect of the dialect specific stores, or empty
+   * @param cacheSize the maximum number of cached decoded queries of each store
+   */
+  public MappedNamedQueryStores(ResourcePatternResolver resolver, String dialect, int cacheSize) {
+    this.resolver = resolver;
+    this.dialect = dialect;
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * Returns the named queries of a Spring Data store.
+   *
+   * @param storeName the module identifier of the Spring Data store, e.g. {@code jpa}
+   * @return the named queries, empty if the store has no binary store files
+   */
+  public MappedNamedQueries store(String storeName) {
+    return stores.computeIfAbsent(
+        storeName, name -> MappedNamedQueries.load(resolver, name, dialect, cacheSize));
+  }
+}
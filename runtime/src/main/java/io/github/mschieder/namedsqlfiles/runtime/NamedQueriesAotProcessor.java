@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/**
+ * Resolves the named queries files of the classpath at build time, if the application has a {@link
+ * NamedQueryCatalog}, and merges them into the generated resources {@value
+ * NamedQueryCatalog#AOT_NAMED_QUERIES}, its dialect variants, {@value
+ * NamedQueryCatalog#AOT_METADATA} and the query names by store {@value
+ * NamedQueryCatalog#AOT_STORES}. The catalog of the optimized application loads these files with
+ * single resource lookups, without scanning the classpath.
+ *
+ * <p>The named queries files of each Spring Data repository configuration are resolved into a
+ * generated resource per properties bean as well, the {@link AotNamedQueriesPostProcessor} points
+ * the repository factories of the optimized application at them.
+ *
+ * @author Michael Schieder
+ */
+class NamedQueriesAotProcessor implements BeanFactoryInitializationAotProcessor {
+  private static final String LOCATIONS_PROPERTY = "locations";
+
+  @Override
+  public BeanFactoryInitializationAotContribution processAheadOfTime(
+      ConfigurableListableBeanFactory beanFactory) {
+    var resolver = new PathMatchingResourcePatternResolver(beanFactory.getBeanClassLoader());
+    // the generated resources by path
+    Map<String, Properties> resources = new LinkedHashMap<>();
+    for (var beanName : beanFactory.getBeanDefinitionNames()) {
+      if (MappedNamedQueriesPostProcessor.PROPERTIES_BEAN_NAME.matcher(beanName).matches()
+          && beanFactory.getBeanDefinition(beanName).getPropertyValues().get(LOCATIONS_PROPERTY)
+              instanceof String location) {
+        resources.put(
+            repositoryNamedQueries(beanName), NamedQueryCatalog.loadProperties(resolver, location));
+      }
+    }
+    if (beanFactory.getBeanNamesForType(NamedQueryCatalog.class, true, false).length > 0) {
+      Map<String, Set<String>> queryNamesByStore = new TreeMap<>();
+      resources.put(
+          NamedQueryCatalog.AOT_NAMED_QUERIES,
+          NamedQueryCatalog.loadNamedQueries(resolver, queryNamesByStore));
+      var stores = new Properties();
+      queryNamesByStore.forEach(
+          (storeName, queryNames) ->
+              stores.setProperty(storeName, String.join(",", new TreeSet<>(queryNames))));
+      resources.put(NamedQueryCatalog.AOT_STORES, stores);
+      NamedQueryCatalog.loadDialectNamedQueries(resolver)
+          .forEach(
+              (dialect, queries) ->
+                  resources.put(NamedQueryCatalog.aotDialectNamedQueries(dialect), queries));
+      resources.put(NamedQueryCatalog.AOT_METADATA, NamedQueryCatalog.loadMetadata(resolver));
+    }
+    if (resources.isEmpty()) {
+      return null;
+    }
+    return (generationContext, beanFactoryInitializationCode) ->
+        resources.forEach((path, properties) -> addResource(generationContext, path, properties));
+  }
+
+  /**
+   * Returns the path of the generated named queries of a properties bean of Spring Data's
+   * repository configuration: META-INF/named-sqlfiles/aot-jpa-named-queries-0.properties.
+   */
+  static String repositoryNamedQueries(String propertiesBeanName) {
+    return "META-INF/named-sqlfiles/aot-"
+        + propertiesBeanName.replace('.', '-').replace('#', '-')
+        + ".properties";
+  }
+
+  private static void addResource(
+      GenerationContext generationContext, String path, Map<?, ?> properties) {
+    var copy = new Properties();
+    copy.putAll(properties);
+    var writer = new StringWriter();
+    try {
+      copy.store(writer, null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // without the timestamp comment, so that the build output is reproducible
+    var content =
+        writer
+            .toString()
+            .lines()
+            .filter(line -> !line.startsWith("#"))
+            .collect(Collectors.joining("\n", "", "\n"));
+    generationContext
+        .getGeneratedFiles()
+        .addResourceFile(
+            path, new ByteArrayResource(content.getBytes(StandardCharsets.ISO_8859_1)));
+    generationContext.getRuntimeHints().resources().registerPattern(path);
+  }
+}
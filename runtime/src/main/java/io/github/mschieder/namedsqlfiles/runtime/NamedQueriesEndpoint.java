@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+/**
+ * The {@code namedqueries} actuator endpoint: the execution statistics of the named queries.
+ *
+ * @author Michael Schieder
+ */
+@Endpoint(id = "namedqueries")
+public class NamedQueriesEndpoint {
+  private final NamedQueryStatistics statistics;
+
+  public NamedQueriesEndpoint(NamedQueryStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /** The statistics of the executed named queries, sorted by query name. */
+  @ReadOperation
+  public List<QueryStatistics> queries() {
+    return statistics.snapshot();
+  }
+
+  /**
+   * The statistics of a named query.
+   *
+   * @param queryName the path segments of the query name, e.g. {@code sql/person/report.sql}
+   * @return the statistics, null (404) if the query is unknown
+   */
+  @ReadOperation
+  public QueryStatistics query(@Selector(match = Selector.Match.ALL_REMAINING) String[] queryName) {
+    return statistics.snapshot(String.join("/", queryName)).orElse(null);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Registers the generated named queries files as resources of native images.
+ *
+ * @author Michael Schieder
+ */
+class NamedQueriesRuntimeHints implements RuntimeHintsRegistrar {
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    hints
+        .resources()
+        .registerPattern("META-INF/*-named-queries.properties")
+        .registerPattern("META-INF/*-named-queries.*.properties")
+        .registerPattern("META-INF/*-named-queries-metadata.properties")
+        .registerPattern("META-INF/*-named-queries-aggregate.properties")
+        .registerPattern("META-INF/*-named-queries*.bin")
+        .registerPattern("META-INF/named-sqlfiles/*.properties");
+  }
+}
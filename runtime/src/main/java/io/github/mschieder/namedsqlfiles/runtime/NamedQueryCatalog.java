@@ -0,0 +1,408 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ConcurrentLruCache;
+
+/**
+ * The named queries and their metadata generated by the query processors. Identifies the named
+ * query of a statement by its {@link SqlFingerprint fingerprint}, the fingerprints of the named
+ * queries are computed on the first lookup. The catalog is immutable and thread safe.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryCatalog {
+  static final String NAMED_QUERIES_LOCATION = "classpath*:META-INF/*-named-queries.properties";
+  // single resources, looked up without scanning the classpath
+  static final List<String> AGGREGATE_LOCATIONS =
+      List.of(
+          "classpath:META-INF/jpa-named-queries-aggregate.properties",
+          "classpath:META-INF/jdbc-named-queries-aggregate.properties");
+  static final String METADATA_LOCATION = "classpath*:META-INF/*-named-queries-metadata.properties";
+  static final String DIALECT_LOCATION = "classpath*:META-INF/*-named-queries.*.properties";
+  static final String INCLUDES_LOCATION = "classpath*:META-INF/*-named-queries.includes";
+  // resolved ahead of time, outside of the scanned locations
+  static final String AOT_NAMED_QUERIES = "META-INF/named-sqlfiles/aot-named-queries.properties";
+  static final String AOT_METADATA =
+      "META-INF/named-sqlfiles/aot-named-queries-metadata.properties";
+  // the comma separated query names by store name
+  static final String AOT_STORES = "META-INF/named-sqlfiles/aot-named-queries-stores.properties";
+  private static final String STORE_SUFFIX = "-named-queries";
+  private static final char METADATA_SEPARATOR = '#';
+  private static final String HINT_PREFIX = "hint.";
+  private static final String STATEMENTS = "statements";
+  private static final String STATEMENT_PREFIX = "statement.";
+  private static final String DIALECT_PREFIX = "dialect.";
+  // the statements of an application are limited, dynamic SQL evicts the least recently used
+  private static final int MAX_CACHED_STATEMENTS = 10_000;
+
+  private final Map<String, String> queries;
+  private final Map<String, NamedQueryMetadata> metadata;
+  private final Map<String, Set<String>> queryNamesByStore;
+  private volatile Map<String, String> queryNamesByFingerprint;
+  private final ConcurrentLruCache<String, Optional<String>> queryNamesBySql =
+      new ConcurrentLruCache<>(MAX_CACHED_STATEMENTS, this::lookupQueryName);
+
+  NamedQueryCatalog(Map<String, String> namedQueries, Map<String, NamedQueryMetadata> metadata) {
+    this(namedQueries, metadata, Map.of());
+  }
+
+  NamedQueryCatalog(
+      Map<String, String> namedQueries,
+      Map<String, NamedQueryMetadata> metadata,
+      Map<String, Set<String>> queryNamesByStore) {
+    this.queries = Map.copyOf(namedQueries);
+    this.metadata = Map.copyOf(metadata);
+    this.queryNamesByStore = Map.copyOf(queryNamesByStore);
+  }
+
+  /**
+   * Loads the generated named queries and metadata files of the classpath. If the application was
+   * compiled with {@code -Anamedsqlfiles.aggregateClasspath}, the aggregated named queries files
+   * are loaded instead of the named queries files of all classpath entries. Applications processed
+   * ahead of time load the files resolved at build time.
+   *
+   * @param resolver the resource resolver
+   * @param dialect the database dialect of the dialect specific named queries files, or empty
+   * @return the catalog
+   */
+  public static NamedQueryCatalog load(ResourcePatternResolver resolver, String dialect) {
+    Properties namedQueries;
+    Properties metadata;
+    Map<String, Set<String>> queryNamesByStore = new HashMap<>();
+    if (resolver.getResource("classpath:" + AOT_NAMED_QUERIES).exists()) {
+      namedQueries = loadProperties(resolver, "classpath:" + AOT_NAMED_QUERIES);
+      var stores = loadProperties(resolver, "classpath:" + AOT_STORES);
+      for (var storeName : stores.stringPropertyNames()) {
+        queryNamesByStore.put(storeName, Set.of(stores.getProperty(storeName).split(",")));
+      }
+      if (!dialect.isEmpty()) {
+        namedQueries.putAll(
+            loadProperties(resolver, "classpath:" + aotDialectNamedQueries(dialect)));
+      }
+      metadata = loadProperties(resolver, "classpath:" + AOT_METADATA);
+    } else {
+      namedQueries = loadNamedQueries(resolver, queryNamesByStore);
+      if (!dialect.isEmpty()) {
+        namedQueries.putAll(
+            loadProperties(
+                resolver, "classpath*:META-INF/*-named-queries." + dialect + ".properties"));
+      }
+      metadata = loadMetadata(resolver);
+    }
+    Map<String, String> queries = new HashMap<>();
+    namedQueries.forEach((name, sql) -> queries.put(name.toString(), sql.toString()));
+    return new NamedQueryCatalog(queries, parseMetadata(metadata, dialect), queryNamesByStore);
+  }
+
+  /**
+   * Whether the classpath contains named query metadata. Only the metadata files are looked up, the
+   * named queries are not loaded.
+   *
+   * @param resolver the resource resolver
+   * @return whether a metadata file exists
+   */
+  public static boolean hasMetadata(ResourcePatternResolver resolver) {
+    if (resolver.getResource("classpath:" + AOT_NAMED_QUERIES).exists()) {
+      return !loadProperties(resolver, "classpath:" + AOT_METADATA).isEmpty();
+    }
+    try {
+      for (Resource resource : resolver.getResources(METADATA_LOCATION)) {
+        if (resource.exists()) {
+          return true;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return false;
+  }
+
+  static String aotDialectNamedQueries(String dialect) {
+    return "META-INF/named-sqlfiles/aot-named-queries." + dialect + ".properties";
+  }
+
+  /**
+   * Loads the aggregated or else all named queries files of the classpath.
+   *
+   * @param resolver the resource resolver
+   * @param queryNamesByStore receives the query names by the store name of their files, e.g. jdbc
+   * @return the named queries
+   */
+  static Properties loadNamedQueries(
+      ResourcePatternResolver resolver, Map<String, Set<String>> queryNamesByStore) {
+    try {
+      List<Resource> aggregates = new ArrayList<>();
+      for (var location : AGGREGATE_LOCATIONS) {
+        var resource = resolver.getResource(location);
+        if (resource.exists()) {
+          aggregates.add(resource);
+        }
+      }
+      return loadNamedQueries(
+          aggregates.isEmpty()
+              ? List.of(resolver.getResources(NAMED_QUERIES_LOCATION))
+              : aggregates,
+          queryNamesByStore);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Properties loadNamedQueries(
+      List<Resource> resources, Map<String, Set<String>> queryNamesByStore) throws IOException {
+    var namedQueries = new Properties();
+    for (Resource resource : resources) {
+      if (!resource.exists()) {
+        continue;
+      }
+      var properties = new Properties();
+      try (InputStream inputStream = resource.getInputStream()) {
+        properties.load(inputStream);
+      }
+      namedQueries.putAll(properties);
+      var filename = resource.getFilename();
+      queryNamesByStore
+          .computeIfAbsent(
+              filename.substring(0, filename.indexOf(STORE_SUFFIX)), key -> new HashSet<>())
+          .addAll(properties.stringPropertyNames());
+    }
+    return namedQueries;
+  }
+
+  static Properties loadMetadata(ResourcePatternResolver resolver) {
+    return loadProperties(resolver, METADATA_LOCATION);
+  }
+
+  /** Loads the dialect specific named queries files of the classpath by dialect. */
+  static Map<String, Properties> loadDialectNamedQueries(ResourcePatternResolver resolver) {
+    Map<String, Properties> dialects = new TreeMap<>();
+    try {
+      for (Resource resource : resolver.getResources(DIALECT_LOCATION)) {
+        var filename = resource.getFilename();
+        var dialect =
+            filename.substring(
+                filename.indexOf("-named-queries.") + "-named-queries.".length(),
+                filename.length() - ".properties".length());
+        try (InputStream inputStream = resource.getInputStream()) {
+          dialects.computeIfAbsent(dialect, key -> new Properties()).load(inputStream);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return dialects;
+  }
+
+  /**
+   * Loads the fragment dependency graphs of the classpath: the names of the named queries including
+   * a fragment, by fragment name.
+   */
+  static Map<String, Set<String>> loadFragmentDependents(ResourcePatternResolver resolver) {
+    Map<String, Set<String>> dependents = new TreeMap<>();
+    try {
+      for (Resource resource : resolver.getResources(INCLUDES_LOCATION)) {
+        var includes = new Properties();
+        try (InputStream inputStream = resource.getInputStream()) {
+          includes.load(inputStream);
+        }
+        for (var fragment : includes.stringPropertyNames()) {
+          dependents
+              .computeIfAbsent(fragment, key -> new TreeSet<>())
+              .addAll(Arrays.asList(includes.getProperty(fragment).split(",")));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return dependents;
+  }
+
+  static Properties loadProperties(ResourcePatternResolver resolver, String locationPattern) {
+    var properties = new Properties();
+    try {
+      for (Resource resource : resolver.getResources(locationPattern)) {
+        if (!resource.exists()) {
+          continue;
+        }
+        try (InputStream inputStream = resource.getInputStream()) {
+          properties.load(inputStream);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return properties;
+  }
+
+  /**
+   * Parses the metadata properties {@code <query name>#<attribute>=<value>}. The statements of the
+   * dialect variant of a query replace the statements of the query.
+   */
+  static Map<String, NamedQueryMetadata> parseMetadata(Properties properties, String dialect) {
+    Map<String, Map<String, String>> attributes = new HashMap<>();
+    for (var key : properties.stringPropertyNames()) {
+      int separator = key.lastIndexOf(METADATA_SEPARATOR);
+      if (separator > 0) {
+        attributes
+            .computeIfAbsent(key.substring(0, separator), name -> new HashMap<>())
+            .put(key.substring(separator + 1), properties.getProperty(key));
+      }
+    }
+    Map<String, NamedQueryMetadata> metadata = new HashMap<>();
+    attributes.forEach(
+        (name, values) -> {
+          Map<String, String> hints = new HashMap<>();
+          values.forEach(
+              (attribute, value) -> {
+                if (attribute.startsWith(HINT_PREFIX)) {
+                  hints.put(attribute.substring(HINT_PREFIX.length()), value);
+                }
+              });
+          metadata.put(
+              name,
+              new NamedQueryMetadata(
+                  Integer.parseInt(values.getOrDefault("fetchSize", "0")),
+                  values.containsKey("timeout")
+                      ? Duration.ofMillis(Long.parseLong(values.get("timeout")))
+                      : null,
+                  Integer.parseInt(values.getOrDefault("maxRows", "0")),
+                  hints,
+                  statements(values, dialect)));
+        });
+    return metadata;
+  }
+
+  /**
+   * Parses the statements {@code statement.<index>} of a statement list by 1-based index, or {@code
+   * dialect.<dialect>.statement.<index>} of the dialect variant.
+   */
+  private static List<String> statements(Map<String, String> values, String dialect) {
+    var prefix = DIALECT_PREFIX + dialect + ".";
+    if (dialect.isEmpty() || !values.containsKey(prefix + STATEMENTS)) {
+      prefix = "";
+    }
+    int count = Integer.parseInt(values.getOrDefault(prefix + STATEMENTS, "0"));
+    if (count < 2) {
+      return List.of();
+    }
+    List<String> statements = new ArrayList<>(count);
+    for (int index = 1; index <= count; index++) {
+      statements.add(values.getOrDefault(prefix + STATEMENT_PREFIX + index, ""));
+    }
+    return statements;
+  }
+
+  /** The names of the named queries. */
+  public Set<String> queryNames() {
+    return queries.keySet();
+  }
+
+  /**
+   * The names of the named queries of a Spring Data store.
+   *
+   * @param storeName the store name of the named queries files, e.g. jdbc
+   * @return the query names
+   */
+  public Set<String> queryNames(String storeName) {
+    return queryNamesByStore.getOrDefault(storeName, Set.of());
+  }
+
+  /** The named queries: the SQL by query name. */
+  public Map<String, String> queries() {
+    return queries;
+  }
+
+  /**
+   * Finds the named query of a statement.
+   *
+   * @param sql the statement as sent to the database
+   * @return the query name or empty, if the statement is no named query
+   */
+  public Optional<String> findQueryName(String sql) {
+    return queryNamesBySql.get(sql);
+  }
+
+  private Optional<String> lookupQueryName(String sql) {
+    return Optional.ofNullable(queryNamesByFingerprint().get(SqlFingerprint.of(sql)));
+  }
+
+  private Map<String, String> queryNamesByFingerprint() {
+    var result = queryNamesByFingerprint;
+    if (result == null) {
+      synchronized (this) {
+        result = queryNamesByFingerprint;
+        if (result == null) {
+          Map<String, String> map = new HashMap<>();
+          // sorted, so that the first name of identical queries wins deterministically
+          new TreeMap<>(queries)
+              .forEach((name, sql) -> map.putIfAbsent(SqlFingerprint.of(sql), name));
+          result = Collections.unmodifiableMap(map);
+          queryNamesByFingerprint = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the metadata of a named query.
+   *
+   * @param queryName the query name
+   * @return the metadata, {@link NamedQueryMetadata#NONE} if the query declares no metadata
+   */
+  public NamedQueryMetadata metadata(String queryName) {
+    return metadata.getOrDefault(queryName, NamedQueryMetadata.NONE);
+  }
+
+  /**
+   * Returns the metadata of the named query of a statement.
+   *
+   * @param sql the statement as sent to the database
+   * @return the metadata, {@link NamedQueryMetadata#NONE} if the statement is no named query or
+   *     declares no metadata
+   */
+  public NamedQueryMetadata findMetadata(String sql) {
+    if (metadata.isEmpty()) {
+      return NamedQueryMetadata.NONE;
+    }
+    return findQueryName(sql).map(this::metadata).orElse(NamedQueryMetadata.NONE);
+  }
+
+  /** Whether any named query declares metadata. */
+  public boolean hasMetadata() {
+    return !metadata.isEmpty();
+  }
+}
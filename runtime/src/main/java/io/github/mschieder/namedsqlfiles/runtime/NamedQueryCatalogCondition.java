@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Matches if a feature needs the {@link NamedQueryCatalog}: the statistics, the reload, the warm-up
+ * or the metadata of the named queries. The metadata is not applied with the binary stores, that
+ * keep the named queries out of the heap.
+ *
+ * @author Michael Schieder
+ */
+class NamedQueryCatalogCondition extends AnyNestedCondition {
+
+  NamedQueryCatalogCondition() {
+    super(ConfigurationPhase.REGISTER_BEAN);
+  }
+
+  @ConditionalOnProperty(
+      prefix = "namedsqlfiles.runtime.statistics",
+      name = "enabled",
+      havingValue = "true")
+  static class OnStatistics {}
+
+  @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.reload", name = "enabled")
+  static class OnReload {}
+
+  @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.warm-up", name = "enabled")
+  static class OnWarmUp {}
+
+  @Conditional(OnMetadataCondition.class)
+  static class OnMetadata {}
+
+  static class OnMetadataCondition extends SpringBootCondition {
+    private static final String BINARY_STORE_PROPERTY =
+        "namedsqlfiles.runtime.binary-store.enabled";
+
+    @Override
+    public ConditionOutcome getMatchOutcome(
+        ConditionContext context, AnnotatedTypeMetadata metadata) {
+      if (context.getEnvironment().getProperty(BINARY_STORE_PROPERTY, Boolean.class, false)) {
+        return ConditionOutcome.noMatch("named queries binary store enabled");
+      }
+      return NamedQueryCatalog.hasMetadata(
+              ResourcePatternUtils.getResourcePatternResolver(context.getResourceLoader()))
+          ? ConditionOutcome.match("named query metadata found")
+          : ConditionOutcome.noMatch("no named query metadata found");
+    }
+  }
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A data source, that applies the statement settings of the named query metadata (fetch size,
+ * timeout and maximum rows) to the statements prepared for named queries and records their
+ * execution statistics.
+ *
+ * <p>The statement lists of modifying query methods are executed statement by statement on the
+ * connection, they are prepared on, i.e. in its current transaction: without parameters as a single
+ * JDBC batch, with parameters one after the other, because a JDBC batch of different statements
+ * cannot bind parameters. The statements are the ones split by the query processors, of the dialect
+ * variant if there is one.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryDataSource extends DelegatingDataSource {
+  private static final Set<String> EXECUTE_METHODS =
+      Set.of(
+          "execute",
+          "executeQuery",
+          "executeUpdate",
+          "executeLargeUpdate",
+          "executeBatch",
+          "executeLargeBatch");
+
+  private final NamedQueryCatalog catalog;
+  private final NamedQueryStatistics statistics;
+  private final Map<String, SqlStatements> statementLists = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a data source, that applies the statement settings.
+   *
+   * @param targetDataSource the target data source
+   * @param catalog the named queries catalog
+   */
+  public NamedQueryDataSource(DataSource targetDataSource, NamedQueryCatalog catalog) {
+    this(targetDataSource, catalog, null);
+  }
+
+  /**
+   * Creates a data source, that applies the statement settings and records the statistics.
+   *
+   * @param targetDataSource the target data source
+   * @param catalog the named queries catalog
+   * @param statistics the statistics, or null to record no statistics
+   */
+  public NamedQueryDataSource(
+      DataSource targetDataSource, NamedQueryCatalog catalog, NamedQueryStatistics statistics) {
+    super(targetDataSource);
+    this.catalog = catalog;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return proxy(obtainTargetDataSource().getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return proxy(obtainTargetDataSource().getConnection(username, password));
+  }
+
+  private Connection proxy(Connection connection) {
+    return proxy(Connection.class, new ConnectionHandler(connection));
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(
+        Proxy.newProxyInstance(
+            NamedQueryDataSource.class.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  /**
+   * Handles the methods of the JDBC object proxies: identity based {@code equals} and {@code
+   * hashCode}, {@code unwrap} to the proxy and the delegation to the target.
+   */
+  private abstract static class ProxyHandler<T> implements InvocationHandler {
+    protected final T target;
+
+    ProxyHandler(T target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "unwrap":
+          if (((Class<?>) args[0]).isInstance(proxy)) {
+            return proxy;
+          }
+          break;
+        default:
+          break;
+      }
+      return handle(proxy, method, args);
+    }
+
+    abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+    Object delegate(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+  }
+
+  /**
+   * Applies the metadata to the statements prepared with {@code prepareStatement(sql, ...)} and
+   * {@code prepareCall(sql, ...)} and records their executions.
+   */
+  private class ConnectionHandler extends ProxyHandler<Connection> {
+
+    ConnectionHandler(Connection target) {
+      super(target);
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      if (args == null
+          || args.length == 0
+          || !(args[0] instanceof String sql)
+          || !(method.getName().equals("prepareStatement")
+              || method.getName().equals("prepareCall"))) {
+        return delegate(method, args);
+      }
+      var queryName = catalog.findQueryName(sql);
+      if (queryName.isEmpty()) {
+        return delegate(method, args);
+      }
+      var metadata = catalog.metadata(queryName.get());
+      var recorder = statistics == null ? null : statistics.recorder(queryName.get());
+      if (metadata.isStatementList() && method.getName().equals("prepareStatement")) {
+        return proxy(
+            PreparedStatement.class,
+            new StatementListHandler(
+                target,
+                (Connection) proxy,
+                queryName.get(),
+                sql,
+                metadata,
+                statementLists.computeIfAbsent(
+                    queryName.get(), name -> SqlStatements.compile(metadata.statements())),
+                recorder));
+      }
+      Object result = delegate(method, args);
+      if (result instanceof PreparedStatement statement) {
+        apply(metadata, statement);
+        if (recorder != null) {
+          return statement instanceof CallableStatement
+              ? proxy(CallableStatement.class, new StatementHandler(statement, recorder))
+              : proxy(PreparedStatement.class, new StatementHandler(statement, recorder));
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A prepared statement of a statement list: records the parameters and executes the compiled
+   * statements on the connection, when the statement list is executed. The parameters are bound to
+   * the statements by the parameter markers of the preceding statements.
+   */
+  private static class StatementListHandler extends ProxyHandler<Connection> {
+    private final Connection connection;
+    private final String queryName;
+    private final String sql;
+    private final NamedQueryMetadata metadata;
+    private final SqlStatements statements;
+    private final NamedQueryStatistics.Recorder recorder;
+    // statements are not used concurrently
+    private final List<Parameter> parameters = new ArrayList<>();
+    private int queryTimeout;
+    private long updateCount = -1;
+    private boolean closed;
+
+    /** A parameter setter call {@code set<Type>(int parameterIndex, ...)}. */
+    private record Parameter(Method method, Object[] args) {}
+
+    StatementListHandler(
+        Connection target,
+        Connection connection,
+        String queryName,
+        String sql,
+        NamedQueryMetadata metadata,
+        SqlStatements statements,
+        NamedQueryStatistics.Recorder recorder) {
+      super(target);
+      this.connection = connection;
+      this.queryName = queryName;
+      this.sql = sql;
+      this.metadata = metadata;
+      this.statements = statements;
+      this.recorder = recorder;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      var name = method.getName();
+      if (method.getDeclaringClass() == PreparedStatement.class && name.startsWith("set")) {
+        parameters.add(new Parameter(method, args.clone()));
+        return null;
+      }
+      switch (name) {
+        case "executeUpdate":
+        case "executeLargeUpdate":
+        case "execute":
+          if (args != null) {
+            throw new SQLException(name + "(String) is not supported by prepared statements.");
+          }
+          updateCount = execute();
+          if (name.equals("executeUpdate")) {
+            return (int) Math.min(updateCount, Integer.MAX_VALUE);
+          }
+          return name.equals("execute") ? Boolean.FALSE : updateCount;
+        case "getUpdateCount":
+          return (int) Math.min(updateCount, Integer.MAX_VALUE);
+        case "getLargeUpdateCount":
+          return updateCount;
+        case "getMoreResults":
+          updateCount = -1;
+          return Boolean.FALSE;
+        case "clearParameters":
+          parameters.clear();
+          return null;
+        case "setQueryTimeout":
+          queryTimeout = (int) args[0];
+          return null;
+        case "getQueryTimeout":
+          return queryTimeout;
+        case "getFetchSize":
+        case "getMaxRows":
+          return 0;
+        case "getResultSet":
+        case "getWarnings":
+          return null;
+        case "clearWarnings":
+        case "setFetchSize":
+        case "setMaxRows":
+        case "setLargeMaxRows":
+        case "setFetchDirection":
+        case "setEscapeProcessing":
+        case "setPoolable":
+        case "closeOnCompletion":
+          // no result sets
+          return null;
+        case "getConnection":
+          return connection;
+        case "isWrapperFor":
+          return ((Class<?>) args[0]).isInstance(proxy);
+        case "close":
+          closed = true;
+          return null;
+        case "isClosed":
+          return closed;
+        case "toString":
+          return "statement list " + queryName;
+        default:
+          throw new SQLFeatureNotSupportedException(
+              name + " is not supported by the statement list of '" + queryName + "'.");
+      }
+    }
+
+    private long execute() throws SQLException {
+      if (closed) {
+        throw new SQLException("statement list of '" + queryName + "' is closed.");
+      }
+      List<SqlStatements.Statement> located;
+      try {
+        located = statements.locate(sql);
+      } catch (IllegalArgumentException e) {
+        throw new SQLException(
+            "statement list of '" + queryName + "' does not match its compiled statements.", e);
+      }
+      long start = System.nanoTime();
+      try {
+        long count =
+            located.stream().allMatch(statement -> statement.parameterCount() == 0)
+                ? executeBatch(located)
+                : executeStatements(located);
+        if (recorder != null) {
+          recorder.recordExecution(System.nanoTime() - start, false);
+        }
+        return count;
+      } catch (SQLException | RuntimeException e) {
+        if (recorder != null) {
+          recorder.recordExecution(System.nanoTime() - start, true);
+        }
+        throw e;
+      }
+    }
+
+    private long executeBatch(List<SqlStatements.Statement> located) throws SQLException {
+      try (Statement statement = target.createStatement()) {
+        applySettings(statement);
+        for (var batched : located) {
+          statement.addBatch(batched.sql());
+        }
+        long count = 0;
+        for (int updated : statement.executeBatch()) {
+          count += Math.max(0, updated);
+        }
+        return count;
+      } catch (BatchUpdateException e) {
+        // drivers stop at the failed statement or mark it as failed
+        var counts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+        int failed = counts.length;
+        for (int i = 0; i < counts.length; i++) {
+          if (counts[i] == Statement.EXECUTE_FAILED) {
+            failed = i;
+            break;
+          }
+        }
+        throw new BatchUpdateException(
+            failedMessage(failed, e), e.getSQLState(), e.getErrorCode(), counts, e);
+      }
+    }
+
+    private long executeStatements(List<SqlStatements.Statement> located) throws SQLException {
+      long count = 0;
+      int offset = 0;
+      for (int i = 0; i < located.size(); i++) {
+        var executed = located.get(i);
+        try (PreparedStatement statement = target.prepareStatement(executed.sql())) {
+          applySettings(statement);
+          for (var parameter : parameters) {
+            int index = (int) parameter.args()[0] - offset;
+            if (index > 0 && index <= executed.parameterCount()) {
+              var args = parameter.args().clone();
+              args[0] = index;
+              bind(parameter.method(), statement, args);
+            }
+          }
+          if (!statement.execute()) {
+            count += Math.max(0, statement.getUpdateCount());
+          }
+        } catch (SQLException e) {
+          throw new SQLException(failedMessage(i, e), e.getSQLState(), e.getErrorCode(), e);
+        }
+        offset += executed.parameterCount();
+      }
+      return count;
+    }
+
+    private void applySettings(Statement statement) throws SQLException {
+      apply(metadata, statement);
+      if (queryTimeout > 0) {
+        statement.setQueryTimeout(queryTimeout);
+      }
+    }
+
+    private static void bind(Method method, PreparedStatement statement, Object[] args)
+        throws SQLException {
+      try {
+        method.invoke(statement, args);
+      } catch (InvocationTargetException e) {
+        if (e.getTargetException() instanceof SQLException sqlException) {
+          throw sqlException;
+        }
+        throw new IllegalStateException(e.getTargetException());
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private String failedMessage(int index, SQLException e) {
+      return "statement " + (index + 1) + " of '" + queryName + "' failed: " + e.getMessage();
+    }
+  }
+
+  /**
+   * Records the latencies and errors of the executions. The result sets are not proxied: the
+   * latency of an execution with a result set is recorded, when the statement is closed or executed
+   * again, so that it includes reading the result set.
+   */
+  private static class StatementHandler extends ProxyHandler<PreparedStatement> {
+    private final NamedQueryStatistics.Recorder recorder;
+    // statements are not used concurrently, the start of the execution with an open result set
+    private long resultSetStart = -1;
+
+    StatementHandler(PreparedStatement target, NamedQueryStatistics.Recorder recorder) {
+      super(target);
+      this.recorder = recorder;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      var name = method.getName();
+      if (name.equals("close")) {
+        recordResultSet();
+        return delegate(method, args);
+      }
+      if (!EXECUTE_METHODS.contains(name)) {
+        return delegate(method, args);
+      }
+      recordResultSet();
+      long start = System.nanoTime();
+      Object result;
+      try {
+        result = delegate(method, args);
+      } catch (Throwable e) {
+        recorder.recordExecution(System.nanoTime() - start, true);
+        throw e;
+      }
+      if (result instanceof ResultSet || Boolean.TRUE.equals(result)) {
+        resultSetStart = start;
+        return result;
+      }
+      recorder.recordExecution(System.nanoTime() - start, false);
+      return result;
+    }
+
+    private void recordResultSet() {
+      if (resultSetStart >= 0) {
+        recorder.recordExecution(System.nanoTime() - resultSetStart, false);
+        resultSetStart = -1;
+      }
+    }
+  }
+
+  static void apply(NamedQueryMetadata metadata, Statement statement) throws SQLException {
+    if (!metadata.hasStatementSettings()) {
+      return;
+    }
+    if (metadata.fetchSize() > 0) {
+      statement.setFetchSize(metadata.fetchSize());
+    }
+    if (metadata.timeout() != null) {
+      // JDBC timeouts are seconds, rounded up, so that short timeouts do not disable the timeout
+      long millis = metadata.timeout().toMillis();
+      statement.setQueryTimeout((int) Math.max(1, (millis + 999) / 1000));
+    }
+    if (metadata.maxRows() > 0) {
+      statement.setMaxRows(metadata.maxRows());
+    }
+  }
+}
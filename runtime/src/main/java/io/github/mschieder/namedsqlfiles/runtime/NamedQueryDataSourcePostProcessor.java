@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the data sources of the application with a {@link NamedQueryDataSource}, if named queries
+ * declare metadata or the statistics are recorded.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryDataSourcePostProcessor implements BeanPostProcessor {
+  private final ObjectProvider<NamedQueryCatalog> catalog;
+  private final ObjectProvider<NamedQueryStatistics> statistics;
+
+  public NamedQueryDataSourcePostProcessor(
+      ObjectProvider<NamedQueryCatalog> catalog, ObjectProvider<NamedQueryStatistics> statistics) {
+    this.catalog = catalog;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof DataSource dataSource && !(bean instanceof NamedQueryDataSource)) {
+      var namedQueryCatalog = catalog.getIfAvailable();
+      var namedQueryStatistics = statistics.getIfAvailable();
+      if (namedQueryCatalog != null
+          && (namedQueryCatalog.hasMetadata() || namedQueryStatistics != null)) {
+        return new NamedQueryDataSource(dataSource, namedQueryCatalog, namedQueryStatistics);
+      }
+    }
+    return bean;
+  }
+}
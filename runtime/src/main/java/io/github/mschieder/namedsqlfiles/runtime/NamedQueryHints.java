@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Applies the query hints and the timeout of the named query metadata to the JPA queries created
+ * with {@code createNativeQuery(sql, ...)} or {@code createQuery(sql, ...)} of an entity manager.
+ * The fetch size and maximum rows are applied by the {@link NamedQueryDataSource}. In the
+ * development mode, native queries are created with the reloaded SQL of the named queries.
+ *
+ * @author Michael Schieder
+ */
+final class NamedQueryHints {
+  static final String TIMEOUT_HINT = "jakarta.persistence.query.timeout";
+
+  private NamedQueryHints() {}
+
+  static EntityManager wrap(
+      EntityManager entityManager, NamedQueryCatalog catalog, NamedQueryRegistry registry) {
+    return (EntityManager)
+        Proxy.newProxyInstance(
+            NamedQueryHints.class.getClassLoader(),
+            new Class<?>[] {EntityManager.class},
+            new EntityManagerHandler(entityManager, catalog, registry));
+  }
+
+  private record EntityManagerHandler(
+      EntityManager target, NamedQueryCatalog catalog, NamedQueryRegistry registry)
+      implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().equals("equals")) {
+        return proxy == args[0];
+      } else if (method.getName().equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      }
+      if (registry != null
+          && method.getName().equals("createNativeQuery")
+          && args[0] instanceof String sql) {
+        var reloaded = registry.findReloaded(sql);
+        if (reloaded.isPresent()) {
+          // the metadata is looked up by the original SQL
+          var reloadedArgs = args.clone();
+          reloadedArgs[0] = reloaded.get();
+          var query = (Query) invoke(method, reloadedArgs);
+          apply(catalog.findMetadata(sql), query);
+          return query;
+        }
+      }
+      Object result = invoke(method, args);
+      if (result instanceof Query query
+          && args != null
+          && args.length > 0
+          && args[0] instanceof String sql
+          && (method.getName().equals("createNativeQuery")
+              || method.getName().equals("createQuery"))) {
+        apply(catalog.findMetadata(sql), query);
+      }
+      return result;
+    }
+
+    private Object invoke(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+  }
+
+  static void apply(NamedQueryMetadata metadata, Query query) {
+    metadata.hints().forEach(query::setHint);
+    if (metadata.timeout() != null) {
+      query.setHint(TIMEOUT_HINT, (int) metadata.timeout().toMillis());
+    }
+  }
+}
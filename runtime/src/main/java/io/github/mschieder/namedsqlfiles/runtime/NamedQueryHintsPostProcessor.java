@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+
+/**
+ * Sets an entity manager, that applies the query hints of the named query metadata and creates the
+ * reloaded named queries of the development mode, on the JPA repository factory beans, if the
+ * application has a single entity manager factory.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryHintsPostProcessor implements BeanPostProcessor {
+  private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+  private final ObjectProvider<NamedQueryCatalog> catalog;
+  private final ObjectProvider<NamedQueryRegistry> registry;
+
+  public NamedQueryHintsPostProcessor(
+      ObjectProvider<EntityManagerFactory> entityManagerFactory,
+      ObjectProvider<NamedQueryCatalog> catalog,
+      ObjectProvider<NamedQueryRegistry> registry) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.catalog = catalog;
+    this.registry = registry;
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    if (bean instanceof JpaRepositoryFactoryBean<?, ?, ?> factoryBean) {
+      var namedQueryCatalog = catalog.getIfAvailable();
+      var namedQueryRegistry = registry.getIfAvailable();
+      var factory = entityManagerFactory.getIfUnique();
+      if (namedQueryCatalog != null
+          && (namedQueryCatalog.hasMetadata() || namedQueryRegistry != null)
+          && factory != null) {
+        factoryBean.setEntityManager(
+            NamedQueryHints.wrap(
+                SharedEntityManagerCreator.createSharedEntityManager(factory),
+                namedQueryCatalog,
+                namedQueryRegistry));
+      }
+    }
+    return bean;
+  }
+}
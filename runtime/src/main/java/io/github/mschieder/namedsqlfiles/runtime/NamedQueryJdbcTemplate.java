@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+
+/**
+ * A {@link NamedParameterJdbcTemplate}, that parses the named parameters of the Spring Data JDBC
+ * named queries ({@code jdbc-named-queries} files) once, when it is created. Their parsed SQL is
+ * never evicted from the template's bounded cache and reparsed, other statements are parsed and
+ * cached as usual. In the development mode, the reloaded SQL of the named queries is executed
+ * instead.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryJdbcTemplate extends NamedParameterJdbcTemplate {
+  private static final String JDBC_STORE = "jdbc";
+
+  private final Map<String, ParsedSql> parsedQueries;
+  private final NamedQueryRegistry registry;
+
+  /**
+   * Creates a template.
+   *
+   * @param jdbcOperations the JDBC operations
+   * @param catalog the named queries catalog
+   */
+  public NamedQueryJdbcTemplate(JdbcOperations jdbcOperations, NamedQueryCatalog catalog) {
+    this(jdbcOperations, catalog, null);
+  }
+
+  /**
+   * Creates a template, that executes the reloaded named queries.
+   *
+   * @param jdbcOperations the JDBC operations
+   * @param catalog the named queries catalog
+   * @param registry the reloaded named queries, or null
+   */
+  public NamedQueryJdbcTemplate(
+      JdbcOperations jdbcOperations, NamedQueryCatalog catalog, NamedQueryRegistry registry) {
+    super(jdbcOperations);
+    this.registry = registry;
+    Map<String, ParsedSql> parsed = new HashMap<>();
+    for (var queryName : catalog.queryNames(JDBC_STORE)) {
+      var sql = catalog.queries().get(queryName);
+      if (sql != null) {
+        parsed.computeIfAbsent(sql, NamedParameterUtils::parseSqlStatement);
+      }
+    }
+    this.parsedQueries = Map.copyOf(parsed);
+  }
+
+  @Override
+  protected ParsedSql getParsedSql(String sql) {
+    if (registry != null) {
+      var reloaded = registry.findReloaded(sql);
+      if (reloaded.isPresent()) {
+        return super.getParsedSql(reloaded.get());
+      }
+    }
+    var parsedSql = parsedQueries.get(sql);
+    return parsedSql != null ? parsedSql : super.getParsedSql(sql);
+  }
+
+  /** Whether the parsed SQL of the statement was created up front. */
+  boolean isParsed(String sql) {
+    return parsedQueries.containsKey(sql);
+  }
+}
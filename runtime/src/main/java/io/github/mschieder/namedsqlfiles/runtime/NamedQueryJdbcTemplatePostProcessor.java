@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Replaces the {@link NamedParameterJdbcTemplate} beans of the application, e.g. the one used by
+ * Spring Data JDBC repositories, with a {@link NamedQueryJdbcTemplate}, if there are named queries.
+ * Subclasses of the template are kept.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryJdbcTemplatePostProcessor implements BeanPostProcessor {
+  private final ObjectProvider<NamedQueryCatalog> catalog;
+  private final ObjectProvider<NamedQueryRegistry> registry;
+
+  public NamedQueryJdbcTemplatePostProcessor(
+      ObjectProvider<NamedQueryCatalog> catalog, ObjectProvider<NamedQueryRegistry> registry) {
+    this.catalog = catalog;
+    this.registry = registry;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean.getClass() == NamedParameterJdbcTemplate.class) {
+      var template = (NamedParameterJdbcTemplate) bean;
+      var namedQueryCatalog = catalog.getIfAvailable();
+      if (namedQueryCatalog != null && !namedQueryCatalog.queries().isEmpty()) {
+        var namedQueryTemplate =
+            new NamedQueryJdbcTemplate(
+                template.getJdbcOperations(), namedQueryCatalog, registry.getIfAvailable());
+        namedQueryTemplate.setCacheLimit(template.getCacheLimit());
+        return namedQueryTemplate;
+      }
+    }
+    return bean;
+  }
+}
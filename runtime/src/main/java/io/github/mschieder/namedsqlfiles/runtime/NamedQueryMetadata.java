@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution metadata of a named query, declared in the header of its SQL file.
+ *
+ * @param fetchSize the JDBC fetch size, 0 if not declared
+ * @param timeout the query timeout, null if not declared
+ * @param maxRows the maximum number of rows, 0 if not declared
+ * @param hints the query hints by name
+ * @param statements the statements of a statement list by 0-based index, empty if the query is a
+ *     single statement
+ * @author Michael Schieder
+ */
+public record NamedQueryMetadata(
+    int fetchSize,
+    Duration timeout,
+    int maxRows,
+    Map<String, String> hints,
+    List<String> statements) {
+
+  /** No metadata. */
+  public static final NamedQueryMetadata NONE =
+      new NamedQueryMetadata(0, null, 0, Map.of(), List.of());
+
+  public NamedQueryMetadata {
+    hints = Map.copyOf(hints);
+    statements = List.copyOf(statements);
+  }
+
+  /**
+   * Creates the metadata of a single statement.
+   *
+   * @param fetchSize the JDBC fetch size, 0 if not declared
+   * @param timeout the query timeout, null if not declared
+   * @param maxRows the maximum number of rows, 0 if not declared
+   * @param hints the query hints by name
+   */
+  public NamedQueryMetadata(
+      int fetchSize, Duration timeout, int maxRows, Map<String, String> hints) {
+    this(fetchSize, timeout, maxRows, hints, List.of());
+  }
+
+  /** Whether the query is a statement list of a modifying query method. */
+  public boolean isStatementList() {
+    return statements.size() > 1;
+  }
+
+  /** Whether the metadata declares statement settings: fetch size, timeout or maximum rows. */
+  public boolean hasStatementSettings() {
+    return fetchSize > 0 || timeout != null || maxRows > 0;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the execution statistics of the named queries to Micrometer, tagged with the query name:
+ * the timer {@code namedsqlfiles.query}, the gauges {@code namedsqlfiles.query.max/p50/p99} and the
+ * counter {@code namedsqlfiles.query.errors}. The meters of a named query are registered on its
+ * first execution.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryMetrics implements MeterBinder {
+  static final String METER_NAME = "namedsqlfiles.query";
+  static final String QUERY_TAG = "query";
+
+  private final NamedQueryStatistics statistics;
+
+  public NamedQueryMetrics(NamedQueryStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    statistics.forEachRecorder((queryName, recorder) -> bind(registry, queryName, recorder));
+  }
+
+  private static void bind(
+      MeterRegistry registry, String queryName, NamedQueryStatistics.Recorder recorder) {
+    var latencies = recorder.latencies();
+    FunctionTimer.builder(
+            METER_NAME,
+            latencies,
+            LatencyHistogram::count,
+            LatencyHistogram::totalNanos,
+            TimeUnit.NANOSECONDS)
+        .description("Executions of the named query")
+        .tag(QUERY_TAG, queryName)
+        .register(registry);
+    Gauge.builder(METER_NAME + ".max", latencies, h -> h.maxNanos() / 1_000_000.0)
+        .baseUnit("milliseconds")
+        .tag(QUERY_TAG, queryName)
+        .register(registry);
+    Gauge.builder(METER_NAME + ".p50", latencies, h -> h.percentileNanos(0.5) / 1_000_000.0)
+        .baseUnit("milliseconds")
+        .tag(QUERY_TAG, queryName)
+        .register(registry);
+    Gauge.builder(METER_NAME + ".p99", latencies, h -> h.percentileNanos(0.99) / 1_000_000.0)
+        .baseUnit("milliseconds")
+        .tag(QUERY_TAG, queryName)
+        .register(registry);
+    FunctionCounter.builder(METER_NAME + ".errors", recorder, NamedQueryStatistics.Recorder::errors)
+        .tag(QUERY_TAG, queryName)
+        .register(registry);
+  }
+}
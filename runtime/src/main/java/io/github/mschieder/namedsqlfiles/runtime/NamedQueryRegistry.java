@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The reloaded named queries of the development mode. Repositories keep the named queries, that
+ * they were created with, so the registry maps these statements to their reloaded SQL, when they
+ * are executed. Lookups and updates are lock free.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryRegistry {
+  private final NamedQueryCatalog catalog;
+  private final Map<String, String> reloadedQueries = new ConcurrentHashMap<>();
+
+  public NamedQueryRegistry(NamedQueryCatalog catalog) {
+    this.catalog = catalog;
+  }
+
+  /**
+   * Finds the reloaded SQL of a named query statement.
+   *
+   * @param sql the named query, as created by the repository
+   * @return the reloaded SQL, empty if the statement is no named query or was not reloaded
+   */
+  public Optional<String> findReloaded(String sql) {
+    if (reloadedQueries.isEmpty()) {
+      return Optional.empty();
+    }
+    return catalog.findQueryName(sql).map(reloadedQueries::get);
+  }
+
+  /**
+   * Returns the current SQL of a named query.
+   *
+   * @param queryName the query name
+   * @return the reloaded or the generated SQL, null if the query is unknown
+   */
+  public String query(String queryName) {
+    return reloadedQueries.getOrDefault(queryName, catalog.queries().get(queryName));
+  }
+
+  /**
+   * Replaces the SQL of a named query.
+   *
+   * @param queryName the query name
+   * @param sql the reloaded SQL
+   * @return whether the SQL of the query changed
+   */
+  public boolean update(String queryName, String sql) {
+    if (sql.equals(catalog.queries().get(queryName))) {
+      return reloadedQueries.remove(queryName) != null;
+    }
+    return !sql.equals(reloadedQueries.put(queryName, sql));
+  }
+
+  /** The names of the reloaded named queries. */
+  public Set<String> reloadedQueryNames() {
+    return Set.copyOf(reloadedQueries.keySet());
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Development mode: watches the SQL source roots and reloads the named queries of changed SQL
+ * files, transformed like the query processors do, into the {@link NamedQueryRegistry}. Enabled
+ * with {@code namedsqlfiles.runtime.reload.enabled=true}, it is not created at all otherwise.
+ *
+ * <p>A changed fragment reloads the named queries including it: the fragment dependency graphs of
+ * the query processors, completed by the fragments the reloader includes itself.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryReloader implements SmartLifecycle {
+  private static final Log logger = LogFactory.getLog(NamedQueryReloader.class);
+  // editors write files in several steps, changes are reloaded after a quiet period
+  private static final long QUIET_PERIOD_MILLIS = 100;
+
+  private final List<Path> sourceRoots;
+  private final String dialect;
+  // the transformers of the recorded processor options by named query name
+  private final Map<String, SqlSourceTransformer> transformers;
+  private final NamedQueryCatalog catalog;
+  private final NamedQueryRegistry registry;
+  // the names of the named queries including a fragment, by fragment name
+  private final Map<String, Set<String>> fragmentDependents = new ConcurrentHashMap<>();
+  private volatile WatchService watchService;
+
+  NamedQueryReloader(
+      List<Path> sourceRoots,
+      String dialect,
+      Map<String, SqlSourceTransformer> transformers,
+      NamedQueryCatalog catalog,
+      NamedQueryRegistry registry,
+      Map<String, Set<String>> fragmentDependents) {
+    this.sourceRoots = List.copyOf(sourceRoots);
+    this.dialect = dialect;
+    this.transformers = Map.copyOf(transformers);
+    this.catalog = catalog;
+    this.registry = registry;
+    fragmentDependents.forEach(
+        (fragment, queryNames) -> this.fragmentDependents.put(fragment, dependents(queryNames)));
+  }
+
+  private static Set<String> dependents(Collection<String> queryNames) {
+    Set<String> dependents = ConcurrentHashMap.newKeySet();
+    dependents.addAll(queryNames);
+    return dependents;
+  }
+
+  @Override
+  public void start() {
+    try {
+      var service = sourceRoots.get(0).getFileSystem().newWatchService();
+      for (var sourceRoot : sourceRoots) {
+        if (Files.isDirectory(sourceRoot)) {
+          register(service, sourceRoot);
+        } else {
+          logger.warn("SQL source root " + sourceRoot.toAbsolutePath() + " does not exist.");
+        }
+      }
+      watchService = service;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // SQL files may have changed since they were compiled
+    reload(catalog.queryNames());
+    var thread = new Thread(this::watch, "namedsqlfiles-reload");
+    thread.setDaemon(true);
+    thread.start();
+    logger.info("Reloading the named queries of the SQL files in " + sourceRoots + ".");
+  }
+
+  private static void register(WatchService service, Path directory) throws IOException {
+    try (Stream<Path> directories = Files.walk(directory)) {
+      for (var path : directories.filter(Files::isDirectory).toList()) {
+        path.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      }
+    }
+  }
+
+  private void watch() {
+    var service = watchService;
+    try {
+      while (true) {
+        var key = service.take();
+        Set<String> resourceNames = new HashSet<>();
+        do {
+          for (var event : key.pollEvents()) {
+            if (!(event.context() instanceof Path name)) {
+              continue;
+            }
+            var path = ((Path) key.watchable()).resolve(name);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+              register(service, path);
+            }
+            resourceName(path).ifPresent(resourceNames::add);
+          }
+          key.reset();
+          key = service.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        reload(affectedQueryNames(resourceNames));
+      }
+    } catch (ClosedWatchServiceException e) {
+      // stopped
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      logger.error("Reloading the named queries failed.", e);
+    }
+  }
+
+  /** Returns the resource name of a file in a source root: sql/person/all.sql. */
+  private Optional<String> resourceName(Path path) {
+    for (var sourceRoot : sourceRoots) {
+      if (path.startsWith(sourceRoot)) {
+        return Optional.of(
+            sourceRoot
+                .relativize(path)
+                .toString()
+                .replace(path.getFileSystem().getSeparator(), "/"));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the names of the named queries, whose SQL file or dialect variant changed or that
+   * include a changed fragment.
+   */
+  Set<String> affectedQueryNames(Set<String> resourceNames) {
+    Set<String> queryNames = new HashSet<>();
+    for (var queryName : catalog.queryNames()) {
+      if (resourceNames.contains(queryName)
+          || !dialect.isEmpty() && resourceNames.contains(variantName(queryName, dialect))) {
+        queryNames.add(queryName);
+      }
+    }
+    for (var resourceName : resourceNames) {
+      queryNames.addAll(fragmentDependents.getOrDefault(resourceName, Set.of()));
+    }
+    return queryNames;
+  }
+
+  /** Reloads the named queries from their SQL files. */
+  void reload(Collection<String> queryNames) {
+    for (var queryName : queryNames) {
+      try {
+        var sql = read(queryName);
+        if (sql.isPresent() && registry.update(queryName, sql.get())) {
+          logger.info("Reloaded the named query '" + queryName + "'.");
+        }
+      } catch (IOException e) {
+        logger.warn("Reloading the named query '" + queryName + "' failed: " + e.getMessage());
+      }
+    }
+  }
+
+  /** Reads the dialect variant or the SQL file of a named query, if it is in the source roots. */
+  private Optional<String> read(String queryName) throws IOException {
+    if (!queryName.toLowerCase(Locale.ROOT).endsWith(".sql")) {
+      return Optional.empty();
+    }
+    var resourceNames =
+        dialect.isEmpty()
+            ? List.of(queryName)
+            : List.of(variantName(queryName, dialect), queryName);
+    for (var resourceName : resourceNames) {
+      var content = load(resourceName);
+      if (content.isPresent()) {
+        return Optional.of(
+            transformers
+                .getOrDefault(queryName, SqlSourceTransformer.defaults())
+                .transform(
+                    resourceName,
+                    content.get(),
+                    fragment -> {
+                      fragmentDependents
+                          .computeIfAbsent(fragment, key -> ConcurrentHashMap.newKeySet())
+                          .add(queryName);
+                      return load(fragment);
+                    }));
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<String> load(String resourceName) throws IOException {
+    for (var sourceRoot : sourceRoots) {
+      var file = sourceRoot.resolve(resourceName);
+      if (Files.isRegularFile(file)) {
+        return Optional.of(Files.readString(file, StandardCharsets.UTF_8));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** Returns the name of the dialect variant: sql/person/complex.postgresql.sql. */
+  private static String variantName(String resourceName, String dialect) {
+    int suffix = resourceName.lastIndexOf('.');
+    return resourceName.substring(0, suffix) + "." + dialect + resourceName.substring(suffix);
+  }
+
+  @Override
+  public void stop() {
+    var service = watchService;
+    watchService = null;
+    if (service != null) {
+      try {
+        service.close();
+      } catch (IOException e) {
+        logger.debug("Closing the watch service failed.", e);
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return watchService != null;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Lock free execution statistics of the named queries: executions, errors and latency histograms.
+ * The recorder of a named query is created on its first execution, so that the statistics of large
+ * catalogs only hold the histograms of the executed queries.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryStatistics {
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private final Set<String> queryNames;
+  private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+  private final List<BiConsumer<String, Recorder>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates the statistics.
+   *
+   * @param queryNames the names of the named queries
+   */
+  public NamedQueryStatistics(Set<String> queryNames) {
+    this.queryNames = queryNames;
+  }
+
+  /**
+   * Returns the recorder of a named query, that is created on first use.
+   *
+   * @param queryName the query name
+   * @return the recorder, null if the query is unknown
+   */
+  Recorder recorder(String queryName) {
+    var recorder = recorders.get(queryName);
+    if (recorder != null || !queryNames.contains(queryName)) {
+      return recorder;
+    }
+    var created = new Recorder();
+    recorder = recorders.putIfAbsent(queryName, created);
+    if (recorder != null) {
+      return recorder;
+    }
+    listeners.forEach(listener -> listener.accept(queryName, created));
+    return created;
+  }
+
+  /**
+   * Calls a listener with the existing recorders and with each recorder, that is created later.
+   *
+   * @param listener the listener, called with the query name and its recorder
+   */
+  void forEachRecorder(BiConsumer<String, Recorder> listener) {
+    listeners.add(listener);
+    recorders.forEach(listener);
+  }
+
+  /** The names of the named queries. */
+  public Collection<String> queryNames() {
+    return queryNames;
+  }
+
+  /**
+   * Returns the statistics of the executed named queries.
+   *
+   * @return the statistics, sorted by query name
+   */
+  public List<QueryStatistics> snapshot() {
+    return recorders.keySet().stream()
+        .sorted()
+        .map(this::snapshot)
+        .flatMap(Optional::stream)
+        .filter(statistics -> statistics.count() > 0)
+        .toList();
+  }
+
+  /**
+   * Returns the statistics of a named query.
+   *
+   * @param queryName the query name
+   * @return the statistics, empty if the query is unknown
+   */
+  public Optional<QueryStatistics> snapshot(String queryName) {
+    if (!queryNames.contains(queryName)) {
+      return Optional.empty();
+    }
+    var recorder = recorders.get(queryName);
+    if (recorder == null) {
+      return Optional.of(new QueryStatistics(queryName, 0, 0, 0, 0, 0, 0));
+    }
+    var latencies = recorder.latencies();
+    long count = latencies.count();
+    return Optional.of(
+        new QueryStatistics(
+            queryName,
+            count,
+            recorder.errors(),
+            count == 0 ? 0 : latencies.totalNanos() / NANOS_PER_MILLI / count,
+            latencies.percentileNanos(0.5) / NANOS_PER_MILLI,
+            latencies.percentileNanos(0.99) / NANOS_PER_MILLI,
+            latencies.maxNanos() / NANOS_PER_MILLI));
+  }
+
+  /** Records the executions of a named query. */
+  static final class Recorder {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    void recordExecution(long nanos, boolean failed) {
+      latencies.record(nanos);
+      if (failed) {
+        errors.increment();
+      }
+    }
+
+    LatencyHistogram latencies() {
+      return latencies;
+    }
+
+    long errors() {
+      return errors.sum();
+    }
+  }
+}
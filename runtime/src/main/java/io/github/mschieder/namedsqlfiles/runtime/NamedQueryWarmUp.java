@@ -0,0 +1,244 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+/**
+ * Prepares all named queries of the catalog once at startup, without executing them, so that the
+ * first requests find warm driver, pool and query plan caches. The statements are prepared in
+ * parallel on a bounded pool of threads, virtual threads on Java 21+, until the time budget is
+ * exhausted. As application runner, the warm-up finishes before the application is ready and
+ * accepts traffic.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryWarmUp implements ApplicationRunner {
+  private static final Log logger = LogFactory.getLog(NamedQueryWarmUp.class);
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  /** Prepares a statement without executing it. */
+  interface Preparer extends AutoCloseable {
+
+    /**
+     * Prepares a named query.
+     *
+     * @param sql the named query
+     * @param statements the statements of the named query, as split by the query processors
+     */
+    void prepare(String sql, List<String> statements) throws Exception;
+
+    /** Releases the resources held for the warm-up, e.g. connections. */
+    @Override
+    default void close() {}
+  }
+
+  /**
+   * The warm-up of a named query.
+   *
+   * @param queryName the query name
+   * @param prepareTime the time to prepare the statement
+   * @param error the error message or null, if the statement was prepared
+   */
+  public record Result(String queryName, Duration prepareTime, String error) {
+    public boolean failed() {
+      return error != null;
+    }
+  }
+
+  /**
+   * The warm-up of all named queries.
+   *
+   * @param results the results of the prepared statements, in query name order
+   * @param skipped the number of queries, that were skipped when the time budget was exhausted
+   * @param duration the duration of the warm-up
+   */
+  public record Report(List<Result> results, int skipped, Duration duration) {
+    public List<Result> failures() {
+      return results.stream().filter(Result::failed).toList();
+    }
+  }
+
+  private final NamedQueryCatalog catalog;
+  private final List<Preparer> preparers;
+  private final int parallelism;
+  private final Duration budget;
+  private volatile Report report;
+
+  NamedQueryWarmUp(
+      NamedQueryCatalog catalog, List<Preparer> preparers, int parallelism, Duration budget) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("invalid warm-up parallelism " + parallelism + ".");
+    }
+    this.catalog = catalog;
+    this.preparers = List.copyOf(preparers);
+    this.parallelism = parallelism;
+    this.budget = budget;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    warmUp();
+  }
+
+  /** The report of the last warm-up or null, if it did not run yet. */
+  public Report report() {
+    return report;
+  }
+
+  /**
+   * Prepares all named queries.
+   *
+   * @return the report
+   */
+  public Report warmUp() {
+    long start = System.nanoTime();
+    long deadline = start + budget.toNanos();
+    var executor = Executors.newFixedThreadPool(parallelism, threadFactory());
+    List<Future<Result>> futures = new ArrayList<>();
+    new TreeMap<>(catalog.queries())
+        .forEach(
+            (queryName, sql) ->
+                futures.add(executor.submit(() -> prepare(queryName, sql, deadline))));
+    executor.shutdown();
+
+    List<Result> results = new ArrayList<>();
+    int skipped = 0;
+    try {
+      for (var future : futures) {
+        var result = await(future, deadline);
+        if (result != null) {
+          results.add(result);
+        } else {
+          skipped++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      skipped = futures.size() - results.size();
+    } finally {
+      executor.shutdownNow();
+      preparers.forEach(Preparer::close);
+    }
+    var warmUpReport = new Report(results, skipped, Duration.ofNanos(System.nanoTime() - start));
+    log(warmUpReport);
+    this.report = warmUpReport;
+    return warmUpReport;
+  }
+
+  private static ThreadFactory threadFactory() {
+    try {
+      // Thread.ofVirtual().factory() is available since java 21
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      var threadNumber = new AtomicInteger();
+      return runnable -> {
+        var thread =
+            new Thread(runnable, "namedsqlfiles-warm-up-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+
+  private static Result await(Future<Result> future, long deadline) throws InterruptedException {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | CancellationException e) {
+      future.cancel(true);
+      return null;
+    } catch (ExecutionException e) {
+      // prepare reports its failures as result
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Returns the result or null, if the budget is exhausted. */
+  private Result prepare(String queryName, String sql, long deadline) {
+    long start = System.nanoTime();
+    if (start - deadline >= 0) {
+      return null;
+    }
+    var metadata = catalog.metadata(queryName);
+    var statements = metadata.isStatementList() ? metadata.statements() : List.of(sql);
+    String error = null;
+    for (var preparer : preparers) {
+      try {
+        preparer.prepare(sql, statements);
+      } catch (Exception e) {
+        error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        break;
+      }
+    }
+    return new Result(queryName, Duration.ofNanos(System.nanoTime() - start), error);
+  }
+
+  private static void log(Report report) {
+    if (logger.isDebugEnabled()) {
+      report.results().stream()
+          .filter(result -> !result.failed())
+          .forEach(
+              result ->
+                  logger.debug(
+                      "Prepared the named query '"
+                          + result.queryName()
+                          + "' in "
+                          + millis(result.prepareTime())
+                          + " ms."));
+    }
+    report
+        .failures()
+        .forEach(
+            result ->
+                logger.warn(
+                    "Preparing the named query '"
+                        + result.queryName()
+                        + "' failed: "
+                        + result.error()));
+    logger.info(
+        "Prepared "
+            + (report.results().size() - report.failures().size())
+            + " named queries in "
+            + millis(report.duration())
+            + " ms, "
+            + report.failures().size()
+            + " failed, "
+            + report.skipped()
+            + " skipped by the time budget.");
+  }
+
+  private static String millis(Duration duration) {
+    return String.format(Locale.ROOT, "%.1f", duration.toNanos() / NANOS_PER_MILLI);
+  }
+}
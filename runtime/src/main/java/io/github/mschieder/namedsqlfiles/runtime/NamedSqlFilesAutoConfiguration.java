@@ -0,0 +1,263 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.metadata.CompositeDataSourcePoolMetadataProvider;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+
+/**
+ * Auto-configuration of the named queries runtime support. Disabled with {@code
+ * namedsqlfiles.runtime.enabled=false}, the statistics are enabled with {@code
+ * namedsqlfiles.runtime.statistics.enabled=true}. The development mode, that reloads changed SQL
+ * files, is enabled with {@code namedsqlfiles.runtime.reload.enabled=true}, the lazily read binary
+ * stores with {@code namedsqlfiles.runtime.binary-store.enabled=true} and the startup warm-up of
+ * the statements with {@code namedsqlfiles.runtime.warm-up.enabled=true}. The {@link
+ * NamedQueryCatalog} is only loaded if one of these features, except the binary stores, is enabled
+ * or the classpath contains named query metadata and the binary stores are disabled.
+ *
+ * @author Michael Schieder
+ */
+@AutoConfiguration
+@ConditionalOnProperty(
+    prefix = "namedsqlfiles.runtime",
+    name = "enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@ImportRuntimeHints(NamedQueriesRuntimeHints.class)
+public class NamedSqlFilesAutoConfiguration {
+  /** The database dialect of the dialect specific named queries files. */
+  public static final String DIALECT_PROPERTY = "namedsqlfiles.dialect";
+
+  @Bean
+  @ConditionalOnMissingBean
+  @Conditional(NamedQueryCatalogCondition.class)
+  NamedQueryCatalog namedQueryCatalog(ResourceLoader resourceLoader, Environment environment) {
+    return NamedQueryCatalog.load(
+        ResourcePatternUtils.getResourcePatternResolver(resourceLoader),
+        environment.getProperty(DIALECT_PROPERTY, ""));
+  }
+
+  @Bean
+  static AotNamedQueriesPostProcessor aotNamedQueriesPostProcessor() {
+    return new AotNamedQueriesPostProcessor(AotDetector.useGeneratedArtifacts());
+  }
+
+  @Bean
+  static NamedQueryDataSourcePostProcessor namedQueryDataSourcePostProcessor(
+      ObjectProvider<NamedQueryCatalog> catalog, ObjectProvider<NamedQueryStatistics> statistics) {
+    return new NamedQueryDataSourcePostProcessor(catalog, statistics);
+  }
+
+  @Bean
+  static NamedQueryJdbcTemplatePostProcessor namedQueryJdbcTemplatePostProcessor(
+      ObjectProvider<NamedQueryCatalog> catalog, ObjectProvider<NamedQueryRegistry> registry) {
+    return new NamedQueryJdbcTemplatePostProcessor(catalog, registry);
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.reload", name = "enabled")
+  static class ReloadConfiguration {
+    static final String SOURCE_ROOTS_PROPERTY = "namedsqlfiles.runtime.reload.source-roots";
+
+    @Bean
+    @ConditionalOnMissingBean
+    NamedQueryRegistry namedQueryRegistry(NamedQueryCatalog catalog) {
+      return new NamedQueryRegistry(catalog);
+    }
+
+    @Bean
+    NamedQueryReloader namedQueryReloader(
+        NamedQueryCatalog catalog,
+        NamedQueryRegistry registry,
+        ResourceLoader resourceLoader,
+        Environment environment) {
+      var sourceRoots =
+          Arrays.stream(
+                  environment.getProperty(
+                      SOURCE_ROOTS_PROPERTY, String[].class, new String[] {"src/main/resources"}))
+              .map(Path::of)
+              .toList();
+      var resolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+      return new NamedQueryReloader(
+          sourceRoots,
+          environment.getProperty(DIALECT_PROPERTY, ""),
+          SqlSourceTransformer.load(resolver),
+          catalog,
+          registry,
+          NamedQueryCatalog.loadFragmentDependents(resolver));
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnProperty(
+      prefix = "namedsqlfiles.runtime.statistics",
+      name = "enabled",
+      havingValue = "true")
+  static class StatisticsConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    NamedQueryStatistics namedQueryStatistics(NamedQueryCatalog catalog) {
+      return new NamedQueryStatistics(catalog.queryNames());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(
+        name =
+            "org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint")
+    static class EndpointConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      @ConditionalOnAvailableEndpoint
+      NamedQueriesEndpoint namedQueriesEndpoint(NamedQueryStatistics statistics) {
+        return new NamedQueriesEndpoint(statistics);
+      }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class MetricsConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean
+      NamedQueryMetrics namedQueryMetrics(NamedQueryStatistics statistics) {
+        return new NamedQueryMetrics(statistics);
+      }
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.binary-store", name = "enabled")
+  @ConditionalOnClass(
+      name = "org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport")
+  static class BinaryStoreConfiguration {
+    static final String CACHE_SIZE_PROPERTY = "namedsqlfiles.runtime.binary-store.cache-size";
+
+    @Bean
+    @ConditionalOnMissingBean
+    MappedNamedQueryStores mappedNamedQueryStores(
+        ResourceLoader resourceLoader, Environment environment) {
+      return new MappedNamedQueryStores(
+          ResourcePatternUtils.getResourcePatternResolver(resourceLoader),
+          environment.getProperty(DIALECT_PROPERTY, ""),
+          environment.getProperty(
+              CACHE_SIZE_PROPERTY, Integer.class, MappedNamedQueries.DEFAULT_CACHE_SIZE));
+    }
+
+    @Bean
+    static MappedNamedQueriesPostProcessor mappedNamedQueriesPostProcessor() {
+      return new MappedNamedQueriesPostProcessor();
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.warm-up", name = "enabled")
+  static class WarmUpConfiguration {
+    static final String PARALLELISM_PROPERTY = "namedsqlfiles.runtime.warm-up.parallelism";
+    static final String BUDGET_PROPERTY = "namedsqlfiles.runtime.warm-up.budget";
+    static final String NATIVE_QUERIES_PROPERTY = "namedsqlfiles.runtime.warm-up.native-queries";
+    static final String CONNECTIONS_PROPERTY = "namedsqlfiles.runtime.warm-up.connections";
+
+    @Bean
+    @ConditionalOnMissingBean
+    NamedQueryWarmUp namedQueryWarmUp(
+        NamedQueryCatalog catalog,
+        ObjectProvider<DataSource> dataSource,
+        ObjectProvider<NamedQueryWarmUp.Preparer> preparers,
+        ObjectProvider<DataSourcePoolMetadataProvider> poolMetadataProviders,
+        Environment environment) {
+      List<NamedQueryWarmUp.Preparer> allPreparers = new ArrayList<>();
+      dataSource.ifUnique(
+          unique ->
+              allPreparers.add(
+                  new JdbcStatementPreparer(
+                      unique,
+                      environment.getProperty(
+                          CONNECTIONS_PROPERTY,
+                          Integer.class,
+                          maxPoolSize(unique, poolMetadataProviders)))));
+      preparers.orderedStream().forEach(allPreparers::add);
+      return new NamedQueryWarmUp(
+          catalog,
+          allPreparers,
+          environment.getProperty(PARALLELISM_PROPERTY, Integer.class, 4),
+          environment.getProperty(BUDGET_PROPERTY, Duration.class, Duration.ofSeconds(30)));
+    }
+
+    /** Returns the maximum size of the connection pool or 1, if it is unknown. */
+    private static int maxPoolSize(
+        DataSource dataSource, ObjectProvider<DataSourcePoolMetadataProvider> providers) {
+      var metadata =
+          new CompositeDataSourcePoolMetadataProvider(providers.orderedStream().toList())
+              .getDataSourcePoolMetadata(dataSource);
+      return metadata != null && metadata.getMax() != null && metadata.getMax() > 0
+          ? metadata.getMax()
+          : 1;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "jakarta.persistence.EntityManagerFactory")
+    @ConditionalOnProperty(prefix = "namedsqlfiles.runtime.warm-up", name = "native-queries")
+    static class NativeQueryWarmUpConfiguration {
+
+      @Bean
+      NativeQueryPreparer nativeQueryPreparer(
+          ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return new NativeQueryPreparer(entityManagerFactory);
+      }
+    }
+  }
+
+  @Configuration(proxyBeanMethods = false)
+  @ConditionalOnClass(
+      name = {
+        "jakarta.persistence.EntityManagerFactory",
+        "org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean"
+      })
+  static class JpaConfiguration {
+
+    @Bean
+    static NamedQueryHintsPostProcessor namedQueryHintsPostProcessor(
+        ObjectProvider<EntityManagerFactory> entityManagerFactory,
+        ObjectProvider<NamedQueryCatalog> catalog,
+        ObjectProvider<NamedQueryRegistry> registry) {
+      return new NamedQueryHintsPostProcessor(entityManagerFactory, catalog, registry);
+    }
+  }
+}
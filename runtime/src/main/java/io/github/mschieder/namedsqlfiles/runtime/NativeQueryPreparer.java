@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Creates a named query as JPA native query, without executing it, so that the JPA provider caches
+ * its parameter metadata, e.g. in Hibernate's query plan cache. Skipped, if the application has no
+ * single entity manager factory.
+ *
+ * @author Michael Schieder
+ */
+class NativeQueryPreparer implements NamedQueryWarmUp.Preparer {
+  private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+  NativeQueryPreparer(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  @Override
+  public void prepare(String sql, List<String> statements) {
+    var factory = entityManagerFactory.getIfUnique();
+    if (factory == null) {
+      return;
+    }
+    var entityManager = factory.createEntityManager();
+    try {
+      entityManager.createNativeQuery(sql);
+    } finally {
+      entityManager.close();
+    }
+  }
+}
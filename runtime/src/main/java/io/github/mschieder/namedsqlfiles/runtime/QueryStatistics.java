@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+/**
+ * The execution statistics of a named query. Latencies are the execution times of the statements in
+ * milliseconds, including reading their result sets. Percentiles are upper bounds with a relative
+ * error of at most 12.5%.
+ *
+ * @param queryName the query name
+ * @param count the number of executions
+ * @param errors the number of failed executions
+ * @param meanMillis the mean latency
+ * @param p50Millis the median latency
+ * @param p99Millis the 99th percentile latency
+ * @param maxMillis the maximum latency
+ * @author Michael Schieder
+ */
+public record QueryStatistics(
+    String queryName,
+    long count,
+    long errors,
+    double meanMillis,
+    double p50Millis,
+    double p99Millis,
+    double maxMillis) {}
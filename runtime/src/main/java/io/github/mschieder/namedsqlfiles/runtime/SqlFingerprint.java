@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+/**
+ * Computes the fingerprint of a SQL statement, that identifies a named query in the statements sent
+ * to the database: comments are removed, whitespace is collapsed, keywords and identifiers are
+ * lower cased and all bind parameter markers ({@code ?}, {@code ?1}, {@code :name}), including
+ * expanded collection parameters {@code ?, ?, ?}, are replaced with a single {@code ?}. String
+ * literals and quoted identifiers are kept.
+ *
+ * @author Michael Schieder
+ */
+final class SqlFingerprint {
+
+  private SqlFingerprint() {}
+
+  static String of(String sql) {
+    var fingerprint = new StringBuilder(sql.length());
+    int length = sql.length();
+    int pos = 0;
+    boolean space = false;
+    while (pos < length) {
+      char c = sql.charAt(pos);
+      if (Character.isWhitespace(c)) {
+        space = true;
+        pos++;
+      } else if (sql.startsWith("--", pos)) {
+        int end = sql.indexOf('\n', pos);
+        pos = end < 0 ? length : end;
+        space = true;
+      } else if (sql.startsWith("/*", pos)) {
+        int end = sql.indexOf("*/", pos + 2);
+        pos = end < 0 ? length : end + 2;
+        space = true;
+      } else if (c == '\'' || c == '"' || c == '`') {
+        int end = quotedEnd(sql, pos, c);
+        append(fingerprint, sql.substring(pos, end), space);
+        space = false;
+        pos = end;
+      } else if (c == '?' || (c == ':' && isParameterName(sql, pos + 1) && !isCast(sql, pos))) {
+        int end = pos + 1;
+        while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+          end++;
+        }
+        appendParameter(fingerprint, space);
+        space = false;
+        pos = end;
+      } else if (c == ';' && sql.substring(pos + 1).isBlank()) {
+        pos = length;
+      } else {
+        if (space && !fingerprint.isEmpty()) {
+          fingerprint.append(' ');
+        }
+        fingerprint.append(Character.toLowerCase(c));
+        space = false;
+        pos++;
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  private static void append(StringBuilder fingerprint, String text, boolean space) {
+    if (space && !fingerprint.isEmpty()) {
+      fingerprint.append(' ');
+    }
+    fingerprint.append(text);
+  }
+
+  /** Expanded collection parameters "?, ?, ?" are collapsed into a single parameter. */
+  private static void appendParameter(StringBuilder fingerprint, boolean space) {
+    int end = fingerprint.length();
+    while (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+      end--;
+    }
+    if (end > 0 && fingerprint.charAt(end - 1) == ',') {
+      int previous = end - 1;
+      while (previous > 0 && fingerprint.charAt(previous - 1) == ' ') {
+        previous--;
+      }
+      if (previous > 0 && fingerprint.charAt(previous - 1) == '?') {
+        fingerprint.setLength(previous);
+        return;
+      }
+    }
+    append(fingerprint, "?", space);
+  }
+
+  private static boolean isParameterName(String sql, int pos) {
+    return pos < sql.length() && Character.isJavaIdentifierStart(sql.charAt(pos));
+  }
+
+  /** PostgreSQL's cast operator {@code value::type}. */
+  private static boolean isCast(String sql, int pos) {
+    return pos > 0 && sql.charAt(pos - 1) == ':';
+  }
+
+  private static int quotedEnd(String sql, int pos, char quote) {
+    int end = pos + 1;
+    while (end < sql.length()) {
+      if (sql.charAt(end) == quote) {
+        if (end + 1 < sql.length() && sql.charAt(end + 1) == quote) {
+          end += 2;
+          continue;
+        }
+        return end + 1;
+      }
+      end++;
+    }
+    return end;
+  }
+}
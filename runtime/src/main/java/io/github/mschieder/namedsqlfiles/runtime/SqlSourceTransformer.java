@@ -0,0 +1,401 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/**
+ * Transforms the content of a SQL file into a named query like the query processors: expands the
+ * includes {@code -- @include <resource name>}, normalizes the SQL with the steps of the {@code
+ * namedsqlfiles.normalize} option and prepends the source tag of the {@code
+ * namedsqlfiles.sourceTags} option. The options are the ones the processors recorded next to the
+ * named queries files, {@code META-INF/<store>-named-queries.options}.
+ *
+ * <p>The scanner follows the processors' one: the dialect of a SQL file is unknown, so SQL text,
+ * whose string literals end at different positions with and without backslash escapes, is not
+ * normalized.
+ *
+ * @author Michael Schieder
+ */
+final class SqlSourceTransformer {
+  private static final String INCLUDE_DIRECTIVE = "@include";
+  private static final Pattern INCLUDE =
+      Pattern.compile("--\\s*" + INCLUDE_DIRECTIVE + "\\s+(\\S+)\\s*");
+  private static final int SOURCE_TAG_HASH_BYTES = 4;
+  static final String OPTIONS_LOCATION = "classpath*:META-INF/*-named-queries.options";
+  private static final String OPTIONS_SUFFIX = ".options";
+  private static final String NORMALIZE_OPTION = "normalize";
+  private static final String SOURCE_TAGS_OPTION = "sourceTags";
+  private static final SqlSourceTransformer DEFAULTS =
+      new SqlSourceTransformer(false, false, false, false);
+
+  /** Loads the content of a SQL resource. */
+  @FunctionalInterface
+  interface Loader {
+    Optional<String> load(String resourceName) throws IOException;
+  }
+
+  enum Kind {
+    WHITESPACE,
+    LINE_COMMENT,
+    BLOCK_COMMENT,
+    /** String literals, quoted identifiers and dollar quoted strings. */
+    QUOTED,
+    SEMICOLON,
+    OTHER
+  }
+
+  record Token(Kind kind, String text) {}
+
+  private final boolean comments;
+  private final boolean whitespace;
+  private final boolean lineEndings;
+  private final boolean sourceTags;
+
+  private SqlSourceTransformer(
+      boolean comments, boolean whitespace, boolean lineEndings, boolean sourceTags) {
+    this.comments = comments;
+    this.whitespace = whitespace;
+    this.lineEndings = lineEndings;
+    this.sourceTags = sourceTags;
+  }
+
+  /**
+   * Creates a transformer.
+   *
+   * @param normalize the normalization steps like the processor option: {@code none}, {@code all}
+   *     or a comma separated list of {@code comments}, {@code whitespace} and {@code lineEndings}
+   * @param sourceTags whether the source tags are prepended
+   * @return the transformer
+   * @throws IllegalArgumentException if a normalization step is unknown
+   */
+  static SqlSourceTransformer of(String normalize, boolean sourceTags) {
+    var value = normalize.trim().toLowerCase(Locale.ROOT);
+    if (value.isEmpty() || value.equals("none")) {
+      return new SqlSourceTransformer(false, false, false, sourceTags);
+    }
+    if (value.equals("all")) {
+      return new SqlSourceTransformer(true, true, true, sourceTags);
+    }
+    var steps = Arrays.stream(value.split(",")).map(String::trim).toList();
+    steps.stream()
+        .filter(step -> !List.of("comments", "whitespace", "lineendings").contains(step))
+        .findFirst()
+        .ifPresent(
+            step -> {
+              throw new IllegalArgumentException("unknown normalization '" + step + "'.");
+            });
+    return new SqlSourceTransformer(
+        steps.contains("comments"),
+        steps.contains("whitespace"),
+        steps.contains("lineendings"),
+        sourceTags);
+  }
+
+  /** Returns the transformer of the processors' defaults: the SQL is copied verbatim. */
+  static SqlSourceTransformer defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Loads the transformation options, that the processors recorded next to the named queries files
+   * of the classpath. Named queries without recorded options were transformed with the defaults.
+   *
+   * @param resolver the resource resolver
+   * @return the transformers by named query name
+   * @throws UncheckedIOException if a file cannot be read
+   * @throws IllegalArgumentException if a recorded normalization step is unknown
+   */
+  static Map<String, SqlSourceTransformer> load(ResourcePatternResolver resolver) {
+    Map<String, SqlSourceTransformer> transformers = new HashMap<>();
+    try {
+      for (Resource resource : resolver.getResources(OPTIONS_LOCATION)) {
+        var options = load(resource);
+        var filename = resource.getFilename();
+        // the named queries file next to the options
+        var namedQueries =
+            resource.createRelative(
+                filename.substring(0, filename.length() - OPTIONS_SUFFIX.length()) + ".properties");
+        if (!namedQueries.exists()) {
+          continue;
+        }
+        var transformer =
+            of(
+                options.getProperty(NORMALIZE_OPTION, ""),
+                Boolean.parseBoolean(options.getProperty(SOURCE_TAGS_OPTION)));
+        load(namedQueries)
+            .stringPropertyNames()
+            .forEach(queryName -> transformers.put(queryName, transformer));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return transformers;
+  }
+
+  private static Properties load(Resource resource) throws IOException {
+    var properties = new Properties();
+    try (InputStream inputStream = resource.getInputStream()) {
+      properties.load(inputStream);
+    }
+    return properties;
+  }
+
+  /**
+   * Transforms a SQL file into a named query.
+   *
+   * @param resourceName the resource name of the SQL file
+   * @param content the content of the SQL file
+   * @param loader the loader of the included resources
+   * @return the named query
+   * @throws IOException if an included resource cannot be read, does not exist or includes itself
+   */
+  String transform(String resourceName, String content, Loader loader) throws IOException {
+    var sql = normalize(expand(content, List.of(resourceName), loader));
+    return sourceTags ? tag(resourceName, sql) : sql;
+  }
+
+  private String expand(String content, List<String> path, Loader loader) throws IOException {
+    if (!content.contains(INCLUDE_DIRECTIVE)) {
+      return content;
+    }
+    var expanded = new StringBuilder(content.length());
+    for (var token : scan(content)) {
+      var matcher = INCLUDE.matcher(token.text());
+      if (token.kind() != Kind.LINE_COMMENT || !matcher.matches()) {
+        expanded.append(token.text());
+        continue;
+      }
+      var fragmentName = matcher.group(1);
+      var fragmentPath = new ArrayList<>(path);
+      fragmentPath.add(fragmentName);
+      if (path.contains(fragmentName)) {
+        throw new IOException("include cycle " + String.join(" -> ", fragmentPath));
+      }
+      var fragment =
+          loader
+              .load(fragmentName)
+              .orElseThrow(
+                  () -> new IOException("included resource '" + fragmentName + "' not found"));
+      // the line end of the directive is kept
+      expanded.append(expand(fragment, fragmentPath, loader).stripTrailing());
+    }
+    return expanded.toString();
+  }
+
+  private String normalize(String sql) {
+    if (!comments && !whitespace && !lineEndings) {
+      return sql;
+    }
+    var tokens = scan(sql);
+    if (sql.indexOf('\\') >= 0 && !tokens.equals(scan(sql, true))) {
+      return sql;
+    }
+    var builder = new StringBuilder(sql.length());
+    boolean pendingWhitespace = false;
+    Token previous = null;
+    for (Token token : tokens) {
+      if (comments && (token.kind() == Kind.LINE_COMMENT || token.kind() == Kind.BLOCK_COMMENT)) {
+        // a removed comment still separates its neighbours
+        if (whitespace) {
+          pendingWhitespace = true;
+        } else if (token.kind() == Kind.BLOCK_COMMENT) {
+          builder.append(' ');
+        }
+        continue;
+      }
+      if (whitespace && token.kind() == Kind.WHITESPACE) {
+        pendingWhitespace = true;
+        continue;
+      }
+      if (pendingWhitespace) {
+        if (previous != null) {
+          // a line comment must be terminated by a line end
+          builder.append(previous.kind() == Kind.LINE_COMMENT ? "\n" : " ");
+        }
+        pendingWhitespace = false;
+      }
+      builder.append(
+          lineEndings && token.kind() == Kind.WHITESPACE
+              ? token.text().replace("\r\n", "\n").replace('\r', '\n')
+              : token.text());
+      previous = token;
+    }
+    return builder.toString();
+  }
+
+  static String tag(String resourceName, String sql) {
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+      var hash = HexFormat.of().formatHex(digest, 0, SOURCE_TAG_HASH_BYTES);
+      return "/* nsf:" + resourceName.replace("*/", "* /") + "#" + hash + " */ " + sql;
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Splits SQL into whitespace, comments (optimizer hints are {@link Kind#OTHER}), quoted text,
+   * semicolons and everything else. String literals, quoted identifiers and dollar quoted strings
+   * are single tokens.
+   */
+  static List<Token> scan(String sql) {
+    return scan(sql, false);
+  }
+
+  /**
+   * Scans SQL text.
+   *
+   * @param sql the SQL text
+   * @param backslashEscapes whether backslashes escape characters in all string literals, like in
+   *     MySQL, or in PostgreSQL's {@code E'...'} strings only
+   * @return the tokens
+   */
+  static List<Token> scan(String sql, boolean backslashEscapes) {
+    List<Token> tokens = new ArrayList<>();
+    int pos = 0;
+    int length = sql.length();
+    while (pos < length) {
+      char c = sql.charAt(pos);
+      int end;
+      Kind kind = Kind.OTHER;
+      if (Character.isWhitespace(c)) {
+        end = pos + 1;
+        while (end < length && Character.isWhitespace(sql.charAt(end))) {
+          end++;
+        }
+        kind = Kind.WHITESPACE;
+      } else if (sql.startsWith("--", pos)) {
+        end = pos + 2;
+        while (end < length && sql.charAt(end) != '\n' && sql.charAt(end) != '\r') {
+          end++;
+        }
+        kind = Kind.LINE_COMMENT;
+      } else if (sql.startsWith("/*", pos)) {
+        int close = sql.indexOf("*/", pos + 2);
+        end = close < 0 ? length : close + 2;
+        kind = sql.startsWith("/*+", pos) ? Kind.OTHER : Kind.BLOCK_COMMENT;
+      } else if (c == '\'') {
+        end = quotedEnd(sql, pos, c, backslashEscapes);
+        kind = Kind.QUOTED;
+      } else if (isEscapeStringStart(sql, pos)) {
+        end = quotedEnd(sql, pos + 1, '\'', true);
+        kind = Kind.QUOTED;
+      } else if (c == '"' || c == '`') {
+        end = quotedEnd(sql, pos, c, false);
+        kind = Kind.QUOTED;
+      } else if (c == '$' && dollarTagEnd(sql, pos) > 0) {
+        var tag = sql.substring(pos, dollarTagEnd(sql, pos));
+        int close = sql.indexOf(tag, pos + tag.length());
+        end = close < 0 ? length : close + tag.length();
+        kind = Kind.QUOTED;
+      } else if (c == ';') {
+        end = pos + 1;
+        kind = Kind.SEMICOLON;
+      } else {
+        end = pos + 1;
+        while (end < length && !isTokenStart(sql, end)) {
+          end++;
+        }
+      }
+      tokens.add(new Token(kind, sql.substring(pos, end)));
+      pos = end;
+    }
+    return tokens;
+  }
+
+  private static boolean isTokenStart(String sql, int pos) {
+    char c = sql.charAt(pos);
+    return Character.isWhitespace(c)
+        || c == '\''
+        || c == '"'
+        || c == '`'
+        || c == ';'
+        || isEscapeStringStart(sql, pos)
+        || sql.startsWith("--", pos)
+        || sql.startsWith("/*", pos)
+        || (c == '$' && dollarTagEnd(sql, pos) > 0);
+  }
+
+  /** Whether an {@code E'...'} string starts at the position and not within an identifier. */
+  private static boolean isEscapeStringStart(String sql, int pos) {
+    return (sql.charAt(pos) == 'E' || sql.charAt(pos) == 'e')
+        && pos + 1 < sql.length()
+        && sql.charAt(pos + 1) == '\''
+        && (pos == 0 || !Character.isJavaIdentifierPart(sql.charAt(pos - 1)));
+  }
+
+  /**
+   * Returns the end of a quoted token, doubled quote characters and, if enabled, backslashes are
+   * escapes.
+   */
+  private static int quotedEnd(String sql, int pos, char quote, boolean backslashEscapes) {
+    int end = pos + 1;
+    while (end < sql.length()) {
+      if (backslashEscapes && sql.charAt(end) == '\\') {
+        end += 2;
+        continue;
+      }
+      if (sql.charAt(end) == quote) {
+        if (end + 1 < sql.length() && sql.charAt(end + 1) == quote) {
+          end += 2;
+          continue;
+        }
+        return end + 1;
+      }
+      end++;
+    }
+    return Math.min(end, sql.length());
+  }
+
+  /** Returns the end of a dollar quote tag $tag$ or $$ starting at pos, or -1. */
+  private static int dollarTagEnd(String sql, int pos) {
+    if (pos > 0 && Character.isJavaIdentifierPart(sql.charAt(pos - 1))) {
+      // a $ inside an identifier, e.g. v$session
+      return -1;
+    }
+    int end = pos + 1;
+    if (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+      // a positional parameter $1
+      return -1;
+    }
+    while (end < sql.length()
+        && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+      end++;
+    }
+    return end < sql.length() && sql.charAt(end) == '$' ? end + 1 : -1;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import io.github.mschieder.namedsqlfiles.runtime.SqlSourceTransformer.Kind;
+import io.github.mschieder.namedsqlfiles.runtime.SqlSourceTransformer.Token;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+
+/**
+ * The statements of a statement list, split by the query processors, located in the statement list
+ * as sent to the database. The SQL sent to the database differs from the compiled statements in
+ * their parameter markers only: a named parameter is replaced by a {@code ?}, or by one per element
+ * of an expanded collection. So the constant text between the parameters of the statements is
+ * looked up in order, only the parameter markers are counted. Immutable and thread safe.
+ *
+ * @author Michael Schieder
+ */
+final class SqlStatements {
+
+  /**
+   * A statement of a statement list.
+   *
+   * @param sql the statement without the separating semicolon
+   * @param parameterCount the number of JDBC parameter markers {@code ?} of the statement
+   */
+  record Statement(String sql, int parameterCount) {}
+
+  /**
+   * A compiled statement.
+   *
+   * @param parts the constant text before, between and after the parameters
+   * @param quotedMarkers the number of {@code ?} in comments, literals and quoted identifiers
+   */
+  private record Template(List<String> parts, int quotedMarkers) {}
+
+  private final List<Template> templates;
+
+  private SqlStatements(List<Template> templates) {
+    this.templates = List.copyOf(templates);
+  }
+
+  /**
+   * Compiles the statements of a statement list.
+   *
+   * @param statements the statements as split by the query processors, with named parameters
+   * @return the statements
+   */
+  static SqlStatements compile(List<String> statements) {
+    List<Template> templates = new ArrayList<>(statements.size());
+    for (var statement : statements) {
+      var jdbcSql =
+          NamedParameterUtils.substituteNamedParameters(
+              NamedParameterUtils.parseSqlStatement(statement), null);
+      List<String> parts = new ArrayList<>();
+      var part = new StringBuilder();
+      int quotedMarkers = 0;
+      for (Token token : SqlSourceTransformer.scan(jdbcSql)) {
+        if (token.kind() != Kind.OTHER) {
+          quotedMarkers += markers(token.text(), 0, token.text().length());
+          part.append(token.text());
+          continue;
+        }
+        for (char c : token.text().toCharArray()) {
+          if (c == '?') {
+            parts.add(part.toString());
+            part.setLength(0);
+          } else {
+            part.append(c);
+          }
+        }
+      }
+      parts.add(part.toString());
+      templates.add(new Template(parts, quotedMarkers));
+    }
+    return new SqlStatements(templates);
+  }
+
+  /** The number of statements. */
+  int size() {
+    return templates.size();
+  }
+
+  /**
+   * Locates the statements in a statement list.
+   *
+   * @param sql the statement list as sent to the database
+   * @return the statements
+   * @throws IllegalArgumentException if the statement list does not contain the statements
+   */
+  List<Statement> locate(String sql) {
+    List<Statement> statements = new ArrayList<>(templates.size());
+    int cursor = 0;
+    for (var template : templates) {
+      var parts = template.parts();
+      int start = find(sql, parts.get(0), cursor);
+      cursor = start + parts.get(0).length();
+      for (int i = 1; i < parts.size(); i++) {
+        var part = parts.get(i);
+        if (!part.isEmpty()) {
+          cursor = find(sql, part, cursor) + part.length();
+        } else if (i == parts.size() - 1) {
+          // ends with a parameter, expanded markers contain no semicolon
+          int separator = sql.indexOf(';', cursor);
+          cursor = separator < 0 ? sql.length() : separator;
+        }
+      }
+      statements.add(
+          new Statement(
+              sql.substring(start, cursor).strip(),
+              markers(sql, start, cursor) - template.quotedMarkers()));
+    }
+    return statements;
+  }
+
+  private static int find(String sql, String part, int from) {
+    int index = sql.indexOf(part, from);
+    if (index < 0) {
+      throw new IllegalArgumentException("the SQL does not contain the compiled statements");
+    }
+    return index;
+  }
+
+  private static int markers(String text, int start, int end) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == '?') {
+        count++;
+      }
+    }
+    return count;
+  }
+}
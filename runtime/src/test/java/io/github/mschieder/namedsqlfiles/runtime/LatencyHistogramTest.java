@@ -0,0 +1,51 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void test_01_buckets_ok() {
+    for (long value : new long[] {0, 1, 7, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThanOrEqualTo(value);
+      if (bucket > 0) {
+        assertThat(LatencyHistogram.upperBound(bucket - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  void test_02_percentiles_ok() {
+    var histogram = new LatencyHistogram();
+    assertThat(histogram.percentileNanos(0.5)).isZero();
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    histogram.record(-1);
+
+    assertThat(histogram.count()).isEqualTo(1001);
+    assertThat(histogram.maxNanos()).isEqualTo(1_000_000);
+    assertThat(histogram.totalNanos()).isEqualTo(500_500_000);
+    assertThat((double) histogram.percentileNanos(0.5)).isCloseTo(500_000, within(62_500.0));
+    assertThat((double) histogram.percentileNanos(0.99)).isCloseTo(990_000, within(123_750.0));
+    assertThat(histogram.percentileNanos(1)).isEqualTo(1_000_000);
+  }
+
+  @Test
+  void test_03_capped_range_ok() {
+    var histogram = new LatencyHistogram();
+    histogram.record(1000);
+    histogram.record(Long.MAX_VALUE / 2);
+
+    // values above the tracked range share the last bucket, the maximum is exact
+    assertThat(LatencyHistogram.BUCKETS).isLessThan(300);
+    assertThat(histogram.maxNanos()).isEqualTo(Long.MAX_VALUE / 2);
+    assertThat(histogram.percentileNanos(1)).isEqualTo(Long.MAX_VALUE / 2);
+    assertThat(histogram.percentileNanos(0.5)).isBetween(1000L, 1023L);
+  }
+}
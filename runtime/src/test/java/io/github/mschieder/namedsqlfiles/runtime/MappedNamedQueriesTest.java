@@ -0,0 +1,214 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.PropertiesLoaderSupport;
+import org.springframework.data.repository.config.NamedQueriesBeanDefinitionBuilder;
+import org.springframework.data.repository.core.NamedQueries;
+
+class MappedNamedQueriesTest {
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(NamedSqlFilesAutoConfiguration.class));
+
+  @TempDir Path tempDir;
+
+  /** Writes a binary store as the query processors do, the keys are ASCII only. */
+  private static byte[] store(Map<String, String> queries) throws IOException {
+    var sorted = new TreeMap<>(queries);
+    var bytes = new ByteArrayOutputStream();
+    var out = new DataOutputStream(bytes);
+    out.writeInt(0x4E534651);
+    out.writeInt(1);
+    out.writeInt(sorted.size());
+    int offset = 12 + 16 * sorted.size();
+    for (var entry : sorted.entrySet()) {
+      int keyLength = entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+      int valueLength = entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+      out.writeInt(offset);
+      out.writeInt(keyLength);
+      out.writeInt(offset + keyLength);
+      out.writeInt(valueLength);
+      offset += keyLength + valueLength;
+    }
+    for (var entry : sorted.entrySet()) {
+      out.write(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  @Test
+  void test_01_mapped_lookup_ok() throws IOException {
+    var path = tempDir.resolve("jpa-named-queries.bin");
+    Files.write(
+        path,
+        store(
+            Map.of(
+                "sql/person/all.sql", "select * from person",
+                "sql/person/byName.sql", "select * from person where name = 'ä'",
+                "sql/person/count.sql", "select count(*) from person")));
+
+    var namedQueries = new MappedNamedQueries(List.of(MappedNamedQueries.map(path)), 10);
+
+    assertThat(namedQueries.size()).isEqualTo(3);
+    assertThat(namedQueries.getQuery("sql/person/all.sql")).isEqualTo("select * from person");
+    assertThat(namedQueries.getQuery("sql/person/byName.sql"))
+        .isEqualTo("select * from person where name = 'ä'");
+    assertThat(namedQueries.getQuery("sql/person/count.sql"))
+        .isEqualTo("select count(*) from person");
+    assertThat(namedQueries.hasQuery("sql/person/unknown.sql")).isFalse();
+    assertThat(namedQueries.hasQuery("sql/person")).isFalse();
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> namedQueries.getQuery("sql/person/unknown.sql"))
+        .withMessage("No query named sql/person/unknown.sql found");
+  }
+
+  @Test
+  void test_02_first_store_wins_ok() throws IOException {
+    var namedQueries =
+        new MappedNamedQueries(
+            List.of(
+                ByteBuffer.wrap(store(Map.of("all.sql", "select * from person limit 10")))
+                    .asReadOnlyBuffer(),
+                ByteBuffer.wrap(
+                    store(Map.of("all.sql", "select * from person", "count.sql", "select 1")))),
+            1);
+
+    assertThat(namedQueries.getQuery("all.sql")).isEqualTo("select * from person limit 10");
+    assertThat(namedQueries.getQuery("count.sql")).isEqualTo("select 1");
+    // evicted from the cache and decoded again
+    assertThat(namedQueries.getQuery("all.sql")).isEqualTo("select * from person limit 10");
+  }
+
+  @Test
+  void test_03_empty_store_ok() throws IOException {
+    var namedQueries = new MappedNamedQueries(List.of(ByteBuffer.wrap(store(Map.of()))), 10);
+
+    assertThat(namedQueries.hasQuery("all.sql")).isFalse();
+  }
+
+  @Test
+  void test_04_invalid_store_nok() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(
+            () ->
+                new MappedNamedQueries(
+                    List.of(ByteBuffer.wrap("all.sql=select 1".getBytes(StandardCharsets.UTF_8))),
+                    10))
+        .withMessage("no named queries binary store");
+  }
+
+  @Test
+  void test_05_auto_configuration_ok() {
+    contextRunner.run(
+        context -> assertThat(context).doesNotHaveBean(MappedNamedQueriesPostProcessor.class));
+    contextRunner
+        .withPropertyValues("namedsqlfiles.runtime.binary-store.enabled=true")
+        .run(
+            context -> {
+              assertThat(context).hasSingleBean(MappedNamedQueriesPostProcessor.class);
+              assertThat(context.getBean(MappedNamedQueryStores.class).store("jpa").size())
+                  .isZero();
+              // the named queries are not loaded into the heap, the metadata is not applied
+              assertThat(context).doesNotHaveBean(NamedQueryCatalog.class);
+            });
+  }
+
+  @Test
+  void test_06_bean_definitions_replaced_per_store_ok() throws IOException {
+    // given
+    Files.createDirectories(tempDir.resolve("META-INF"));
+    Files.write(
+        tempDir.resolve("META-INF/jpa-named-queries.bin"),
+        store(Map.of("sql/person/all.sql", "select * from person")));
+    Files.write(
+        tempDir.resolve("META-INF/jdbc-named-queries.bin"),
+        store(Map.of("sql/person/all.sql", "select * from person limit 10")));
+    var properties = tempDir.resolve("jpa-named-queries.properties");
+    Files.writeString(properties, "sql/person/count.sql=select count(*) from person\n");
+    var classLoader =
+        new URLClassLoader(new URL[] {tempDir.toUri().toURL()}, getClass().getClassLoader());
+
+    var beanFactory = new DefaultListableBeanFactory();
+    List<PropertiesLoaderSupport> propertiesLoaders = new ArrayList<>();
+    beanFactory.addBeanPostProcessor(
+        new BeanPostProcessor() {
+          @Override
+          public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof PropertiesLoaderSupport loader) {
+              propertiesLoaders.add(loader);
+            }
+            return bean;
+          }
+        });
+    beanFactory.registerSingleton(
+        "mappedNamedQueryStores",
+        new MappedNamedQueryStores(new PathMatchingResourcePatternResolver(classLoader), "", 10));
+    registerRepository(beanFactory, "jpa", "file:" + properties);
+    registerRepository(
+        beanFactory,
+        "jdbc",
+        "file:" + Files.writeString(tempDir.resolve("jdbc-named-queries.properties"), ""));
+
+    // when
+    new MappedNamedQueriesPostProcessor().postProcessBeanFactory(beanFactory);
+    var jpa = beanFactory.getBean("jpaRepository", NamedQueriesHolder.class).namedQueries;
+    var jdbc = beanFactory.getBean("jdbcRepository", NamedQueriesHolder.class).namedQueries;
+
+    // then
+    assertThat(jpa.getQuery("sql/person/all.sql")).isEqualTo("select * from person");
+    assertThat(jdbc.getQuery("sql/person/all.sql")).isEqualTo("select * from person limit 10");
+    assertThat(propertiesLoaders).isEmpty();
+    // queries missing from the binary store are looked up in the properties files
+    assertThat(jpa.getQuery("sql/person/count.sql")).isEqualTo("select count(*) from person");
+    assertThat(jdbc.hasQuery("sql/person/count.sql")).isFalse();
+    assertThat(propertiesLoaders).hasSize(2);
+  }
+
+  private static void registerRepository(
+      DefaultListableBeanFactory beanFactory, String storeName, String locations) {
+    var propertiesBeanName = storeName + ".named-queries#0";
+    var builder =
+        new NamedQueriesBeanDefinitionBuilder(
+            "classpath*:META-INF/" + storeName + "-named-queries.properties");
+    builder.setLocations(locations);
+    beanFactory.registerBeanDefinition(propertiesBeanName, builder.build(null));
+    beanFactory.registerBeanDefinition(
+        storeName + "Repository",
+        BeanDefinitionBuilder.genericBeanDefinition(NamedQueriesHolder.class)
+            .addPropertyReference("namedQueries", propertiesBeanName)
+            .getBeanDefinition());
+  }
+
+  /** Stands in for a repository factory bean. */
+  static class NamedQueriesHolder {
+    NamedQueries namedQueries;
+
+    public void setNamedQueries(NamedQueries namedQueries) {
+      this.namedQueries = namedQueries;
+    }
+  }
+}
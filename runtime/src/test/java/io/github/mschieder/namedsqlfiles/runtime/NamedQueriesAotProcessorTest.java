@@ -0,0 +1,146 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.GeneratedFiles;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationCode;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.data.repository.config.NamedQueriesBeanDefinitionBuilder;
+import org.springframework.data.repository.core.NamedQueries;
+import org.springframework.javapoet.ClassName;
+
+class NamedQueriesAotProcessorTest {
+
+  private static Properties properties(InMemoryGeneratedFiles files, String path)
+      throws IOException {
+    var properties = new Properties();
+    properties.load(
+        new StringReader(files.getGeneratedFileContent(GeneratedFiles.Kind.RESOURCE, path)));
+    return properties;
+  }
+
+  @Test
+  void test_01_resolves_named_queries_ok() throws IOException {
+    var beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerBeanDefinition(
+        "namedQueryCatalog", new RootBeanDefinition(NamedQueryCatalog.class));
+    var files = new InMemoryGeneratedFiles();
+    var generationContext =
+        new DefaultGenerationContext(new ClassNameGenerator(ClassName.get("test", "Main")), files);
+
+    new NamedQueriesAotProcessor()
+        .processAheadOfTime(beanFactory)
+        .applyTo(generationContext, Mockito.mock(BeanFactoryInitializationCode.class));
+
+    assertThat(
+            files.getGeneratedFileContent(
+                GeneratedFiles.Kind.RESOURCE, NamedQueryCatalog.AOT_NAMED_QUERIES))
+        .doesNotStartWith("#");
+    assertThat(properties(files, NamedQueryCatalog.AOT_NAMED_QUERIES))
+        .containsEntry("sql/person/all.sql", "select * from person")
+        .containsKey("sql/person/report.sql");
+    assertThat(properties(files, NamedQueryCatalog.AOT_METADATA))
+        .containsEntry("sql/person/report.sql#fetchSize", "500");
+    assertThat(properties(files, NamedQueryCatalog.AOT_STORES).getProperty("test"))
+        .contains("sql/person/report.sql");
+    assertThat(
+            RuntimeHintsPredicates.resource()
+                .forResource(NamedQueryCatalog.AOT_NAMED_QUERIES)
+                .test(generationContext.getRuntimeHints()))
+        .isTrue();
+  }
+
+  @Test
+  void test_02_without_catalog_ok() {
+    assertThat(new NamedQueriesAotProcessor().processAheadOfTime(new DefaultListableBeanFactory()))
+        .isNull();
+  }
+
+  @Test
+  void test_03_runtime_hints_ok() {
+    var hints = new RuntimeHints();
+    new NamedQueriesRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+    assertThat(
+            RuntimeHintsPredicates.resource()
+                .forResource("META-INF/jpa-named-queries.properties")
+                .test(hints))
+        .isTrue();
+    assertThat(
+            RuntimeHintsPredicates.resource()
+                .forResource("META-INF/jpa-named-queries.postgresql.properties")
+                .test(hints))
+        .isTrue();
+    assertThat(
+            RuntimeHintsPredicates.resource()
+                .forResource("META-INF/jpa-named-queries-metadata.properties")
+                .test(hints))
+        .isTrue();
+  }
+
+  @Test
+  void test_04_repository_named_queries_ok() throws IOException {
+    // given: the properties bean of a repository configuration
+    var beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerBeanDefinition(
+        "jpa.named-queries#0",
+        new NamedQueriesBeanDefinitionBuilder("classpath*:META-INF/test-named-queries.properties")
+            .build(null));
+    var files = new InMemoryGeneratedFiles();
+    var generationContext =
+        new DefaultGenerationContext(new ClassNameGenerator(ClassName.get("test", "Main")), files);
+
+    // when: processed ahead of time without a catalog
+    new NamedQueriesAotProcessor()
+        .processAheadOfTime(beanFactory)
+        .applyTo(generationContext, Mockito.mock(BeanFactoryInitializationCode.class));
+
+    // then: the named queries of the configuration are resolved into a single resource
+    var path = "META-INF/named-sqlfiles/aot-jpa-named-queries-0.properties";
+    assertThat(properties(files, path))
+        .containsEntry("sql/person/all.sql", "select * from person")
+        .containsKey("sql/person/report.sql");
+    assertThat(
+            files.getGeneratedFileContent(
+                GeneratedFiles.Kind.RESOURCE, NamedQueryCatalog.AOT_NAMED_QUERIES))
+        .isNull();
+    assertThat(
+            RuntimeHintsPredicates.resource()
+                .forResource(path)
+                .test(generationContext.getRuntimeHints()))
+        .isTrue();
+  }
+
+  @Test
+  void test_05_repository_named_queries_of_optimized_application_ok() {
+    // given: the resource generated ahead of time in the test resources
+    BiFunction<Boolean, String, String> query =
+        (useGeneratedArtifacts, queryName) -> {
+          var beanFactory = new DefaultListableBeanFactory();
+          beanFactory.registerBeanDefinition(
+              "jpa.named-queries#0",
+              new NamedQueriesBeanDefinitionBuilder(
+                      "classpath*:META-INF/test-named-queries.properties")
+                  .build(null));
+          new AotNamedQueriesPostProcessor(useGeneratedArtifacts)
+              .postProcessBeanFactory(beanFactory);
+          return beanFactory.getBean("jpa.named-queries#0", NamedQueries.class).getQuery(queryName);
+        };
+
+    // then: the optimized application reads the generated resource only
+    assertThat(query.apply(true, "sql/person/all.sql")).isEqualTo("select * from person_snapshot");
+    assertThat(query.apply(false, "sql/person/all.sql")).isEqualTo("select * from person");
+  }
+}
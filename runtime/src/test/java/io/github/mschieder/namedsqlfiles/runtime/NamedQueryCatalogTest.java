@@ -0,0 +1,72 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+class NamedQueryCatalogTest {
+
+  @TempDir Path tempDir;
+
+  private NamedQueryCatalog load() throws IOException {
+    var classLoader =
+        new URLClassLoader(new URL[] {tempDir.toUri().toURL()}, getClass().getClassLoader());
+    return NamedQueryCatalog.load(new PathMatchingResourcePatternResolver(classLoader), "");
+  }
+
+  @Test
+  void test_01_scans_classpath_ok() throws IOException {
+    var catalog = load();
+    assertThat(catalog.queryNames()).contains("sql/person/report.sql");
+    assertThat(catalog.queryNames("test")).contains("sql/person/report.sql");
+    assertThat(catalog.queryNames("jdbc")).isEmpty();
+  }
+
+  @Test
+  void test_02_loads_aggregates_ok() throws IOException {
+    Files.createDirectories(tempDir.resolve("META-INF"));
+    Files.writeString(
+        tempDir.resolve("META-INF/jpa-named-queries-aggregate.properties"),
+        "sql/person/all.sql=select * from person\n");
+    Files.writeString(
+        tempDir.resolve("META-INF/jdbc-named-queries-aggregate.properties"),
+        "sql/person/count.sql=select count(*) from person\n");
+
+    // the named queries files of the classpath are not scanned
+    assertThat(load().queries())
+        .containsOnly(
+            Map.entry("sql/person/all.sql", "select * from person"),
+            Map.entry("sql/person/count.sql", "select count(*) from person"));
+  }
+
+  @Test
+  void test_03_loads_ahead_of_time_resolved_files_ok() throws IOException {
+    Files.createDirectories(tempDir.resolve("META-INF/named-sqlfiles"));
+    Files.writeString(
+        tempDir.resolve(NamedQueryCatalog.AOT_NAMED_QUERIES),
+        "sql/person/all.sql=select * from person\n");
+    Files.writeString(
+        tempDir.resolve(NamedQueryCatalog.aotDialectNamedQueries("h2")),
+        "sql/person/all.sql=select * from person limit 10\n");
+    Files.writeString(
+        tempDir.resolve(NamedQueryCatalog.AOT_METADATA), "sql/person/all.sql#fetchSize=10\n");
+
+    var classLoader =
+        new URLClassLoader(new URL[] {tempDir.toUri().toURL()}, getClass().getClassLoader());
+    var catalog =
+        NamedQueryCatalog.load(new PathMatchingResourcePatternResolver(classLoader), "h2");
+
+    assertThat(catalog.queries())
+        .containsOnly(Map.entry("sql/person/all.sql", "select * from person limit 10"));
+    assertThat(catalog.metadata("sql/person/all.sql").fetchSize()).isEqualTo(10);
+    assertThat(catalog.hasMetadata()).isTrue();
+  }
+}
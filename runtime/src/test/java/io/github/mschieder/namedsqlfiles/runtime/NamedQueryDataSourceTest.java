@@ -0,0 +1,352 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class NamedQueryDataSourceTest {
+  private static final String RENAME_INSERT =
+      "insert into person_archive (lastname) select :new from person where lastname = :old";
+  private static final String RENAME_DELETE =
+      "delete from person where lastname in (:old) and lastname <> :other";
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(NamedSqlFilesAutoConfiguration.class))
+          .withBean(
+              DataSource.class,
+              () ->
+                  new DriverManagerDataSource(
+                      "jdbc:h2:mem:named-query-data-source;DB_CLOSE_DELAY=-1;INIT=create table if not exists person (lastname varchar(20))"));
+
+  @Test
+  void test_01_statement_settings_applied_ok() {
+    contextRunner.run(
+        context -> {
+          var dataSource = context.getBean(DataSource.class);
+          assertThat(dataSource).isInstanceOf(NamedQueryDataSource.class);
+
+          var catalog = context.getBean(NamedQueryCatalog.class);
+          var sql = "select p.*\n  from person p\n where p.lastname in (?, ?)";
+          assertThat(catalog.findQueryName(sql)).contains("sql/person/report.sql");
+
+          try (var connection = dataSource.getConnection();
+              var statement = connection.prepareStatement("select * from person")) {
+            assertThat(statement.getFetchSize()).isNotEqualTo(500);
+            assertThat(statement.getQueryTimeout()).isZero();
+            assertThat(statement.getMaxRows()).isZero();
+          }
+          // H2's query timeout is a setting of the connection
+          try (var connection = dataSource.getConnection();
+              var reportStatement = connection.prepareStatement(sql)) {
+            assertThat(reportStatement.getFetchSize()).isEqualTo(500);
+            assertThat(reportStatement.getQueryTimeout()).isEqualTo(2);
+            assertThat(reportStatement.getMaxRows()).isEqualTo(100);
+          }
+        });
+  }
+
+  @Test
+  void test_02_named_parameter_jdbc_template_ok() {
+    contextRunner.run(
+        context -> {
+          var dataSource = context.getBean(DataSource.class);
+          var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+          var catalog = context.getBean(NamedQueryCatalog.class);
+          var sql = "select p.*\n  from person p\n where p.lastname in (:lastnames)";
+          jdbcTemplate.query(
+              sql,
+              Map.of("lastnames", List.of("Doe", "Mustermann")),
+              resultSet -> {
+                var statement = resultSet.getStatement();
+                assertThat(statement.getFetchSize()).isEqualTo(500);
+                assertThat(statement.getQueryTimeout()).isEqualTo(2);
+                assertThat(statement.getMaxRows()).isEqualTo(100);
+              });
+          assertThat(catalog.metadata("sql/person/report.sql").hints())
+              .containsEntry("org.hibernate.readOnly", "true");
+        });
+  }
+
+  @Test
+  void test_03_statistics_ok() {
+    contextRunner
+        .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+        .withPropertyValues(
+            "namedsqlfiles.runtime.statistics.enabled=true",
+            "management.endpoints.web.exposure.include=namedqueries")
+        .run(
+            context -> {
+              var jdbcTemplate = new NamedParameterJdbcTemplate(context.getBean(DataSource.class));
+              var insert = "insert into person (lastname) values (:lastname)";
+              jdbcTemplate.update(insert, Map.of("lastname", "Doe"));
+              assertThatThrownBy(
+                      () -> jdbcTemplate.update(insert, Map.of("lastname", "x".repeat(21))))
+                  .isInstanceOf(DataAccessException.class);
+              var persons =
+                  jdbcTemplate.queryForObject(
+                      "select count(*) as persons from person", Map.of(), Long.class);
+              jdbcTemplate.queryForList("select * from person", Map.of());
+              jdbcTemplate.queryForList("select *\n  from person", Map.of());
+
+              var statistics = context.getBean(NamedQueryStatistics.class);
+              assertThat(statistics.snapshot())
+                  .extracting(QueryStatistics::queryName)
+                  .containsExactly("sql/person/all.sql", "sql/person/insert.sql");
+              var all = statistics.snapshot("sql/person/all.sql").orElseThrow();
+              assertThat(all.count()).isEqualTo(2);
+              assertThat(all.errors()).isZero();
+              assertThat(persons).isPositive();
+              assertThat(all.maxMillis()).isPositive().isGreaterThanOrEqualTo(all.p50Millis());
+              var inserts = statistics.snapshot("sql/person/insert.sql").orElseThrow();
+              assertThat(inserts.count()).isEqualTo(2);
+              assertThat(inserts.errors()).isEqualTo(1);
+
+              var endpoint = context.getBean(NamedQueriesEndpoint.class);
+              assertThat(endpoint.queries()).isEqualTo(statistics.snapshot());
+              assertThat(endpoint.query(new String[] {"sql", "person", "all.sql"})).isEqualTo(all);
+              assertThat(endpoint.query(new String[] {"unknown.sql"})).isNull();
+
+              var registry = context.getBean(MeterRegistry.class);
+              context.getBean(NamedQueryMetrics.class).bindTo(registry);
+              assertThat(
+                      registry
+                          .get("namedsqlfiles.query")
+                          .tag("query", "sql/person/all.sql")
+                          .functionTimer()
+                          .count())
+                  .isEqualTo(2);
+              assertThat(
+                      registry
+                          .get("namedsqlfiles.query.errors")
+                          .tag("query", "sql/person/insert.sql")
+                          .functionCounter()
+                          .count())
+                  .isEqualTo(1);
+            });
+  }
+
+  @Test
+  void test_04_disabled_ok() {
+    contextRunner
+        .withPropertyValues("namedsqlfiles.runtime.enabled=false")
+        .run(
+            context ->
+                assertThat(context.getBean(DataSource.class))
+                    .isNotInstanceOf(NamedQueryDataSource.class));
+  }
+
+  @Test
+  void test_05_latency_recorded_when_the_statement_is_closed_ok() {
+    contextRunner
+        .withPropertyValues("namedsqlfiles.runtime.statistics.enabled=true")
+        .run(
+            context -> {
+              var statistics = context.getBean(NamedQueryStatistics.class);
+              try (var connection = context.getBean(DataSource.class).getConnection()) {
+                var statement = connection.prepareStatement("select * from person");
+                try (var resultSet = statement.executeQuery()) {
+                  while (resultSet.next()) {
+                    // read the result set
+                  }
+                }
+                assertThat(statistics.snapshot("sql/person/all.sql").orElseThrow().count())
+                    .isZero();
+
+                statement.close();
+                assertThat(statistics.snapshot("sql/person/all.sql").orElseThrow().count())
+                    .isEqualTo(1);
+              }
+            });
+  }
+
+  @Test
+  void test_06_statistics_disabled_ok() {
+    contextRunner.run(
+        context -> {
+          assertThat(context).doesNotHaveBean(NamedQueryStatistics.class);
+          assertThat(context).doesNotHaveBean(NamedQueriesEndpoint.class);
+          // the metadata is still applied
+          assertThat(context.getBean(DataSource.class)).isInstanceOf(NamedQueryDataSource.class);
+        });
+  }
+
+  @Test
+  void test_07_statement_list_ok() throws SQLException {
+    var metadata = new Properties();
+    metadata.setProperty("sql/person/rename.sql#statements", "2");
+    metadata.setProperty("sql/person/rename.sql#statement.1", RENAME_INSERT);
+    metadata.setProperty("sql/person/rename.sql#statement.2", RENAME_DELETE);
+    metadata.setProperty("sql/person/clear.sql#statements", "2");
+    metadata.setProperty("sql/person/clear.sql#statement.1", "delete from person_archive");
+    metadata.setProperty("sql/person/clear.sql#statement.2", "delete from person");
+    var catalog =
+        new NamedQueryCatalog(
+            Map.of(
+                "sql/person/rename.sql",
+                RENAME_INSERT + ";\n" + RENAME_DELETE + ";\n",
+                "sql/person/clear.sql",
+                "delete from person_archive; delete from person"),
+            NamedQueryCatalog.parseMetadata(metadata, ""));
+    var statistics = new NamedQueryStatistics(catalog.queryNames());
+    var dataSource =
+        new NamedQueryDataSource(
+            new DriverManagerDataSource(
+                "jdbc:h2:mem:named-query-statement-list;DB_CLOSE_DELAY=-1;INIT=create table if not"
+                    + " exists person (lastname varchar(20))\\;create table if not exists"
+                    + " person_archive (lastname varchar(20))"),
+            catalog,
+            statistics);
+    var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    jdbcTemplate.update("insert into person (lastname) values ('Doe'), ('Roe')", Map.of());
+
+    // the parameters are bound to the statements by their markers
+    var renamed =
+        jdbcTemplate.update(
+            RENAME_INSERT + ";\n" + RENAME_DELETE + ";\n",
+            Map.of("new", "Moe", "old", "Doe", "other", "Roe"));
+
+    assertThat(renamed).isEqualTo(2);
+    assertThat(jdbcTemplate.queryForList("select lastname from person", Map.of(), String.class))
+        .containsExactly("Roe");
+    assertThat(
+            jdbcTemplate.queryForList(
+                "select lastname from person_archive", Map.of(), String.class))
+        .containsExactly("Moe");
+
+    // a statement list without parameters is a single batch, in the current transaction
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          assertThat(
+                  jdbcTemplate.update("delete from person_archive; delete from person", Map.of()))
+              .isEqualTo(2);
+          status.setRollbackOnly();
+        });
+    assertThat(jdbcTemplate.queryForObject("select count(*) from person", Map.of(), Long.class))
+        .isEqualTo(1);
+    assertThat(statistics.snapshot("sql/person/clear.sql").orElseThrow().count()).isEqualTo(1);
+
+    // the failed statement is reported by index
+    assertThatThrownBy(
+            () ->
+                jdbcTemplate.update(
+                    RENAME_INSERT + ";\n" + RENAME_DELETE + ";\n",
+                    Map.of("new", "x".repeat(21), "old", "Roe", "other", "Roe")))
+        .isInstanceOf(DataAccessException.class)
+        .hasMessageContaining("statement 1 of 'sql/person/rename.sql' failed");
+    assertThat(statistics.snapshot("sql/person/rename.sql").orElseThrow().errors()).isEqualTo(1);
+  }
+
+  @Test
+  void test_08_catalog_not_loaded_without_features_ok() {
+    contextRunner
+        .withInitializer(
+            context ->
+                ((GenericApplicationContext) context)
+                    .setResourceLoader(new WithoutMetadataResolver()))
+        .run(
+            context -> {
+              // neither metadata nor a feature needs the named queries
+              assertThat(context).doesNotHaveBean(NamedQueryCatalog.class);
+              assertThat(context.getBean(DataSource.class))
+                  .isNotInstanceOf(NamedQueryDataSource.class);
+            });
+    contextRunner
+        .withInitializer(
+            context ->
+                ((GenericApplicationContext) context)
+                    .setResourceLoader(new WithoutMetadataResolver()))
+        .withPropertyValues("namedsqlfiles.runtime.statistics.enabled=true")
+        .run(
+            context -> {
+              assertThat(context).hasSingleBean(NamedQueryCatalog.class);
+              // the recorders are created on the first execution
+              var statistics = context.getBean(NamedQueryStatistics.class);
+              assertThat(statistics.snapshot()).isEmpty();
+              assertThat(statistics.snapshot("sql/person/all.sql").orElseThrow().count()).isZero();
+            });
+  }
+
+  @Test
+  void test_09_dialect_statement_list_ok() {
+    var purge =
+        "delete from person_archive where lastname in (:names);\n"
+            + "delete from person where lastname in (:names)";
+    var metadata = new Properties();
+    // the dialect variant of a single statement query is a statement list
+    metadata.setProperty("sql/person/purge.sql#dialect.h2.statements", "2");
+    metadata.setProperty(
+        "sql/person/purge.sql#dialect.h2.statement.1",
+        "delete from person_archive where lastname in (:names)");
+    metadata.setProperty(
+        "sql/person/purge.sql#dialect.h2.statement.2",
+        "delete from person where lastname in (:names)");
+    var catalog =
+        new NamedQueryCatalog(
+            Map.of("sql/person/purge.sql", purge), NamedQueryCatalog.parseMetadata(metadata, "h2"));
+    var dataSource =
+        new NamedQueryDataSource(
+            new DriverManagerDataSource(
+                "jdbc:h2:mem:named-query-dialect-statement-list;DB_CLOSE_DELAY=-1;INIT=create table"
+                    + " if not exists person (lastname varchar(20))\\;create table if not exists"
+                    + " person_archive (lastname varchar(20))"),
+            catalog);
+    var jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    jdbcTemplate.update("insert into person (lastname) values ('Doe'), ('Roe'), ('Moe')", Map.of());
+    jdbcTemplate.update("insert into person_archive (lastname) values ('Doe')", Map.of());
+
+    // the expanded collections are bound to the compiled statements
+    var purged = jdbcTemplate.update(purge, Map.of("names", List.of("Doe", "Roe")));
+
+    assertThat(catalog.metadata("sql/person/purge.sql").isStatementList()).isTrue();
+    assertThat(purged).isEqualTo(3);
+    assertThat(jdbcTemplate.queryForList("select lastname from person", Map.of(), String.class))
+        .containsExactly("Moe");
+    assertThat(
+            NamedQueryCatalog.parseMetadata(metadata, "").get("sql/person/purge.sql").statements())
+        .isEmpty();
+  }
+
+  /** Hides the named query metadata files of the test classpath. */
+  private static class WithoutMetadataResolver implements ResourcePatternResolver {
+    private final ResourcePatternResolver delegate = new PathMatchingResourcePatternResolver();
+
+    @Override
+    public Resource[] getResources(String locationPattern) throws IOException {
+      return locationPattern.endsWith("-named-queries-metadata.properties")
+          ? new Resource[0]
+          : delegate.getResources(locationPattern);
+    }
+
+    @Override
+    public Resource getResource(String location) {
+      return delegate.getResource(location);
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+      return delegate.getClassLoader();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class NamedQueryJdbcTemplateTest {
+
+  private final DataSource dataSource =
+      new DriverManagerDataSource(
+          "jdbc:h2:mem:named-query-jdbc-template;DB_CLOSE_DELAY=-1;INIT=create table if not exists person (lastname varchar(20))");
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(NamedSqlFilesAutoConfiguration.class))
+          .withBean(
+              NamedParameterJdbcTemplate.class,
+              () -> {
+                var template = new NamedParameterJdbcTemplate(dataSource);
+                template.setCacheLimit(16);
+                return template;
+              });
+
+  @Test
+  void test_01_named_queries_executed_ok() {
+    contextRunner.run(
+        context -> {
+          var template = context.getBean(NamedParameterJdbcTemplate.class);
+          assertThat(template).isInstanceOf(NamedQueryJdbcTemplate.class);
+          assertThat(template.getCacheLimit()).isEqualTo(16);
+
+          // the named queries of the test store are no Spring Data JDBC named queries
+          var sql = context.getBean(NamedQueryCatalog.class).queries().get("sql/person/report.sql");
+          assertThat(((NamedQueryJdbcTemplate) template).isParsed(sql)).isFalse();
+          assertThat(((NamedQueryJdbcTemplate) template).isParsed("select 1")).isFalse();
+
+          template.update(
+              "insert into person (lastname) values (:lastname)", Map.of("lastname", "Doe"));
+          assertThat(
+                  template.queryForList(
+                      sql, Map.of("lastnames", List.of("Doe", "Mustermann")), String.class))
+              .contains("Doe");
+        });
+  }
+
+  @Test
+  void test_02_disabled_ok() {
+    contextRunner
+        .withPropertyValues("namedsqlfiles.runtime.enabled=false")
+        .run(
+            context ->
+                assertThat(context.getBean(NamedParameterJdbcTemplate.class))
+                    .isNotInstanceOf(NamedQueryJdbcTemplate.class));
+  }
+
+  @Test
+  void test_03_only_jdbc_named_queries_parsed_up_front_ok() {
+    // given
+    var jdbcSql = "select lastname from person where lastname = :lastname";
+    var jpaSql = "select p from Person p where p.lastname = :lastname";
+    var catalog =
+        new NamedQueryCatalog(
+            Map.of("sql/person/jdbc.sql", jdbcSql, "sql/person/jpa.sql", jpaSql),
+            Map.of(),
+            Map.of("jdbc", Set.of("sql/person/jdbc.sql"), "jpa", Set.of("sql/person/jpa.sql")));
+
+    // when
+    var template = new NamedQueryJdbcTemplate(new JdbcTemplate(dataSource), catalog);
+
+    // then
+    assertThat(template.isParsed(jdbcSql)).isTrue();
+    assertThat(template.isParsed(jpaSql)).isFalse();
+  }
+}
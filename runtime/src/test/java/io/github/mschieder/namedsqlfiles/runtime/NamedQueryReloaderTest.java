@@ -0,0 +1,93 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class NamedQueryReloaderTest {
+  private static final String ALL = "sql/person/all.sql";
+
+  @TempDir Path sourceRoot;
+
+  private final DataSource dataSource =
+      new DriverManagerDataSource(
+          "jdbc:h2:mem:named-query-reloader;DB_CLOSE_DELAY=-1;INIT=create table if not exists person (lastname varchar(20))");
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(NamedSqlFilesAutoConfiguration.class))
+          .withBean(
+              NamedParameterJdbcTemplate.class, () -> new NamedParameterJdbcTemplate(dataSource));
+
+  @Test
+  void test_01_reload_ok() throws Exception {
+    Files.createDirectories(sourceRoot.resolve("sql/person"));
+    Files.writeString(sourceRoot.resolve(ALL), "select * from person");
+    // normalized with the options in META-INF/test-named-queries.options
+    contextRunner
+        .withPropertyValues(
+            "namedsqlfiles.runtime.reload.enabled=true",
+            "namedsqlfiles.runtime.reload.source-roots=" + sourceRoot)
+        .run(
+            context -> {
+              var registry = context.getBean(NamedQueryRegistry.class);
+              var template = context.getBean(NamedParameterJdbcTemplate.class);
+              assertThat(registry.reloadedQueryNames()).isEmpty();
+
+              // the named query created by the repository
+              var sql = "select * from person";
+              Files.writeString(
+                  sourceRoot.resolve(ALL), "-- tuned\nselect 'Reloaded' as lastname\n  from dual");
+              long timeout = System.currentTimeMillis() + 10_000;
+              while (registry.reloadedQueryNames().isEmpty()
+                  && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+              }
+
+              assertThat(registry.query(ALL)).isEqualTo("select 'Reloaded' as lastname from dual");
+              assertThat(template.queryForList(sql, Map.of(), String.class))
+                  .containsExactly("Reloaded");
+            });
+  }
+
+  @Test
+  void test_02_inert_unless_enabled_ok() {
+    contextRunner.run(
+        context -> {
+          assertThat(context).doesNotHaveBean(NamedQueryRegistry.class);
+          assertThat(context).doesNotHaveBean(NamedQueryReloader.class);
+        });
+  }
+
+  @Test
+  void test_03_fragment_dependents_ok() {
+    contextRunner
+        .withPropertyValues(
+            "namedsqlfiles.runtime.reload.enabled=true",
+            "namedsqlfiles.runtime.reload.source-roots=" + sourceRoot)
+        .run(
+            context -> {
+              var reloader = context.getBean(NamedQueryReloader.class);
+
+              // the fragment of the dependency graph in META-INF/test-named-queries.includes
+              var fragmentChanged =
+                  reloader.affectedQueryNames(Set.of("sql/common/person_columns.sql"));
+              var sqlFileChanged = reloader.affectedQueryNames(Set.of(ALL));
+              var unknownChanged = reloader.affectedQueryNames(Set.of("sql/common/unused.sql"));
+
+              assertThat(fragmentChanged).containsExactly("sql/person/report.sql");
+              assertThat(sqlFileChanged).containsExactly(ALL);
+              assertThat(unknownChanged).isEmpty();
+            });
+  }
+}
@@ -0,0 +1,138 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class NamedQueryWarmUpTest {
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(NamedSqlFilesAutoConfiguration.class))
+          .withBean(
+              DataSource.class,
+              () ->
+                  new DriverManagerDataSource(
+                      "jdbc:h2:mem:named-query-warm-up;DB_CLOSE_DELAY=-1;INIT=create table if not exists person (lastname varchar(20))"));
+
+  @Test
+  void test_01_warm_up_ok() {
+    contextRunner
+        .withPropertyValues("namedsqlfiles.runtime.warm-up.enabled=true")
+        .run(
+            context -> {
+              var warmUp = context.getBean(NamedQueryWarmUp.class);
+              assertThat(warmUp.report()).isNull();
+
+              var report = warmUp.warmUp();
+
+              assertThat(report.results())
+                  .extracting(NamedQueryWarmUp.Result::queryName)
+                  .containsExactly(
+                      "sql/person/all.sql", "sql/person/insert.sql", "sql/person/report.sql");
+              assertThat(report.failures()).isEmpty();
+              assertThat(report.skipped()).isZero();
+              assertThat(warmUp.report()).isSameAs(report);
+            });
+  }
+
+  @Test
+  void test_02_disabled_ok() {
+    contextRunner.run(context -> assertThat(context).doesNotHaveBean(NamedQueryWarmUp.class));
+  }
+
+  @Test
+  void test_03_failures_nok() {
+    var catalog =
+        new NamedQueryCatalog(
+            Map.of("sql/ok.sql", "select 1", "sql/unknown.sql", "select * from unknown"), Map.of());
+    var warmUp =
+        new NamedQueryWarmUp(
+            catalog,
+            List.of(
+                (sql, statements) -> {
+                  if (sql.contains("unknown")) {
+                    throw new IllegalStateException("table unknown not found");
+                  }
+                }),
+            2,
+            Duration.ofSeconds(10));
+
+    var report = warmUp.warmUp();
+
+    assertThat(report.failures())
+        .singleElement()
+        .satisfies(
+            result -> {
+              assertThat(result.queryName()).isEqualTo("sql/unknown.sql");
+              assertThat(result.error()).isEqualTo("table unknown not found");
+            });
+    assertThat(report.results()).hasSize(2);
+  }
+
+  @Test
+  void test_04_budget_ok() throws InterruptedException {
+    var blocked = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var catalog =
+        new NamedQueryCatalog(Map.of("sql/a.sql", "select 1", "sql/b.sql", "select 2"), Map.of());
+    var warmUp =
+        new NamedQueryWarmUp(
+            catalog,
+            List.of(
+                (sql, statements) -> {
+                  blocked.countDown();
+                  release.await(10, TimeUnit.SECONDS);
+                }),
+            1,
+            Duration.ofMillis(100));
+
+    var report = warmUp.warmUp();
+    release.countDown();
+
+    assertThat(blocked.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(report.results()).isEmpty();
+    assertThat(report.skipped()).isEqualTo(2);
+  }
+
+  @Test
+  void test_05_prepared_on_several_connections_ok() throws SQLException {
+    // given: a data source, that records its connections
+    List<Connection> connections = new CopyOnWriteArrayList<>();
+    var dataSource =
+        new DriverManagerDataSource("jdbc:h2:mem:named-query-warm-up-connections") {
+          @Override
+          public Connection getConnection() throws SQLException {
+            var connection = super.getConnection();
+            connections.add(connection);
+            return connection;
+          }
+        };
+    var catalog =
+        new NamedQueryCatalog(Map.of("sql/a.sql", "select 1", "sql/b.sql", "select 2"), Map.of());
+    var warmUp =
+        new NamedQueryWarmUp(
+            catalog, List.of(new JdbcStatementPreparer(dataSource, 3)), 2, Duration.ofSeconds(10));
+
+    // when
+    var report = warmUp.warmUp();
+
+    // then: each query is prepared on the 3 connections, that are returned afterwards
+    assertThat(report.failures()).isEmpty();
+    assertThat(connections).hasSize(3);
+    for (var connection : connections) {
+      assertThat(connection.isClosed()).isTrue();
+    }
+  }
+}
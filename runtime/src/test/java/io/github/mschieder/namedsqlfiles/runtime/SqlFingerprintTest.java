@@ -0,0 +1,34 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SqlFingerprintTest {
+
+  @Test
+  void test_01_formatting_and_comments_ignored_ok() {
+    assertThat(SqlFingerprint.of("-- report\nSELECT p.*\r\n  FROM person p /* alias */;\n"))
+        .isEqualTo("select p.* from person p");
+  }
+
+  @Test
+  void test_02_parameters_unified_ok() {
+    var expected = "select * from person p where p.id = ? and p.lastname in (?)";
+    assertThat(
+            SqlFingerprint.of("select * from person p where p.id = :id and p.lastname in (:names)"))
+        .isEqualTo(expected);
+    assertThat(SqlFingerprint.of("select * from person p where p.id = ?1 and p.lastname in (?2)"))
+        .isEqualTo(expected);
+    // expanded collection parameter
+    assertThat(
+            SqlFingerprint.of("select * from person p where p.id = ? and p.lastname in (?, ?,?)"))
+        .isEqualTo(expected);
+  }
+
+  @Test
+  void test_03_literals_and_casts_kept_ok() {
+    assertThat(SqlFingerprint.of("select 'A  :b -- c', \"Name\" from t where x::int = :x"))
+        .isEqualTo("select 'A  :b -- c', \"Name\" from t where x::int = ?");
+  }
+}
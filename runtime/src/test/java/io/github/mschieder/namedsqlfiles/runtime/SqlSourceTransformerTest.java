@@ -0,0 +1,105 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+class SqlSourceTransformerTest {
+  private static final Map<String, String> FRAGMENTS =
+      Map.of(
+          "sql/fragments/columns.sql", "p.id, p.lastname\n",
+          "sql/fragments/a.sql", "-- @include sql/fragments/b.sql\n",
+          "sql/fragments/b.sql", "-- @include sql/fragments/a.sql\n");
+
+  private static Optional<String> load(String resourceName) {
+    return Optional.ofNullable(FRAGMENTS.get(resourceName));
+  }
+
+  @Test
+  void test_01_unchanged_ok() throws IOException {
+    var sql = "-- all\nselect *\r\n  from person";
+    assertThat(SqlSourceTransformer.of("", false).transform("all.sql", sql, name -> null))
+        .isEqualTo(sql);
+  }
+
+  @Test
+  void test_02_normalized_and_tagged_ok() throws IOException {
+    // like the processor: the same source tag hash
+    assertThat(
+            SqlSourceTransformer.of("all", true)
+                .transform(
+                    "sql/person/all.sql",
+                    "-- all persons\nselect /*+ FULL(p) */ *\r\n  from person p -- ':x'\n",
+                    name -> null))
+        .isEqualTo(
+            SqlSourceTransformer.tag(
+                "sql/person/all.sql", "select /*+ FULL(p) */ * from person p"));
+    assertThat(SqlSourceTransformer.tag("sql/person/all.sql", "select * from person"))
+        .isEqualTo("/* nsf:sql/person/all.sql#e29b7cf2 */ select * from person");
+    assertThat(
+            SqlSourceTransformer.of("comments, lineEndings", false)
+                .transform("a.sql", "select 1 -- one\r\nfrom dual", name -> null))
+        .isEqualTo("select 1 \nfrom dual");
+  }
+
+  @Test
+  void test_03_includes_ok() throws IOException {
+    assertThat(
+            SqlSourceTransformer.of("", false)
+                .transform(
+                    "sql/person/all.sql",
+                    "select\n-- @include sql/fragments/columns.sql\nfrom person p",
+                    SqlSourceTransformerTest::load))
+        .isEqualTo("select\np.id, p.lastname\nfrom person p");
+    assertThatThrownBy(
+            () ->
+                SqlSourceTransformer.of("", false)
+                    .transform(
+                        "sql/person/all.sql",
+                        "-- @include sql/fragments/a.sql\nselect 1",
+                        SqlSourceTransformerTest::load))
+        .isInstanceOf(IOException.class)
+        .hasMessage(
+            "include cycle sql/person/all.sql -> sql/fragments/a.sql -> sql/fragments/b.sql"
+                + " -> sql/fragments/a.sql");
+  }
+
+  @Test
+  void test_04_unknown_normalization_nok() {
+    assertThatThrownBy(() -> SqlSourceTransformer.of("comments,spaces", false))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("unknown normalization 'spaces'.");
+  }
+
+  @Test
+  void test_05_backslash_escaped_literals_ok() throws IOException {
+    // like the processor: ambiguous literals are left unchanged, E'...' strings are escaped
+    var transformer = SqlSourceTransformer.of("all", false);
+    var ambiguous = "select 'a\\'  b'  from dual";
+
+    assertThat(transformer.transform("a.sql", ambiguous, name -> null)).isSameAs(ambiguous);
+    assertThat(
+            transformer.transform("a.sql", "select E'a\\'  b'  ,  e'\\''  from dual", name -> null))
+        .isEqualTo("select E'a\\'  b' , e'\\'' from dual");
+  }
+
+  @Test
+  void test_06_recorded_options_ok() throws IOException {
+    // given: the options recorded in META-INF/test-named-queries.options
+    var transformers = SqlSourceTransformer.load(new PathMatchingResourcePatternResolver());
+
+    // then: the named queries of the named queries file next to it are normalized
+    assertThat(transformers)
+        .containsOnlyKeys("sql/person/all.sql", "sql/person/report.sql", "sql/person/insert.sql");
+    assertThat(
+            transformers
+                .get("sql/person/all.sql")
+                .transform("sql/person/all.sql", "select *\r\n  from person", name -> null))
+        .isEqualTo("select * from person");
+  }
+}
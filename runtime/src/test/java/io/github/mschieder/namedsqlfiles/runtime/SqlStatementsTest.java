@@ -0,0 +1,68 @@
+package io.github.mschieder.namedsqlfiles.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SqlStatementsTest {
+
+  @Test
+  void test_01_statements_and_parameter_markers_ok() {
+    var statements =
+        SqlStatements.compile(
+            List.of(
+                "insert into archive select * from person where id = :id",
+                "delete from person where id = :id and lastname <> '?;'"));
+
+    assertThat(
+            statements.locate(
+                "insert into archive select * from person where id = ?;\n"
+                    + "delete from person where id = ? and lastname <> '?;';\n"
+                    + "-- done\n"))
+        .containsExactly(
+            new SqlStatements.Statement("insert into archive select * from person where id = ?", 1),
+            new SqlStatements.Statement("delete from person where id = ? and lastname <> '?;'", 1));
+  }
+
+  @Test
+  void test_02_expanded_collections_ok() {
+    var statements =
+        SqlStatements.compile(
+            List.of(
+                "delete from archive where id in (:ids)",
+                "/* ?; */ update person set \"c;\" = 1 where id = :id",
+                "delete from person where id in (:ids) and lastname = :lastname"));
+
+    assertThat(
+            statements.locate(
+                "delete from archive where id in (?, ?, ?);\n"
+                    + "/* ?; */ update person set \"c;\" = 1 where id = ?;\n"
+                    + "delete from person where id in (?, ?, ?) and lastname = ?"))
+        .extracting(SqlStatements.Statement::parameterCount)
+        .containsExactly(3, 1, 4);
+  }
+
+  @Test
+  void test_03_trailing_parameter_ok() {
+    var statements =
+        SqlStatements.compile(
+            List.of("delete from archive where id = :id", "delete from person where id = :id"));
+
+    assertThat(
+            statements.locate("delete from archive where id = ?; delete from person where id = ?;"))
+        .containsExactly(
+            new SqlStatements.Statement("delete from archive where id = ?", 1),
+            new SqlStatements.Statement("delete from person where id = ?", 1));
+  }
+
+  @Test
+  void test_04_other_statements_nok() {
+    var statements =
+        SqlStatements.compile(List.of("delete from archive", "delete from person where id = :id"));
+
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> statements.locate("delete from archive; delete from address"));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the generated auto-configurations of all query processors of a compilation to a single
+ * Spring Boot auto-configuration imports file, merged with an existing one.
+ *
+ * <p>The processors coordinate through the compilation, not through shared state, because build
+ * tools may wrap the {@link ProcessingEnvironment} per processor: when processing is over, the
+ * auto-configurations generated in previous rounds are resolved by their class names, the first
+ * processor writes the imports file with all of them and the {@code Filer} rejects the file of the
+ * other processors.
+ *
+ * @author Michael Schieder
+ */
+class AutoConfigurationImports {
+  static final String IMPORTS_FILENAME =
+      "META-INF/spring/org.springframework.boot.autoconfigure.AutoConfiguration.imports";
+
+  /** The store names of the {@link JpaQueryProcessor} and the {@link JdbcQueryProcessor}. */
+  private static final List<String> STORE_NAMES = List.of("Jpa", "Jdbc");
+
+  private AutoConfigurationImports() {}
+
+  /**
+   * Writes the imports file with the generated auto-configurations of all processors, unless
+   * another processor of the compilation wrote it already. Must be called when processing is over.
+   *
+   * @param processingEnv the processing environment
+   * @param resourceLocator the locator of an existing imports file
+   * @param packageName the package of the generated classes
+   */
+  static void write(
+      ProcessingEnvironment processingEnv, ResourceLocator resourceLocator, String packageName) {
+    Set<String> imports = new LinkedHashSet<>();
+    try {
+      if (resourceLocator.exists(IMPORTS_FILENAME)) {
+        try (var reader =
+            new BufferedReader(
+                new InputStreamReader(
+                    resourceLocator.resourceInputstream(IMPORTS_FILENAME),
+                    StandardCharsets.UTF_8))) {
+          reader.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(imports::add);
+        }
+      }
+      STORE_NAMES.stream()
+          .map(
+              storeName ->
+                  NamedQueriesClassGenerator.configurationClassName(packageName, storeName))
+          .filter(className -> processingEnv.getElementUtils().getTypeElement(className) != null)
+          .forEach(imports::add);
+
+      var file =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", IMPORTS_FILENAME);
+      try (var out = new PrintWriter(file.openWriter())) {
+        imports.forEach(line -> out.print(line + "\n"));
+      }
+    } catch (FilerException e) {
+      // written by another processor of this compilation, with the same auto-configurations
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "unable to create file '" + IMPORTS_FILENAME + "'.");
+    }
+  }
+}
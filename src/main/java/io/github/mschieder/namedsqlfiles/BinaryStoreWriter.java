@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes named queries as a binary store, that is memory-mapped at runtime and decodes a query only
+ * on first access. All integers are big-endian:
+ *
+ * <pre>
+ * int magic "NSFQ", int version, int count
+ * count x (int key offset, int key length, int query offset, int query length)
+ * UTF-8 encoded keys and queries
+ * </pre>
+ *
+ * <p>The fixed size index entries are sorted by the unsigned UTF-8 bytes of the keys, so that a
+ * query is found by binary search without decoding other keys. Offsets are relative to the start of
+ * the file.
+ *
+ * @author Michael Schieder
+ */
+class BinaryStoreWriter {
+  static final int MAGIC = 0x4E534651;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 12;
+  static final int INDEX_ENTRY_SIZE = 16;
+
+  private BinaryStoreWriter() {}
+
+  static void write(Map<?, ?> namedQueries, OutputStream outputStream) throws IOException {
+    var entries =
+        namedQueries.entrySet().stream()
+            .map(
+                entry ->
+                    new byte[][] {
+                      entry.getKey().toString().getBytes(StandardCharsets.UTF_8),
+                      entry.getValue().toString().getBytes(StandardCharsets.UTF_8)
+                    })
+            .sorted((first, second) -> Arrays.compareUnsigned(first[0], second[0]))
+            .toList();
+    long offset = HEADER_SIZE + (long) INDEX_ENTRY_SIZE * entries.size();
+    var out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(entries.size());
+    for (var entry : entries) {
+      out.writeInt(checkedOffset(offset));
+      out.writeInt(entry[0].length);
+      offset += entry[0].length;
+      out.writeInt(checkedOffset(offset));
+      out.writeInt(entry[1].length);
+      offset += entry[1].length;
+    }
+    checkedOffset(offset);
+    for (var entry : entries) {
+      out.write(entry[0]);
+      out.write(entry[1]);
+    }
+    out.flush();
+  }
+
+  private static int checkedOffset(long offset) throws IOException {
+    if (offset > Integer.MAX_VALUE) {
+      throw new IOException("named queries exceed the binary store size limit of 2 GiB");
+    }
+    return (int) offset;
+  }
+}
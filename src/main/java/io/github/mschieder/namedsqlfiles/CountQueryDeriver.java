@@ -0,0 +1,394 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Derives the count query of a native select statement: the projection is replaced by {@code
+ * count(*)}, the {@code ORDER BY} clause is dropped and {@code LEFT JOIN}s on the primary key
+ * {@code id} of the joined table, that are not referenced outside the projection, are dropped.
+ *
+ * <p>Statements, whose row count cannot be derived safely, like {@code DISTINCT}, {@code GROUP BY},
+ * set operations or limits, are rejected with an {@link IllegalArgumentException}.
+ *
+ * @author Michael Schieder
+ */
+class CountQueryDeriver {
+  private static final Set<String> AGGREGATE_FUNCTIONS =
+      Set.of("count", "sum", "avg", "min", "max", "every", "any_value", "string_agg", "listagg");
+  private static final Set<String> UNSUPPORTED_CLAUSES =
+      Set.of(
+          "group",
+          "having",
+          "union",
+          "intersect",
+          "except",
+          "minus",
+          "limit",
+          "offset",
+          "fetch",
+          "for",
+          "window",
+          "qualify");
+  private static final Set<String> JOIN_KEYWORDS =
+      Set.of("join", "left", "right", "inner", "outer", "full", "cross", "natural", "on");
+
+  /** Words, that are no column references. */
+  private static final Set<String> KEYWORDS =
+      Set.of(
+          "and",
+          "or",
+          "not",
+          "in",
+          "is",
+          "null",
+          "like",
+          "ilike",
+          "between",
+          "exists",
+          "true",
+          "false",
+          "case",
+          "when",
+          "then",
+          "else",
+          "end",
+          "as",
+          "select",
+          "from",
+          "where",
+          "escape",
+          "all",
+          "any",
+          "some",
+          "distinct",
+          "asc",
+          "desc");
+
+  private static final String PRIMARY_KEY = "id";
+
+  private CountQueryDeriver() {}
+
+  static String derive(String sql) {
+    var parts = Part.split(SqlScanner.scan(sql));
+    if (parts.isEmpty() || !parts.get(0).isWord("select")) {
+      throw new IllegalArgumentException("not a select statement");
+    }
+
+    int from = -1;
+    int where = -1;
+    int orderBy = -1;
+    int end = parts.size();
+    for (int i = 1; i < parts.size(); i++) {
+      var part = parts.get(i);
+      if (part.depth() > 0) {
+        continue;
+      }
+      var word = part.word();
+      if (part.token().is(SqlScanner.Kind.SEMICOLON)) {
+        end = i;
+        break;
+      } else if (UNSUPPORTED_CLAUSES.contains(word)) {
+        throw new IllegalArgumentException("unsupported clause '" + part.text() + "'");
+      } else if (word.equals("from") && from < 0) {
+        from = i;
+      } else if (word.equals("where") && from >= 0 && where < 0) {
+        where = i;
+      } else if (word.equals("order") && orderBy < 0) {
+        orderBy = i;
+      }
+    }
+    if (from < 0) {
+      throw new IllegalArgumentException("missing FROM clause");
+    }
+    var projection = parts.subList(1, from);
+    checkProjection(projection);
+    if (orderBy >= 0) {
+      checkNoParameters(parts.subList(orderBy, end), "ORDER BY clause");
+    }
+    return countQuery(sql, parts, from, where, orderBy < 0 ? end : orderBy);
+  }
+
+  /** Creates the count query of the statement up to, but not including the part at bodyEnd. */
+  private static String countQuery(String sql, List<Part> parts, int from, int where, int bodyEnd) {
+    var projection = parts.subList(1, from);
+    var count = new StringBuilder();
+    count.append(sql, 0, parts.get(0).offset());
+    count.append("select ");
+    if (projection.get(0).token().is(SqlScanner.Kind.HINT)) {
+      count.append(projection.get(0).text()).append(' ');
+    }
+    count.append("count(*) ");
+    int bodyEndOffset = parts.get(bodyEnd - 1).end();
+    int position = parts.get(from).offset();
+    for (int[] range :
+        removableLeftJoins(parts, from, where < 0 ? bodyEnd : where, bodyEnd, bodyEndOffset)) {
+      count.append(sql, position, range[0]);
+      position = range[1];
+    }
+    count.append(sql, position, bodyEndOffset);
+    return count.toString().stripTrailing();
+  }
+
+  private static void checkProjection(List<Part> projection) {
+    if (projection.isEmpty()
+        || (projection.size() == 1 && projection.get(0).token().is(SqlScanner.Kind.HINT))) {
+      throw new IllegalArgumentException("missing projection");
+    }
+    var first =
+        projection.get(0).token().is(SqlScanner.Kind.HINT) ? projection.get(1) : projection.get(0);
+    if (first.isWord("distinct") || first.isWord("top") || first.isWord("unique")) {
+      throw new IllegalArgumentException("unsupported projection '" + first.text() + "'");
+    }
+    for (int i = 0; i + 1 < projection.size(); i++) {
+      if (projection.get(i).depth() == 0
+          && AGGREGATE_FUNCTIONS.contains(projection.get(i).word())
+          && projection.get(i + 1).isWord("(")) {
+        throw new IllegalArgumentException(
+            "aggregate function '" + projection.get(i).text() + "' in the projection");
+      }
+    }
+    checkNoParameters(projection, "projection");
+  }
+
+  private static void checkNoParameters(List<Part> parts, String clause) {
+    parts.stream()
+        .filter(Part::isParameter)
+        .findFirst()
+        .ifPresent(
+            part -> {
+              throw new IllegalArgumentException(
+                  "parameter '" + part.text() + "' in the " + clause);
+            });
+  }
+
+  /**
+   * Returns the offset ranges of the {@code LEFT JOIN}s in the from clause {@code [from, fromEnd)},
+   * that neither filter nor multiply the rows: joins on the primary key of the joined table, whose
+   * alias is referenced nowhere else in {@code [from, bodyEnd)}.
+   */
+  private static List<int[]> removableLeftJoins(
+      List<Part> parts, int from, int fromEnd, int bodyEnd, int bodyEndOffset) {
+    var joins = new ArrayList<Join>();
+    for (int i = from + 1; i < fromEnd; i++) {
+      if (parts.get(i).depth() == 0 && isJoinStart(parts, i)) {
+        joins.add(Join.parse(parts, i, fromEnd));
+      }
+    }
+
+    List<int[]> removed = new ArrayList<>();
+    for (var join : joins) {
+      if (join.onPrimaryKey() && !referencedOutside(parts, from, bodyEnd, join)) {
+        int endOffset = join.end() < bodyEnd ? parts.get(join.end()).offset() : bodyEndOffset;
+        removed.add(new int[] {parts.get(join.start()).offset(), endOffset});
+      }
+    }
+    return removed;
+  }
+
+  private static boolean isJoinStart(List<Part> parts, int index) {
+    var word = parts.get(index).word();
+    if (word.equals(",")) {
+      return true;
+    }
+    if (!JOIN_KEYWORDS.contains(word) || word.equals("on") || word.equals("outer")) {
+      return false;
+    }
+    // the first keyword of "left outer join", "natural left join", ...
+    var previous = parts.get(index - 1).word();
+    return !JOIN_KEYWORDS.contains(previous) || previous.equals("on");
+  }
+
+  private static boolean referencedOutside(List<Part> parts, int from, int bodyEnd, Join join) {
+    for (int i = from + 1; i < bodyEnd; i++) {
+      if (i >= join.start() && i < join.end()) {
+        continue;
+      }
+      var part = parts.get(i);
+      if (part.token().is(SqlScanner.Kind.QUOTED_IDENTIFIER)) {
+        // not resolved, the join is kept
+        return true;
+      }
+      if (part.isIdentifier() && !part.word().contains(".")) {
+        boolean functionCall = i + 1 < bodyEnd && parts.get(i + 1).isWord("(");
+        if (!functionCall
+            && !KEYWORDS.contains(part.word())
+            && !JOIN_KEYWORDS.contains(part.word())
+            && !isTableOrAlias(parts, i)) {
+          // unqualified column, that may belong to the joined table
+          return true;
+        }
+      }
+      if (part.word().startsWith(join.alias() + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Whether the word at index is a table name or alias in a from clause. */
+  private static boolean isTableOrAlias(List<Part> parts, int index) {
+    for (int i = index - 1; i >= 0 && i >= index - 3; i--) {
+      var word = parts.get(i).word();
+      if (word.equals("from") || word.equals("join") || word.equals(",")) {
+        return true;
+      }
+      if (!parts.get(i).isIdentifier() || word.equals("on")) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A join in the from clause.
+   *
+   * @param start the index of the first join keyword
+   * @param end the index after the join condition
+   * @param left whether the join is a {@code LEFT [OUTER] JOIN} of a table
+   * @param alias the alias or name of the joined table
+   * @param condition the join condition
+   */
+  private record Join(int start, int end, boolean left, String alias, List<Part> condition) {
+    static Join parse(List<Part> parts, int start, int fromEnd) {
+      int i = start;
+      while (i < fromEnd
+          && (JOIN_KEYWORDS.contains(parts.get(i).word()) || parts.get(i).isWord(","))) {
+        i++;
+      }
+      String table = i < fromEnd && parts.get(i).isIdentifier() ? parts.get(i).word() : "";
+      String alias = table;
+      i++;
+      if (i < fromEnd && parts.get(i).isWord("as")) {
+        i++;
+      }
+      if (i < fromEnd && parts.get(i).isIdentifier() && !parts.get(i).isWord("on")) {
+        alias = parts.get(i).word();
+        i++;
+      }
+      int conditionStart = -1;
+      while (i < fromEnd && !(parts.get(i).depth() == 0 && isJoinStart(parts, i))) {
+        if (conditionStart < 0 && parts.get(i).isWord("on")) {
+          conditionStart = i + 1;
+        }
+        i++;
+      }
+      List<Part> condition = conditionStart < 0 ? List.of() : parts.subList(conditionStart, i);
+      boolean left = parts.get(start).isWord("left") && !table.isEmpty();
+      return new Join(start, i, left, alias, condition);
+    }
+
+    /** Whether the join condition is {@code <alias>.id = <other>.<column>}, or vice versa. */
+    boolean onPrimaryKey() {
+      if (!left || alias.isEmpty() || condition.size() != 3 || !condition.get(1).isWord("=")) {
+        return false;
+      }
+      var key = alias + "." + PRIMARY_KEY;
+      var first = condition.get(0);
+      var second = condition.get(2);
+      return (first.isWord(key) && isColumnOfOtherTable(second))
+          || (second.isWord(key) && isColumnOfOtherTable(first));
+    }
+
+    private boolean isColumnOfOtherTable(Part part) {
+      return part.isIdentifier()
+          && part.word().contains(".")
+          && !part.word().startsWith(alias + ".");
+    }
+  }
+
+  /**
+   * A code token or, for {@link SqlScanner.Kind#OTHER} tokens, a word or punctuation character.
+   *
+   * @param token the scanned token
+   * @param text the text of the part
+   * @param offset the offset in the statement
+   * @param depth the parenthesis depth
+   */
+  private record Part(SqlScanner.Token token, String text, int offset, int depth) {
+
+    static List<Part> split(List<SqlScanner.Token> tokens) {
+      List<Part> parts = new ArrayList<>();
+      int depth = 0;
+      for (var token : tokens) {
+        if (!token.isCode()) {
+          continue;
+        }
+        if (!token.is(SqlScanner.Kind.OTHER)) {
+          parts.add(new Part(token, token.text(), token.offset(), depth));
+          continue;
+        }
+        var text = token.text();
+        int pos = 0;
+        while (pos < text.length()) {
+          int end = pos + 1;
+          if (isWordChar(text.charAt(pos))) {
+            while (end < text.length() && isWordChar(text.charAt(end))) {
+              end++;
+            }
+          }
+          var part = text.substring(pos, end);
+          if (part.equals(")")) {
+            depth--;
+          }
+          parts.add(new Part(token, part, token.offset() + pos, depth));
+          if (part.equals("(")) {
+            depth++;
+          }
+          pos = end;
+        }
+      }
+      return parts;
+    }
+
+    private static boolean isWordChar(char c) {
+      return Character.isLetterOrDigit(c)
+          || c == '_'
+          || c == '.'
+          || c == '$'
+          || c == ':'
+          || c == '?';
+    }
+
+    String word() {
+      return text.toLowerCase(Locale.ROOT);
+    }
+
+    int end() {
+      return offset + text.length();
+    }
+
+    boolean isWord(String word) {
+      return text.equalsIgnoreCase(word);
+    }
+
+    boolean isIdentifier() {
+      return token.is(SqlScanner.Kind.OTHER)
+          && Character.isLetter(text.charAt(0))
+          && !isParameter();
+    }
+
+    boolean isParameter() {
+      return token.is(SqlScanner.Kind.OTHER)
+          && (text.startsWith("?") || (text.startsWith(":") && !text.startsWith("::")));
+    }
+  }
+}
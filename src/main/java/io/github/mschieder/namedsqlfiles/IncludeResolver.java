@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Expands include directives {@code -- @include <resource name>} with the content of the included
+ * fragment. Fragments may include other fragments. Expansions are memoized, so that each fragment
+ * is read and expanded once, and the included fragments of each resource are recorded. The resolver
+ * is thread safe.
+ *
+ * @author Michael Schieder
+ */
+class IncludeResolver {
+  private static final String DIRECTIVE = "@include";
+  private static final Pattern INCLUDE = Pattern.compile("--\\s*" + DIRECTIVE + "\\s+(\\S+)\\s*");
+
+  private final ResourceLoader.Loader loader;
+  private final Map<String, Expansion> expansions = new ConcurrentHashMap<>();
+
+  /**
+   * An expanded resource.
+   *
+   * @param content the content with all includes replaced
+   * @param includes the names of all directly or indirectly included fragments
+   */
+  private record Expansion(String content, Set<String> includes) {}
+
+  /** An include cycle or a missing fragment, reported with its own message. */
+  static class IncludeException extends IOException {
+    IncludeException(String message) {
+      super(message);
+    }
+  }
+
+  IncludeResolver(ResourceLoader.Loader loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Expands the includes of a resource.
+   *
+   * @param resource the resource
+   * @return the resource with the expanded content
+   * @throws IncludeException if a fragment does not exist or includes itself
+   * @throws IOException if a fragment cannot be read
+   */
+  SqlResource expand(SqlResource resource) throws IOException {
+    return resource.withContent(
+        expand(resource.name(), resource.content(), List.of(resource.name())).content());
+  }
+
+  private Expansion expand(String name, String content, List<String> path) throws IOException {
+    var cached = expansions.get(name);
+    if (cached != null) {
+      return cached;
+    }
+    if (!content.contains(DIRECTIVE)) {
+      return memoize(name, new Expansion(content, Set.of()));
+    }
+
+    var expanded = new StringBuilder(content.length());
+    Set<String> includes = new TreeSet<>();
+    for (var token : SqlScanner.scan(content)) {
+      var matcher = INCLUDE.matcher(token.text());
+      if (!token.is(SqlScanner.Kind.LINE_COMMENT) || !matcher.matches()) {
+        expanded.append(token.text());
+        continue;
+      }
+      var fragmentName = matcher.group(1);
+      var fragmentPath = new ArrayList<>(path);
+      fragmentPath.add(fragmentName);
+      if (path.contains(fragmentName)) {
+        throw new IncludeException("include cycle " + String.join(" -> ", fragmentPath));
+      }
+      var fragment =
+          loader
+              .load(fragmentName)
+              .orElseThrow(
+                  () ->
+                      new IncludeException(
+                          "included fragment '" + fragmentName + "' of '" + name + "' not found"));
+      var fragmentExpansion = expand(fragmentName, fragment.content(), fragmentPath);
+      // the line end of the directive is kept
+      expanded.append(fragmentExpansion.content().stripTrailing());
+      includes.add(fragmentName);
+      includes.addAll(fragmentExpansion.includes());
+    }
+    return memoize(name, new Expansion(expanded.toString(), Collections.unmodifiableSet(includes)));
+  }
+
+  private Expansion memoize(String name, Expansion expansion) {
+    var previous = expansions.putIfAbsent(name, expansion);
+    return previous != null ? previous : expansion;
+  }
+
+  /**
+   * Returns the names of the fragments, that an expanded resource includes directly or indirectly.
+   *
+   * @param resourceName the name of the resource
+   * @return the sorted fragment names, empty if the resource was not expanded or includes none
+   */
+  Set<String> includes(String resourceName) {
+    var expansion = expansions.get(resourceName);
+    return expansion != null ? expansion.includes() : Set.of();
+  }
+}
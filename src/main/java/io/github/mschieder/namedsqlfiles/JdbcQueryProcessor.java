@@ -40,12 +40,16 @@ public class JdbcQueryProcessor extends QueryProcessor {
   private static final String DEFAULT_JDBC_NAMED_QUERIES_PROPERTIES =
       "META-INF/jdbc-named-queries.properties";
   private static final List<String> JDBC_QUERY_ANNOTATION_PARAMETER_NAMES = List.of("name");
+  private static final String JDBC_REPOSITORY_FACTORY_BEAN_TYPE =
+      "org.springframework.data.jdbc.repository.support.JdbcRepositoryFactoryBean";
 
   /** Required no-argument constructor. */
   public JdbcQueryProcessor() {
     super(
         JDBC_QUERY_ANNOTATION_TYPE,
         DEFAULT_JDBC_NAMED_QUERIES_PROPERTIES,
-        JDBC_QUERY_ANNOTATION_PARAMETER_NAMES);
+        JDBC_QUERY_ANNOTATION_PARAMETER_NAMES,
+        "Jdbc",
+        JDBC_REPOSITORY_FACTORY_BEAN_TYPE);
   }
 }
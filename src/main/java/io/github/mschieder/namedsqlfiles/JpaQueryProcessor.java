@@ -40,12 +40,16 @@ public class JpaQueryProcessor extends QueryProcessor {
       List.of("name", "countName");
   private static final String DEFAULT_JPA_NAMED_QUERIES_PROPERTIES =
       "META-INF/jpa-named-queries.properties";
+  private static final String JPA_REPOSITORY_FACTORY_BEAN_TYPE =
+      "org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean";
 
   /** Required no-argument constructor. */
   public JpaQueryProcessor() {
     super(
         JPA_QUERY_ANNOTATION_TYPE,
         DEFAULT_JPA_NAMED_QUERIES_PROPERTIES,
-        JPA_QUERY_ANNOTATION_PARAMETER_NAMES);
+        JPA_QUERY_ANNOTATION_PARAMETER_NAMES,
+        "Jpa",
+        JPA_REPOSITORY_FACTORY_BEAN_TYPE);
   }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The named parameters of a query, in the order of their markers, parsed with the grammar of
+ * Spring's {@code NamedParameterUtils}: {@code :name}, {@code &name} and {@code :{name}} markers,
+ * whose names end at whitespace or one of {@code "':&,;()|=+-*%/\<>^}, so that {@code :person.name}
+ * and {@code :names[0]} are single parameters. Markers in comments and quotes, PostgreSQL casts
+ * {@code ::type} and escaped colons {@code \:} are ignored, like Spring Data's SpEL expressions
+ * {@code :#{...}}, which are replaced before the query is parsed.
+ *
+ * @param names the parameter names by marker index
+ * @param jdbcSql the query with each marker replaced by {@code ?}
+ * @author Michael Schieder
+ */
+record NamedParameters(List<String> names, String jdbcSql) {
+  private static final String SEPARATORS = "\"':&,;()|=+-*%/\\<>^";
+
+  NamedParameters {
+    names = List.copyOf(names);
+  }
+
+  /**
+   * Parses the named parameters of a query.
+   *
+   * @param sql the query
+   * @return the parameters
+   * @throws IllegalArgumentException if a {@code :{name}} marker is invalid
+   */
+  static NamedParameters parse(String sql) {
+    List<String> names = new ArrayList<>();
+    var jdbcSql = new StringBuilder(sql.length());
+    int pos = 0;
+    while (pos < sql.length()) {
+      int skipped = skipCommentsAndQuotes(sql, pos);
+      if (skipped > pos) {
+        jdbcSql.append(sql, pos, skipped);
+        pos = skipped;
+        continue;
+      }
+      char c = sql.charAt(pos);
+      int end;
+      if (sql.startsWith("::", pos)) {
+        // a cast
+        end = pos + 2;
+      } else if (sql.startsWith(":#{", pos)) {
+        // a SpEL expression
+        int close = sql.indexOf('}', pos);
+        end = close < 0 ? sql.length() : close + 1;
+      } else if (sql.startsWith(":{", pos)) {
+        end = bracedNameEnd(sql, pos);
+        if (end - pos > 3) {
+          names.add(sql.substring(pos + 2, end - 1));
+          jdbcSql.append('?');
+          pos = end;
+          continue;
+        }
+      } else if (c == ':' || c == '&') {
+        end = nameEnd(sql, pos + 1);
+        if (end > pos + 1) {
+          names.add(sql.substring(pos + 1, end));
+          jdbcSql.append('?');
+          pos = end;
+          continue;
+        }
+      } else if (sql.startsWith("\\:", pos)) {
+        // an escaped colon
+        jdbcSql.append(':');
+        pos += 2;
+        continue;
+      } else {
+        end = pos + 1;
+      }
+      jdbcSql.append(sql, pos, end);
+      pos = end;
+    }
+    return new NamedParameters(names, jdbcSql.toString());
+  }
+
+  /** Returns the end of a comment or quote starting at the position, or the position. */
+  private static int skipCommentsAndQuotes(String sql, int pos) {
+    String start;
+    String stop;
+    if (sql.startsWith("'", pos) || sql.startsWith("\"", pos)) {
+      start = sql.substring(pos, pos + 1);
+      stop = start;
+    } else if (sql.startsWith("--", pos)) {
+      start = "--";
+      stop = "\n";
+    } else if (sql.startsWith("/*", pos)) {
+      start = "/*";
+      stop = "*/";
+    } else {
+      return pos;
+    }
+    int close = sql.indexOf(stop, pos + start.length());
+    return close < 0 ? sql.length() : close + stop.length();
+  }
+
+  /** Returns the end of a name: a separator, or a closing bracket outside of brackets. */
+  private static int nameEnd(String sql, int pos) {
+    boolean brackets = false;
+    int end = pos;
+    while (end < sql.length()) {
+      char c = sql.charAt(end);
+      if (Character.isWhitespace(c) || SEPARATORS.indexOf(c) >= 0) {
+        break;
+      }
+      if (c == '[') {
+        brackets = true;
+      } else if (c == ']') {
+        if (!brackets) {
+          break;
+        }
+        brackets = false;
+      }
+      end++;
+    }
+    return end;
+  }
+
+  private static int bracedNameEnd(String sql, int pos) {
+    int end = pos + 2;
+    while (end < sql.length() && sql.charAt(end) != '}') {
+      if (sql.charAt(end) == ':' || sql.charAt(end) == '{') {
+        throw new IllegalArgumentException(
+            "parameter name contains invalid character '" + sql.charAt(end) + "'");
+      }
+      end++;
+    }
+    if (end >= sql.length()) {
+      throw new IllegalArgumentException("non-terminated named parameter declaration");
+    }
+    return end + 1;
+  }
+
+  /**
+   * Returns the distinct parameter names, in the order of their first marker.
+   *
+   * @return the distinct names
+   */
+  List<String> distinctNames() {
+    return names.stream().distinct().toList();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarFile;
+
+/**
+ * Aggregates the named queries files of the classpath entries, e.g. of repository modules, with the
+ * named queries of the compiled module into a single file, that the runtime loads instead of
+ * scanning the classpath. A query name, that is defined with different queries, is a conflict;
+ * identical definitions are not.
+ *
+ * @author Michael Schieder
+ */
+class NamedQueriesAggregator {
+  /** The source name of the named queries of the compiled module. */
+  static final String MODULE_SOURCE = "this module";
+
+  private final String filename;
+  private final Properties aggregate = new Properties();
+  private final Map<String, String> sources = new HashMap<>();
+  private final List<String> conflicts = new ArrayList<>();
+
+  /**
+   * Creates an aggregator.
+   *
+   * @param filename the named queries file name, e.g. META-INF/jpa-named-queries.properties
+   */
+  NamedQueriesAggregator(String filename) {
+    this.filename = filename;
+  }
+
+  /**
+   * Adds named queries.
+   *
+   * @param source the source name used in conflicts
+   * @param namedQueries the named queries
+   * @return this
+   */
+  NamedQueriesAggregator add(String source, Map<?, ?> namedQueries) {
+    namedQueries.forEach(
+        (key, value) -> {
+          var name = key.toString();
+          var previous = aggregate.getProperty(name);
+          if (previous == null) {
+            aggregate.put(name, value.toString());
+            sources.put(name, source);
+          } else if (!previous.equals(value.toString())) {
+            conflicts.add(
+                "named query '"
+                    + name
+                    + "' of '"
+                    + source
+                    + "' conflicts with '"
+                    + sources.get(name)
+                    + "'.");
+          }
+        });
+    return this;
+  }
+
+  /**
+   * Adds the named queries file of a classpath entry, a directory or a jar file, if it contains
+   * one.
+   *
+   * @param entry the classpath entry
+   * @return this
+   * @throws IOException if the named queries file cannot be read
+   */
+  NamedQueriesAggregator addClasspathEntry(Path entry) throws IOException {
+    if (Files.isDirectory(entry)) {
+      var file = entry.resolve(filename);
+      if (Files.isRegularFile(file)) {
+        try (var inputStream = Files.newInputStream(file)) {
+          add(entry.toString(), load(inputStream));
+        }
+      }
+    } else if (Files.isRegularFile(entry)) {
+      try (var jarFile = new JarFile(entry.toFile())) {
+        var jarEntry = jarFile.getJarEntry(filename);
+        if (jarEntry != null) {
+          try (var inputStream = jarFile.getInputStream(jarEntry)) {
+            add(entry.getFileName().toString(), load(inputStream));
+          }
+        }
+      }
+    }
+    return this;
+  }
+
+  private static Properties load(InputStream inputStream) throws IOException {
+    var properties = new Properties();
+    properties.load(inputStream);
+    return properties;
+  }
+
+  Properties aggregate() {
+    return aggregate;
+  }
+
+  List<String> conflicts() {
+    return conflicts;
+  }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a Spring Data {@code NamedQueries} implementation, that holds the named queries as
+ * string constants, and a configuration, that registers it in the bean definitions of all
+ * repository factory beans of the store instead of the properties file based named queries. These
+ * are only loaded, if a repository looks up a name, that the generated class does not know.
+ *
+ * <p>With database dialects, a class per dialect is generated as well and the configuration selects
+ * the named queries of the dialect set by the property {@value #DIALECT_PROPERTY}.
+ *
+ * <p>The lookup is a string switch, partitioned by the hash code of the query name into methods of
+ * at most {@value #BUCKET_SIZE} queries, so that large catalogs do not exceed the method size
+ * limit.
+ *
+ * @author Michael Schieder
+ */
+class NamedQueriesClassGenerator {
+  static final int BUCKET_SIZE = 512;
+  static final String DIALECT_PROPERTY = "namedsqlfiles.dialect";
+  // maximum length of a string constant in the class file (modified UTF-8)
+  private static final int MAX_CONSTANT_LENGTH = 65535;
+  private static final int CHUNK_LENGTH = MAX_CONSTANT_LENGTH / 3;
+
+  private final ProcessingEnvironment processingEnv;
+  private final String processorName;
+  private final String storeName;
+  private final String repositoryFactoryBeanType;
+
+  /**
+   * Creates a generator.
+   *
+   * @param processingEnv the processing environment
+   * @param processorName the fully qualified name of the generating processor
+   * @param storeName the store name used as class name prefix, e.g. "Jpa"
+   * @param repositoryFactoryBeanType the repository factory bean type of the store
+   */
+  NamedQueriesClassGenerator(
+      ProcessingEnvironment processingEnv,
+      String processorName,
+      String storeName,
+      String repositoryFactoryBeanType) {
+    this.processingEnv = processingEnv;
+    this.processorName = processorName;
+    this.storeName = storeName;
+    this.repositoryFactoryBeanType = repositoryFactoryBeanType;
+  }
+
+  String namedQueriesClassName(String packageName) {
+    return qualifiedName(packageName, namedQueriesSimpleName(""));
+  }
+
+  /** Returns the simple class name, e.g. JpaNamedQueries or JpaPostgresqlNamedQueries. */
+  private String namedQueriesSimpleName(String dialect) {
+    var dialectName =
+        dialect.isEmpty() ? "" : Character.toUpperCase(dialect.charAt(0)) + dialect.substring(1);
+    return storeName + dialectName + "NamedQueries";
+  }
+
+  String configurationClassName(String packageName) {
+    return configurationClassName(packageName, storeName);
+  }
+
+  /**
+   * Returns the auto-configuration class name of a store, e.g. JpaNamedQueriesAutoConfiguration.
+   */
+  static String configurationClassName(String packageName, String storeName) {
+    return qualifiedName(packageName, storeName + "NamedQueriesAutoConfiguration");
+  }
+
+  private static String qualifiedName(String packageName, String simpleName) {
+    return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+  }
+
+  void generate(
+      String packageName,
+      Map<?, ?> namedQueries,
+      Map<String, ? extends Map<?, ?>> dialectNamedQueries,
+      Collection<Element> originatingElements) {
+    var elements = originatingElements.toArray(Element[]::new);
+    try {
+      writeNamedQueriesClass(packageName, "", namedQueries, elements);
+      for (var entry : dialectNamedQueries.entrySet()) {
+        writeNamedQueriesClass(packageName, entry.getKey(), entry.getValue(), elements);
+      }
+      writeSource(
+          configurationClassName(packageName),
+          elements,
+          out -> writeConfigurationClass(out, packageName, dialectNamedQueries.keySet()));
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "unable to create class '" + namedQueriesClassName(packageName) + "'.");
+    }
+  }
+
+  private interface SourceContent {
+    void write(PrintWriter out);
+  }
+
+  private void writeSource(String className, Element[] elements, SourceContent content)
+      throws IOException {
+    var file = processingEnv.getFiler().createSourceFile(className, elements);
+    try (var out = new PrintWriter(file.openWriter())) {
+      content.write(out);
+    }
+  }
+
+  private void writePackage(PrintWriter out, String packageName) {
+    if (!packageName.isEmpty()) {
+      out.println("package " + packageName + ";");
+      out.println();
+    }
+  }
+
+  private void writeNamedQueriesClass(
+      String packageName, String dialect, Map<?, ?> namedQueries, Element[] elements)
+      throws IOException {
+    Map<String, String> queries = new TreeMap<>();
+    namedQueries.forEach((key, value) -> queries.put(key.toString(), value.toString()));
+    var simpleName = namedQueriesSimpleName(dialect);
+    writeSource(
+        qualifiedName(packageName, simpleName),
+        elements,
+        out -> writeNamedQueriesClass(out, packageName, simpleName, queries));
+  }
+
+  private void writeNamedQueriesClass(
+      PrintWriter out, String packageName, String simpleName, Map<String, String> queries) {
+    writePackage(out, packageName);
+    out.println("@javax.annotation.processing.Generated(\"" + processorName + "\")");
+    out.println(
+        "public final class "
+            + simpleName
+            + " implements org.springframework.data.repository.core.NamedQueries {");
+    out.println("  public static final " + simpleName + " INSTANCE = new " + simpleName + "();");
+    out.println();
+    var largeQueries = writeLargeQueryConstants(out, queries);
+    out.println("  private " + simpleName + "() {}");
+    out.println();
+    out.println("  @Override");
+    out.println("  public boolean hasQuery(String queryName) {");
+    out.println("    return lookup(queryName) != null;");
+    out.println("  }");
+    out.println();
+    out.println("  @Override");
+    out.println("  public String getQuery(String queryName) {");
+    out.println("    String query = lookup(queryName);");
+    out.println("    if (query == null) {");
+    out.println(
+        "      throw new IllegalArgumentException(String.format(\"No query named %s found\","
+            + " queryName));");
+    out.println("    }");
+    out.println("    return query;");
+    out.println("  }");
+    out.println();
+    out.println("  private static String lookup(String queryName) {");
+    var buckets = partition(queries);
+    if (buckets.size() == 1) {
+      out.println("    return lookup0(queryName);");
+    } else {
+      out.println("    switch (Math.floorMod(queryName.hashCode(), " + buckets.size() + ")) {");
+      for (int i = 0; i < buckets.size(); i++) {
+        out.println("      case " + i + ": return lookup" + i + "(queryName);");
+      }
+      out.println("      default: return null;");
+      out.println("    }");
+    }
+    out.println("  }");
+    for (int i = 0; i < buckets.size(); i++) {
+      out.println();
+      out.println("  private static String lookup" + i + "(String queryName) {");
+      out.println("    switch (queryName) {");
+      for (var entry : buckets.get(i).entrySet()) {
+        var constant = largeQueries.get(entry.getKey());
+        out.println(
+            "      case "
+                + literal(entry.getKey())
+                + ": return "
+                + (constant != null ? constant : literal(entry.getValue()))
+                + ";");
+      }
+      out.println("      default: return null;");
+      out.println("    }");
+      out.println("  }");
+    }
+    out.println("}");
+  }
+
+  private static List<Map<String, String>> partition(Map<String, String> queries) {
+    int bucketCount = Math.max(1, (queries.size() + BUCKET_SIZE - 1) / BUCKET_SIZE);
+    List<Map<String, String>> buckets = new ArrayList<>();
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(new TreeMap<>());
+    }
+    queries.forEach(
+        (name, query) -> buckets.get(Math.floorMod(name.hashCode(), bucketCount)).put(name, query));
+    return buckets;
+  }
+
+  /** Queries exceeding the class file constant limit are joined from chunks at class init. */
+  private static Map<String, String> writeLargeQueryConstants(
+      PrintWriter out, Map<String, String> queries) {
+    Map<String, String> constants = new TreeMap<>();
+    for (var entry : queries.entrySet()) {
+      var query = entry.getValue();
+      if (query.getBytes(StandardCharsets.UTF_8).length > CHUNK_LENGTH) {
+        var constant = "LARGE_QUERY_" + constants.size();
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < query.length()) {
+          int end = Math.min(query.length(), start + CHUNK_LENGTH);
+          // do not split surrogate pairs
+          if (end < query.length() && Character.isHighSurrogate(query.charAt(end - 1))) {
+            end--;
+          }
+          chunks.add(literal(query.substring(start, end)));
+          start = end;
+        }
+        out.println(
+            "  private static final String "
+                + constant
+                + " = String.join(\"\", "
+                + String.join(", ", chunks)
+                + ");");
+        out.println();
+        constants.put(entry.getKey(), constant);
+      }
+    }
+    return constants;
+  }
+
+  private void writeConfigurationClass(
+      PrintWriter out, String packageName, Collection<String> dialects) {
+    writePackage(out, packageName);
+    out.println("@javax.annotation.processing.Generated(\"" + processorName + "\")");
+    out.println("@org.springframework.context.annotation.Configuration(proxyBeanMethods = false)");
+    out.println("public class " + storeName + "NamedQueriesAutoConfiguration {");
+    out.println();
+    writePostProcessor(out);
+    out.println();
+    out.println(
+        "  private static boolean isRepositoryFactoryBean(String className, ClassLoader"
+            + " classLoader) {");
+    out.println(
+        "    return className != null"
+            + " && org.springframework.util.ClassUtils.isPresent(className, classLoader)");
+    out.println(
+        "        && "
+            + repositoryFactoryBeanType
+            + ".class.isAssignableFrom(org.springframework.util.ClassUtils.resolveClassName("
+            + "className, classLoader));");
+    out.println("  }");
+    out.println();
+    writeFallbackNamedQueriesClass(out, dialects);
+    if (!dialects.isEmpty()) {
+      writeDialectSelection(out, dialects);
+    }
+    out.println("}");
+  }
+
+  /**
+   * Writes a post processor, that replaces the reference to the properties file based named queries
+   * of the repository factory bean definitions, so that the properties files are not loaded before
+   * the repositories are created. The named queries bean of the definitions is made lazy, it is
+   * only created for names, that the generated class does not know.
+   */
+  private void writePostProcessor(PrintWriter out) {
+    var beanMethodName =
+        Character.toLowerCase(storeName.charAt(0))
+            + storeName.substring(1)
+            + "NamedQueriesPostProcessor";
+    out.println("  @org.springframework.context.annotation.Bean");
+    out.println(
+        "  static org.springframework.beans.factory.config.BeanFactoryPostProcessor "
+            + beanMethodName
+            + "() {");
+    out.println("    return beanFactory -> {");
+    out.println("      for (String beanName : beanFactory.getBeanDefinitionNames()) {");
+    out.println(
+        "        org.springframework.beans.factory.config.BeanDefinition definition ="
+            + " beanFactory.getBeanDefinition(beanName);");
+    out.println(
+        "        Object namedQueries = definition.getPropertyValues().get(\"namedQueries\");");
+    out.println(
+        "        if (namedQueries instanceof"
+            + " org.springframework.beans.factory.config.RuntimeBeanReference");
+    out.println(
+        "            && isRepositoryFactoryBean(definition.getBeanClassName(),"
+            + " beanFactory.getBeanClassLoader())) {");
+    out.println(
+        "          String propertiesBeanName ="
+            + " ((org.springframework.beans.factory.config.RuntimeBeanReference)"
+            + " namedQueries).getBeanName();");
+    out.println("          if (beanFactory.containsBeanDefinition(propertiesBeanName)) {");
+    out.println("            beanFactory.getBeanDefinition(propertiesBeanName).setLazyInit(true);");
+    out.println("          }");
+    out.println("          definition.getPropertyValues().add(\"namedQueries\",");
+    out.println(
+        "              org.springframework.beans.factory.support.BeanDefinitionBuilder"
+            + ".genericBeanDefinition(FallbackNamedQueries.class)");
+    out.println(
+        "                  .addConstructorArgValue(propertiesBeanName).getBeanDefinition());");
+    out.println("        }");
+    out.println("      }");
+    out.println("    };");
+    out.println("  }");
+  }
+
+  private void writeFallbackNamedQueriesClass(PrintWriter out, Collection<String> dialects) {
+    out.println(
+        "  public static final class FallbackNamedQueries implements"
+            + " org.springframework.data.repository.core.NamedQueries,");
+    out.println(
+        "      org.springframework.beans.factory.BeanFactoryAware"
+            + (dialects.isEmpty() ? " {" : ", org.springframework.context.EnvironmentAware {"));
+    out.println("    private final String propertiesBeanName;");
+    out.println(
+        "    private org.springframework.data.repository.core.NamedQueries namedQueries = "
+            + namedQueriesSimpleName("")
+            + ".INSTANCE;");
+    out.println("    private org.springframework.beans.factory.BeanFactory beanFactory;");
+    out.println(
+        "    private volatile org.springframework.data.repository.core.NamedQueries"
+            + " propertiesNamedQueries;");
+    out.println();
+    out.println("    public FallbackNamedQueries(String propertiesBeanName) {");
+    out.println("      this.propertiesBeanName = propertiesBeanName;");
+    out.println("    }");
+    out.println();
+    out.println("    @Override");
+    out.println(
+        "    public void setBeanFactory(org.springframework.beans.factory.BeanFactory"
+            + " beanFactory) {");
+    out.println("      this.beanFactory = beanFactory;");
+    out.println("    }");
+    if (!dialects.isEmpty()) {
+      out.println();
+      out.println("    @Override");
+      out.println(
+          "    public void setEnvironment(org.springframework.core.env.Environment environment)"
+              + " {");
+      out.println(
+          "      this.namedQueries = namedQueries(environment.getProperty("
+              + literal(DIALECT_PROPERTY)
+              + ", \"\"));");
+      out.println("    }");
+    }
+    out.println();
+    out.println("    @Override");
+    out.println("    public boolean hasQuery(String queryName) {");
+    out.println(
+        "      return namedQueries.hasQuery(queryName) ||"
+            + " propertiesNamedQueries().hasQuery(queryName);");
+    out.println("    }");
+    out.println();
+    out.println("    @Override");
+    out.println("    public String getQuery(String queryName) {");
+    out.println("      return namedQueries.hasQuery(queryName)");
+    out.println("          ? namedQueries.getQuery(queryName)");
+    out.println("          : propertiesNamedQueries().getQuery(queryName);");
+    out.println("    }");
+    out.println();
+    out.println(
+        "    private org.springframework.data.repository.core.NamedQueries"
+            + " propertiesNamedQueries() {");
+    out.println(
+        "      org.springframework.data.repository.core.NamedQueries result ="
+            + " propertiesNamedQueries;");
+    out.println("      if (result == null) {");
+    out.println(
+        "        result = beanFactory.getBean(propertiesBeanName,"
+            + " org.springframework.data.repository.core.NamedQueries.class);");
+    out.println("        propertiesNamedQueries = result;");
+    out.println("      }");
+    out.println("      return result;");
+    out.println("    }");
+    out.println("  }");
+  }
+
+  private void writeDialectSelection(PrintWriter out, Collection<String> dialects) {
+    out.println();
+    out.println(
+        "  static org.springframework.data.repository.core.NamedQueries namedQueries("
+            + "String dialect) {");
+    out.println("    switch (dialect) {");
+    out.println("      case \"\": return " + namedQueriesSimpleName("") + ".INSTANCE;");
+    for (var dialect : dialects) {
+      out.println(
+          "      case "
+              + literal(dialect)
+              + ": return "
+              + namedQueriesSimpleName(dialect)
+              + ".INSTANCE;");
+    }
+    out.println(
+        "      default: throw new IllegalStateException(\"unknown dialect '\" + dialect + \"' of"
+            + " property "
+            + DIALECT_PROPERTY
+            + "\");");
+    out.println("    }");
+    out.println("  }");
+  }
+
+  static String literal(String value) {
+    var builder = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> builder.append("\\\"");
+        case '\\' -> builder.append("\\\\");
+        case '\n' -> builder.append("\\n");
+        case '\r' -> builder.append("\\r");
+        case '\t' -> builder.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            builder.append(String.format("\\%03o", (int) c));
+          } else if (c > 0x7e) {
+            builder.append(String.format("\\u%04x", (int) c));
+          } else {
+            builder.append(c);
+          }
+        }
+      }
+    }
+    return builder.append('"').toString();
+  }
+}
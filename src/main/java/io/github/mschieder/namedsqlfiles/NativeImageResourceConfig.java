@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the GraalVM native image {@code resource-config.json}, that includes the generated
+ * resources of a query processor in native images.
+ *
+ * @author Michael Schieder
+ */
+class NativeImageResourceConfig {
+
+  private NativeImageResourceConfig() {}
+
+  /**
+   * Returns the location of the configuration of a store, e.g.
+   * META-INF/native-image/named-sqlfiles/jpa/resource-config.json.
+   *
+   * @param storeName the store name, e.g. "Jpa"
+   * @return the location
+   */
+  static String filename(String storeName) {
+    return "META-INF/native-image/named-sqlfiles/"
+        + storeName.toLowerCase(Locale.ROOT)
+        + "/resource-config.json";
+  }
+
+  /**
+   * Returns the configuration, that includes the resources by their literal names.
+   *
+   * @param resourceNames the names of the generated resources
+   * @return the JSON configuration
+   */
+  static String json(Collection<String> resourceNames) {
+    return resourceNames.stream()
+        .map(name -> "      {\"pattern\": \"\\\\Q" + name + "\\\\E\"}")
+        .collect(
+            Collectors.joining(
+                ",\n", "{\n  \"resources\": {\n    \"includes\": [\n", "\n    ]\n  }\n}\n"));
+  }
+}
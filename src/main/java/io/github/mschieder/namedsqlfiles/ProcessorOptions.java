@@ -0,0 +1,362 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor options, passed with {@code -A<name>=<value>}.
+ *
+ * @author Michael Schieder
+ */
+class ProcessorOptions {
+  static final String PREFIX = "namedsqlfiles.";
+
+  /**
+   * Timestamp written to the generated files, either ISO-8601 or seconds since the epoch (like
+   * Maven's {@code project.build.outputTimestamp}). Defaults to the environment variable {@code
+   * SOURCE_DATE_EPOCH}. Without a timestamp, no timestamp is written at all.
+   */
+  static final String OUTPUT_TIMESTAMP = PREFIX + "outputTimestamp";
+
+  /**
+   * Number of threads, that locate and read the SQL resources of a round. Defaults to 1: the
+   * resources are read sequentially on the processing thread.
+   */
+  static final String PARALLELISM = PREFIX + "parallelism";
+
+  /**
+   * Package of the generated {@code NamedQueries} class and its auto-configuration. If set, a class
+   * holding all named queries is generated, that replaces the properties file based named queries
+   * at runtime.
+   */
+  static final String NAMED_QUERIES_PACKAGE = PREFIX + "namedQueriesPackage";
+
+  /**
+   * Comma separated SQL normalization steps {@code comments}, {@code whitespace}, {@code
+   * lineEndings} or {@code all}. Defaults to none: the SQL is copied verbatim.
+   */
+  static final String NORMALIZE = PREFIX + "normalize";
+
+  /**
+   * Whether the count queries of {@code Page} returning JPA query methods with a SQL file {@code
+   * name}, but without a {@code countName}, are derived and written as {@code <name>.count}.
+   * Defaults to false.
+   */
+  static final String DERIVE_COUNT_QUERIES = PREFIX + "deriveCountQueries";
+
+  /**
+   * Comma separated database dialects, e.g. {@code postgresql,oracle}. For each dialect, the
+   * variant {@code <name>.<dialect>.sql} of a referenced SQL file {@code <name>.sql} is used, if it
+   * exists, and a named queries file per dialect is written. Defaults to none.
+   */
+  static final String DIALECTS = PREFIX + "dialects";
+
+  /**
+   * Whether each named query from a SQL file is prefixed with a source tag comment {@code /*
+   * nsf:<resource name>#<hash> *}{@code /}, that attributes the statement to its SQL file and
+   * version in database side statement statistics. Defaults to false.
+   */
+  static final String SOURCE_TAGS = PREFIX + "sourceTags";
+
+  /**
+   * Whether the named parameters {@code :name} of the queries are parsed like Spring's {@code
+   * NamedParameterUtils} parses them and checked against the parameter names of the query methods.
+   * Defaults to false.
+   */
+  static final String PARSE_PARAMETERS = PREFIX + "parseParameters";
+
+  /**
+   * Whether the processor reports the time of its phases, the largest and the most referenced
+   * resources as a note and as a JSON file next to the generated properties file. Defaults to
+   * false.
+   */
+  static final String STATS = PREFIX + "stats";
+
+  /**
+   * Comma separated directories, e.g. {@code src/main/resources}, that are indexed once and
+   * searched for the referenced resources before the class output. Relative directories are
+   * resolved against the project directory: the nearest ancestor of the class output directory with
+   * a Maven, Gradle or Ant build file. Defaults to none.
+   */
+  static final String SQL_ROOTS = PREFIX + "sqlRoots";
+
+  /**
+   * Whether the named queries files are written as memory-mappable binary store {@code <name>.bin}
+   * as well, that the runtime reads lazily. Defaults to false.
+   */
+  static final String BINARY_STORE = PREFIX + "binaryStore";
+
+  /**
+   * The compile classpath, separated by the platform path separator. If set, the named queries
+   * files of its directories and jar files are aggregated with the named queries of the compiled
+   * module into {@code <name>-aggregate.properties}, conflicting definitions are errors. Defaults
+   * to no aggregation.
+   */
+  static final String AGGREGATE_CLASSPATH = PREFIX + "aggregateClasspath";
+
+  /**
+   * Whether a GraalVM native image {@code resource-config.json} is written, that includes the
+   * generated resources. Defaults to false.
+   */
+  static final String NATIVE_IMAGE = PREFIX + "nativeImage";
+
+  static final String SOURCE_DATE_EPOCH = "SOURCE_DATE_EPOCH";
+
+  private static final List<String> BUILD_FILES =
+      List.of("pom.xml", "build.gradle", "build.gradle.kts", "build.xml");
+
+  private final Map<String, String> options;
+  private final String sourceDateEpoch;
+
+  ProcessorOptions(Map<String, String> options, String sourceDateEpoch) {
+    this.options = options;
+    this.sourceDateEpoch = sourceDateEpoch;
+  }
+
+  static Set<String> supportedOptions() {
+    return Set.of(
+        OUTPUT_TIMESTAMP,
+        PARALLELISM,
+        NAMED_QUERIES_PACKAGE,
+        NORMALIZE,
+        DERIVE_COUNT_QUERIES,
+        DIALECTS,
+        SOURCE_TAGS,
+        PARSE_PARAMETERS,
+        STATS,
+        SQL_ROOTS,
+        BINARY_STORE,
+        AGGREGATE_CLASSPATH,
+        NATIVE_IMAGE);
+  }
+
+  Set<SqlNormalizer.Step> normalize() {
+    var value = options.getOrDefault(NORMALIZE, "").trim();
+    if (value.isEmpty() || value.equalsIgnoreCase("none")) {
+      return Set.of();
+    }
+    if (value.equalsIgnoreCase("all")) {
+      return EnumSet.allOf(SqlNormalizer.Step.class);
+    }
+    try {
+      return Arrays.stream(value.split(","))
+          .map(SqlNormalizer.Step::of)
+          .collect(Collectors.toCollection(() -> EnumSet.noneOf(SqlNormalizer.Step.class)));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + NORMALIZE + "'.", e);
+    }
+  }
+
+  Optional<String> namedQueriesPackage() {
+    return Optional.ofNullable(options.get(NAMED_QUERIES_PACKAGE)).map(String::trim);
+  }
+
+  List<String> dialects() {
+    var value = options.getOrDefault(DIALECTS, "").trim();
+    if (value.isEmpty()) {
+      return List.of();
+    }
+    var dialects =
+        Arrays.stream(value.split(","))
+            .map(dialect -> dialect.trim().toLowerCase(Locale.ROOT))
+            .distinct()
+            .toList();
+    if (!dialects.stream().allMatch(dialect -> dialect.matches("[a-z][a-z0-9_]*"))) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + DIALECTS + "'.");
+    }
+    return dialects;
+  }
+
+  boolean deriveCountQueries() {
+    return booleanOption(DERIVE_COUNT_QUERIES);
+  }
+
+  boolean sourceTags() {
+    return booleanOption(SOURCE_TAGS);
+  }
+
+  boolean parseParameters() {
+    return booleanOption(PARSE_PARAMETERS);
+  }
+
+  boolean stats() {
+    return booleanOption(STATS);
+  }
+
+  boolean nativeImage() {
+    return booleanOption(NATIVE_IMAGE);
+  }
+
+  /**
+   * Returns the project directory of a class output directory.
+   *
+   * @param classOutput the class output directory
+   * @return the nearest ancestor with a build file, or empty
+   */
+  static Optional<Path> projectDirectory(Path classOutput) {
+    for (var directory = classOutput.getParent();
+        directory != null;
+        directory = directory.getParent()) {
+      var candidate = directory;
+      if (BUILD_FILES.stream().anyMatch(file -> Files.isRegularFile(candidate.resolve(file)))) {
+        return Optional.of(directory);
+      }
+    }
+    return Optional.empty();
+  }
+
+  boolean binaryStore() {
+    return booleanOption(BINARY_STORE);
+  }
+
+  Optional<List<Path>> aggregateClasspath() {
+    var value = options.get(AGGREGATE_CLASSPATH);
+    if (value == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          Arrays.stream(value.split(File.pathSeparator))
+              .map(String::trim)
+              .filter(entry -> !entry.isEmpty())
+              .map(entry -> Path.of(entry).toAbsolutePath().normalize())
+              .distinct()
+              .toList());
+    } catch (InvalidPathException e) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + AGGREGATE_CLASSPATH + "'.", e);
+    }
+  }
+
+  /**
+   * Returns the SQL roots, relative roots are resolved against the project directory, not against
+   * the working directory of the compiler, which may be a build daemon's.
+   *
+   * @param classOutput the class output directory, if it is in the file system
+   * @return the absolute roots
+   */
+  List<Path> sqlRoots(Supplier<Optional<Path>> classOutput) {
+    var value = options.getOrDefault(SQL_ROOTS, "").trim();
+    if (value.isEmpty()) {
+      return List.of();
+    }
+    try {
+      var paths = Arrays.stream(value.split(",")).map(String::trim).map(Path::of).toList();
+      var projectDirectory =
+          paths.stream().allMatch(Path::isAbsolute)
+              ? Optional.<Path>empty()
+              : classOutput.get().flatMap(ProcessorOptions::projectDirectory);
+      var roots =
+          paths.stream()
+              .map(
+                  root ->
+                      root.isAbsolute()
+                          ? root
+                          : projectDirectory
+                              .map(directory -> directory.resolve(root))
+                              .orElseThrow(
+                                  () ->
+                                      new IllegalArgumentException(
+                                          "relative root '"
+                                              + root
+                                              + "' of option '"
+                                              + SQL_ROOTS
+                                              + "' cannot be resolved without a project directory,"
+                                              + " use an absolute path.")))
+              .map(Path::normalize)
+              .distinct()
+              .toList();
+      if (!roots.stream().allMatch(Files::isDirectory)) {
+        throw new IllegalArgumentException(
+            "invalid value '" + value + "' of option '" + SQL_ROOTS + "'.");
+      }
+      return roots;
+    } catch (InvalidPathException e) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + SQL_ROOTS + "'.", e);
+    }
+  }
+
+  private boolean booleanOption(String name) {
+    var value = options.getOrDefault(name, "").trim();
+    if (value.isEmpty() || value.equalsIgnoreCase("false")) {
+      return false;
+    }
+    if (value.equalsIgnoreCase("true")) {
+      return true;
+    }
+    throw new IllegalArgumentException("invalid value '" + value + "' of option '" + name + "'.");
+  }
+
+  int parallelism() {
+    return intOption(PARALLELISM, 1);
+  }
+
+  private int intOption(String name, int defaultValue) {
+    var value = options.get(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + name + "'.", e);
+    }
+  }
+
+  Optional<Instant> outputTimestamp() {
+    return Optional.ofNullable(options.get(OUTPUT_TIMESTAMP))
+        .or(() -> Optional.ofNullable(sourceDateEpoch))
+        .flatMap(ProcessorOptions::parseTimestamp);
+  }
+
+  private static Optional<Instant> parseTimestamp(String value) {
+    var timestamp = value.trim();
+    // Maven disables the output timestamp with a single character value
+    if (timestamp.length() < 2) {
+      return Optional.empty();
+    }
+    try {
+      if (timestamp.chars().allMatch(Character::isDigit)) {
+        return Optional.of(Instant.ofEpochSecond(Long.parseLong(timestamp)));
+      }
+      return Optional.of(OffsetDateTime.parse(timestamp).toInstant());
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new IllegalArgumentException(
+          "invalid value '" + value + "' of option '" + OUTPUT_TIMESTAMP + "'.", e);
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Build performance statistics of a query processor: the time and count of each processing phase,
+ * the largest and the most referenced resources. Phases may be timed in parallel.
+ *
+ * @author Michael Schieder
+ */
+class ProcessorStats {
+  /** Statistics, that record nothing. */
+  static final ProcessorStats DISABLED = new ProcessorStats(false);
+
+  private static final int TOP_RESOURCES = 5;
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  /** Processing phases. */
+  enum Phase {
+    /** Finding the annotated elements and parsing their query annotations. */
+    SCAN,
+    /** Locating the resources with the filer. */
+    LOOKUP,
+    /** Reading the located resources. */
+    READ,
+    /** Expanding includes, normalizing and tagging the resources. */
+    TRANSFORM,
+    /** Merging the generated with the existing properties files. */
+    MERGE,
+    /** Writing the generated files. */
+    WRITE;
+
+    String label() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /** A running phase, closing it records its time. */
+  interface Timer extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final Timer NOOP = () -> {};
+
+  private final boolean enabled;
+  private final Map<Phase, LongAdder> nanos = new EnumMap<>(Phase.class);
+  private final Map<Phase, LongAdder> counts = new EnumMap<>(Phase.class);
+  private final Map<String, Integer> resourceSizes = new ConcurrentHashMap<>();
+  private final Map<String, Integer> references = new ConcurrentHashMap<>();
+  private final LongAdder rounds = new LongAdder();
+
+  ProcessorStats(boolean enabled) {
+    this.enabled = enabled;
+    for (var phase : Phase.values()) {
+      nanos.put(phase, new LongAdder());
+      counts.put(phase, new LongAdder());
+    }
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts timing a phase.
+   *
+   * @param phase the phase
+   * @return the timer, that records the phase when it is closed
+   */
+  Timer start(Phase phase) {
+    if (!enabled) {
+      return NOOP;
+    }
+    long start = System.nanoTime();
+    return () -> {
+      nanos.get(phase).add(System.nanoTime() - start);
+      counts.get(phase).increment();
+    };
+  }
+
+  void recordRound() {
+    rounds.increment();
+  }
+
+  void recordResource(String resourceName, int size) {
+    if (enabled) {
+      resourceSizes.put(resourceName, size);
+    }
+  }
+
+  void recordReference(String resourceName) {
+    if (enabled) {
+      references.merge(resourceName, 1, Integer::sum);
+    }
+  }
+
+  private static List<Map.Entry<String, Integer>> top(Map<String, Integer> values) {
+    return values.entrySet().stream()
+        .sorted(
+            Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()))
+        .limit(TOP_RESOURCES)
+        .toList();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.1f", nanos / NANOS_PER_MILLI);
+  }
+
+  private long totalNanos() {
+    return nanos.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  /**
+   * Returns a one line summary.
+   *
+   * @param processorName the name of the processor
+   * @param queries the number of generated named queries
+   * @return the summary
+   */
+  String summary(String processorName, int queries) {
+    var summary = new StringBuilder();
+    summary
+        .append(processorName)
+        .append(": ")
+        .append(queries)
+        .append(" queries in ")
+        .append(rounds.sum())
+        .append(" rounds, ")
+        .append(millis(totalNanos()))
+        .append(" ms (");
+    summary.append(
+        nanos.keySet().stream()
+            .map(
+                phase ->
+                    phase.label()
+                        + " "
+                        + millis(nanos.get(phase).sum())
+                        + " ms/"
+                        + counts.get(phase).sum())
+            .collect(Collectors.joining(", ")));
+    summary.append(")");
+    var largest = top(resourceSizes);
+    if (!largest.isEmpty()) {
+      summary
+          .append(", largest: ")
+          .append(largest.get(0).getKey())
+          .append(" (")
+          .append(largest.get(0).getValue())
+          .append(" chars)");
+    }
+    var mostReferenced = top(references);
+    if (!mostReferenced.isEmpty()) {
+      summary
+          .append(", most referenced: ")
+          .append(mostReferenced.get(0).getKey())
+          .append(" (")
+          .append(mostReferenced.get(0).getValue())
+          .append("x)");
+    }
+    return summary.toString();
+  }
+
+  /**
+   * Returns the JSON report.
+   *
+   * @param processorName the name of the processor
+   * @param queries the number of generated named queries
+   * @return the report
+   */
+  String toJson(String processorName, int queries) {
+    var json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"processor\": ").append(quote(processorName)).append(",\n");
+    json.append("  \"rounds\": ").append(rounds.sum()).append(",\n");
+    json.append("  \"queries\": ").append(queries).append(",\n");
+    json.append("  \"totalMillis\": ").append(millis(totalNanos())).append(",\n");
+    json.append("  \"phases\": {\n");
+    json.append(
+        nanos.keySet().stream()
+            .map(
+                phase ->
+                    "    "
+                        + quote(phase.label())
+                        + ": {\"count\": "
+                        + counts.get(phase).sum()
+                        + ", \"millis\": "
+                        + millis(nanos.get(phase).sum())
+                        + "}")
+            .collect(Collectors.joining(",\n", "", "\n")));
+    json.append("  },\n");
+    json.append("  \"largestResources\": ")
+        .append(toJson(top(resourceSizes), "chars"))
+        .append(",\n");
+    json.append("  \"mostReferencedResources\": ")
+        .append(toJson(top(references), "references"))
+        .append("\n");
+    json.append("}\n");
+    return json.toString();
+  }
+
+  private static String toJson(List<Map.Entry<String, Integer>> resources, String valueName) {
+    if (resources.isEmpty()) {
+      return "[]";
+    }
+    return resources.stream()
+        .map(
+            entry ->
+                "    {\"name\": "
+                    + quote(entry.getKey())
+                    + ", "
+                    + quote(valueName)
+                    + ": "
+                    + entry.getValue()
+                    + "}")
+        .collect(Collectors.joining(",\n", "[\n", "\n  ]"));
+  }
+
+  private static String quote(String value) {
+    var quoted = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"' -> quoted.append("\\\"");
+        case '\\' -> quoted.append("\\\\");
+        case '\n' -> quoted.append("\\n");
+        case '\r' -> quoted.append("\\r");
+        case '\t' -> quoted.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+          } else {
+            quoted.append(c);
+          }
+        }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
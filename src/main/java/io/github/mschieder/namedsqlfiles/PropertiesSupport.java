@@ -16,77 +16,377 @@
 
 package io.github.mschieder.namedsqlfiles;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
 import javax.tools.Diagnostic;
 import javax.tools.StandardLocation;
 
 /**
  * Merges and stores properties files.
  *
+ * <p>A manifest of all generated entries (resource name to content hash and the {@link QueryOwners
+ * referencing types}) is stored next to the properties file. It is used to prune entries of
+ * resources, that are not referenced anymore by the compiled or removed types, and to skip
+ * rewriting the properties file, if its content did not change.
+ *
+ * <p>If SQL resources include fragments, the fragment dependency graph (fragment name to the comma
+ * separated names of the named queries including it, directly, indirectly or by a dialect variant)
+ * is stored next to the properties file as well, so that a fragment change invalidates only the
+ * named queries, that use it. Like the properties, it is merged with the graph of the previous
+ * build, without the entries of pruned named queries.
+ *
+ * <p>The transformation options of the SQL files ({@code normalize} and {@code sourceTags}) are
+ * stored next to the properties file too, unless they are the defaults, so that the development
+ * mode transforms reloaded SQL files like the build did.
+ *
  * @author Michael Schieder
  */
 class PropertiesSupport {
+  private static final String MANIFEST_SUFFIX = ".manifest";
+  private static final String INCLUDES_SUFFIX = ".includes";
+  private static final String OPTIONS_SUFFIX = ".options";
+  private static final String BINARY_STORE_SUFFIX = ".bin";
+  private static final String AGGREGATE_SUFFIX = "-aggregate.properties";
+
   private final ResourceLocator resourceLocator;
   private final String propertiesFilename;
+  private final String manifestFilename;
+  private final String includesFilename;
+  private final String optionsFilename;
+  private final String binaryStoreFilename;
+  private final String aggregateFilename;
   private final ProcessingEnvironment processingEnv;
+  private final PropertiesWriter propertiesWriter;
+  private final ProcessorStats stats;
+  private boolean binaryStore;
+  private QueryOwners owners = QueryOwners.NONE;
 
   PropertiesSupport(
       ResourceLocator resourceLocator,
       String propertiesFilename,
-      ProcessingEnvironment processingEnv) {
+      ProcessingEnvironment processingEnv,
+      Optional<Instant> outputTimestamp,
+      ProcessorStats stats) {
     this.resourceLocator = resourceLocator;
     this.propertiesFilename = propertiesFilename;
+    var basename = propertiesFilename.replaceFirst("\\.properties$", "");
+    this.manifestFilename = basename + MANIFEST_SUFFIX;
+    this.includesFilename = basename + INCLUDES_SUFFIX;
+    this.optionsFilename = basename + OPTIONS_SUFFIX;
+    this.binaryStoreFilename = basename + BINARY_STORE_SUFFIX;
+    this.aggregateFilename = basename + AGGREGATE_SUFFIX;
     this.processingEnv = processingEnv;
+    this.propertiesWriter =
+        new PropertiesWriter("generated by " + this.getClass().getSimpleName(), outputTimestamp);
+    this.stats = stats;
   }
 
-  void storePropertiesFile(Properties properties) {
-    if (!properties.isEmpty()) {
-      // merge existing properties
-      var merged = mergeProperties(properties);
+  /**
+   * Stores the merged properties as {@link BinaryStoreWriter binary store} next to the properties
+   * file as well.
+   *
+   * @return this
+   */
+  PropertiesSupport withBinaryStore() {
+    this.binaryStore = true;
+    return this;
+  }
 
-      try (OutputStream outputStream = createPropertiesFile()) {
-        merged.store(outputStream, "generated by " + this.getClass().getSimpleName());
-      } catch (IOException e) {
-        processingEnv
-            .getMessager()
-            .printMessage(
-                Diagnostic.Kind.ERROR,
-                "unable to create file '" + propertiesFilename + "' not found.");
-      }
+  /**
+   * Records the types referencing the entries in the manifest, so that only entries of compiled or
+   * removed types are pruned.
+   *
+   * @param owners the owners
+   * @return this
+   */
+  PropertiesSupport withOwners(QueryOwners owners) {
+    this.owners = owners;
+    return this;
+  }
+
+  /**
+   * Merges the properties into an existing properties file without storing it.
+   *
+   * @param properties the generated properties
+   * @return the merged properties, as they would be stored in the properties file
+   */
+  Properties mergeProperties(Properties properties) {
+    try (var timer = stats.start(ProcessorStats.Phase.MERGE)) {
+      return mergeProperties(
+          findExistingProperties(propertiesFilename),
+          findExistingProperties(manifestFilename),
+          properties);
     }
   }
 
-  private Properties mergeProperties(Properties properties) {
-    Properties merged = findExistingProperties().orElse(new Properties());
+  private Properties mergeProperties(
+      Optional<Properties> existing, Optional<Properties> previousManifest, Properties properties) {
+    Properties merged = new Properties();
+    existing.ifPresent(merged::putAll);
+    // prune entries generated by a previous build, that are not referenced anymore
+    previousManifest.ifPresent(
+        manifest ->
+            manifest.stringPropertyNames().stream()
+                .filter(name -> owners.remainingTypes(manifest.getProperty(name)).isEmpty())
+                .forEach(merged::remove));
     merged.putAll(properties);
     return merged;
   }
 
-  private Optional<Properties> findExistingProperties() {
+  /**
+   * Merges the properties into an existing properties file and stores it, if its content changed.
+   *
+   * @param properties the generated properties
+   * @param originatingElements the elements, that caused the generation
+   */
+  void storePropertiesFile(Properties properties, Collection<Element> originatingElements) {
+    Properties merged;
+    Properties manifest;
+    try (var timer = stats.start(ProcessorStats.Phase.MERGE)) {
+      var previousManifest = findExistingProperties(manifestFilename);
+      if (properties.isEmpty() && previousManifest.map(Properties::isEmpty).orElse(true)) {
+        // nothing generated, nothing to prune
+        return;
+      }
+
+      var existing = findExistingProperties(propertiesFilename);
+      // merge existing properties
+      merged = mergeProperties(existing, previousManifest, properties);
+      manifest = createManifest(properties, previousManifest);
+
+      // compared as written, so that a changed header is written as well
+      if (isUnchanged(propertiesFilename, merged)
+          && isUnchanged(manifestFilename, manifest)
+          && (!binaryStore || resourceLocator.exists(binaryStoreFilename))) {
+        // unchanged, keep the existing files untouched
+        return;
+      }
+    }
+
+    store(merged, propertiesFilename, originatingElements);
+    store(manifest, manifestFilename, originatingElements);
+    if (binaryStore) {
+      storeBinaryStore(merged, originatingElements);
+    }
+  }
+
+  private void storeBinaryStore(Properties merged, Collection<Element> originatingElements) {
+    try (var timer = stats.start(ProcessorStats.Phase.WRITE);
+        OutputStream outputStream =
+            createPropertiesFile(binaryStoreFilename, originatingElements)) {
+      BinaryStoreWriter.write(merged, outputStream);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "unable to create file '" + binaryStoreFilename + "': " + e.getMessage());
+    }
+  }
+
+  /**
+   * Merges the fragment dependency graph into the graph of the previous build and stores it, if it
+   * changed. The previous dependents, that were expanded again or pruned, are removed.
+   *
+   * @param dependents the names of the named queries including a fragment, by fragment name
+   * @param expandedNames the names of the named queries expanded by this build
+   * @param originatingElements the elements, that caused the generation
+   */
+  void storeIncludesFile(
+      Map<String, ? extends Collection<String>> dependents,
+      Set<String> expandedNames,
+      Collection<Element> originatingElements) {
+    var previous = findExistingProperties(includesFilename);
+    if (dependents.isEmpty() && previous.isEmpty()) {
+      return;
+    }
+    SortedMap<String, SortedSet<String>> graph = new TreeMap<>();
+    previous.ifPresent(
+        includes -> {
+          var retainedNames = mergeProperties(new Properties()).stringPropertyNames();
+          for (var fragment : includes.stringPropertyNames()) {
+            Arrays.stream(includes.getProperty(fragment).split(","))
+                .filter(name -> !expandedNames.contains(name) && retainedNames.contains(name))
+                .forEach(name -> graph.computeIfAbsent(fragment, key -> new TreeSet<>()).add(name));
+          }
+        });
+    dependents.forEach(
+        (fragment, names) -> graph.computeIfAbsent(fragment, key -> new TreeSet<>()).addAll(names));
+    var includes = new Properties();
+    graph.forEach((fragment, names) -> includes.put(fragment, String.join(",", names)));
+    if (isUnchanged(includesFilename, includes)) {
+      return;
+    }
+    store(includes, includesFilename, originatingElements);
+  }
+
+  /**
+   * Stores the transformation options of the SQL files, if they changed. Default options are only
+   * stored to replace the options of a previous build.
+   *
+   * @param options the transformation options, empty for the defaults
+   * @param originatingElements the elements, that caused the generation
+   */
+  void storeOptionsFile(Properties options, Collection<Element> originatingElements) {
+    if (options.isEmpty() && findExistingProperties(optionsFilename).isEmpty()
+        || isUnchanged(optionsFilename, options)) {
+      return;
+    }
+    store(options, optionsFilename, originatingElements);
+  }
+
+  String binaryStoreFilename() {
+    return binaryStoreFilename;
+  }
+
+  String aggregateFilename() {
+    return aggregateFilename;
+  }
+
+  /**
+   * Stores the named queries aggregated from the classpath, if they changed.
+   *
+   * @param aggregate the aggregated named queries
+   * @param originatingElements the elements, that caused the generation
+   */
+  void storeAggregateFile(Properties aggregate, Collection<Element> originatingElements) {
+    if (isUnchanged(aggregateFilename, aggregate)) {
+      return;
+    }
+    store(aggregate, aggregateFilename, originatingElements);
+  }
+
+  /**
+   * Stores a generated text file, if its content changed.
+   *
+   * @param content the content
+   * @param filename the file name
+   * @param originatingElements the elements, that caused the generation
+   */
+  void storeTextFile(String content, String filename, Collection<Element> originatingElements) {
     try {
-      if (resourceLocator.exists(propertiesFilename)) {
+      if (resourceLocator.exists(filename)
+          && resourceLocator.contentAsString(filename).equals(content)) {
+        return;
+      }
+    } catch (IOException e) {
+      // rewritten
+    }
+    try (var timer = stats.start(ProcessorStats.Phase.WRITE);
+        var writer =
+            new OutputStreamWriter(
+                createPropertiesFile(filename, originatingElements), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR, "unable to create file '" + filename + "': " + e.getMessage());
+    }
+  }
+
+  private void store(
+      Properties properties, String filename, Collection<Element> originatingElements) {
+    try (var timer = stats.start(ProcessorStats.Phase.WRITE);
+        OutputStream outputStream = createPropertiesFile(filename, originatingElements)) {
+      propertiesWriter.write(properties, outputStream);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR, "unable to create file '" + filename + "' not found.");
+    }
+  }
+
+  /**
+   * Creates the manifest of the generated entries and of the entries of the previous manifest, that
+   * are still referenced by types, that were not compiled.
+   */
+  private Properties createManifest(Properties properties, Optional<Properties> previousManifest) {
+    Properties manifest = new Properties();
+    previousManifest.ifPresent(
+        previous -> {
+          for (var name : previous.stringPropertyNames()) {
+            var entry = previous.getProperty(name);
+            var remainingTypes = owners.remainingTypes(entry);
+            if (!remainingTypes.isEmpty()) {
+              manifest.put(
+                  name, QueryOwners.manifestEntry(QueryOwners.hash(entry), remainingTypes));
+            }
+          }
+        });
+    for (var name : properties.stringPropertyNames()) {
+      var types = new HashSet<>(owners.types(name));
+      if (manifest.containsKey(name)) {
+        types.addAll(owners.remainingTypes(manifest.getProperty(name)));
+      }
+      manifest.put(
+          name, QueryOwners.manifestEntry(SqlResource.hash(properties.getProperty(name)), types));
+    }
+    return manifest;
+  }
+
+  /** Whether the file exists with exactly the content, the properties would be written with. */
+  private boolean isUnchanged(String filename, Properties properties) {
+    try {
+      if (!resourceLocator.exists(filename)) {
+        return false;
+      }
+      var content = new ByteArrayOutputStream();
+      propertiesWriter.write(properties, content);
+      try (var inputStream = resourceLocator.resourceInputstream(filename)) {
+        return Arrays.equals(inputStream.readAllBytes(), content.toByteArray());
+      }
+    } catch (IOException e) {
+      // rewritten
+      return false;
+    }
+  }
+
+  private Optional<Properties> findExistingProperties(String filename) {
+    try {
+      if (resourceLocator.exists(filename)) {
         Properties properties = new Properties();
-        properties.load(resourceLocator.resourceInputstream(propertiesFilename));
+        try (var inputStream = resourceLocator.resourceInputstream(filename)) {
+          properties.load(inputStream);
+        }
         return Optional.of(properties);
       }
     } catch (IOException e) {
       processingEnv
           .getMessager()
-          .printMessage(
-              Diagnostic.Kind.ERROR, "error loading properties '" + propertiesFilename + "'.");
+          .printMessage(Diagnostic.Kind.ERROR, "error loading properties '" + filename + "'.");
     }
     return Optional.empty();
   }
 
-  private OutputStream createPropertiesFile() throws IOException {
+  private OutputStream createPropertiesFile(
+      String filename, Collection<Element> originatingElements) throws IOException {
     var file =
         processingEnv
             .getFiler()
-            .createResource(StandardLocation.CLASS_OUTPUT, "", propertiesFilename);
+            .createResource(
+                StandardLocation.CLASS_OUTPUT,
+                "",
+                filename,
+                originatingElements.toArray(Element[]::new));
     return file.openOutputStream();
   }
 }
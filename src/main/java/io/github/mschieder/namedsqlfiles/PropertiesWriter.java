@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Writes properties files byte reproducible, in contrast to {@link java.util.Properties#store}:
+ * keys are sorted, lines end with '\n' and the header contains no timestamp, unless one is given
+ * explicitly. The escaping is compatible with {@link
+ * java.util.Properties#load(java.io.InputStream)}, all characters outside of printable ASCII are
+ * written as unicode escapes.
+ *
+ * @author Michael Schieder
+ */
+class PropertiesWriter {
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private final String comment;
+  private final Optional<Instant> timestamp;
+
+  PropertiesWriter(String comment, Optional<Instant> timestamp) {
+    this.comment = comment;
+    this.timestamp = timestamp;
+  }
+
+  void write(Map<?, ?> properties, OutputStream outputStream) throws IOException {
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.ISO_8859_1);
+    writeComment(writer, comment);
+    if (timestamp.isPresent()) {
+      writeComment(writer, timestamp.get().toString());
+    }
+    for (var entry : sorted(properties).entrySet()) {
+      writer.write(escape(entry.getKey(), true));
+      writer.write('=');
+      writer.write(escape(entry.getValue(), false));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  private static Map<String, String> sorted(Map<?, ?> properties) {
+    var map = new TreeMap<String, String>();
+    properties.forEach((key, value) -> map.put(key.toString(), value.toString()));
+    return map;
+  }
+
+  private static void writeComment(Writer writer, String comment) throws IOException {
+    for (String line : comment.split("\r\n|\r|\n")) {
+      writer.write('#');
+      writer.write(line);
+      writer.write('\n');
+    }
+  }
+
+  static String escape(String value, boolean key) {
+    var builder = new StringBuilder(value.length() + 16);
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case ' ' -> builder.append(key || i == 0 ? "\\ " : " ");
+        case '\t' -> builder.append("\\t");
+        case '\n' -> builder.append("\\n");
+        case '\r' -> builder.append("\\r");
+        case '\f' -> builder.append("\\f");
+        case '\\', '=', ':', '#', '!' -> builder.append('\\').append(c);
+        default -> {
+          if (c < 0x20 || c > 0x7e) {
+            builder
+                .append("\\u")
+                .append(HEX_DIGITS[(c >> 12) & 0xF])
+                .append(HEX_DIGITS[(c >> 8) & 0xF])
+                .append(HEX_DIGITS[(c >> 4) & 0xF])
+                .append(HEX_DIGITS[c & 0xF]);
+          } else {
+            builder.append(c);
+          }
+        }
+      }
+    }
+    return builder.toString();
+  }
+}
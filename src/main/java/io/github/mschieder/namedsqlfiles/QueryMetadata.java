@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Execution metadata of a query, declared in the header of its SQL file: the line comments before
+ * the first statement token.
+ *
+ * <pre>
+ * -- @fetchSize 5000
+ * -- @timeout 3s
+ * -- @maxRows 100000
+ * -- @hint org.hibernate.readOnly=true
+ * select ...
+ * </pre>
+ *
+ * <p>The metadata is stored as properties {@code <query name>#<attribute>}, e.g. {@code
+ * sql/report.sql#fetchSize=5000}, {@code sql/report.sql#timeout=3000} (milliseconds) or {@code
+ * sql/report.sql#hint.org.hibernate.readOnly=true}.
+ *
+ * @param fetchSize the JDBC fetch size, 0 if not declared
+ * @param timeout the query timeout, null if not declared
+ * @param maxRows the maximum number of rows, 0 if not declared
+ * @param hints the query hints by name
+ * @author Michael Schieder
+ */
+record QueryMetadata(int fetchSize, Duration timeout, int maxRows, Map<String, String> hints) {
+  static final char SEPARATOR = '#';
+  private static final String HINT_PREFIX = "hint.";
+  private static final Pattern ATTRIBUTE = Pattern.compile("--\\s*@(\\w+)(?:\\s+(.*?))?\\s*");
+  private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m)?");
+
+  /**
+   * Parses the metadata header of a SQL file.
+   *
+   * @param sql the SQL file content
+   * @return the metadata or empty, if the header declares no metadata
+   * @throws IllegalArgumentException if an attribute is unknown or has an invalid value
+   */
+  static Optional<QueryMetadata> parse(String sql) {
+    int fetchSize = 0;
+    Duration timeout = null;
+    int maxRows = 0;
+    Map<String, String> hints = new TreeMap<>();
+    boolean declared = false;
+    for (var token : SqlScanner.scan(sql)) {
+      if (token.isCode()) {
+        break;
+      }
+      var matcher = ATTRIBUTE.matcher(token.text());
+      if (!token.is(SqlScanner.Kind.LINE_COMMENT) || !matcher.matches()) {
+        continue;
+      }
+      var name = matcher.group(1);
+      var value = matcher.group(2) == null ? "" : matcher.group(2);
+      switch (name) {
+        case "fetchSize" -> fetchSize = positive(name, value);
+        case "maxRows" -> maxRows = positive(name, value);
+        case "timeout" -> timeout = duration(value);
+        case "hint" -> {
+          int separator = value.indexOf('=');
+          if (separator <= 0) {
+            throw new IllegalArgumentException("invalid hint '" + value + "', expected name=value");
+          }
+          hints.put(value.substring(0, separator).trim(), value.substring(separator + 1).trim());
+        }
+        case "include" -> {
+          // expanded include directive
+          continue;
+        }
+        default -> throw new IllegalArgumentException("unknown attribute '@" + name + "'");
+      }
+      declared = true;
+    }
+    return declared
+        ? Optional.of(new QueryMetadata(fetchSize, timeout, maxRows, Map.copyOf(hints)))
+        : Optional.empty();
+  }
+
+  private static int positive(String name, String value) {
+    try {
+      int number = Integer.parseInt(value);
+      if (number > 0) {
+        return number;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(
+        "invalid value '" + value + "' of '@" + name + "', expected a positive number");
+  }
+
+  /** Parses 3s, 500ms, 2m, ISO-8601 durations or seconds. */
+  private static Duration duration(String value) {
+    var matcher = DURATION.matcher(value.toLowerCase(Locale.ROOT));
+    try {
+      if (matcher.matches()) {
+        long amount = Long.parseLong(matcher.group(1));
+        var unit = matcher.group(2) == null ? "s" : matcher.group(2);
+        return switch (unit) {
+          case "ms" -> Duration.ofMillis(amount);
+          case "m" -> Duration.ofMinutes(amount);
+          default -> Duration.ofSeconds(amount);
+        };
+      }
+      return Duration.parse(value);
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new IllegalArgumentException("invalid value '" + value + "' of '@timeout'", e);
+    }
+  }
+
+  /**
+   * Returns the metadata as properties.
+   *
+   * @param queryName the query name
+   * @return the properties {@code <query name>#<attribute>}
+   */
+  Properties toProperties(String queryName) {
+    var properties = new Properties();
+    var prefix = queryName + SEPARATOR;
+    if (fetchSize > 0) {
+      properties.put(prefix + "fetchSize", Integer.toString(fetchSize));
+    }
+    if (timeout != null) {
+      properties.put(prefix + "timeout", Long.toString(timeout.toMillis()));
+    }
+    if (maxRows > 0) {
+      properties.put(prefix + "maxRows", Integer.toString(maxRows));
+    }
+    hints.forEach((name, value) -> properties.put(prefix + HINT_PREFIX + name, value));
+    return properties;
+  }
+}
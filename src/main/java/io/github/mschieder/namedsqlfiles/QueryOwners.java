@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * The top level types referencing the generated entries, recorded in the manifest, so that a
+ * partial compilation prunes only entries of the types it compiled.
+ *
+ * <p>An entry of a previous build is stale, if each of its types was compiled again (and does not
+ * reference it anymore, otherwise it is generated again) or does not exist anymore. Entries without
+ * recorded types are stale.
+ *
+ * @author Michael Schieder
+ */
+class QueryOwners {
+  /** No types recorded, all entries of a previous build are stale. */
+  static final QueryOwners NONE = new QueryOwners(Map.of(), Set.of(), name -> false);
+
+  private static final char HASH_SEPARATOR = ';';
+  private static final String TYPE_SEPARATOR = ",";
+
+  private final Map<String, ? extends Set<String>> types;
+  private final Set<String> compiledTypes;
+  private final Predicate<String> exists;
+
+  /**
+   * Creates the owners.
+   *
+   * @param types the qualified names of the referencing top level types by entry name
+   * @param compiledTypes the qualified names of the top level types of this compilation
+   * @param exists whether a type still exists, e.g. on the classpath
+   */
+  QueryOwners(
+      Map<String, ? extends Set<String>> types,
+      Set<String> compiledTypes,
+      Predicate<String> exists) {
+    this.types = types;
+    this.compiledTypes = compiledTypes;
+    this.exists = exists;
+  }
+
+  /**
+   * Returns the types referencing an entry. The entries {@code <query name>#<attribute>} of the
+   * metadata belong to their query.
+   */
+  Set<String> types(String name) {
+    var owners = types.get(name);
+    int separator = name.indexOf(QueryMetadata.SEPARATOR);
+    if (owners == null && separator > 0) {
+      owners = types.get(name.substring(0, separator));
+    }
+    return owners == null ? Set.of() : owners;
+  }
+
+  /**
+   * Returns the types of a previous manifest entry, that still reference it: types, that were not
+   * compiled again and still exist.
+   *
+   * @param manifestEntry the manifest entry {@code <hash>;<type>,<type>}
+   * @return the remaining types, empty if the entry is stale
+   */
+  Set<String> remainingTypes(String manifestEntry) {
+    var remaining = new TreeSet<String>();
+    int separator = manifestEntry.indexOf(HASH_SEPARATOR);
+    if (separator >= 0) {
+      Arrays.stream(manifestEntry.substring(separator + 1).split(TYPE_SEPARATOR))
+          .filter(type -> !type.isEmpty())
+          .filter(type -> !compiledTypes.contains(type) && exists.test(type))
+          .forEach(remaining::add);
+    }
+    return remaining;
+  }
+
+  /** Returns the manifest entry {@code <hash>;<type>,<type>}. */
+  static String manifestEntry(String hash, Set<String> types) {
+    return hash + HASH_SEPARATOR + String.join(TYPE_SEPARATOR, new TreeSet<>(types));
+  }
+
+  /** Returns the hash of a manifest entry. */
+  static String hash(String manifestEntry) {
+    int separator = manifestEntry.indexOf(HASH_SEPARATOR);
+    return separator < 0 ? manifestEntry : manifestEntry.substring(0, separator);
+  }
+}
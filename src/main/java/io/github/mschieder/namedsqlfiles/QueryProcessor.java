@@ -17,16 +17,34 @@
 package io.github.mschieder.namedsqlfiles;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
 
 /**
  * Common annotation processing functionality for @{@link JdbcQueryProcessor} and {@link
@@ -35,77 +53,739 @@ import javax.tools.Diagnostic;
  * @author Michael Schieder
  */
 public abstract class QueryProcessor extends AbstractProcessor {
+  private static final String NAME = "name";
+  private static final String COUNT_NAME = "countName";
+  private static final String COUNT_QUERY_SUFFIX = ".count";
+  private static final String PARAM_ANNOTATION_TYPE =
+      "org.springframework.data.repository.query.Param";
+  private static final String PAGE_TYPE = "org.springframework.data.domain.Page";
+  private static final List<String> MODIFYING_ANNOTATION_TYPES =
+      List.of(
+          "org.springframework.data.jpa.repository.Modifying",
+          "org.springframework.data.jdbc.repository.query.Modifying");
 
   private final String annotationType;
   private final String propertiesFilename;
   private final List<String> queryParameterNames;
   private final Properties properties;
+  private final Set<Element> originatingElements;
+  private final Map<String, Set<String>> referencingTypes = new HashMap<>();
+  private final Set<String> compiledTypes = new HashSet<>();
+  private ResourceLocator resourceLocator;
+  private ResourceCache resourceCache;
+  private Optional<Instant> outputTimestamp;
+  private ResourceLoader resourceLoader;
+  private final String storeName;
+  private final String repositoryFactoryBeanType;
+  private Optional<String> namedQueriesPackage;
+  private SqlNormalizer normalizer;
+  private IncludeResolver includeResolver;
+  private boolean deriveCountQueries;
+  private boolean sourceTags;
+  private boolean parseParameters;
+  private boolean binaryStore;
+  private Optional<List<Path>> aggregateClasspath;
+  private boolean nativeImage;
+  private List<String> dialects;
+  private ProcessorStats stats = ProcessorStats.DISABLED;
+  private SqlRootIndex sqlRootIndex = SqlRootIndex.EMPTY;
+  private final Map<String, Properties> dialectProperties = new LinkedHashMap<>();
+  private final Properties metadata = new Properties();
+  private boolean namedQueriesClassGenerated;
+  private final Set<String> namedQueriesClassEntries = new HashSet<>();
 
   QueryProcessor(
-      String annotationType, String propertiesFilename, List<String> queryParameterNames) {
+      String annotationType,
+      String propertiesFilename,
+      List<String> queryParameterNames,
+      String storeName,
+      String repositoryFactoryBeanType) {
     this.annotationType = annotationType;
+    this.storeName = storeName;
+    this.repositoryFactoryBeanType = repositoryFactoryBeanType;
     this.propertiesFilename = propertiesFilename;
     this.queryParameterNames = Collections.unmodifiableList(queryParameterNames);
     this.properties = new Properties();
+    this.originatingElements = new LinkedHashSet<>();
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.resourceCache = ResourceCache.forEnvironment(processingEnv);
+    var options =
+        new ProcessorOptions(
+            processingEnv.getOptions(), System.getenv(ProcessorOptions.SOURCE_DATE_EPOCH));
+    this.outputTimestamp = option(options::outputTimestamp, Optional.empty());
+    this.resourceLoader = new ResourceLoader(option(options::parallelism, 1));
+    this.namedQueriesPackage = options.namedQueriesPackage();
+    this.normalizer = new SqlNormalizer(option(options::normalize, Set.of()));
+    this.includeResolver =
+        new IncludeResolver(resourceName -> resourceCache.get(resourceName, resourceLocator()));
+    this.deriveCountQueries =
+        queryParameterNames.contains(COUNT_NAME) && option(options::deriveCountQueries, false);
+    this.dialects = option(options::dialects, List.of());
+    this.sourceTags = option(options::sourceTags, false);
+    this.parseParameters = option(options::parseParameters, false);
+    this.binaryStore = option(options::binaryStore, false);
+    this.aggregateClasspath = option(options::aggregateClasspath, Optional.empty());
+    this.nativeImage = option(options::nativeImage, false);
+    if (option(options::stats, false)) {
+      this.stats = new ProcessorStats(true);
+    }
+    var sqlRoots =
+        option(() -> options.sqlRoots(() -> classOutput(propertiesFilename)), List.<Path>of());
+    try {
+      this.sqlRootIndex = SqlRootIndex.forEnvironment(processingEnv, sqlRoots);
+    } catch (UncheckedIOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "unable to index the sql roots " + sqlRoots + ": " + e.getCause().getMessage());
+    }
+    dialects.forEach(dialect -> dialectProperties.put(dialect, new Properties()));
+  }
+
+  private <T> T option(Supplier<T> option, T defaultValue) {
+    try {
+      return option.get();
+    } catch (IllegalArgumentException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+      return defaultValue;
+    }
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    return ProcessorOptions.supportedOptions();
   }
 
   ResourceLocator resourceLocator() {
-    return new ResourceLocator(processingEnv);
+    if (resourceLocator == null) {
+      resourceLocator = new ResourceLocator(processingEnv, stats, sqlRootIndex);
+    }
+    return resourceLocator;
+  }
+
+  private PropertiesSupport propertiesSupport(String filename) {
+    var elements = processingEnv.getElementUtils();
+    return new PropertiesSupport(resourceLocator(), filename, processingEnv, outputTimestamp, stats)
+        .withOwners(
+            new QueryOwners(
+                referencingTypes, compiledTypes, type -> elements.getTypeElement(type) != null));
+  }
+
+  private String metadataFilename() {
+    return propertiesFilename.replaceFirst("\\.properties$", "") + "-metadata.properties";
+  }
+
+  /** Returns the support of a named queries file, that is stored as binary store as well. */
+  private PropertiesSupport namedQueriesSupport(String filename) {
+    var propertiesSupport = propertiesSupport(filename);
+    return binaryStore ? propertiesSupport.withBinaryStore() : propertiesSupport;
+  }
+
+  private String statsFilename() {
+    return propertiesFilename.replaceFirst("\\.properties$", "") + "-stats.json";
   }
 
-  private PropertiesSupport propertiesSupport() {
-    return new PropertiesSupport(resourceLocator(), propertiesFilename, processingEnv);
+  private String dialectPropertiesFilename(String dialect) {
+    return propertiesFilename.replaceFirst("\\.properties$", "") + "." + dialect + ".properties";
   }
 
+  /**
+   * Collects the referenced resources of all rounds, including references in sources generated in
+   * later rounds, and writes the output exactly once, when processing is over.
+   */
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    stats.recordRound();
+    resourceCache.startRound(roundEnv);
     if (!roundEnv.processingOver()) {
-      annotations.stream()
-          .flatMap(next -> roundEnv.getElementsAnnotatedWith(next).stream())
-          .forEach(this::processNamedQueryParameters);
-
-      propertiesSupport().storePropertiesFile(properties);
+      collect(annotations, roundEnv);
+    } else {
+      resourceLoader.close();
+      flush();
     }
     return true;
   }
 
-  private void processNamedQueryParameters(Element element) {
-    SimpleAnnotation.findAnnotation(annotationType, element).stream()
+  private void collect(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    roundEnv.getRootElements().stream()
+        .filter(TypeElement.class::isInstance)
+        .forEach(type -> compiledTypes.add(qualifiedName(topLevelType(type))));
+    List<? extends Element> elements;
+    List<QueryReference> references;
+    // annotation mirrors are only accessed on the processing thread
+    try (var timer = stats.start(ProcessorStats.Phase.SCAN)) {
+      elements =
+          annotations.stream()
+              .flatMap(next -> roundEnv.getElementsAnnotatedWith(next).stream())
+              .toList();
+      references = elements.stream().flatMap(this::findQueryReferences).toList();
+    }
+    references.forEach(reference -> stats.recordReference(reference.resourceName()));
+
+    var resources =
+        resourceLoader.loadAll(
+            references.stream()
+                .map(QueryReference::resourceName)
+                .distinct()
+                .filter(resourceName -> !properties.containsKey(resourceName))
+                .flatMap(this::withDialectVariants)
+                .toList(),
+            this::loadResource);
+    references.forEach(reference -> processQueryReference(reference, resources));
+    if (!dialects.isEmpty()) {
+      references.forEach(reference -> processDialectVariants(reference, resources));
+    }
+    if (deriveCountQueries) {
+      elements.forEach(this::deriveCountQuery);
+    }
+
+    if (namedQueriesPackage.isPresent() && !properties.isEmpty()) {
+      generateNamedQueriesClass(namedQueriesPackage.get(), references);
+    }
+  }
+
+  /**
+   * Source files created in the last round are not compiled without a warning, so the named queries
+   * class is generated in the first round with named queries. Queries of sources generated in later
+   * rounds cannot be added anymore, the generated class delegates them to the properties file.
+   */
+  private void generateNamedQueriesClass(String packageName, List<QueryReference> references) {
+    if (namedQueriesClassGenerated) {
+      references.stream()
+          .filter(reference -> properties.containsKey(reference.resourceName()))
+          .filter(reference -> !namedQueriesClassEntries.contains(reference.resourceName()))
+          .forEach(
+              reference ->
+                  processingEnv
+                      .getMessager()
+                      .printMessage(
+                          Diagnostic.Kind.WARNING,
+                          "query '"
+                              + reference.resourceName()
+                              + "' was referenced after the named queries class was generated, it"
+                              + " is looked up in the properties file.",
+                          reference.element()));
+      return;
+    }
+    namedQueriesClassGenerated = true;
+    namedQueriesClassEntries.addAll(properties.stringPropertyNames());
+
+    var generator = namedQueriesClassGenerator();
+    Map<String, Properties> dialectNamedQueries = new LinkedHashMap<>();
+    dialectProperties.forEach(
+        (dialect, queries) ->
+            dialectNamedQueries.put(
+                dialect,
+                propertiesSupport(dialectPropertiesFilename(dialect)).mergeProperties(queries)));
+    generator.generate(
+        packageName,
+        propertiesSupport(propertiesFilename).mergeProperties(properties),
+        dialectNamedQueries,
+        originatingElements);
+  }
+
+  private void flush() {
+    var propertiesSupport = namedQueriesSupport(propertiesFilename);
+    // aggregated first, the class output is located before the named queries file is created
+    var aggregate = aggregateClasspath.map(classpath -> aggregate(propertiesSupport, classpath));
+    propertiesSupport.storePropertiesFile(properties, originatingElements);
+    aggregate.ifPresent(
+        namedQueries -> propertiesSupport.storeAggregateFile(namedQueries, originatingElements));
+    dialectProperties.forEach(
+        (dialect, queries) ->
+            namedQueriesSupport(dialectPropertiesFilename(dialect))
+                .storePropertiesFile(queries, originatingElements));
+    propertiesSupport(metadataFilename()).storePropertiesFile(metadata, originatingElements);
+    propertiesSupport.storeIncludesFile(
+        fragmentDependents(), properties.stringPropertyNames(), originatingElements);
+    if (!properties.isEmpty()) {
+      propertiesSupport.storeOptionsFile(sourceOptions(), originatingElements);
+    }
+    if (namedQueriesClassGenerated) {
+      // generated in a previous round, so that all auto-configurations can be resolved
+      AutoConfigurationImports.write(processingEnv, resourceLocator(), namedQueriesPackage.get());
+    }
+    if (nativeImage) {
+      propertiesSupport.storeTextFile(
+          NativeImageResourceConfig.json(generatedResourceNames(propertiesSupport)),
+          NativeImageResourceConfig.filename(storeName),
+          originatingElements);
+    }
+    if (stats.isEnabled()) {
+      reportStats();
+    }
+  }
+
+  /**
+   * Returns the fragment dependency graph: the names of the named queries, whose SQL file or
+   * dialect variant includes a fragment, by fragment name.
+   */
+  private Map<String, Set<String>> fragmentDependents() {
+    Map<String, Set<String>> dependents = new TreeMap<>();
+    for (var queryName : properties.stringPropertyNames()) {
+      if (!isSqlFile(queryName)) {
+        continue;
+      }
+      Stream.concat(
+              Stream.of(queryName),
+              dialects.stream().map(dialect -> variantName(queryName, dialect)))
+          .flatMap(resourceName -> includeResolver.includes(resourceName).stream())
+          .forEach(
+              fragment ->
+                  dependents.computeIfAbsent(fragment, key -> new TreeSet<>()).add(queryName));
+    }
+    return dependents;
+  }
+
+  /** Returns the transformation options of the SQL files, empty for the defaults. */
+  private Properties sourceOptions() {
+    var options = new Properties();
+    if (normalizer.isEnabled()) {
+      options.setProperty("normalize", normalizer.option());
+    }
+    if (sourceTags) {
+      options.setProperty("sourceTags", "true");
+    }
+    return options;
+  }
+
+  /** Returns the names of the resources, that are read at runtime. */
+  private List<String> generatedResourceNames(PropertiesSupport propertiesSupport) {
+    List<String> resourceNames = new ArrayList<>();
+    resourceNames.add(propertiesFilename);
+    dialects.forEach(dialect -> resourceNames.add(dialectPropertiesFilename(dialect)));
+    resourceNames.add(metadataFilename());
+    if (binaryStore) {
+      resourceNames.add(propertiesSupport.binaryStoreFilename());
+      dialects.forEach(
+          dialect ->
+              resourceNames.add(
+                  propertiesSupport(dialectPropertiesFilename(dialect)).binaryStoreFilename()));
+    }
+    if (aggregateClasspath.isPresent()) {
+      resourceNames.add(propertiesSupport.aggregateFilename());
+    }
+    return resourceNames;
+  }
+
+  /**
+   * Aggregates the named queries files of the classpath with the named queries of this module and
+   * reports conflicting definitions. The class output, that contains the previous named queries
+   * file of this module, is skipped.
+   */
+  private Properties aggregate(PropertiesSupport propertiesSupport, List<Path> classpath) {
+    var aggregator =
+        new NamedQueriesAggregator(propertiesFilename)
+            .add(
+                NamedQueriesAggregator.MODULE_SOURCE,
+                propertiesSupport.mergeProperties(properties));
+    var classOutput = classOutput(propertiesSupport.aggregateFilename());
+    for (var entry : classpath) {
+      if (classOutput.filter(entry::equals).isPresent()) {
+        continue;
+      }
+      try {
+        aggregator.addClasspathEntry(entry);
+      } catch (IOException e) {
+        processingEnv
+            .getMessager()
+            .printMessage(
+                Diagnostic.Kind.ERROR,
+                "error while reading the named queries of '" + entry + "': " + e.getMessage());
+      }
+    }
+    aggregator
+        .conflicts()
+        .forEach(
+            conflict -> processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, conflict));
+    return aggregator.aggregate();
+  }
+
+  /** Returns the class output directory, if it is in the file system. */
+  private Optional<Path> classOutput(String resourceName) {
+    try {
+      var uri =
+          processingEnv
+              .getFiler()
+              .getResource(StandardLocation.CLASS_OUTPUT, "", resourceName)
+              .toUri();
+      if (!"file".equals(uri.getScheme())) {
+        return Optional.empty();
+      }
+      var path = Path.of(uri);
+      for (int i = 0; i < resourceName.split("/").length; i++) {
+        path = path.getParent();
+      }
+      return Optional.of(path.toAbsolutePath().normalize());
+    } catch (IOException | IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** Reports the statistics as a note and writes them as JSON next to the properties file. */
+  private void reportStats() {
+    var processorName = getClass().getSimpleName();
+    processingEnv
+        .getMessager()
+        .printMessage(Diagnostic.Kind.NOTE, stats.summary(processorName, properties.size()));
+    var filename = statsFilename();
+    try (var writer =
+        processingEnv
+            .getFiler()
+            .createResource(StandardLocation.CLASS_OUTPUT, "", filename)
+            .openWriter()) {
+      writer.write(stats.toJson(processorName, properties.size()));
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "unable to write statistics '" + filename + "': " + e.getMessage());
+    }
+  }
+
+  /** Locates, reads, expands, transforms and tags a resource, may be called in parallel. */
+  private Optional<SqlResource> loadResource(String resourceName) throws IOException {
+    var resource = resourceCache.get(resourceName, resourceLocator());
+    if (resource.isEmpty()) {
+      return resource;
+    }
+    try (var timer = stats.start(ProcessorStats.Phase.TRANSFORM)) {
+      var expanded = includeResolver.expand(resource.get());
+      var sql = normalizer.normalize(expanded.content());
+      stats.recordResource(resourceName, sql.length());
+      // tagged last, so that the normalization does not strip the tag
+      return Optional.of(expanded.withContent(sourceTags ? SourceTag.tag(resourceName, sql) : sql));
+    }
+  }
+
+  private NamedQueriesClassGenerator namedQueriesClassGenerator() {
+    return new NamedQueriesClassGenerator(
+        processingEnv, getClass().getName(), storeName, repositoryFactoryBeanType);
+  }
+
+  private Stream<QueryReference> findQueryReferences(Element element) {
+    return SimpleAnnotation.findAnnotation(annotationType, element).stream()
         .flatMap(
             queryAnnotation ->
                 queryAnnotation.getParameterMap(queryParameterNames).values().stream())
-        .forEach(value -> processQueryParameter(value, properties, element));
+        .filter(name -> name != null && !name.isBlank())
+        .map(name -> new QueryReference(name, element));
+  }
+
+  /**
+   * Without a {@code countName}, Spring Data JPA looks up the count query of a {@code Page}
+   * returning method as {@code <name>.count}, before it derives one at runtime.
+   */
+  private void deriveCountQuery(Element element) {
+    if (element.getKind() != ElementKind.METHOD
+        || !PAGE_TYPE.equals(
+            processingEnv
+                .getTypeUtils()
+                .erasure(((ExecutableElement) element).getReturnType())
+                .toString())) {
+      return;
+    }
+    var parameters =
+        SimpleAnnotation.findAnnotation(annotationType, element)
+            .map(queryAnnotation -> queryAnnotation.getParameterMap(queryParameterNames))
+            .orElse(Map.of());
+    var name = parameters.getOrDefault(NAME, "");
+    var countQueryName = name + COUNT_QUERY_SUFFIX;
+    if (!parameters.getOrDefault(COUNT_NAME, "").isBlank() || !properties.containsKey(name)) {
+      return;
+    }
+    addReferencingType(countQueryName, element);
+    // the count query of each dialect is derived from the dialect's query
+    Set<String> errors = new LinkedHashSet<>();
+    Stream.concat(Stream.of(properties), dialectProperties.values().stream())
+        .filter(queries -> !queries.containsKey(countQueryName))
+        .forEach(
+            queries -> {
+              try {
+                queries.put(countQueryName, CountQueryDeriver.derive(queries.getProperty(name)));
+              } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+              }
+            });
+    errors.forEach(
+        error ->
+            processingEnv
+                .getMessager()
+                .printMessage(
+                    Diagnostic.Kind.ERROR,
+                    "count query of '" + name + "' cannot be derived: " + error + ".",
+                    element));
   }
 
-  private void processQueryParameter(String name, Properties properties, Element element) {
-    getContentFromResource(name, element).ifPresent(sql -> properties.put(name, sql));
+  private Stream<String> withDialectVariants(String resourceName) {
+    if (!isSqlFile(resourceName)) {
+      return Stream.of(resourceName);
+    }
+    return Stream.concat(
+        Stream.of(resourceName),
+        dialects.stream().map(dialect -> variantName(resourceName, dialect)));
   }
 
-  private Optional<String> getContentFromResource(String resourceName, Element element) {
-    if (resourceName != null && !resourceName.isBlank()) {
-      var locator = resourceLocator();
+  private static boolean isSqlFile(String resourceName) {
+    return resourceName.toLowerCase(Locale.ROOT).endsWith(".sql");
+  }
 
-      if (locator.exists(resourceName)) {
-        try {
-          return Optional.of(locator.contentAsString(resourceName));
-        } catch (IOException e) {
-          processingEnv
-              .getMessager()
-              .printMessage(
-                  Diagnostic.Kind.ERROR,
-                  "error while reading resource '" + resourceName + "': " + e.getMessage(),
-                  element);
+  /** Returns the name of the dialect variant: sql/person/complex.postgresql.sql. */
+  private static String variantName(String resourceName, String dialect) {
+    int suffix = resourceName.lastIndexOf('.');
+    return resourceName.substring(0, suffix) + "." + dialect + resourceName.substring(suffix);
+  }
+
+  /**
+   * Adds the dialect variants of a referenced resource, or the resource itself, if a variant does
+   * not exist, to the dialect properties. The variants of modifying queries are split into their
+   * statements like the query. Missing variants of queries, that have variants for other dialects,
+   * are reported as warnings.
+   */
+  private void processDialectVariants(
+      QueryReference reference, Map<String, ResourceLoader.Result> resources) {
+    var resourceName = reference.resourceName();
+    if (!resources.containsKey(resourceName)
+        || !properties.containsKey(resourceName)
+        || dialectProperties.get(dialects.get(0)).containsKey(resourceName)) {
+      // collected in a previous round, missing or already processed
+      return;
+    }
+    List<String> missingVariants = new ArrayList<>();
+    for (var dialect : dialects) {
+      var variantName = variantName(resourceName, dialect);
+      var variant = isSqlFile(resourceName) ? resources.get(variantName) : null;
+      var queries = dialectProperties.get(dialect);
+      if (variant != null && variant.error() != null) {
+        reportReadError(variantName, variant.error(), reference.element());
+      } else if (variant != null && variant.resource().isPresent()) {
+        var sql = variant.resource().get().content();
+        queries.put(resourceName, sql);
+        var statements = collectStatements(reference, variantName, sql);
+        if (isModifying(reference.element())) {
+          metadata.putAll(statements.toProperties(resourceName, dialect));
+        }
+        if (parseParameters) {
+          checkStatementParameters(reference, variantName, statements, sql);
         }
       } else {
-        if (resourceName.toLowerCase().endsWith(".sql")) {
-          // only if the suffix is sql
-          processingEnv
-              .getMessager()
-              .printMessage(
-                  Diagnostic.Kind.ERROR, "resource '" + resourceName + "' not found.", element);
+        queries.put(resourceName, properties.getProperty(resourceName));
+        if (variant != null) {
+          missingVariants.add(variantName);
         }
       }
     }
+    if (!missingVariants.isEmpty() && missingVariants.size() < dialects.size()) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "missing dialect variants of '"
+                  + resourceName
+                  + "': "
+                  + String.join(", ", missingVariants)
+                  + ", the query is used instead.",
+              reference.element());
+    }
+  }
+
+  private void processQueryReference(
+      QueryReference reference, Map<String, ResourceLoader.Result> resources) {
+    var result = resources.get(reference.resourceName());
+    if (result == null) {
+      // already collected in a previous round
+      addReferencingType(reference.resourceName(), reference.element());
+      return;
+    }
+    getContent(reference, result)
+        .ifPresent(
+            sql -> {
+              properties.put(reference.resourceName(), sql);
+              addReferencingType(reference.resourceName(), reference.element());
+              collectMetadata(reference);
+              var statements = collectStatements(reference, reference.resourceName(), sql);
+              metadata.putAll(statements.toProperties(reference.resourceName()));
+              if (parseParameters) {
+                checkStatementParameters(reference, reference.resourceName(), statements, sql);
+              }
+            });
+  }
+
+  /**
+   * Splits the query of a modifying query method into its statements. Empty statements are reported
+   * by their 1-based index.
+   */
+  private StatementList collectStatements(QueryReference reference, String sourceName, String sql) {
+    var element = reference.element();
+    if (!isModifying(element)) {
+      return new StatementList(List.of(sql));
+    }
+    var statements = StatementList.parse(sql);
+    for (int index : statements.emptyStatements()) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "statement " + index + " of '" + sourceName + "' is empty.",
+              element);
+    }
+    return statements;
+  }
+
+  private static boolean isModifying(Element element) {
+    return MODIFYING_ANNOTATION_TYPES.stream()
+        .anyMatch(type -> SimpleAnnotation.findAnnotation(type, element).isPresent());
+  }
+
+  /**
+   * Checks the named parameters of a query, statement by statement, so that unknown parameters of a
+   * statement list are reported with the index of their statement.
+   */
+  private void checkStatementParameters(
+      QueryReference reference, String sourceName, StatementList statements, String sql) {
+    if (!statements.isMultiple()) {
+      checkParameters(reference, sourceName, sql);
+      return;
+    }
+    var list = statements.statements();
+    for (int i = 0; i < list.size(); i++) {
+      checkParameters(
+          reference, sourceName + QueryMetadata.SEPARATOR + "statement." + (i + 1), list.get(i));
+    }
+  }
+
+  /**
+   * Parses the metadata header of a SQL resource. It is parsed from the expanded, but not yet
+   * normalized content, because normalization may strip the header comments.
+   */
+  private void collectMetadata(QueryReference reference) {
+    var resourceName = reference.resourceName();
+    try {
+      var resource = resourceCache.get(resourceName, resourceLocator());
+      if (resource.isPresent()) {
+        QueryMetadata.parse(includeResolver.expand(resource.get()).content())
+            .ifPresent(queryMetadata -> metadata.putAll(queryMetadata.toProperties(resourceName)));
+      }
+    } catch (IOException e) {
+      // already reported while loading the resource
+    } catch (IllegalArgumentException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "invalid metadata of '" + resourceName + "': " + e.getMessage() + ".",
+              reference.element());
+    }
+  }
+
+  /**
+   * Parses the named parameters of a query and reports invalid parameters and those, that are no
+   * parameters of the query method: neither a {@code @Param} name nor a parameter name.
+   */
+  private void checkParameters(QueryReference reference, String sourceName, String sql) {
+    NamedParameters parameters;
+    try {
+      parameters = NamedParameters.parse(sql);
+    } catch (IllegalArgumentException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "invalid parameter of '" + sourceName + "': " + e.getMessage() + ".",
+              reference.element());
+      return;
+    }
+    if (reference.element().getKind() != ElementKind.METHOD) {
+      return;
+    }
+    var methodParameterNames =
+        ((ExecutableElement) reference.element())
+            .getParameters().stream()
+                .map(
+                    parameter ->
+                        SimpleAnnotation.findAnnotation(PARAM_ANNOTATION_TYPE, parameter)
+                            .map(param -> param.getParameterMap(List.of("value")).get("value"))
+                            .filter(name -> !name.isBlank())
+                            .orElse(parameter.getSimpleName().toString()))
+                .toList();
+    parameters.distinctNames().stream()
+        .filter(name -> !methodParameterNames.contains(name))
+        .forEach(
+            name ->
+                processingEnv
+                    .getMessager()
+                    .printMessage(
+                        Diagnostic.Kind.ERROR,
+                        "parameter ':"
+                            + name
+                            + "' of '"
+                            + sourceName
+                            + "' is not a parameter of the query method "
+                            + methodParameterNames
+                            + ".",
+                        reference.element()));
+  }
+
+  private void addReferencingType(String name, Element element) {
+    var type = topLevelType(element);
+    originatingElements.add(type);
+    referencingTypes.computeIfAbsent(name, key -> new HashSet<>()).add(qualifiedName(type));
+  }
+
+  private static String qualifiedName(Element type) {
+    return ((TypeElement) type).getQualifiedName().toString();
+  }
+
+  /**
+   * Gradle's incremental compilation tracks generated files by the top level types of their
+   * originating elements.
+   */
+  private static Element topLevelType(Element element) {
+    Element current = element;
+    while (current.getEnclosingElement() != null
+        && current.getEnclosingElement().getKind() != ElementKind.PACKAGE
+        && current.getEnclosingElement().getKind() != ElementKind.MODULE) {
+      current = current.getEnclosingElement();
+    }
+    return current;
+  }
+
+  /** Reports a resource, that cannot be read, include errors are reported with their message. */
+  private void reportReadError(String resourceName, Exception error, Element element) {
+    processingEnv
+        .getMessager()
+        .printMessage(
+            Diagnostic.Kind.ERROR,
+            error instanceof IncludeResolver.IncludeException
+                ? error.getMessage() + "."
+                : "error while reading resource '" + resourceName + "': " + error.getMessage(),
+            element);
+  }
+
+  private Optional<String> getContent(QueryReference reference, ResourceLoader.Result result) {
+    var resourceName = reference.resourceName();
+    if (result.error() != null) {
+      reportReadError(resourceName, result.error(), reference.element());
+    } else if (result.resource().isPresent()) {
+      return Optional.of(result.resource().get().content());
+    } else if (isSqlFile(resourceName)) {
+      // only if the suffix is sql
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              "resource '" + resourceName + "' not found.",
+              reference.element());
+    }
     return Optional.empty();
   }
+
+  /** A reference to a resource in a query annotation parameter. */
+  private record QueryReference(String resourceName, Element element) {}
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+
+/**
+ * Per compilation cache of located resources, shared by all query processors of the same
+ * compilation. Each resource is located and decoded at most once. Misses are remembered for the
+ * current round only, because a resource may be generated by another processor in a later round.
+ * Resources with identical content share the same content string. The cache is thread safe.
+ *
+ * <p>The cache is keyed by the compilation's {@link Elements}: build tools may wrap the {@link
+ * ProcessingEnvironment} and its {@code Filer} per processor, but share the compiler's element
+ * utilities, which exist as long as the compilation. The class output location would not do,
+ * because a build daemon compiles the same module into the same location again.
+ *
+ * @author Michael Schieder
+ */
+class ResourceCache {
+  private static final Map<Elements, ResourceCache> CACHES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final Map<String, SqlResource> resources = new ConcurrentHashMap<>();
+  private final Set<String> misses = ConcurrentHashMap.newKeySet();
+  private final Map<String, String> contents = new ConcurrentHashMap<>();
+  private Object round;
+
+  static ResourceCache forEnvironment(ProcessingEnvironment processingEnv) {
+    return CACHES.computeIfAbsent(processingEnv.getElementUtils(), key -> new ResourceCache());
+  }
+
+  /**
+   * Starts a round: the misses of the previous round are forgotten. Called by each processor, the
+   * misses are kept, if another processor started the same round already.
+   *
+   * @param round the round, e.g. its {@code RoundEnvironment}
+   */
+  synchronized void startRound(Object round) {
+    if (this.round != round) {
+      this.round = round;
+      misses.clear();
+    }
+  }
+
+  /**
+   * Returns the cached resource or locates and reads it with the given locator.
+   *
+   * @param resourceName the resource name
+   * @param locator the locator used on a cache miss
+   * @return the resource or empty, if it does not exist
+   * @throws IOException if the resource exists, but cannot be read. Failures are not cached.
+   */
+  Optional<SqlResource> get(String resourceName, ResourceLocator locator) throws IOException {
+    var cached = resources.get(resourceName);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    if (misses.contains(resourceName)) {
+      return Optional.empty();
+    }
+    // load outside of the map, so that concurrent loads of other resources are not blocked
+    var loaded = locator.load(resourceName).map(this::deduplicate);
+    if (loaded.isEmpty()) {
+      misses.add(resourceName);
+      return loaded;
+    }
+    var previous = resources.putIfAbsent(resourceName, loaded.get());
+    return Optional.of(previous != null ? previous : loaded.get());
+  }
+
+  private SqlResource deduplicate(SqlResource resource) {
+    var content = contents.computeIfAbsent(resource.hash(), hash -> resource.content());
+    return new SqlResource(resource.name(), content, resource.lastModified(), resource.hash());
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads resources either on the calling thread or, with a parallelism greater than 1, fanned out to
+ * a bounded executor (backed by virtual threads, if the runtime supports them). The results are
+ * always returned in the order of the requested names, so that diagnostics can be reported
+ * deterministically on the processing thread.
+ *
+ * @author Michael Schieder
+ */
+class ResourceLoader implements AutoCloseable {
+
+  /** Loads a single resource. */
+  @FunctionalInterface
+  interface Loader {
+    Optional<SqlResource> load(String resourceName) throws IOException;
+  }
+
+  /**
+   * The result of loading a single resource.
+   *
+   * @param resource the resource, empty if it does not exist or could not be read
+   * @param error the read error, an {@link IOException} or a runtime exception of the loader, or
+   *     null
+   */
+  record Result(Optional<SqlResource> resource, Exception error) {}
+
+  private final int parallelism;
+  private ExecutorService executor;
+
+  ResourceLoader(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  Map<String, Result> loadAll(Collection<String> resourceNames, Loader loader) {
+    Map<String, Result> results = new LinkedHashMap<>();
+    if (parallelism <= 1 || resourceNames.size() <= 1) {
+      resourceNames.forEach(name -> results.put(name, load(name, loader)));
+      return results;
+    }
+
+    Map<String, Future<Result>> futures = new LinkedHashMap<>();
+    resourceNames.forEach(name -> futures.put(name, executor().submit(() -> load(name, loader))));
+    futures.forEach((name, future) -> results.put(name, await(future)));
+    return results;
+  }
+
+  private static Result load(String resourceName, Loader loader) {
+    try {
+      return new Result(loader.load(resourceName), null);
+    } catch (IOException | RuntimeException e) {
+      // reported on the referencing element, sequential and parallel alike
+      return new Result(Optional.empty(), e);
+    }
+  }
+
+  private static Result await(Future<Result> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      // the exceptions of the loader are results already, only errors are left
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      return new Result(
+          Optional.empty(),
+          e.getCause() instanceof Exception exception
+              ? exception
+              : new IllegalStateException(e.getCause()));
+    }
+  }
+
+  private ExecutorService executor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(parallelism, threadFactory());
+    }
+    return executor;
+  }
+
+  private static ThreadFactory threadFactory() {
+    try {
+      // Thread.ofVirtual().factory() is available since java 21
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return runnable -> {
+        Thread thread = new Thread(runnable, "named-sqlfiles-loader");
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+}
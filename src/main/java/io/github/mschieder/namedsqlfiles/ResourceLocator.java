@@ -29,16 +29,26 @@ import javax.tools.StandardLocation;
 
 /**
  * Locate and read resources with {@link ProcessingEnvironment}'s {@link
- * javax.annotation.processing.Filer}.
+ * javax.annotation.processing.Filer}. SQL resources are looked up in the {@link SqlRootIndex}
+ * first, if SQL source roots are configured.
  *
  * @author Michael Schieder
  */
 class ResourceLocator {
 
   private final ProcessingEnvironment processingEnv;
+  private final ProcessorStats stats;
+  private final SqlRootIndex sqlRootIndex;
 
   public ResourceLocator(ProcessingEnvironment processingEnv) {
+    this(processingEnv, ProcessorStats.DISABLED, SqlRootIndex.EMPTY);
+  }
+
+  ResourceLocator(
+      ProcessingEnvironment processingEnv, ProcessorStats stats, SqlRootIndex sqlRootIndex) {
     this.processingEnv = processingEnv;
+    this.stats = stats;
+    this.sqlRootIndex = sqlRootIndex;
   }
 
   boolean exists(String resourceName) {
@@ -51,6 +61,41 @@ class ResourceLocator {
     }
   }
 
+  /**
+   * Locates and reads a resource with a single lookup. Resources of the SQL source roots are read
+   * directly, without asking the filer.
+   *
+   * @param resourceName the resource name
+   * @return the resource or empty, if it does not exist
+   * @throws IOException if the resource exists, but cannot be read
+   */
+  Optional<SqlResource> load(String resourceName) throws IOException {
+    Optional<SqlRootIndex.Entry> entry;
+    try (var timer = stats.start(ProcessorStats.Phase.LOOKUP)) {
+      entry = sqlRootIndex.find(resourceName);
+    }
+    if (entry.isPresent()) {
+      try (var timer = stats.start(ProcessorStats.Phase.READ)) {
+        return Optional.of(
+            SqlResource.of(
+                resourceName, SqlRootIndex.read(entry.get()), entry.get().lastModified()));
+      }
+    }
+    Optional<FileObject> fileObject;
+    try (var timer = stats.start(ProcessorStats.Phase.LOOKUP)) {
+      fileObject = findResource(resourceName);
+    }
+    if (fileObject.isEmpty()) {
+      return Optional.empty();
+    }
+    try (var timer = stats.start(ProcessorStats.Phase.READ);
+        var is = fileObject.get().openInputStream()) {
+      return Optional.of(
+          SqlResource.of(
+              resourceName, resourceStreamToString(is), fileObject.get().getLastModified()));
+    }
+  }
+
   InputStream resourceInputstream(String resource) throws IOException {
     FileObject fileObject =
         findResource(resource).orElseThrow(() -> new FileNotFoundException(resource));
@@ -70,16 +115,19 @@ class ResourceLocator {
   }
 
   protected Optional<FileObject> findResource(String resourceName) {
-    try {
-      FileObject fileObject =
-          processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+    var filer = processingEnv.getFiler();
+    // the filer is not thread safe, only reading the located resources may be done in parallel
+    synchronized (filer) {
+      try {
+        FileObject fileObject = filer.getResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
 
-      if (fileObject.getLastModified() != 0) {
+        if (fileObject.getLastModified() != 0) {
 
-        return Optional.of(fileObject);
+          return Optional.of(fileObject);
+        }
+      } catch (IOException e) {
+        // ignore
       }
-    } catch (IOException e) {
-      // ignore
     }
     return Optional.empty();
   }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Tags a named query with its source: {@code /* nsf:sql/person/complex.sql#1a2b3c4d *}{@code /},
+ * the resource name and the first 8 hex digits of the SHA-256 hash of the query. The tag is
+ * prepended to the final (normalized) query, so it precedes optimizer hints and is visible in the
+ * statement statistics of the database, e.g. {@code pg_stat_statements} or AWR reports.
+ *
+ * @author Michael Schieder
+ */
+class SourceTag {
+  static final String PREFIX = "/* nsf:";
+  private static final int HASH_BYTES = 4;
+
+  private SourceTag() {}
+
+  static String tag(String resourceName, String sql) {
+    // the tag must not terminate the comment early
+    var name = resourceName.replace("*/", "* /");
+    return PREFIX + name + "#" + hash(sql) + " */ " + sql;
+  }
+
+  static String hash(String sql) {
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, HASH_BYTES);
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(e);
+    }
+  }
+}
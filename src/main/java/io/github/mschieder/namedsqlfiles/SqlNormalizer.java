@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import io.github.mschieder.namedsqlfiles.SqlScanner.Kind;
+import io.github.mschieder.namedsqlfiles.SqlScanner.Token;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Normalizes SQL text: strips comments (except optimizer hints), collapses whitespace and
+ * normalizes line endings. String literals, quoted identifiers and dollar quoted strings are never
+ * changed.
+ *
+ * <p>The dialect of a SQL file is unknown, a backslash in a string literal is an escape in MySQL,
+ * but an ordinary character in standard SQL. SQL text, whose literals end at different positions in
+ * both readings, is left unchanged.
+ *
+ * @author Michael Schieder
+ */
+class SqlNormalizer {
+
+  /** Normalization steps. */
+  enum Step {
+    /** Strip {@code --} and {@code /* *}{@code /} comments, optimizer hints are kept. */
+    COMMENTS,
+    /** Collapse whitespace to a single blank and trim. */
+    WHITESPACE,
+    /** Normalize line endings to '\n'. */
+    LINE_ENDINGS;
+
+    static Step of(String name) {
+      return switch (name.trim().toLowerCase(Locale.ROOT)) {
+        case "comments" -> COMMENTS;
+        case "whitespace" -> WHITESPACE;
+        case "lineendings" -> LINE_ENDINGS;
+        default -> throw new IllegalArgumentException("unknown normalization '" + name + "'.");
+      };
+    }
+
+    /** Returns the value of the step in the {@code namedsqlfiles.normalize} option. */
+    String option() {
+      return switch (this) {
+        case COMMENTS -> "comments";
+        case WHITESPACE -> "whitespace";
+        case LINE_ENDINGS -> "lineEndings";
+      };
+    }
+  }
+
+  private final Set<Step> steps;
+
+  SqlNormalizer(Set<Step> steps) {
+    this.steps = steps.isEmpty() ? EnumSet.noneOf(Step.class) : EnumSet.copyOf(steps);
+  }
+
+  boolean isEnabled() {
+    return !steps.isEmpty();
+  }
+
+  /** Returns the steps as the value of the {@code namedsqlfiles.normalize} option. */
+  String option() {
+    return isEnabled() ? steps.stream().map(Step::option).collect(Collectors.joining(",")) : "none";
+  }
+
+  String normalize(String sql) {
+    if (!isEnabled()) {
+      return sql;
+    }
+    var tokens = SqlScanner.scan(sql);
+    if (sql.indexOf('\\') >= 0 && !tokens.equals(SqlScanner.scan(sql, true))) {
+      return sql;
+    }
+    var builder = new StringBuilder(sql.length());
+    boolean pendingWhitespace = false;
+    Token previous = null;
+    for (Token token : tokens) {
+      if (steps.contains(Step.COMMENTS)
+          && (token.is(Kind.LINE_COMMENT) || token.is(Kind.BLOCK_COMMENT))) {
+        // a removed comment still separates its neighbours
+        if (steps.contains(Step.WHITESPACE)) {
+          pendingWhitespace = true;
+        } else if (token.is(Kind.BLOCK_COMMENT)) {
+          builder.append(' ');
+        }
+        continue;
+      }
+      if (steps.contains(Step.WHITESPACE) && token.is(Kind.WHITESPACE)) {
+        pendingWhitespace = true;
+        continue;
+      }
+      if (pendingWhitespace) {
+        if (previous != null) {
+          // a line comment must be terminated by a line end
+          builder.append(previous.is(Kind.LINE_COMMENT) ? "\n" : " ");
+        }
+        pendingWhitespace = false;
+      }
+      builder.append(
+          steps.contains(Step.LINE_ENDINGS) && token.is(Kind.WHITESPACE)
+              ? normalizeLineEndings(token.text())
+              : token.text());
+      previous = token;
+    }
+    return builder.toString();
+  }
+
+  private static String normalizeLineEndings(String text) {
+    return text.replace("\r\n", "\n").replace('\r', '\n');
+  }
+}
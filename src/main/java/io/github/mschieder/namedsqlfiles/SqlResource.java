@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A located and decoded resource.
+ *
+ * @param name the resource name
+ * @param content the decoded content
+ * @param lastModified the last modified time of the resource, 0 if unknown
+ * @param hash the hex encoded SHA-256 hash of the content
+ * @author Michael Schieder
+ */
+record SqlResource(String name, String content, long lastModified, String hash) {
+
+  static SqlResource of(String name, String content, long lastModified) {
+    return new SqlResource(name, content, lastModified, hash(content));
+  }
+
+  SqlResource withContent(String content) {
+    return content.equals(this.content) ? this : SqlResource.of(name, content, lastModified);
+  }
+
+  static String hash(String content) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is required on every java platform
+      throw new IllegalStateException(e);
+    }
+  }
+}
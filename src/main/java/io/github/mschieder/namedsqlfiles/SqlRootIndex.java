@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+
+/**
+ * In-memory index of the files below the SQL source roots, built with a single walk of each root.
+ * Resource names are the '/' separated paths relative to their root, the first root containing a
+ * name wins. The index is immutable, shared by all query processors of the same compilation, like
+ * the {@link ResourceCache}, and thread safe.
+ *
+ * @author Michael Schieder
+ */
+class SqlRootIndex {
+  /** An index without roots. */
+  static final SqlRootIndex EMPTY = new SqlRootIndex(Map.of());
+
+  /** Files of at least this size are read memory-mapped. */
+  static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
+
+  private static final Map<Elements, SqlRootIndex> INDEXES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final Map<String, Entry> entries;
+
+  /**
+   * An indexed file.
+   *
+   * @param path the file
+   * @param size the size in bytes
+   * @param lastModified the last modified time in milliseconds
+   */
+  record Entry(Path path, long size, long lastModified) {}
+
+  private SqlRootIndex(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Returns the index of the processing environment, that is built on first use.
+   *
+   * @param processingEnv the processing environment
+   * @param roots the SQL source roots
+   * @return the index
+   * @throws UncheckedIOException if a root cannot be walked
+   */
+  static SqlRootIndex forEnvironment(ProcessingEnvironment processingEnv, List<Path> roots) {
+    if (roots.isEmpty()) {
+      return EMPTY;
+    }
+    return INDEXES.computeIfAbsent(
+        processingEnv.getElementUtils(),
+        key -> {
+          try {
+            return of(roots);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /**
+   * Walks the roots once.
+   *
+   * @param roots the SQL source roots
+   * @return the index
+   * @throws IOException if a root cannot be walked
+   */
+  static SqlRootIndex of(List<Path> roots) throws IOException {
+    Map<String, Entry> entries = new HashMap<>();
+    for (var root : roots) {
+      Files.walkFileTree(
+          root,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+              if (attributes.isRegularFile()) {
+                entries.putIfAbsent(
+                    resourceName(root.relativize(file)),
+                    new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+    return new SqlRootIndex(Map.copyOf(entries));
+  }
+
+  private static String resourceName(Path relativePath) {
+    return StreamSupport.stream(relativePath.spliterator(), false)
+        .map(Path::toString)
+        .collect(Collectors.joining("/"));
+  }
+
+  Optional<Entry> find(String resourceName) {
+    return Optional.ofNullable(entries.get(resourceName));
+  }
+
+  /**
+   * Reads an indexed file, large files are read memory-mapped.
+   *
+   * @param entry the indexed file
+   * @return the UTF-8 decoded content
+   * @throws IOException if the file cannot be read
+   */
+  static String read(Entry entry) throws IOException {
+    if (entry.size() < MAPPED_READ_THRESHOLD) {
+      return new String(Files.readAllBytes(entry.path()), StandardCharsets.UTF_8);
+    }
+    try (var channel = FileChannel.open(entry.path(), StandardOpenOption.READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits SQL text into tokens, that are sufficient to transform SQL without changing its meaning:
+ * comments, optimizer hints, string literals, quoted identifiers, dollar quoted strings, whitespace
+ * and everything else.
+ *
+ * @author Michael Schieder
+ */
+class SqlScanner {
+
+  /** Token kinds. */
+  enum Kind {
+    WHITESPACE,
+    /** {@code -- ...} up to, but not including the line end. */
+    LINE_COMMENT,
+    /** {@code /* ... *}{@code /}. */
+    BLOCK_COMMENT,
+    /** {@code /*+ ... *}{@code /}. */
+    HINT,
+    /** {@code '...'} or PostgreSQL's {@code E'...'}. */
+    STRING,
+    /** {@code "..."} or {@code `...`}. */
+    QUOTED_IDENTIFIER,
+    /** PostgreSQL's {@code $tag$ ... $tag$}. */
+    DOLLAR_QUOTED,
+    SEMICOLON,
+    OTHER
+  }
+
+  /**
+   * A token.
+   *
+   * @param kind the token kind
+   * @param text the token text
+   * @param offset the offset of the token in the scanned text
+   */
+  record Token(Kind kind, String text, int offset) {
+    boolean is(Kind kind) {
+      return this.kind == kind;
+    }
+
+    /** Whether the token is neither whitespace nor a comment. */
+    boolean isCode() {
+      return kind != Kind.WHITESPACE && kind != Kind.LINE_COMMENT && kind != Kind.BLOCK_COMMENT;
+    }
+  }
+
+  private SqlScanner() {}
+
+  static List<Token> scan(String sql) {
+    return scan(sql, false);
+  }
+
+  /**
+   * Scans SQL text.
+   *
+   * @param sql the SQL text
+   * @param backslashEscapes whether backslashes escape characters in all string literals, like in
+   *     MySQL, or in PostgreSQL's {@code E'...'} strings only
+   * @return the tokens
+   */
+  static List<Token> scan(String sql, boolean backslashEscapes) {
+    List<Token> tokens = new ArrayList<>();
+    int pos = 0;
+    int length = sql.length();
+    while (pos < length) {
+      char c = sql.charAt(pos);
+      int end;
+      Kind kind;
+      if (Character.isWhitespace(c)) {
+        end = pos + 1;
+        while (end < length && Character.isWhitespace(sql.charAt(end))) {
+          end++;
+        }
+        kind = Kind.WHITESPACE;
+      } else if (sql.startsWith("--", pos)) {
+        end = pos + 2;
+        while (end < length && sql.charAt(end) != '\n' && sql.charAt(end) != '\r') {
+          end++;
+        }
+        kind = Kind.LINE_COMMENT;
+      } else if (sql.startsWith("/*", pos)) {
+        int close = sql.indexOf("*/", pos + 2);
+        end = close < 0 ? length : close + 2;
+        kind = sql.startsWith("/*+", pos) ? Kind.HINT : Kind.BLOCK_COMMENT;
+      } else if (c == '\'') {
+        end = quotedEnd(sql, pos, '\'', backslashEscapes);
+        kind = Kind.STRING;
+      } else if (isEscapeStringStart(sql, pos)) {
+        end = quotedEnd(sql, pos + 1, '\'', true);
+        kind = Kind.STRING;
+      } else if (c == '"' || c == '`') {
+        end = quotedEnd(sql, pos, c, false);
+        kind = Kind.QUOTED_IDENTIFIER;
+      } else if (c == '$' && dollarTagEnd(sql, pos) > 0) {
+        var tag = sql.substring(pos, dollarTagEnd(sql, pos));
+        int close = sql.indexOf(tag, pos + tag.length());
+        end = close < 0 ? length : close + tag.length();
+        kind = Kind.DOLLAR_QUOTED;
+      } else if (c == ';') {
+        end = pos + 1;
+        kind = Kind.SEMICOLON;
+      } else {
+        end = pos + 1;
+        while (end < length && !isTokenStart(sql, end)) {
+          end++;
+        }
+        kind = Kind.OTHER;
+      }
+      tokens.add(new Token(kind, sql.substring(pos, end), pos));
+      pos = end;
+    }
+    return tokens;
+  }
+
+  private static boolean isTokenStart(String sql, int pos) {
+    char c = sql.charAt(pos);
+    return Character.isWhitespace(c)
+        || c == '\''
+        || c == '"'
+        || c == '`'
+        || c == ';'
+        || isEscapeStringStart(sql, pos)
+        || sql.startsWith("--", pos)
+        || sql.startsWith("/*", pos)
+        || (c == '$' && dollarTagEnd(sql, pos) > 0);
+  }
+
+  /** Whether an {@code E'...'} string starts at the position and not within an identifier. */
+  private static boolean isEscapeStringStart(String sql, int pos) {
+    return (sql.charAt(pos) == 'E' || sql.charAt(pos) == 'e')
+        && pos + 1 < sql.length()
+        && sql.charAt(pos + 1) == '\''
+        && (pos == 0 || !Character.isJavaIdentifierPart(sql.charAt(pos - 1)));
+  }
+
+  /**
+   * Returns the end of a quoted token, doubled quote characters and, if enabled, backslashes are
+   * escapes.
+   */
+  private static int quotedEnd(String sql, int pos, char quote, boolean backslashEscapes) {
+    int end = pos + 1;
+    while (end < sql.length()) {
+      if (backslashEscapes && sql.charAt(end) == '\\') {
+        end += 2;
+        continue;
+      }
+      if (sql.charAt(end) == quote) {
+        if (end + 1 < sql.length() && sql.charAt(end + 1) == quote) {
+          end += 2;
+          continue;
+        }
+        return end + 1;
+      }
+      end++;
+    }
+    return Math.min(end, sql.length());
+  }
+
+  /**
+   * Returns the end of an opening dollar quote tag like {@code $$} or {@code $body$}, or -1. Tags
+   * must not start with a digit, so that positional parameters like {@code $1} are not matched.
+   */
+  private static int dollarTagEnd(String sql, int pos) {
+    if (pos > 0 && Character.isJavaIdentifierPart(sql.charAt(pos - 1))) {
+      // part of an identifier
+      return -1;
+    }
+    int end = pos + 1;
+    if (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+      return -1;
+    }
+    while (end < sql.length()
+        && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+      end++;
+    }
+    return end < sql.length() && sql.charAt(end) == '$' ? end + 1 : -1;
+  }
+}
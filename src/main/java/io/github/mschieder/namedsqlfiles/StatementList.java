@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles;
+
+import io.github.mschieder.namedsqlfiles.SqlScanner.Kind;
+import io.github.mschieder.namedsqlfiles.SqlScanner.Token;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The statements of a modifying query, separated by semicolons. Semicolons in comments, string
+ * literals, quoted identifiers and dollar quoted strings do not separate statements, a trailing
+ * semicolon does not start another statement.
+ *
+ * <p>The statements are stored as the properties {@code <query name>#statements}, the number of
+ * statements, and {@code <query name>#statement.<index>} by 1-based index, e.g. {@code
+ * sql/person/archive.sql#statement.2=delete from person where ...}. A single statement is not
+ * stored. The statements of a dialect variant are stored as {@code <query
+ * name>#dialect.<dialect>.statements} and {@code <query name>#dialect.<dialect>.statement.<index>},
+ * a single statement as well, so that they replace the statements of the query with the dialect.
+ *
+ * @param statements the statements without the separating semicolons, blank if empty
+ * @author Michael Schieder
+ */
+record StatementList(List<String> statements) {
+  private static final String STATEMENTS = "statements";
+  private static final String STATEMENT_PREFIX = "statement.";
+  private static final String DIALECT_PREFIX = "dialect.";
+
+  StatementList {
+    statements = List.copyOf(statements);
+  }
+
+  /**
+   * Splits a query into its statements.
+   *
+   * @param sql the query
+   * @return the statements
+   */
+  static StatementList parse(String sql) {
+    List<String> statements = new ArrayList<>();
+    int start = 0;
+    boolean code = false;
+    for (Token token : SqlScanner.scan(sql)) {
+      if (token.is(Kind.SEMICOLON)) {
+        statements.add(sql.substring(start, token.offset()).strip());
+        start = token.offset() + 1;
+        code = false;
+      } else if (token.isCode()) {
+        code = true;
+      }
+    }
+    if (code || statements.isEmpty()) {
+      statements.add(sql.substring(start).strip());
+    }
+    return new StatementList(statements);
+  }
+
+  /** Whether the query consists of more than one statement. */
+  boolean isMultiple() {
+    return statements.size() > 1;
+  }
+
+  /** The 1-based indexes of the statements, that are empty or consist of comments only. */
+  List<Integer> emptyStatements() {
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < statements.size(); i++) {
+      if (SqlScanner.scan(statements.get(i)).stream().noneMatch(Token::isCode)) {
+        indexes.add(i + 1);
+      }
+    }
+    return indexes;
+  }
+
+  Properties toProperties(String queryName) {
+    var properties = new Properties();
+    if (isMultiple()) {
+      store(properties, queryName + QueryMetadata.SEPARATOR);
+    }
+    return properties;
+  }
+
+  Properties toProperties(String queryName, String dialect) {
+    var properties = new Properties();
+    store(properties, queryName + QueryMetadata.SEPARATOR + DIALECT_PREFIX + dialect + ".");
+    return properties;
+  }
+
+  private void store(Properties properties, String prefix) {
+    properties.put(prefix + STATEMENTS, Integer.toString(statements.size()));
+    if (isMultiple()) {
+      for (int i = 0; i < statements.size(); i++) {
+        properties.put(prefix + STATEMENT_PREFIX + (i + 1), statements.get(i));
+      }
+    }
+  }
+}
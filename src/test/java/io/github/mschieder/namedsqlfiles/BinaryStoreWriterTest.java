@@ -0,0 +1,61 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BinaryStoreWriterTest {
+
+  private static ByteBuffer write(Map<?, ?> namedQueries) throws IOException {
+    var out = new ByteArrayOutputStream();
+    BinaryStoreWriter.write(namedQueries, out);
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  private static String string(ByteBuffer store, int offset, int length) {
+    var bytes = new byte[length];
+    store.get(offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void test_01_layout_ok() throws IOException {
+    var store =
+        write(
+            Map.of(
+                "sql/b.sql", "select 'b'",
+                "sql/ä.sql", "select 'ä'",
+                "sql/a.sql", "select 'a'"));
+
+    assertThat(store.getInt(0)).isEqualTo(BinaryStoreWriter.MAGIC);
+    assertThat(store.getInt(4)).isEqualTo(BinaryStoreWriter.VERSION);
+    assertThat(store.getInt(8)).isEqualTo(3);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      int entry = BinaryStoreWriter.HEADER_SIZE + i * BinaryStoreWriter.INDEX_ENTRY_SIZE;
+      var key = string(store, store.getInt(entry), store.getInt(entry + 4));
+      var query = string(store, store.getInt(entry + 8), store.getInt(entry + 12));
+      assertThat(query).isEqualTo("select '" + key.substring(4, key.length() - 4) + "'");
+      keys.add(key);
+    }
+    // sorted by the unsigned UTF-8 bytes
+    assertThat(keys).containsExactly("sql/a.sql", "sql/b.sql", "sql/ä.sql");
+    int last = BinaryStoreWriter.HEADER_SIZE + 2 * BinaryStoreWriter.INDEX_ENTRY_SIZE;
+    assertThat(store.getInt(last + 8) + store.getInt(last + 12)).isEqualTo(store.limit());
+  }
+
+  @Test
+  void test_02_empty_ok() throws IOException {
+    var store = write(Map.of());
+
+    assertThat(store.limit()).isEqualTo(BinaryStoreWriter.HEADER_SIZE);
+    assertThat(store.getInt(8)).isZero();
+  }
+}
@@ -0,0 +1,89 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class CountQueryDeriverTest {
+
+  @Test
+  void test_01_projection_and_order_by_dropped_ok() {
+    assertThat(
+            CountQueryDeriver.derive(
+                "-- all persons\nselect p.*, upper(p.name) from person p where p.age > :age"
+                    + " order by p.name;"))
+        .isEqualTo("-- all persons\nselect count(*) from person p where p.age > :age");
+  }
+
+  @Test
+  void test_02_hint_kept_ok() {
+    assertThat(CountQueryDeriver.derive("SELECT /*+ INDEX(p person_idx) */ p.id FROM person p"))
+        .isEqualTo("select /*+ INDEX(p person_idx) */ count(*) FROM person p");
+  }
+
+  @Test
+  void test_03_left_join_on_primary_key_dropped_ok() {
+    assertThat(
+            CountQueryDeriver.derive(
+                "select p.*, a.city from person p\n"
+                    + "  left outer join address a on a.id = p.address_id\n"
+                    + "  join company c on p.company_id = c.id\n"
+                    + " where c.name = ?1 order by a.city"))
+        .isEqualTo(
+            "select count(*) from person p\n"
+                + "  join company c on p.company_id = c.id\n"
+                + " where c.name = ?1");
+  }
+
+  @Test
+  void test_04_left_join_kept_if_referenced_ok() {
+    var sql = "select p.* from person p left join address a on a.id = p.address_id";
+    assertThat(CountQueryDeriver.derive(sql + " where a.city = :city"))
+        .isEqualTo(
+            "select count(*) from person p left join address a on a.id = p.address_id"
+                + " where a.city = :city");
+    // unqualified columns may belong to the joined table
+    assertThat(CountQueryDeriver.derive(sql + " where city = :city"))
+        .isEqualTo(
+            "select count(*) from person p left join address a on a.id = p.address_id"
+                + " where city = :city");
+  }
+
+  @Test
+  void test_05_left_join_kept_if_not_on_primary_key_ok() {
+    assertThat(
+            CountQueryDeriver.derive(
+                "select p.* from person p left join phone ph on ph.person_id = p.id"))
+        .isEqualTo("select count(*) from person p left join phone ph on ph.person_id = p.id");
+  }
+
+  @Test
+  void test_06_subqueries_kept_ok() {
+    assertThat(
+            CountQueryDeriver.derive(
+                "select p.*, (select count(*) from phone ph where ph.person_id = p.id) phones"
+                    + " from person p where p.id in (select person_id from team order by 1)"))
+        .isEqualTo(
+            "select count(*) from person p where p.id in (select person_id from team order by 1)");
+  }
+
+  @Test
+  void test_07_unsafe_rewrites_rejected_nok() {
+    assertRejected("select distinct p.name from person p", "unsupported projection 'distinct'");
+    assertRejected("select p.name from person p group by p.name", "unsupported clause 'group'");
+    assertRejected("select max(p.age) from person p", "aggregate function 'max' in the projection");
+    assertRejected("select a from b union select a from c", "unsupported clause 'union'");
+    assertRejected("select p.* from person p order by p.id limit 10", "unsupported clause 'limit'");
+    assertRejected("select :x as x from person p", "parameter ':x' in the projection");
+    assertRejected("select p.* from person p order by ?1", "parameter '?1' in the ORDER BY clause");
+    assertRejected("with t as (select 1) select * from t", "not a select statement");
+    assertRejected("select 1", "missing FROM clause");
+  }
+
+  private static void assertRejected(String sql, String message) {
+    assertThatThrownBy(() -> CountQueryDeriver.derive(sql))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage(message);
+  }
+}
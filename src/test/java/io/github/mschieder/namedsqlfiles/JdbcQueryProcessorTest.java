@@ -1,17 +1,35 @@
 package io.github.mschieder.namedsqlfiles;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
+import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import javax.annotation.processing.Processor;
+import javax.tools.StandardLocation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.support.PropertiesLoaderSupport;
+import org.springframework.data.jdbc.repository.support.JdbcRepositoryFactoryBean;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.config.NamedQueriesBeanDefinitionBuilder;
+import org.springframework.data.repository.core.NamedQueries;
 
 class JdbcQueryProcessorTest extends QueryProcessorTestBase {
 
   @BeforeEach
   void prepare() {
     expectedGeneratedPropertiesFile = "META-INF/jdbc-named-queries.properties";
+    expectedGeneratedManifestFile = "META-INF/jdbc-named-queries.manifest";
     expectedPropertiesFileEntries =
         Map.of(
             "sql/person/all.sql",
@@ -67,4 +85,174 @@ class JdbcQueryProcessorTest extends QueryProcessorTestBase {
         .containsAllEntriesOf(
             Map.of("TESTQUERY", "first", "TESTQUERY2", "second", "TESTQUERY3", "third"));
   }
+
+  @Test
+  void test_05_parsed_parameters_ok() {
+    // given: a query with repeated, @Param named and ignored parameters
+    whenCompilePersonExample("jdbc/05", "-Anamedsqlfiles.parseParameters=true");
+
+    // then: the parameters are checked only, they are parsed again at runtime
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(
+            compilation.generatedFile(
+                StandardLocation.CLASS_OUTPUT, "META-INF/jdbc-named-queries-metadata.properties"))
+        .isEmpty();
+  }
+
+  @Test
+  void test_06_unknown_parameter_nok() {
+    // given: a query with a parameter, that is no parameter of the query method
+    whenCompilePersonExample("jdbc/06", "-Anamedsqlfiles.parseParameters=true");
+
+    // then: the parameter is reported on the query method
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "parameter ':lastname' of 'sql/person/byName.sql' is not a parameter of the query"
+                + " method [name].")
+        .inFile(JavaFileObjects.forResource("jdbc/06/PersonRepository.java"))
+        .onLineContaining("byName(String name);");
+  }
+
+  @Test
+  void test_07_statement_list_ok() throws IOException {
+    // given: a modifying query with 2 statements and a query, that is not modifying
+    whenCompilePersonExample("jdbc/07", "-Anamedsqlfiles.parseParameters=true");
+
+    // then: the statements of the modifying query are written by index
+    assertThat(compilation).succeededWithoutWarnings();
+    var metadata = new Properties();
+    metadata.load(
+        compilation
+            .generatedFile(
+                StandardLocation.CLASS_OUTPUT, "META-INF/jdbc-named-queries-metadata.properties")
+            .orElseThrow()
+            .openInputStream());
+    assertThat(metadata)
+        .containsEntry("sql/person/archive.sql#statements", "2")
+        .containsEntry(
+            "sql/person/archive.sql#statement.1",
+            "insert into person_archive select * from person where lastname = :last")
+        .doesNotContainKey("sql/person/archive.sql#parameters")
+        .doesNotContainKey("sql/person/all.sql#statements");
+    assertThat(metadata.getProperty("sql/person/archive.sql#statement.2"))
+        .endsWith("delete from person where lastname = :last and firstname <> ';'");
+  }
+
+  @Test
+  void test_08_statement_list_nok() {
+    // given: a modifying query with an empty statement and an unknown parameter in statement 3
+    whenCompilePersonExample("jdbc/08", "-Anamedsqlfiles.parseParameters=true");
+
+    // then: the errors point to the statements
+    assertThat(compilation).hadErrorCount(2);
+    assertThat(compilation)
+        .hadErrorContaining("statement 2 of 'sql/person/archive.sql' is empty.")
+        .inFile(JavaFileObjects.forResource("jdbc/08/PersonRepository.java"))
+        .onLineContaining("archive(String lastname);");
+    assertThat(compilation)
+        .hadErrorContaining(
+            "parameter ':last' of 'sql/person/archive.sql#statement.3' is not a parameter of the"
+                + " query method [lastname].");
+  }
+
+  @Test
+  void test_09_generated_named_queries_replace_the_properties_bean_definition_ok()
+      throws Exception {
+    // given: the generated configuration
+    whenCompilePersonExample(
+        "jdbc/02", "-Anamedsqlfiles.namedQueriesPackage=io.github.mschieder.namedsqlfiles.gen");
+    assertThat(compilation).succeededWithoutWarnings();
+    var postProcessorMethod =
+        loadGeneratedClass(
+                "io.github.mschieder.namedsqlfiles.gen.JdbcNamedQueriesAutoConfiguration")
+            .getDeclaredMethod("jdbcNamedQueriesPostProcessor");
+    postProcessorMethod.setAccessible(true);
+    var postProcessor = (BeanFactoryPostProcessor) postProcessorMethod.invoke(null);
+
+    // given: a repository factory bean definition, that references the properties file based named
+    // queries like the definitions registered by Spring Data
+    var beanFactory = new DefaultListableBeanFactory();
+    List<String> propertiesLoaders = new ArrayList<>();
+    beanFactory.addBeanPostProcessor(
+        new BeanPostProcessor() {
+          @Override
+          public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof PropertiesLoaderSupport) {
+              propertiesLoaders.add(beanName);
+            }
+            return bean;
+          }
+        });
+    beanFactory.registerBeanDefinition(
+        "jdbc.named-queries#0",
+        new NamedQueriesBeanDefinitionBuilder("classpath*:META-INF/jdbc-named-queries.properties")
+            .build(null));
+    beanFactory.registerBeanDefinition(
+        "personRepository",
+        BeanDefinitionBuilder.rootBeanDefinition(CapturingRepositoryFactoryBean.class)
+            .addConstructorArgValue(Repository.class)
+            .addPropertyValue("namedQueries", new RuntimeBeanReference("jdbc.named-queries#0"))
+            .getBeanDefinition());
+
+    // when: the bean factory is post processed and the singletons are created
+    postProcessor.postProcessBeanFactory(beanFactory);
+    beanFactory.preInstantiateSingletons();
+
+    // then: the repository uses the generated named queries, no properties file is loaded
+    var namedQueries =
+        ((CapturingRepositoryFactoryBean) beanFactory.getBean("&personRepository")).namedQueries;
+    expectedPropertiesFileEntries.forEach(
+        (name, query) -> assertThat(namedQueries.getQuery(name)).isEqualTo(query));
+    assertThat(propertiesLoaders).isEmpty();
+
+    // then: unknown names are looked up in the properties file based named queries
+    assertThat(namedQueries.hasQuery("Person.findByLastname")).isFalse();
+    assertThat(propertiesLoaders).hasSize(1);
+  }
+
+  /** Captures the named queries, that are set by the bean factory. */
+  static class CapturingRepositoryFactoryBean
+      extends JdbcRepositoryFactoryBean<Repository<Object, Long>, Object, Long> {
+    NamedQueries namedQueries;
+
+    CapturingRepositoryFactoryBean(Class<? extends Repository<Object, Long>> repositoryInterface) {
+      super(repositoryInterface);
+    }
+
+    @Override
+    public void setNamedQueries(NamedQueries namedQueries) {
+      this.namedQueries = namedQueries;
+      super.setNamedQueries(namedQueries);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+      // no jdbc operations
+    }
+  }
+
+  @Test
+  void test_10_dialect_statement_list_ok() throws IOException {
+    // given: a modifying query with 2 statements and a dialect variant with 3 statements
+    whenCompilePersonExample(
+        "jdbc/07", "-Anamedsqlfiles.parseParameters=true", "-Anamedsqlfiles.dialects=h2");
+
+    // then: the statements of the variant are written for the dialect
+    assertThat(compilation).succeededWithoutWarnings();
+    var metadata = new Properties();
+    metadata.load(
+        compilation
+            .generatedFile(
+                StandardLocation.CLASS_OUTPUT, "META-INF/jdbc-named-queries-metadata.properties")
+            .orElseThrow()
+            .openInputStream());
+    assertThat(metadata)
+        .containsEntry("sql/person/archive.sql#statements", "2")
+        .containsEntry("sql/person/archive.sql#dialect.h2.statements", "3")
+        .containsEntry(
+            "sql/person/archive.sql#dialect.h2.statement.2",
+            "delete from person_address where lastname = :last")
+        .doesNotContainKey("sql/person/all.sql#dialect.h2.statements");
+  }
 }
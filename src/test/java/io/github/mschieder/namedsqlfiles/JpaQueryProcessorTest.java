@@ -18,9 +18,36 @@ package io.github.mschieder.namedsqlfiles;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
 
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.repository.core.NamedQueries;
 
 class JpaQueryProcessorTest extends QueryProcessorTestBase {
 
@@ -28,6 +55,7 @@ class JpaQueryProcessorTest extends QueryProcessorTestBase {
   void setup() {
     compilation = null;
     expectedGeneratedPropertiesFile = "META-INF/jpa-named-queries.properties";
+    expectedGeneratedManifestFile = "META-INF/jpa-named-queries.manifest";
     expectedPropertiesFileEntries =
         Map.of(
             "sql/person/all.sql",
@@ -92,4 +120,680 @@ class JpaQueryProcessorTest extends QueryProcessorTestBase {
                 "TESTQUERY3.COUNT",
                 "sixth"));
   }
+
+  @Test
+  void test_05_stale_generated_entries_then_prune_ok() {
+    // given: an existing properties file with entries of a previous build, one of them deleted
+    whenCompilePersonExample("jpa/05");
+
+    // then: compilation success, the 3 referenced queries are in the properties file
+    assertPersonCompilationSuccess();
+    // then: the stale generated entry was removed, the manually added entry was kept
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsEntry("TESTQUERY", "first")
+        .doesNotContainKey("sql/person/deleted.sql");
+  }
+
+  @Test
+  void test_06_unchanged_named_queries_then_skip_ok() {
+    // given: an existing properties file and manifest, that already contain the 3 queries
+    whenCompilePersonExample("jpa/06");
+
+    // then: compilation success, the properties file was not rewritten
+    assertPersonCompilationSuccessWithNoGeneratedPropertiesFile();
+  }
+
+  @Test
+  void test_07_parallel_sql_file_queries_ok() {
+    // given: repository with sql file based query names only
+    // when: compile with parallel resource loading
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.parallelism=4");
+    // then: same result as sequential loading
+    assertPersonCompilationSuccess();
+  }
+
+  @Test
+  void test_08_parallel_missing_sql_resource_nok() {
+    // given: repository with 3 referenced sqls, 1 sql resource is missing
+    whenCompilePersonExample("jpa/01", "-Anamedsqlfiles.parallelism=4");
+
+    // then: the error is reported on the referencing method
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining("resource 'sql/person/all.sql' not found.")
+        .inFile(compilation.sourceFiles().get(1))
+        .onLineContaining("Page<Person> all(Pageable pageable);");
+  }
+
+  @Test
+  void test_09_generated_named_queries_class_ok() throws Exception {
+    // given: repository with sql file based query names only
+    // when: compile with a generated named queries class
+    whenCompilePersonExample(
+        "jpa/02", "-Anamedsqlfiles.namedQueriesPackage=io.github.mschieder.namedsqlfiles.gen");
+
+    // then: the named queries class and its auto-configuration were generated
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("io.github.mschieder.namedsqlfiles.gen.JpaNamedQueries")
+        .contentsAsUtf8String()
+        .contains(
+            "case \"sql/person/count.sql\": return \"select count(*)\\r\\n    from person\";");
+    assertThat(compilation)
+        .generatedFile(
+            StandardLocation.CLASS_OUTPUT,
+            "META-INF/spring/org.springframework.boot.autoconfigure.AutoConfiguration.imports")
+        .contentsAsUtf8String()
+        .isEqualTo("io.github.mschieder.namedsqlfiles.gen.JpaNamedQueriesAutoConfiguration\n");
+
+    // then: the generated class returns the same queries as the properties file
+    var namedQueries =
+        (NamedQueries)
+            loadGeneratedClass("io.github.mschieder.namedsqlfiles.gen.JpaNamedQueries")
+                .getField("INSTANCE")
+                .get(null);
+    expectedPropertiesFileEntries.forEach(
+        (name, query) -> Assertions.assertThat(namedQueries.getQuery(name)).isEqualTo(query));
+    Assertions.assertThat(namedQueries.hasQuery("sql/person/unknown.sql")).isFalse();
+    Assertions.assertThatIllegalArgumentException()
+        .isThrownBy(() -> namedQueries.getQuery("sql/person/unknown.sql"));
+  }
+
+  @Test
+  void test_10_normalized_sql_file_queries_ok() throws IOException {
+    // given: repository with sql file based query names only
+    // when: compile with sql normalization
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.normalize=all");
+
+    // then: the multiline count query was normalized
+    assertThat(compilation).succeeded();
+    Assertions.assertThat(compilation.generatedFiles().stream().map(JavaFileObject::getName))
+        .containsExactlyInAnyOrder(
+            "/CLASS_OUTPUT/io/github/mschieder/namedsqlfiles/Person.class",
+            "/CLASS_OUTPUT/io/github/mschieder/namedsqlfiles/PersonRepository.class",
+            "/CLASS_OUTPUT/" + expectedGeneratedPropertiesFile,
+            "/CLASS_OUTPUT/" + expectedGeneratedManifestFile,
+            "/CLASS_OUTPUT/META-INF/jpa-named-queries.options");
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsEntry("sql/person/count.sql", "select count(*) from person");
+    // then: the normalization is recorded for the development mode
+    Assertions.assertThat(
+            loadProperties(compilation, "META-INF/jpa-named-queries.options").orElseThrow())
+        .containsExactly(Map.entry("normalize", "comments,whitespace,lineEndings"));
+  }
+
+  @Test
+  void test_11_queries_in_generated_sources_then_single_write_ok() {
+    // given: a repository and a repository generated by another processor in the first round
+    compilation =
+        Compiler.javac()
+            .withProcessors(new RepositoryGeneratingProcessor(), createProcessor("jpa/07"))
+            .compile(
+                JavaFileObjects.forResource("jpa/07/Person.java"),
+                JavaFileObjects.forResource("jpa/07/PersonRepository.java"));
+
+    // then: compilation success without errors of a repeated write
+    assertThat(compilation).succeededWithoutWarnings();
+    // then: the properties file contains the queries of both rounds
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsExactlyInAnyOrderEntriesOf(expectedPropertiesFileEntries);
+  }
+
+  @Test
+  void test_12_derived_count_queries_ok() {
+    // given: a Page returning method with a sql file query name, but without a count name
+    // when: compile with count query derivation
+    whenCompilePersonExample("jpa/08", "-Anamedsqlfiles.deriveCountQueries=true");
+
+    // then: the count query drops the projection, the unreferenced left join and the order by
+    expectedPropertiesFileEntries =
+        Map.of("sql/person/all.sql.count", "select count(*) from person p");
+    assertPersonCompilationSuccess();
+  }
+
+  @Test
+  void test_13_underivable_count_query_nok() {
+    // given: a Page returning method with a distinct sql file query
+    // when: compile with count query derivation
+    whenCompilePersonExample("jpa/09", "-Anamedsqlfiles.deriveCountQueries=true");
+
+    // then: compilation fails
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "count query of 'sql/person/lastnames.sql' cannot be derived: unsupported projection"
+                + " 'distinct'.");
+  }
+
+  @Test
+  void test_14_included_fragments_ok() {
+    // given: a sql file query including a fragment, that includes another fragment
+    whenCompilePersonExample("jpa/10");
+
+    // then: the fully expanded sql is written
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsEntry(
+            "sql/person/all.sql",
+            "select p.*\n"
+                + "  from person p\n"
+                + " where 1 = 1\n"
+                + "      and p.tenant_id = current_tenant()\n"
+                + "      and p.deleted = false\n");
+    // then: the fragment dependency graph contains the including queries only
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries.includes")
+        .contentsAsUtf8String()
+        .endsWith(
+            "sql/common/not_deleted.sql=sql/person/all.sql\n"
+                + "sql/common/tenant_filter.sql=sql/person/all.sql\n");
+  }
+
+  @Test
+  void test_15_include_cycle_nok() {
+    // given: fragments including each other
+    whenCompilePersonExample("jpa/11");
+
+    // then: the cycle is reported on the referencing query method
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "include cycle sql/person/all.sql -> sql/common/a.sql -> sql/common/b.sql"
+                + " -> sql/common/a.sql")
+        .inFile(JavaFileObjects.forResource("jpa/11/PersonRepository.java"))
+        .onLineContaining("all();");
+    Assertions.assertThat(compilation.errors().get(0).getMessage(null))
+        .doesNotContain("error while reading resource");
+  }
+
+  @Test
+  void test_16_dialect_variants_ok() throws Exception {
+    // given: a query with a postgresql variant, but without an oracle variant, and a portable query
+    whenCompilePersonExample(
+        "jpa/12",
+        "-Anamedsqlfiles.dialects=postgresql,oracle",
+        "-Anamedsqlfiles.namedQueriesPackage=io.github.mschieder.namedsqlfiles.gen");
+
+    // then: the missing oracle variant is reported
+    assertThat(compilation).succeeded();
+    assertThat(compilation).hadWarningCount(1);
+    assertThat(compilation)
+        .hadWarningContaining(
+            "missing dialect variants of 'sql/person/all.sql': sql/person/all.oracle.sql, the query"
+                + " is used instead.");
+
+    // then: a properties file per dialect with the dialect variants is written
+    var portable = "select p.* from person p order by p.id offset ? rows fetch next ? rows only";
+    var postgresql = "select p.* from person p order by p.id limit ? offset ?";
+    expectedGeneratedPropertiesFile = "META-INF/jpa-named-queries.postgresql.properties";
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsEntry("sql/person/all.sql", postgresql)
+        .containsKey("sql/person/getByLastname.sql");
+    expectedGeneratedPropertiesFile = "META-INF/jpa-named-queries.oracle.properties";
+    assertThatGeneratedNamedQueriesPropertiesFile().containsEntry("sql/person/all.sql", portable);
+    expectedGeneratedPropertiesFile = "META-INF/jpa-named-queries.properties";
+    assertThatGeneratedNamedQueriesPropertiesFile().containsEntry("sql/person/all.sql", portable);
+
+    // then: the generated configuration selects the named queries of the dialect
+    var selection =
+        loadGeneratedClass("io.github.mschieder.namedsqlfiles.gen.JpaNamedQueriesAutoConfiguration")
+            .getDeclaredMethod("namedQueries", String.class);
+    selection.setAccessible(true);
+    Assertions.assertThat(
+            ((NamedQueries) selection.invoke(null, "postgresql")).getQuery("sql/person/all.sql"))
+        .isEqualTo(postgresql);
+    Assertions.assertThat(
+            ((NamedQueries) selection.invoke(null, "")).getQuery("sql/person/all.sql"))
+        .isEqualTo(portable);
+  }
+
+  @Test
+  void test_17_query_metadata_ok() {
+    // given: a sql file with a metadata header
+    whenCompilePersonExample("jpa/13");
+
+    // then: the metadata is written
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedFile(
+            StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries-metadata.properties")
+        .contentsAsUtf8String()
+        .endsWith(
+            "sql/person/report.sql\\#fetchSize=5000\n"
+                + "sql/person/report.sql\\#hint.org.hibernate.readOnly=true\n"
+                + "sql/person/report.sql\\#maxRows=1000000\n"
+                + "sql/person/report.sql\\#timeout=3000\n");
+  }
+
+  @Test
+  void test_18_invalid_query_metadata_nok() {
+    // given: a sql file with an unknown metadata attribute
+    whenCompilePersonExample("jpa/14");
+
+    // then: the unknown attribute is reported on the query method
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "invalid metadata of 'sql/person/invalid.sql': unknown attribute '@fetchsize'.")
+        .inFile(JavaFileObjects.forResource("jpa/14/PersonRepository.java"))
+        .onLineContaining("invalid();");
+  }
+
+  @Test
+  void test_19_source_tags_ok() throws IOException {
+    // given: repository with sql file based query names only
+    // when: compile with source tags and normalization
+    whenCompilePersonExample(
+        "jpa/02", "-Anamedsqlfiles.sourceTags=true", "-Anamedsqlfiles.normalize=all");
+
+    // then: the normalized queries are prefixed with their source tags
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "sql/person/all.sql",
+                "/* nsf:sql/person/all.sql#e29b7cf2 */ select * from person",
+                "sql/person/count.sql",
+                "/* nsf:sql/person/count.sql#04584b0b */ select count(*) from person",
+                "sql/person/getByLastname.sql",
+                "/* nsf:sql/person/getByLastname.sql#190e8dd8 */ select p.* from person p where"
+                    + " p.lastname = ?"));
+    // then: the options are recorded for the development mode
+    Assertions.assertThat(
+            loadProperties(compilation, "META-INF/jpa-named-queries.options").orElseThrow())
+        .containsOnly(
+            Map.entry("normalize", "comments,whitespace,lineEndings"),
+            Map.entry("sourceTags", "true"));
+  }
+
+  @Test
+  void test_20_stats_ok() throws Exception {
+    // given: repository with sql file based query names only
+    // when: compile with statistics
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.stats=true");
+
+    // then: the named queries are generated as without statistics
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsOnlyKeys(
+            "sql/person/all.sql", "sql/person/count.sql", "sql/person/getByLastname.sql");
+
+    // then: a summary note and a JSON report were written
+    assertThat(compilation).hadNoteContaining("TestableJpaQueryProcessor: 3 queries in 2 rounds");
+    Assertions.assertThat(
+            compilation
+                .generatedFile(
+                    StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries-stats.json")
+                .orElseThrow()
+                .getCharContent(true)
+                .toString())
+        .contains(
+            "\"processor\": \"TestableJpaQueryProcessor\"",
+            "\"queries\": 3",
+            "\"scan\": {\"count\": 1,",
+            "\"transform\": {\"count\": 3,",
+            "\"write\": {\"count\": 2,",
+            "\"mostReferencedResources\": [\n    {\"name\": \"sql/person/");
+  }
+
+  @Test
+  void test_21_binary_store_ok() throws Exception {
+    // given: repository with sql file based query names only
+    // when: compile with a binary store
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.binaryStore=true");
+
+    // then: the properties file and the binary store were written
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsOnlyKeys(
+            "sql/person/all.sql", "sql/person/count.sql", "sql/person/getByLastname.sql");
+    try (var inputStream =
+        compilation
+            .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries.bin")
+            .orElseThrow()
+            .openInputStream()) {
+      var store = ByteBuffer.wrap(inputStream.readAllBytes());
+      Assertions.assertThat(store.getInt(0)).isEqualTo(BinaryStoreWriter.MAGIC);
+      Assertions.assertThat(store.getInt(8)).isEqualTo(3);
+    }
+  }
+
+  private String classpathWithNamedQueries(Path directory, String content) throws IOException {
+    Files.createDirectories(directory.resolve("META-INF"));
+    Files.writeString(directory.resolve("META-INF/jpa-named-queries.properties"), content);
+    return directory + File.pathSeparator + directory.resolve("missing.jar");
+  }
+
+  @Test
+  void test_22_aggregate_classpath_ok(@TempDir Path tempDir) throws Exception {
+    // given: a classpath entry with other named queries
+    var classpath = classpathWithNamedQueries(tempDir, "sql/lib/report.sql=select 1\n");
+
+    // when: compile with the aggregated classpath
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.aggregateClasspath=" + classpath);
+
+    // then: the named queries of the module and the classpath were aggregated
+    assertThat(compilation).succeededWithoutWarnings();
+    var aggregate = new Properties();
+    try (var inputStream =
+        compilation
+            .generatedFile(
+                StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries-aggregate.properties")
+            .orElseThrow()
+            .openInputStream()) {
+      aggregate.load(inputStream);
+    }
+    Assertions.assertThat(aggregate)
+        .containsOnlyKeys(
+            "sql/lib/report.sql",
+            "sql/person/all.sql",
+            "sql/person/count.sql",
+            "sql/person/getByLastname.sql");
+  }
+
+  @Test
+  void test_23_aggregate_classpath_conflict_nok(@TempDir Path tempDir) throws Exception {
+    // given: a classpath entry with a different query of the same name
+    var classpath = classpathWithNamedQueries(tempDir, "sql/person/all.sql=select 1\n");
+
+    // when: compile with the aggregated classpath
+    whenCompilePersonExample("jpa/02", "-Anamedsqlfiles.aggregateClasspath=" + classpath);
+
+    // then: the conflict is an error
+    assertThat(compilation).failed();
+    assertThat(compilation)
+        .hadErrorContaining(
+            "named query 'sql/person/all.sql' of '" + tempDir + "' conflicts with 'this module'.");
+  }
+
+  @Test
+  void test_24_native_image_resource_config_ok() {
+    // given: repository with sql file based query names only
+    // when: compile with a native image configuration and a dialect
+    whenCompilePersonExample(
+        "jpa/02", "-Anamedsqlfiles.nativeImage=true", "-Anamedsqlfiles.dialects=postgresql");
+
+    // then: the generated resources are included in native images
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(
+            StandardLocation.CLASS_OUTPUT,
+            "META-INF/native-image/named-sqlfiles/jpa/resource-config.json")
+        .contentsAsUtf8String()
+        .isEqualTo(
+            "{\n"
+                + "  \"resources\": {\n"
+                + "    \"includes\": [\n"
+                + "      {\"pattern\": \"\\\\QMETA-INF/jpa-named-queries.properties\\\\E\"},\n"
+                + "      {\"pattern\":"
+                + " \"\\\\QMETA-INF/jpa-named-queries.postgresql.properties\\\\E\"},\n"
+                + "      {\"pattern\":"
+                + " \"\\\\QMETA-INF/jpa-named-queries-metadata.properties\\\\E\"}\n"
+                + "    ]\n"
+                + "  }\n"
+                + "}\n");
+  }
+
+  @Test
+  void test_25_resource_cache_shared_by_the_processors_ok() {
+    // given: a JPA and a JDBC repository referencing the same sql resources
+    List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    var locator =
+        new TestEnvironmentResourceLocator("jpa/15") {
+          @Override
+          Optional<SqlResource> load(String resourceName) throws IOException {
+            loaded.add(resourceName);
+            return super.load(resourceName);
+          }
+        };
+
+    // when: both processors compile them in one javac task, each with its own wrapped environment
+    var compilation =
+        Compiler.javac()
+            .withProcessors(
+                new TestableJpaQueryProcessor(locator, JpaQueryProcessorTest::wrap),
+                new TestableJdbcQueryProcessor(locator, JpaQueryProcessorTest::wrap))
+            .compile(
+                JavaFileObjects.forResource("jpa/15/Person.java"),
+                JavaFileObjects.forResource("jpa/15/PersonRepository.java"),
+                JavaFileObjects.forResource("jpa/15/PersonJdbcRepository.java"));
+
+    // then: both named queries files are generated, each sql resource was read once
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries.properties");
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/jdbc-named-queries.properties");
+    Assertions.assertThat(loaded)
+        .containsExactlyInAnyOrder("sql/person/all.sql", "sql/person/getByLastname.sql");
+  }
+
+  @Test
+  void test_26_partial_recompile_keeps_entries_of_other_types_ok(@TempDir Path tempDir)
+      throws Exception {
+    // given: a compilation of 2 repositories
+    var sources = "jpa/16/";
+    var first =
+        Compiler.javac()
+            .withProcessors(new TestableJpaQueryProcessor("jpa/16"))
+            .compile(
+                JavaFileObjects.forResource(sources + "Person.java"),
+                JavaFileObjects.forResource(sources + "PersonRepository.java"),
+                JavaFileObjects.forResource(sources + "PersonReportRepository.java"));
+    assertThat(first).succeeded();
+    Map<String, byte[]> output = new HashMap<>();
+    for (var file : first.generatedFiles()) {
+      var name = file.getName().substring("/CLASS_OUTPUT/".length());
+      try (var inputStream = file.openInputStream()) {
+        output.put(name, inputStream.readAllBytes());
+      }
+      Files.createDirectories(tempDir.resolve(name).getParent());
+      Files.write(tempDir.resolve(name), output.get(name));
+    }
+
+    // when: only one repository is compiled again
+    var partial = recompilePersonRepository(tempDir, output);
+
+    // then: the entry of the repository, that was not compiled, is kept
+    assertThat(partial).succeeded();
+    var properties =
+        loadProperties(partial, "META-INF/jpa-named-queries.properties")
+            .orElse(loadProperties(output, "META-INF/jpa-named-queries.properties"));
+    Assertions.assertThat(properties)
+        .containsOnlyKeys("sql/person/all.sql", "sql/person/report.sql");
+    // then: the fragment dependents of the repository, that was not compiled, are kept
+    Assertions.assertThat(
+            loadProperties(partial, "META-INF/jpa-named-queries.includes")
+                .orElse(loadProperties(output, "META-INF/jpa-named-queries.includes")))
+        .containsOnly(
+            Map.entry("sql/common/not_deleted.sql", "sql/person/all.sql,sql/person/report.sql"));
+
+    // when: the other repository was removed and one repository is compiled again
+    Files.delete(tempDir.resolve("io/github/mschieder/namedsqlfiles/PersonReportRepository.class"));
+    var removed = recompilePersonRepository(tempDir, output);
+
+    // then: the entry of the removed repository is pruned
+    assertThat(removed).succeeded();
+    Assertions.assertThat(
+            loadProperties(removed, "META-INF/jpa-named-queries.properties").orElseThrow())
+        .containsOnlyKeys("sql/person/all.sql");
+    Assertions.assertThat(
+            loadProperties(removed, "META-INF/jpa-named-queries.includes").orElseThrow())
+        .containsOnly(Map.entry("sql/common/not_deleted.sql", "sql/person/all.sql"));
+  }
+
+  @Test
+  void test_27_changed_output_timestamp_then_rewrite_ok() {
+    // given: an existing properties file and manifest, that already contain the 3 queries
+    // when: compile with an output timestamp, that is not in the existing header
+    whenCompilePersonExample("jpa/06", "-Anamedsqlfiles.outputTimestamp=2023-01-01T00:00:00Z");
+
+    // then: the properties file is written with the new header
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/jpa-named-queries.properties")
+        .contentsAsUtf8String()
+        .startsWith("#generated by PropertiesSupport\n#2023-01-01T00:00:00Z\n");
+  }
+
+  @Test
+  void test_28_parallel_loader_failure_nok() {
+    // given: a resource, that fails with a runtime exception while it is loaded
+    var locator =
+        new TestEnvironmentResourceLocator("jpa/02") {
+          @Override
+          Optional<SqlResource> load(String resourceName) throws IOException {
+            if (resourceName.equals("sql/person/all.sql")) {
+              throw new UncheckedIOException(new CharacterCodingException());
+            }
+            return super.load(resourceName);
+          }
+        };
+
+    // when: compile with parallel resource loading
+    compilation =
+        Compiler.javac()
+            .withProcessors(new TestableJpaQueryProcessor(locator, UnaryOperator.identity()))
+            .withOptions("-Anamedsqlfiles.parallelism=4")
+            .compile(
+                JavaFileObjects.forResource("jpa/02/Person.java"),
+                JavaFileObjects.forResource("jpa/02/PersonRepository.java"));
+
+    // then: the failure is reported on the referencing method, the compiler did not crash
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining("error while reading resource 'sql/person/all.sql'")
+        .inFile(compilation.sourceFiles().get(1))
+        .onLineContaining("Page<Person> all(Pageable pageable);");
+  }
+
+  @Test
+  void test_29_auto_configuration_imports_of_both_processors_ok() {
+    // given: a JPA and a JDBC repository
+    var locator = new TestEnvironmentResourceLocator("jpa/15");
+
+    // when: both processors generate a named queries class, each with its own wrapped environment
+    compilation =
+        Compiler.javac()
+            .withProcessors(
+                new TestableJpaQueryProcessor(locator, JpaQueryProcessorTest::wrap),
+                new TestableJdbcQueryProcessor(locator, JpaQueryProcessorTest::wrap))
+            .withOptions(
+                "-Anamedsqlfiles.namedQueriesPackage=io.github.mschieder.namedsqlfiles.gen")
+            .compile(
+                JavaFileObjects.forResource("jpa/15/Person.java"),
+                JavaFileObjects.forResource("jpa/15/PersonRepository.java"),
+                JavaFileObjects.forResource("jpa/15/PersonJdbcRepository.java"));
+
+    // then: a single imports file with both auto-configurations was written
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, AutoConfigurationImports.IMPORTS_FILENAME)
+        .contentsAsUtf8String()
+        .isEqualTo(
+            "io.github.mschieder.namedsqlfiles.gen.JpaNamedQueriesAutoConfiguration\n"
+                + "io.github.mschieder.namedsqlfiles.gen.JdbcNamedQueriesAutoConfiguration\n");
+  }
+
+  @Test
+  void test_30_missing_included_fragment_nok() {
+    // given: a sql file query including a fragment, that does not exist
+    whenCompilePersonExample("jpa/17");
+
+    // then: the missing fragment is reported on the referencing query method
+    assertThat(compilation).hadErrorCount(1);
+    assertThat(compilation)
+        .hadErrorContaining(
+            "included fragment 'sql/common/missing.sql' of 'sql/person/all.sql' not found.")
+        .inFile(JavaFileObjects.forResource("jpa/17/PersonRepository.java"))
+        .onLineContaining("all();");
+    Assertions.assertThat(compilation.errors().get(0).getMessage(null))
+        .doesNotContain("error while reading resource");
+  }
+
+  @Test
+  void test_31_queries_in_generated_sources_after_named_queries_class_ok() {
+    // given: a repository generated by another processor in the second round
+    // when: compile with a generated named queries class
+    compilation =
+        Compiler.javac()
+            .withProcessors(new RepositoryGeneratingProcessor(), createProcessor("jpa/07"))
+            .withOptions(
+                "-Anamedsqlfiles.namedQueriesPackage=io.github.mschieder.namedsqlfiles.gen")
+            .compile(
+                JavaFileObjects.forResource("jpa/07/Person.java"),
+                JavaFileObjects.forResource("jpa/07/PersonRepository.java"));
+
+    // then: the queries of the later round are a warning and looked up in the properties file
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .hadWarningContaining(
+            "query 'sql/person/all.sql' was referenced after the named queries class was"
+                + " generated, it is looked up in the properties file.");
+    assertThatGeneratedNamedQueriesPropertiesFile()
+        .containsKeys("sql/person/all.sql", "sql/person/count.sql");
+  }
+
+  /** Compiles the person repository with the output of a previous compilation on the classpath. */
+  private static Compilation recompilePersonRepository(Path classOutput, Map<String, byte[]> output)
+      throws IOException {
+    var locator =
+        new TestEnvironmentResourceLocator("jpa/16") {
+          @Override
+          boolean exists(String resourceName) {
+            return output.containsKey(resourceName) || super.exists(resourceName);
+          }
+
+          @Override
+          InputStream resourceInputstream(String resourceName) throws IOException {
+            return output.containsKey(resourceName)
+                ? new ByteArrayInputStream(output.get(resourceName))
+                : super.resourceInputstream(resourceName);
+          }
+        };
+    List<File> classpath = new ArrayList<>();
+    classpath.add(classOutput.toFile());
+    for (var entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      classpath.add(new File(entry));
+    }
+    return Compiler.javac()
+        .withProcessors(new TestableJpaQueryProcessor(locator, UnaryOperator.identity()))
+        .withClasspath(classpath)
+        .compile(JavaFileObjects.forResource("jpa/16/PersonRepository.java"));
+  }
+
+  private static Optional<Properties> loadProperties(Compilation compilation, String name)
+      throws IOException {
+    var file = compilation.generatedFile(StandardLocation.CLASS_OUTPUT, name);
+    if (file.isEmpty()) {
+      return Optional.empty();
+    }
+    var properties = new Properties();
+    try (var inputStream = file.get().openInputStream()) {
+      properties.load(inputStream);
+    }
+    return Optional.of(properties);
+  }
+
+  private static Properties loadProperties(Map<String, byte[]> output, String name)
+      throws IOException {
+    var properties = new Properties();
+    properties.load(new ByteArrayInputStream(output.get(name)));
+    return properties;
+  }
+
+  /** Wraps an environment like build tools do, that track the generated files per processor. */
+  private static ProcessingEnvironment wrap(ProcessingEnvironment processingEnv) {
+    return (ProcessingEnvironment)
+        Proxy.newProxyInstance(
+            ProcessingEnvironment.class.getClassLoader(),
+            new Class<?>[] {ProcessingEnvironment.class},
+            (proxy, method, args) -> {
+              try {
+                return method.invoke(processingEnv, args);
+              } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+              }
+            });
+  }
 }
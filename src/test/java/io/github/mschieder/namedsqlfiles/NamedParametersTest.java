@@ -0,0 +1,63 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NamedParametersTest {
+
+  @Test
+  void test_01_parameters_ok() {
+    var parameters =
+        NamedParameters.parse(
+            "select * from person p where p.lastname = :lastname and p.firstname in (:first_names)"
+                + " or p.lastname=:lastname");
+    assertThat(parameters.names()).containsExactly("lastname", "first_names", "lastname");
+    assertThat(parameters.distinctNames()).containsExactly("lastname", "first_names");
+    assertThat(parameters.jdbcSql())
+        .isEqualTo(
+            "select * from person p where p.lastname = ? and p.firstname in (?) or p.lastname=?");
+  }
+
+  @Test
+  void test_02_spring_grammar_ok() {
+    // the markers and names of Spring's NamedParameterUtils
+    var parameters =
+        NamedParameters.parse(
+            "select :person.name, :names[0].first, :a]b, &amp, :{x.y}, :{}, \\:escaped, :c::int,"
+                + " :d,:e;:f|:g");
+    assertThat(parameters.names())
+        .containsExactly(
+            "person.name", "names[0].first", "a", "amp", "x.y", "c", "d", "e", "f", "g");
+    assertThat(parameters.jdbcSql())
+        .isEqualTo("select ?, ?, ?]b, ?, ?, :{}, :escaped, ?::int, ?,?;?|?");
+  }
+
+  @Test
+  void test_03_ignored_ok() {
+    var sql =
+        "-- :comment\n"
+            + "select /* :block */ ':literal', 'it''s :x', \":quoted\", x::int, :#{#spel}"
+            + " from t where y = ?1 /* :unterminated";
+    var parameters = NamedParameters.parse(sql);
+    assertThat(parameters.names()).isEmpty();
+    assertThat(parameters.jdbcSql()).isEqualTo(sql);
+  }
+
+  @Test
+  void test_04_invalid_braced_name_nok() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> NamedParameters.parse("select :{a:b}"))
+        .withMessage("parameter name contains invalid character ':'");
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> NamedParameters.parse("select :{a"))
+        .withMessage("non-terminated named parameter declaration");
+  }
+
+  @Test
+  void test_05_no_parameters_ok() {
+    assertThat(NamedParameters.parse("select * from person").names()).isEqualTo(List.of());
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NamedQueriesAggregatorTest {
+  private static final String FILENAME = "META-INF/jpa-named-queries.properties";
+
+  @TempDir Path tempDir;
+
+  private Path directory(String name, String content) throws IOException {
+    var directory = tempDir.resolve(name);
+    Files.createDirectories(directory.resolve("META-INF"));
+    Files.writeString(directory.resolve(FILENAME), content);
+    return directory;
+  }
+
+  private Path jar(String name, String content) throws IOException {
+    var jar = tempDir.resolve(name);
+    try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+      out.putNextEntry(new ZipEntry(FILENAME));
+      out.write(content.getBytes(StandardCharsets.ISO_8859_1));
+      out.closeEntry();
+    }
+    return jar;
+  }
+
+  @Test
+  void test_01_aggregate_ok() throws IOException {
+    var aggregator =
+        new NamedQueriesAggregator(FILENAME)
+            .add(NamedQueriesAggregator.MODULE_SOURCE, Map.of("sql/all.sql", "select *"))
+            .addClasspathEntry(directory("classes", "sql/count.sql=select count(*)\n"))
+            .addClasspathEntry(jar("lib.jar", "sql/lib.sql=select 1\nsql/all.sql=select *\n"))
+            .addClasspathEntry(tempDir.resolve("missing"))
+            .addClasspathEntry(tempDir);
+
+    assertThat(aggregator.conflicts()).isEmpty();
+    assertThat(aggregator.aggregate())
+        .containsOnly(
+            Map.entry("sql/all.sql", "select *"),
+            Map.entry("sql/count.sql", "select count(*)"),
+            Map.entry("sql/lib.sql", "select 1"));
+  }
+
+  @Test
+  void test_02_conflicts_nok() throws IOException {
+    var aggregator =
+        new NamedQueriesAggregator(FILENAME)
+            .add(NamedQueriesAggregator.MODULE_SOURCE, Map.of("sql/all.sql", "select *"))
+            .addClasspathEntry(jar("a.jar", "sql/lib.sql=select 1\n"))
+            .addClasspathEntry(jar("b.jar", "sql/lib.sql=select 2\nsql/all.sql=select 3\n"));
+
+    assertThat(aggregator.conflicts())
+        .containsExactlyInAnyOrder(
+            "named query 'sql/lib.sql' of 'b.jar' conflicts with 'a.jar'.",
+            "named query 'sql/all.sql' of 'b.jar' conflicts with 'this module'.");
+    // the first definition wins
+    assertThat(aggregator.aggregate())
+        .containsOnly(Map.entry("sql/all.sql", "select *"), Map.entry("sql/lib.sql", "select 1"));
+  }
+}
@@ -0,0 +1,72 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ProcessorStatsTest {
+
+  @Test
+  void test_01_phases_ok() {
+    var stats = new ProcessorStats(true);
+    stats.recordRound();
+    try (var timer = stats.start(ProcessorStats.Phase.READ)) {
+      // timed
+    }
+    try (var timer = stats.start(ProcessorStats.Phase.READ)) {
+      // timed
+    }
+
+    assertThat(stats.summary("JpaQueryProcessor", 2))
+        .startsWith("JpaQueryProcessor: 2 queries in 1 rounds, ")
+        .containsPattern("read \\d+\\.\\d ms/2")
+        .containsPattern("scan 0\\.0 ms/0");
+  }
+
+  @Test
+  void test_02_top_resources_ok() {
+    var stats = new ProcessorStats(true);
+    stats.recordResource("sql/small.sql", 10);
+    stats.recordResource("sql/large.sql", 1000);
+    stats.recordReference("sql/small.sql");
+    stats.recordReference("sql/small.sql");
+    stats.recordReference("sql/large.sql");
+
+    assertThat(stats.summary("JpaQueryProcessor", 2))
+        .endsWith(", largest: sql/large.sql (1000 chars), most referenced: sql/small.sql (2x)");
+    assertThat(stats.toJson("JpaQueryProcessor", 2))
+        .contains(
+            "\"largestResources\": [\n"
+                + "    {\"name\": \"sql/large.sql\", \"chars\": 1000},\n"
+                + "    {\"name\": \"sql/small.sql\", \"chars\": 10}\n"
+                + "  ]")
+        .contains(
+            "\"mostReferencedResources\": [\n"
+                + "    {\"name\": \"sql/small.sql\", \"references\": 2},\n"
+                + "    {\"name\": \"sql/large.sql\", \"references\": 1}\n"
+                + "  ]");
+  }
+
+  @Test
+  void test_03_json_escaping_ok() {
+    var stats = new ProcessorStats(true);
+    stats.recordResource("sql/\"quoted\"\\.sql", 1);
+
+    assertThat(stats.toJson("JpaQueryProcessor", 0))
+        .contains("{\"name\": \"sql/\\\"quoted\\\"\\\\.sql\", \"chars\": 1}")
+        .contains("\"mostReferencedResources\": []");
+  }
+
+  @Test
+  void test_04_disabled_ok() {
+    try (var timer = ProcessorStats.DISABLED.start(ProcessorStats.Phase.WRITE)) {
+      // not timed
+    }
+    ProcessorStats.DISABLED.recordResource("sql/all.sql", 1);
+
+    assertThat(ProcessorStats.DISABLED.isEnabled()).isFalse();
+    assertThat(ProcessorStats.DISABLED.toJson("JpaQueryProcessor", 0))
+        .contains("\"write\": {\"count\": 0, \"millis\": 0.0}")
+        .contains("\"largestResources\": []");
+  }
+}
@@ -0,0 +1,79 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class PropertiesWriterTest {
+
+  private static final Map<String, String> ENTRIES =
+      Map.of(
+          "sql/person/b.sql", "select *\r\n  from person\twhere name = 'Müller' -- a=b:c",
+          "sql/person/a.sql", " leading blank",
+          "key with blank#!", "\\");
+
+  @Test
+  void test_01_sorted_without_timestamp_ok() throws IOException {
+    // when: write the entries without timestamp
+    var content = write(Optional.empty());
+
+    // then: the keys are sorted, the header is stable
+    assertThat(content)
+        .isEqualTo(
+            "#generated\n"
+                + "key\\ with\\ blank\\#\\!=\\\\\n"
+                + "sql/person/a.sql=\\ leading blank\n"
+                + "sql/person/b.sql=select *\\r\\n  from person\\twhere name \\= 'M\\u00FCller'"
+                + " -- a\\=b\\:c\n");
+  }
+
+  @Test
+  void test_02_identical_entries_then_identical_bytes_ok() throws IOException {
+    assertThat(write(Optional.empty())).isEqualTo(write(Optional.empty()));
+  }
+
+  @Test
+  void test_03_loadable_with_properties_ok() throws IOException {
+    var properties = new Properties();
+    properties.load(
+        new ByteArrayInputStream(write(Optional.empty()).getBytes(StandardCharsets.ISO_8859_1)));
+
+    assertThat(properties).containsExactlyInAnyOrderEntriesOf(ENTRIES);
+  }
+
+  @Test
+  void test_04_output_timestamp_ok() throws IOException {
+    var timestamp =
+        new ProcessorOptions(Map.of(ProcessorOptions.OUTPUT_TIMESTAMP, "1700000000"), null)
+            .outputTimestamp();
+
+    assertThat(timestamp).contains(Instant.ofEpochSecond(1700000000));
+    assertThat(write(timestamp)).startsWith("#generated\n#2023-11-14T22:13:20Z\n");
+  }
+
+  @Test
+  void test_05_output_timestamp_from_source_date_epoch_ok() {
+    assertThat(new ProcessorOptions(Map.of(), "1700000000").outputTimestamp())
+        .contains(Instant.ofEpochSecond(1700000000));
+    assertThat(
+            new ProcessorOptions(
+                    Map.of(ProcessorOptions.OUTPUT_TIMESTAMP, "2023-11-14T22:13:20+00:00"), null)
+                .outputTimestamp())
+        .contains(Instant.ofEpochSecond(1700000000));
+    assertThat(new ProcessorOptions(Map.of(), null).outputTimestamp()).isEmpty();
+  }
+
+  private String write(Optional<Instant> timestamp) throws IOException {
+    var outputStream = new ByteArrayOutputStream();
+    new PropertiesWriter("generated", timestamp).write(ENTRIES, outputStream);
+    return outputStream.toString(StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.Duration;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class QueryMetadataTest {
+
+  @Test
+  void test_01_header_ok() {
+    var metadata =
+        QueryMetadata.parse(
+                "-- report\n"
+                    + "-- @fetchSize 5000\n"
+                    + "--@timeout 500ms\n"
+                    + "-- @maxRows 100\n"
+                    + "-- @hint org.hibernate.readOnly = true\n"
+                    + "/* other comment */\n"
+                    + "select 1 -- @fetchSize 1\n")
+            .orElseThrow();
+
+    assertThat(metadata)
+        .isEqualTo(
+            new QueryMetadata(
+                5000, Duration.ofMillis(500), 100, Map.of("org.hibernate.readOnly", "true")));
+    assertThat(metadata.toProperties("sql/report.sql"))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "sql/report.sql#fetchSize", "5000",
+                "sql/report.sql#timeout", "500",
+                "sql/report.sql#maxRows", "100",
+                "sql/report.sql#hint.org.hibernate.readOnly", "true"));
+  }
+
+  @Test
+  void test_02_timeouts_ok() {
+    assertThat(QueryMetadata.parse("-- @timeout 3\nselect 1").orElseThrow().timeout())
+        .isEqualTo(Duration.ofSeconds(3));
+    assertThat(QueryMetadata.parse("-- @timeout 2m\nselect 1").orElseThrow().timeout())
+        .isEqualTo(Duration.ofMinutes(2));
+    assertThat(QueryMetadata.parse("-- @timeout PT1.5S\nselect 1").orElseThrow().timeout())
+        .isEqualTo(Duration.ofMillis(1500));
+  }
+
+  @Test
+  void test_03_no_header_ok() {
+    assertThat(QueryMetadata.parse("-- plain comment\nselect 1 -- @fetchSize 10")).isEmpty();
+  }
+
+  @Test
+  void test_04_invalid_header_nok() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> QueryMetadata.parse("-- @fetchSize many\nselect 1"))
+        .withMessage("invalid value 'many' of '@fetchSize', expected a positive number");
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> QueryMetadata.parse("-- @maxRows\nselect 1"))
+        .withMessage("invalid value '' of '@maxRows', expected a positive number");
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> QueryMetadata.parse("-- @hint readOnly\nselect 1"))
+        .withMessage("invalid hint 'readOnly', expected name=value");
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> QueryMetadata.parse("-- @fetch 10\nselect 1"))
+        .withMessage("unknown attribute '@fetch'");
+  }
+}
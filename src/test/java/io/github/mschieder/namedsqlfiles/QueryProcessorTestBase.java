@@ -19,14 +19,16 @@ import org.assertj.core.api.MapAssert;
 public class QueryProcessorTestBase {
 
   protected String expectedGeneratedPropertiesFile;
+  protected String expectedGeneratedManifestFile;
   protected Map<String, String> expectedPropertiesFileEntries;
 
   protected Compilation compilation;
 
-  protected void whenCompilePersonExample(String exampleName) {
+  protected void whenCompilePersonExample(String exampleName, String... options) {
     this.compilation =
         Compiler.javac()
             .withProcessors(createProcessor(exampleName))
+            .withOptions((Object[]) options)
             .compile(
                 forResource(exampleName + "/Person.java"),
                 forResource(exampleName + "/PersonRepository.java"));
@@ -43,7 +45,8 @@ public class QueryProcessorTestBase {
         .containsExactlyInAnyOrder(
             "/CLASS_OUTPUT/io/github/mschieder/namedsqlfiles/Person.class",
             "/CLASS_OUTPUT/io/github/mschieder/namedsqlfiles/PersonRepository.class",
-            "/CLASS_OUTPUT/" + expectedGeneratedPropertiesFile);
+            "/CLASS_OUTPUT/" + expectedGeneratedPropertiesFile,
+            "/CLASS_OUTPUT/" + expectedGeneratedManifestFile);
 
     assertThat(compilation)
         .generatedFile(StandardLocation.CLASS_OUTPUT, expectedGeneratedPropertiesFile)
@@ -68,6 +71,28 @@ public class QueryProcessorTestBase {
     return Assertions.assertThat(properties);
   }
 
+  protected Class<?> loadGeneratedClass(String className) throws ClassNotFoundException {
+    var classLoader =
+        new ClassLoader(getClass().getClassLoader()) {
+          @Override
+          protected Class<?> findClass(String name) throws ClassNotFoundException {
+            var classFile =
+                compilation.generatedFile(
+                    StandardLocation.CLASS_OUTPUT, name.replace('.', '/') + ".class");
+            if (classFile.isEmpty()) {
+              throw new ClassNotFoundException(name);
+            }
+            try (var inputStream = classFile.get().openInputStream()) {
+              var bytes = inputStream.readAllBytes();
+              return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+              throw new ClassNotFoundException(name, e);
+            }
+          }
+        };
+    return classLoader.loadClass(className);
+  }
+
   protected void assertPersonCompilationSuccessWithNoGeneratedPropertiesFile() {
     assertThat(compilation).succeeded();
 
@@ -0,0 +1,50 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+
+/** Generates a repository with a query annotation in the first round, like other processors do. */
+@SupportedAnnotationTypes("*")
+@SupportedSourceVersion(SourceVersion.RELEASE_17)
+public class RepositoryGeneratingProcessor extends AbstractProcessor {
+  private boolean generated;
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (!generated) {
+      generated = true;
+      try (Writer writer =
+          processingEnv
+              .getFiler()
+              .createSourceFile("io.github.mschieder.namedsqlfiles.GeneratedPersonRepository")
+              .openWriter()) {
+        writer.write(
+            """
+            package io.github.mschieder.namedsqlfiles;
+
+            import org.springframework.data.domain.Page;
+            import org.springframework.data.domain.Pageable;
+            import org.springframework.data.jpa.repository.JpaRepository;
+            import org.springframework.data.jpa.repository.Query;
+
+            public interface GeneratedPersonRepository extends JpaRepository<Person, Long> {
+              @Query(countName = "sql/person/count.sql", name = "sql/person/all.sql",
+                  nativeQuery = true)
+              Page<Person> all(Pageable pageable);
+            }
+            """);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ResourceCacheTest {
+
+  private final List<String> loaded = new ArrayList<>();
+
+  private final ResourceLocator locator =
+      new TestEnvironmentResourceLocator("jpa/02") {
+        @Override
+        Optional<SqlResource> load(String resourceName) throws IOException {
+          loaded.add(resourceName);
+          return super.load(resourceName);
+        }
+      };
+
+  @Test
+  void test_01_each_resource_is_loaded_once_ok() throws IOException {
+    // given: an empty cache
+    var cache = new ResourceCache();
+
+    // when: the same resources are requested several times
+    for (int i = 0; i < 3; i++) {
+      assertThat(cache.get("sql/person/all.sql", locator)).isPresent();
+      assertThat(cache.get("sql/person/missing.sql", locator)).isEmpty();
+    }
+
+    // then: each resource, including the miss, was located only once
+    assertThat(loaded).containsExactly("sql/person/all.sql", "sql/person/missing.sql");
+  }
+
+  @Test
+  void test_02_misses_are_located_again_in_the_next_round_ok() throws IOException {
+    // given: a cache with a hit and a miss in the first round
+    var cache = new ResourceCache();
+    var firstRound = new Object();
+    cache.startRound(firstRound);
+    cache.get("sql/person/all.sql", locator);
+    cache.get("sql/person/missing.sql", locator);
+
+    // when: the resources are requested by another processor of the same round and in the next
+    // round
+    cache.startRound(firstRound);
+    cache.get("sql/person/missing.sql", locator);
+    cache.startRound(new Object());
+    cache.get("sql/person/all.sql", locator);
+    cache.get("sql/person/missing.sql", locator);
+
+    // then: only the miss is located again, in the next round
+    assertThat(loaded)
+        .containsExactly("sql/person/all.sql", "sql/person/missing.sql", "sql/person/missing.sql");
+  }
+
+  @Test
+  void test_03_cached_resource_content_and_hash_ok() throws IOException {
+    var resource = new ResourceCache().get("sql/person/all.sql", locator).orElseThrow();
+
+    assertThat(resource.content()).isEqualTo("select * from person");
+    assertThat(resource.hash()).isEqualTo(SqlResource.hash("select * from person"));
+  }
+}
@@ -0,0 +1,28 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SourceTagTest {
+
+  @Test
+  void test_01_tag_ok() {
+    assertThat(SourceTag.tag("sql/person/all.sql", "select /*+ FULL(p) */ * from person p"))
+        .isEqualTo(
+            "/* nsf:sql/person/all.sql#"
+                + SourceTag.hash("select /*+ FULL(p) */ * from person p")
+                + " */ select /*+ FULL(p) */ * from person p");
+  }
+
+  @Test
+  void test_02_hash_is_stable_ok() {
+    assertThat(SourceTag.hash("select * from person")).isEqualTo("e29b7cf2");
+    assertThat(SourceTag.hash("select * from person p")).isNotEqualTo("e29b7cf2");
+  }
+
+  @Test
+  void test_03_comment_terminator_in_resource_name_ok() {
+    assertThat(SourceTag.tag("sql/*/all.sql", "select 1")).startsWith("/* nsf:sql/* /all.sql#");
+  }
+}
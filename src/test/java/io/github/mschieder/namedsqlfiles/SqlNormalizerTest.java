@@ -0,0 +1,78 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.mschieder.namedsqlfiles.SqlNormalizer.Step;
+import java.util.EnumSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class SqlNormalizerTest {
+
+  private static final String SQL =
+      "-- all persons\r\n"
+          + "SELECT /*+ INDEX(p person_idx) */ p.id,   p.name -- the name\r\n"
+          + "  FROM person p /* alias */\r\n"
+          + " WHERE p.name = '--  not /* a */ comment'\r\n"
+          + "   AND p.body = $$ keep   this $$\r\n";
+
+  @Test
+  void test_01_all_ok() {
+    assertThat(normalize(EnumSet.allOf(Step.class)))
+        .isEqualTo(
+            "SELECT /*+ INDEX(p person_idx) */ p.id, p.name FROM person p"
+                + " WHERE p.name = '--  not /* a */ comment' AND p.body = $$ keep   this $$");
+  }
+
+  @Test
+  void test_02_none_ok() {
+    assertThat(normalize(Set.of())).isSameAs(SQL);
+  }
+
+  @Test
+  void test_03_line_endings_ok() {
+    assertThat(normalize(Set.of(Step.LINE_ENDINGS))).isEqualTo(SQL.replace("\r\n", "\n"));
+  }
+
+  @Test
+  void test_04_whitespace_keeps_line_comments_terminated_ok() {
+    assertThat(normalize(Set.of(Step.WHITESPACE)))
+        .isEqualTo(
+            "-- all persons\n"
+                + "SELECT /*+ INDEX(p person_idx) */ p.id, p.name -- the name\n"
+                + "FROM person p /* alias */"
+                + " WHERE p.name = '--  not /* a */ comment' AND p.body = $$ keep   this $$");
+  }
+
+  @Test
+  void test_05_comments_keep_tokens_separated_ok() {
+    assertThat(new SqlNormalizer(Set.of(Step.COMMENTS)).normalize("select a/**/from b"))
+        .isEqualTo("select a from b");
+  }
+
+  @Test
+  void test_06_ambiguous_backslash_escaped_literal_unchanged_ok() {
+    // MySQL: the literal 'a\'  b', standard SQL: the literal 'a\' followed by  b'
+    var sql = "select 'a\\'  b'  from dual";
+    assertThat(new SqlNormalizer(EnumSet.allOf(Step.class)).normalize(sql)).isSameAs(sql);
+  }
+
+  @Test
+  void test_07_unambiguous_backslash_in_literal_ok() {
+    assertThat(
+            new SqlNormalizer(EnumSet.allOf(Step.class)).normalize("select 'a\\\\  b'  from dual"))
+        .isEqualTo("select 'a\\\\  b' from dual");
+  }
+
+  @Test
+  void test_08_postgresql_escape_string_ok() {
+    assertThat(
+            new SqlNormalizer(EnumSet.allOf(Step.class))
+                .normalize("select E'a\\'  b'  ,  e'\\''  from dual"))
+        .isEqualTo("select E'a\\'  b' , e'\\'' from dual");
+  }
+
+  private static String normalize(Set<Step> steps) {
+    return new SqlNormalizer(steps).normalize(SQL);
+  }
+}
@@ -0,0 +1,124 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SqlRootIndexTest {
+
+  @TempDir Path tempDir;
+
+  private Path write(String path, String content) throws IOException {
+    var file = tempDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file, content);
+  }
+
+  @Test
+  void test_01_first_root_wins_ok() throws IOException {
+    write("main/sql/person/all.sql", "select * from person");
+    write("main/sql/person/count.sql", "select count(*) from person");
+    write("test/sql/person/all.sql", "select * from test_person");
+
+    var index = SqlRootIndex.of(List.of(tempDir.resolve("test"), tempDir.resolve("main")));
+
+    assertThat(index.find("sql/person/all.sql").map(SqlRootIndex.Entry::path))
+        .contains(tempDir.resolve("test/sql/person/all.sql"));
+    assertThat(index.find("sql/person/count.sql").map(SqlRootIndex.Entry::size)).contains(27L);
+    assertThat(index.find("sql/person/unknown.sql")).isEmpty();
+    assertThat(index.find("sql/person")).isEmpty();
+  }
+
+  @Test
+  void test_02_read_mapped_ok() throws IOException {
+    var content = "select 'ä' from dual\n".repeat((int) SqlRootIndex.MAPPED_READ_THRESHOLD / 20);
+    write("main/sql/large.sql", content);
+    write("main/sql/small.sql", "select 'ä' from dual");
+
+    var index = SqlRootIndex.of(List.of(tempDir.resolve("main")));
+
+    assertThat(index.find("sql/large.sql").orElseThrow().size())
+        .isGreaterThanOrEqualTo(SqlRootIndex.MAPPED_READ_THRESHOLD);
+    assertThat(SqlRootIndex.read(index.find("sql/large.sql").orElseThrow())).isEqualTo(content);
+    assertThat(SqlRootIndex.read(index.find("sql/small.sql").orElseThrow()))
+        .isEqualTo("select 'ä' from dual");
+  }
+
+  @Test
+  void test_03_resource_locator_loads_indexed_resources_ok() throws IOException {
+    var file = write("main/sql/person/all.sql", "select * from person");
+    var locator =
+        new ResourceLocator(
+            null, ProcessorStats.DISABLED, SqlRootIndex.of(List.of(tempDir.resolve("main"))));
+
+    var resource = locator.load("sql/person/all.sql");
+
+    assertThat(resource).isPresent();
+    assertThat(resource.get().content()).isEqualTo("select * from person");
+    assertThat(resource.get().lastModified()).isEqualTo(Files.getLastModifiedTime(file).toMillis());
+  }
+
+  @Test
+  void test_04_empty_roots_ok() {
+    assertThat(SqlRootIndex.forEnvironment(null, List.of())).isSameAs(SqlRootIndex.EMPTY);
+    assertThat(SqlRootIndex.EMPTY.find("sql/person/all.sql")).isEmpty();
+  }
+
+  @Test
+  void test_05_relative_roots_resolved_against_project_directory_ok() throws IOException {
+    // given: a project with a build file and relative and absolute sql roots
+    write("project/pom.xml", "<project/>");
+    Files.createDirectories(tempDir.resolve("project/target/classes"));
+    var options =
+        new ProcessorOptions(
+            Map.of(
+                ProcessorOptions.SQL_ROOTS,
+                "src/main/resources, " + tempDir.resolve("project/../shared")),
+            null);
+    Files.createDirectories(tempDir.resolve("project/src/main/resources"));
+    Files.createDirectories(tempDir.resolve("shared"));
+
+    // when: the roots are resolved with the class output of the project
+    var roots = options.sqlRoots(() -> Optional.of(tempDir.resolve("project/target/classes")));
+
+    // then: the relative root is in the project, not in the working directory
+    assertThat(roots)
+        .containsExactly(tempDir.resolve("project/src/main/resources"), tempDir.resolve("shared"));
+  }
+
+  @Test
+  void test_06_relative_roots_without_project_directory_nok() {
+    // given: a relative sql root
+    var options =
+        new ProcessorOptions(Map.of(ProcessorOptions.SQL_ROOTS, "src/main/resources"), null);
+
+    // when: the class output is not in the file system
+    // then: the root is rejected instead of being resolved against the working directory
+    assertThatThrownBy(() -> options.sqlRoots(Optional::empty))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("relative root 'src/main/resources'")
+        .hasMessageContaining("use an absolute path");
+  }
+
+  @Test
+  void test_07_project_directory_ok() throws IOException {
+    // given: a gradle project without build file in the build directory
+    write("project/build.gradle.kts", "");
+    Files.createDirectories(tempDir.resolve("project/build/classes/java/main"));
+
+    // when: the project directory of the class output is determined
+    // then: it is the nearest ancestor with a build file
+    assertThat(
+            ProcessorOptions.projectDirectory(tempDir.resolve("project/build/classes/java/main")))
+        .contains(tempDir.resolve("project"));
+    assertThat(ProcessorOptions.projectDirectory(tempDir.resolve("project"))).isEmpty();
+  }
+}
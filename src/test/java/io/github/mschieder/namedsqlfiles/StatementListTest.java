@@ -0,0 +1,65 @@
+package io.github.mschieder.namedsqlfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import org.junit.jupiter.api.Test;
+
+class StatementListTest {
+
+  @Test
+  void test_01_statements_ok() {
+    var statements =
+        StatementList.parse(
+            "insert into archive select * from person where id = :id;\n"
+                + "delete from person where id = :id;\n"
+                + "-- done\n");
+    assertThat(statements.statements())
+        .containsExactly(
+            "insert into archive select * from person where id = :id",
+            "delete from person where id = :id");
+    assertThat(statements.isMultiple()).isTrue();
+    assertThat(statements.emptyStatements()).isEmpty();
+    assertThat(statements.toProperties("sql/a.sql"))
+        .containsEntry("sql/a.sql#statements", "2")
+        .containsEntry(
+            "sql/a.sql#statement.1", "insert into archive select * from person where id = :id")
+        .containsEntry("sql/a.sql#statement.2", "delete from person where id = :id");
+  }
+
+  @Test
+  void test_02_ignored_semicolons_ok() {
+    var statements =
+        StatementList.parse(
+            "-- a; b\n"
+                + "update t set a = ';', \"b;\" = 1 /* ; */;\n"
+                + "do $$ begin update t set a = 1; end $$");
+    assertThat(statements.statements()).hasSize(2);
+    assertThat(statements.statements().get(1)).isEqualTo("do $$ begin update t set a = 1; end $$");
+  }
+
+  @Test
+  void test_03_single_statement_ok() {
+    var statements = StatementList.parse("delete from person;");
+    assertThat(statements.statements()).containsExactly("delete from person");
+    assertThat(statements.isMultiple()).isFalse();
+    assertThat(statements.toProperties("sql/a.sql")).isEmpty();
+  }
+
+  @Test
+  void test_04_empty_statements_ok() {
+    assertThat(StatementList.parse("delete from a;;delete from b; /* c */ ;").emptyStatements())
+        .containsExactly(2, 4);
+  }
+
+  @Test
+  void test_05_dialect_statements_ok() {
+    assertThat(StatementList.parse("delete from a").toProperties("sql/a.sql", "h2"))
+        .containsOnly(entry("sql/a.sql#dialect.h2.statements", "1"));
+    assertThat(StatementList.parse("delete from a; delete from b").toProperties("sql/a.sql", "h2"))
+        .containsOnly(
+            entry("sql/a.sql#dialect.h2.statements", "2"),
+            entry("sql/a.sql#dialect.h2.statement.1", "delete from a"),
+            entry("sql/a.sql#dialect.h2.statement.2", "delete from b"));
+  }
+}
@@ -27,6 +27,17 @@ public class TestEnvironmentResourceLocator extends ResourceLocator {
     }
   }
 
+  @Override
+  Optional<SqlResource> load(String resourceName) throws IOException {
+    var inputStream = findClasspathResource(resourceName);
+    if (inputStream.isEmpty()) {
+      return Optional.empty();
+    }
+    try (var is = inputStream.get()) {
+      return Optional.of(SqlResource.of(resourceName, resourceStreamToString(is), 0));
+    }
+  }
+
   @Override
   InputStream resourceInputstream(String resource) throws IOException {
     return findClasspathResource(resource).orElseThrow(() -> new FileNotFoundException(resource));
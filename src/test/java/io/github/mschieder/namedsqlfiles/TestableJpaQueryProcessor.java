@@ -16,6 +16,8 @@
 
 package io.github.mschieder.namedsqlfiles;
 
+import java.util.function.UnaryOperator;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
@@ -24,10 +26,22 @@ import javax.lang.model.SourceVersion;
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
 public class TestableJpaQueryProcessor extends JpaQueryProcessor {
 
-  private final TestEnvironmentResourceLocator resourceLocator;
+  private final ResourceLocator resourceLocator;
+  private final UnaryOperator<ProcessingEnvironment> environment;
 
   public TestableJpaQueryProcessor(String prefixPath) {
-    this.resourceLocator = new TestEnvironmentResourceLocator(prefixPath);
+    this(new TestEnvironmentResourceLocator(prefixPath), UnaryOperator.identity());
+  }
+
+  public TestableJpaQueryProcessor(
+      ResourceLocator resourceLocator, UnaryOperator<ProcessingEnvironment> environment) {
+    this.resourceLocator = resourceLocator;
+    this.environment = environment;
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(environment.apply(processingEnv));
   }
 
   @Override
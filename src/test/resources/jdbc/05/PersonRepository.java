@@ -0,0 +1,15 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.List;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface PersonRepository extends CrudRepository<Person, Long> {
+
+  @Query(name = "sql/person/byName.sql")
+  List<Person> byName(@Param("last") String lastname, String firstname);
+
+  @Query(name = "sql/person/all.sql")
+  List<Person> all();
+}
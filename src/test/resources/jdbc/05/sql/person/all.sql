@@ -0,0 +1 @@
+select * from person
\ No newline at end of file
@@ -0,0 +1,4 @@
+select p.* from person p
+ where (p.lastname = :last and p.firstname = :firstname)
+    -- or p.lastname = :ignored
+    or (p.lastname = :last and p.created::date = ':ignored')
\ No newline at end of file
@@ -0,0 +1,11 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.List;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.CrudRepository;
+
+public interface PersonRepository extends CrudRepository<Person, Long> {
+
+  @Query(name = "sql/person/byName.sql")
+  List<Person> byName(String name);
+}
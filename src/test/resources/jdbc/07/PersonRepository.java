@@ -0,0 +1,16 @@
+package io.github.mschieder.namedsqlfiles;
+
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface PersonRepository extends CrudRepository<Person, Long> {
+
+  @Modifying
+  @Query(name = "sql/person/archive.sql")
+  int archive(@Param("last") String lastname);
+
+  @Query(name = "sql/person/all.sql")
+  Iterable<Person> all();
+}
@@ -0,0 +1 @@
+select * from person; select 1
\ No newline at end of file
@@ -0,0 +1,3 @@
+insert into person_archive select * from person where lastname = :last;
+delete from person_address where lastname = :last;
+delete from person where lastname = :last;
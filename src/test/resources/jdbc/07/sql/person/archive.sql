@@ -0,0 +1,3 @@
+insert into person_archive select * from person where lastname = :last;
+-- keep the ; in literals
+delete from person where lastname = :last and firstname <> ';';
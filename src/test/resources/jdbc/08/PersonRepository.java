@@ -0,0 +1,12 @@
+package io.github.mschieder.namedsqlfiles;
+
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.CrudRepository;
+
+public interface PersonRepository extends CrudRepository<Person, Long> {
+
+  @Modifying
+  @Query(name = "sql/person/archive.sql")
+  int archive(String lastname);
+}
@@ -0,0 +1,3 @@
+insert into person_archive select * from person where lastname = :lastname;
+;
+delete from person where lastname = :last;
@@ -1,2 +1,2 @@
-select count(*)
+select count(*)
     from person
\ No newline at end of file
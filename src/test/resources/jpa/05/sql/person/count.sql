@@ -0,0 +1,2 @@
+select count(*)
+    from person
\ No newline at end of file
@@ -0,0 +1,11 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PersonRepository extends JpaRepository<Person, Long> {
+
+    @Query(name = "sql/person/getByLastname.sql", nativeQuery = true)
+    Optional<Person> findByLastname(String name);
+}
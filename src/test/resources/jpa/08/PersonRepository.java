@@ -0,0 +1,12 @@
+package io.github.mschieder.namedsqlfiles;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PersonRepository extends JpaRepository<Person, Long> {
+
+    @Query(name = "sql/person/all.sql", nativeQuery = true)
+    Page<Person> all(Pageable pageable);
+}
@@ -0,0 +1,4 @@
+select p.*, a.city
+  from person p
+  left join address a on a.id = p.address_id
+ order by p.lastname
\ No newline at end of file
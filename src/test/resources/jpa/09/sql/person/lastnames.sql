@@ -0,0 +1 @@
+select distinct p.lastname from person p
\ No newline at end of file
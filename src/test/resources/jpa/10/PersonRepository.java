@@ -0,0 +1,14 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PersonRepository extends JpaRepository<Person, Long> {
+
+    @Query(name = "sql/person/all.sql", nativeQuery = true)
+    List<Person> all();
+
+    @Query(name = "sql/person/getByLastname.sql", nativeQuery = true)
+    List<Person> findByLastname(String lastname);
+}
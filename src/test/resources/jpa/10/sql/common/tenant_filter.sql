@@ -0,0 +1,2 @@
+   and p.tenant_id = current_tenant()
+   -- @include sql/common/not_deleted.sql
@@ -0,0 +1,4 @@
+select p.*
+  from person p
+ where 1 = 1
+   -- @include sql/common/tenant_filter.sql
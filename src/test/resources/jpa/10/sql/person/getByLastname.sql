@@ -0,0 +1 @@
+select p.* from person p where p.lastname = ?
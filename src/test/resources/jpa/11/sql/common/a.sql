@@ -0,0 +1,2 @@
+and p.a = 1
+-- @include sql/common/b.sql
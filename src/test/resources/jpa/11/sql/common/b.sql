@@ -0,0 +1,2 @@
+and p.b = 1
+-- @include sql/common/a.sql
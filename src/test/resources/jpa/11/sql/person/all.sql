@@ -0,0 +1,2 @@
+select p.* from person p where 1 = 1
+-- @include sql/common/a.sql
@@ -0,0 +1 @@
+select p.* from person p order by p.id limit ? offset ?
\ No newline at end of file
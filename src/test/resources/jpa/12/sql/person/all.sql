@@ -0,0 +1 @@
+select p.* from person p order by p.id offset ? rows fetch next ? rows only
\ No newline at end of file
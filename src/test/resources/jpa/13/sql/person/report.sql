@@ -0,0 +1,6 @@
+-- all persons for the monthly report
+-- @fetchSize 5000
+-- @timeout 3s
+-- @maxRows 1000000
+-- @hint org.hibernate.readOnly=true
+select p.* from person p
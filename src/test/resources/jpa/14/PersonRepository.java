@@ -0,0 +1,11 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PersonRepository extends JpaRepository<Person, Long> {
+
+    @Query(name = "sql/person/invalid.sql", nativeQuery = true)
+    List<Person> invalid();
+}
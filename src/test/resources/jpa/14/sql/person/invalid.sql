@@ -0,0 +1,2 @@
+-- @fetchsize 5000
+select p.* from person p
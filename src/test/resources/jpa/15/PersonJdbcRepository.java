@@ -0,0 +1,14 @@
+package io.github.mschieder.namedsqlfiles;
+
+import java.util.List;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.Repository;
+
+public interface PersonJdbcRepository extends Repository<Person, Long> {
+
+  @Query(name = "sql/person/all.sql")
+  List<Person> all();
+
+  @Query(name = "sql/person/getByLastname.sql")
+  List<Person> findByLastname(String lastname);
+}
@@ -0,0 +1 @@
+and p.deleted = false
@@ -0,0 +1,3 @@
+select * from person p
+ where 1 = 1
+-- @include sql/common/not_deleted.sql
@@ -0,0 +1,4 @@
+select p.lastname, count(*) from person p
+ where 1 = 1
+-- @include sql/common/not_deleted.sql
+ group by p.lastname
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DynamicTest;
+import org.opentest4j.AssertionFailedError;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+
+/**
+ * Explains all SQL file entries of a named queries properties file against an embedded H2 database
+ * and verifies the plans against their snapshots.
+ *
+ * @author Michael Schieder
+ */
+public class NamedQueryPlans {
+  private static final String TABLE_SCAN = ".tableScan */";
+  private static final Pattern SCAN_COUNT = Pattern.compile("/\\* scanCount: (\\d+) \\*/");
+
+  private final String[] schema;
+  private final String namedQueries;
+  private final Path snapshotDirectory;
+  private final Path outputDirectory;
+  private final long maxCost;
+  private final boolean updateSnapshots;
+
+  NamedQueryPlans(
+      String[] schema,
+      String namedQueries,
+      Path snapshotDirectory,
+      Path outputDirectory,
+      long maxCost,
+      boolean updateSnapshots) {
+    this.schema = schema.clone();
+    this.namedQueries = namedQueries;
+    this.snapshotDirectory = snapshotDirectory;
+    this.outputDirectory = outputDirectory;
+    this.maxCost = maxCost;
+    this.updateSnapshots = updateSnapshots;
+  }
+
+  /**
+   * A query plan.
+   *
+   * @param name the named query name, i.e. the SQL resource name
+   * @param plan the plan, as returned by {@code EXPLAIN}
+   * @param cost the number of rows scanned by {@code EXPLAIN ANALYZE}
+   */
+  public record QueryPlan(String name, String plan, long cost) {
+    int tableScans() {
+      return NamedQueryPlans.tableScans(plan);
+    }
+  }
+
+  /**
+   * Creates a dynamic test per SQL file entry, that verifies its plan. The database is closed with
+   * the returned stream.
+   *
+   * @return the dynamic tests
+   */
+  public Stream<DynamicTest> verify() {
+    var queries = loadSqlFileQueries();
+    var connection = createDatabase();
+    return queries.entrySet().stream()
+        .map(
+            entry ->
+                DynamicTest.dynamicTest(
+                    entry.getKey(),
+                    () -> verify(explain(connection, entry.getKey(), entry.getValue()))))
+        .onClose(() -> close(connection));
+  }
+
+  private void verify(QueryPlan plan) throws IOException {
+    if (plan.cost() > maxCost) {
+      throw new AssertionFailedError(
+          "cost "
+              + plan.cost()
+              + " of '"
+              + plan.name()
+              + "' exceeds "
+              + maxCost
+              + ":\n"
+              + plan.plan());
+    }
+
+    var filename = plan.name() + ".plan";
+    write(outputDirectory.resolve(filename), plan.plan());
+    var snapshot = snapshotDirectory.resolve(filename);
+    if (updateSnapshots) {
+      write(snapshot, plan.plan());
+      return;
+    }
+    if (!Files.exists(snapshot)) {
+      throw new AssertionFailedError(
+          "no snapshot of the plan of '"
+              + plan.name()
+              + "', record it with -D"
+              + QueryPlanExtension.UPDATE_SNAPSHOTS
+              + "=true:\n"
+              + plan.plan());
+    }
+    var previous = Files.readString(snapshot, StandardCharsets.UTF_8);
+    if (!previous.equals(plan.plan())) {
+      throw new AssertionFailedError(
+          "plan of '"
+              + plan.name()
+              + (plan.tableScans() > tableScans(previous)
+                  ? "' changed to a table scan"
+                  : "' changed")
+              + ", accept it with -D"
+              + QueryPlanExtension.UPDATE_SNAPSHOTS
+              + "=true",
+          previous,
+          plan.plan());
+    }
+  }
+
+  private static void write(Path file, String plan) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, plan, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Explains a query with stubbed bind parameters. {@code EXPLAIN ANALYZE} executes the query, so
+   * it runs in a transaction, that is rolled back.
+   *
+   * @param connection the H2 connection
+   * @param name the query name
+   * @param sql the query
+   * @return the plan
+   * @throws SQLException if the query cannot be explained
+   */
+  public static QueryPlan explain(Connection connection, String name, String sql)
+      throws SQLException {
+    var jdbcSql =
+        NamedParameterUtils.substituteNamedParameters(
+            NamedParameterUtils.parseSqlStatement(sql), null);
+    String plan;
+    try (var statement = connection.prepareStatement("EXPLAIN " + jdbcSql)) {
+      plan = executeExplain(statement);
+    }
+    return new QueryPlan(name, plan.replace("\r\n", "\n"), analyze(connection, jdbcSql));
+  }
+
+  private static long analyze(Connection connection, String jdbcSql) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    var savepoint = connection.setSavepoint();
+    try (var statement = connection.prepareStatement("EXPLAIN ANALYZE " + jdbcSql)) {
+      long cost = 0;
+      Matcher matcher = SCAN_COUNT.matcher(executeExplain(statement));
+      while (matcher.find()) {
+        cost += Long.parseLong(matcher.group(1));
+      }
+      return cost;
+    } finally {
+      connection.rollback(savepoint);
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  private static String executeExplain(PreparedStatement statement) throws SQLException {
+    stubParameters(statement);
+    try (var resultSet = statement.executeQuery()) {
+      var plan = new StringBuilder();
+      while (resultSet.next()) {
+        plan.append(resultSet.getString(1)).append('\n');
+      }
+      return plan.toString();
+    }
+  }
+
+  private static void stubParameters(PreparedStatement statement) throws SQLException {
+    var metaData = statement.getParameterMetaData();
+    for (int i = 1; i <= metaData.getParameterCount(); i++) {
+      int type = metaData.getParameterType(i);
+      switch (type) {
+        case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> statement.setLong(i, 1);
+        case Types.DECIMAL, Types.NUMERIC, Types.REAL, Types.FLOAT, Types.DOUBLE ->
+            statement.setBigDecimal(i, BigDecimal.ONE);
+        case Types.CHAR,
+                Types.VARCHAR,
+                Types.LONGVARCHAR,
+                Types.NCHAR,
+                Types.NVARCHAR,
+                Types.CLOB ->
+            statement.setString(i, "a");
+        case Types.BOOLEAN, Types.BIT -> statement.setBoolean(i, true);
+        case Types.DATE -> statement.setDate(i, Date.valueOf("2000-01-01"));
+        case Types.TIME -> statement.setTime(i, Time.valueOf("00:00:00"));
+        case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+            statement.setTimestamp(i, Timestamp.valueOf("2000-01-01 00:00:00"));
+        default -> statement.setNull(i, type);
+      }
+    }
+  }
+
+  static int tableScans(String plan) {
+    int count = 0;
+    for (int index = plan.indexOf(TABLE_SCAN);
+        index >= 0;
+        index = plan.indexOf(TABLE_SCAN, index + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  private Map<String, String> loadSqlFileQueries() {
+    var properties = new Properties();
+    try (InputStream inputStream = resource(namedQueries)) {
+      properties.load(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Map<String, String> queries = new TreeMap<>();
+    properties.stringPropertyNames().stream()
+        .filter(name -> name.toLowerCase(Locale.ROOT).endsWith(".sql"))
+        .forEach(name -> queries.put(name, properties.getProperty(name)));
+    return queries;
+  }
+
+  private Connection createDatabase() {
+    try {
+      var connection =
+          DriverManager.getConnection("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=0");
+      try (var statement = connection.createStatement()) {
+        for (String script : schema) {
+          // validates, that the script exists
+          resource(script).close();
+          statement.execute("RUNSCRIPT FROM 'classpath:/" + script.replace("'", "''") + "'");
+        }
+      }
+      return connection;
+    } catch (SQLException e) {
+      throw new IllegalStateException("unable to create the database: " + e.getMessage(), e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static InputStream resource(String name) throws IOException {
+    var inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+    if (inputStream == null) {
+      throw new IOException("resource '" + name + "' not found.");
+    }
+    return inputStream;
+  }
+
+  private static void close(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.test;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+/**
+ * Resolves {@link NamedQueryPlans} parameters configured by {@link QueryPlanSnapshots}.
+ *
+ * @author Michael Schieder
+ */
+public class QueryPlanExtension implements ParameterResolver {
+
+  /** System property, that accepts all new and changed plans and records their snapshots. */
+  public static final String UPDATE_SNAPSHOTS = "namedsqlfiles.updateSnapshots";
+
+  @Override
+  public boolean supportsParameter(
+      ParameterContext parameterContext, ExtensionContext extensionContext) {
+    return parameterContext.getParameter().getType() == NamedQueryPlans.class;
+  }
+
+  @Override
+  public Object resolveParameter(
+      ParameterContext parameterContext, ExtensionContext extensionContext) {
+    var configuration =
+        AnnotationSupport.findAnnotation(
+                extensionContext.getRequiredTestClass(), QueryPlanSnapshots.class)
+            .orElseThrow(
+                () ->
+                    new ParameterResolutionException(
+                        "missing @" + QueryPlanSnapshots.class.getSimpleName()));
+    return new NamedQueryPlans(
+        configuration.schema(),
+        configuration.namedQueries(),
+        Path.of(configuration.snapshotDirectory()),
+        Path.of(configuration.outputDirectory()),
+        configuration.maxCost(),
+        Boolean.getBoolean(UPDATE_SNAPSHOTS));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Configures query plan snapshots of all SQL file entries of a generated named queries properties
+ * file. Test methods get a {@link NamedQueryPlans} parameter:
+ *
+ * <pre>{@code
+ * @QueryPlanSnapshots(schema = "schema.sql")
+ * class QueryPlanTest {
+ *   @TestFactory
+ *   Stream<DynamicTest> queryPlans(NamedQueryPlans plans) {
+ *     return plans.verify();
+ *   }
+ * }
+ * }</pre>
+ *
+ * @author Michael Schieder
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@ExtendWith(QueryPlanExtension.class)
+public @interface QueryPlanSnapshots {
+
+  /** Classpath resources with the schema (and test data), executed in the given order. */
+  String[] schema();
+
+  /** Classpath resource of the generated named queries properties file. */
+  String namedQueries() default "META-INF/jpa-named-queries.properties";
+
+  /**
+   * Directory of the recorded snapshots {@code <name>.plan}, they are written only with {@value
+   * QueryPlanExtension#UPDATE_SNAPSHOTS}. The snapshots mirror the resource names of the SQL files,
+   * e.g. {@code sql/person/all.sql.plan}. They are test resources by default, not placed next to
+   * the SQL files in {@code src/main/resources}, so that they are not packaged with the
+   * application; {@code "src/main/resources"} places them next to the SQL files.
+   */
+  String snapshotDirectory() default "src/test/resources/query-plans";
+
+  /** Directory, the current plans {@code <name>.plan} are written to. */
+  String outputDirectory() default "target/query-plans";
+
+  /**
+   * Maximum cost of a query: the number of rows scanned by {@code EXPLAIN ANALYZE} with the stubbed
+   * bind parameters against the schema's test data.
+   */
+  long maxCost() default Long.MAX_VALUE;
+}
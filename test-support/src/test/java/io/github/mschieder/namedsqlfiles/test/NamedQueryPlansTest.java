@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 Michael Schieder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.mschieder.namedsqlfiles.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opentest4j.AssertionFailedError;
+
+class NamedQueryPlansTest {
+
+  private static final String[] SCHEMA = {"plans/schema.sql"};
+  private static final String NAMED_QUERIES = "plans/jpa-named-queries.properties";
+
+  @TempDir Path snapshotDirectory;
+  @TempDir Path outputDirectory;
+
+  @Test
+  void test_01_records_snapshots_in_update_mode_ok() throws Throwable {
+    var tests = execute(plans(Long.MAX_VALUE, true));
+
+    assertThat(tests)
+        .extracting(DynamicTest::getDisplayName)
+        .containsExactly("byFirstname.sql", "byLastname.sql", "deleteByLastname.sql");
+    assertThat(Files.readString(snapshotDirectory.resolve("byLastname.sql.plan")))
+        .contains("PUBLIC.PERSON_LASTNAME");
+    assertThat(Files.readString(snapshotDirectory.resolve("byFirstname.sql.plan")))
+        .contains("PUBLIC.PERSON.tableScan");
+    assertThat(outputDirectory.resolve("byFirstname.sql.plan"))
+        .hasSameTextualContentAs(snapshotDirectory.resolve("byFirstname.sql.plan"));
+  }
+
+  @Test
+  void test_02_unchanged_plans_ok() throws Throwable {
+    execute(plans(Long.MAX_VALUE, true));
+
+    execute(plans(Long.MAX_VALUE, false));
+  }
+
+  @Test
+  void test_03_missing_snapshot_nok() {
+    assertThatThrownBy(() -> execute(plans(Long.MAX_VALUE, false)))
+        .isInstanceOf(AssertionFailedError.class)
+        .hasMessageContaining("no snapshot of the plan of 'byFirstname.sql'");
+    assertThat(snapshotDirectory).isEmptyDirectory();
+    assertThat(outputDirectory.resolve("byFirstname.sql.plan")).exists();
+  }
+
+  @Test
+  void test_04_new_table_scan_nok() throws Throwable {
+    execute(plans(Long.MAX_VALUE, true));
+    var snapshot = snapshotDirectory.resolve("byFirstname.sql.plan");
+    Files.writeString(snapshot, "SELECT\n    /* PUBLIC.PERSON_FIRSTNAME */\n");
+
+    assertThatThrownBy(() -> execute(plans(Long.MAX_VALUE, false)))
+        .isInstanceOf(AssertionFailedError.class)
+        .hasMessageContaining("plan of 'byFirstname.sql' changed to a table scan");
+    assertThat(Files.readString(snapshot)).doesNotContain("tableScan");
+  }
+
+  @Test
+  void test_05_changed_plan_nok() throws Throwable {
+    execute(plans(Long.MAX_VALUE, true));
+    var snapshot = snapshotDirectory.resolve("byLastname.sql.plan");
+    var changed = Files.readString(snapshot).replace("PERSON_LASTNAME", "PERSON_LASTNAME_2");
+    Files.writeString(snapshot, changed);
+
+    assertThatThrownBy(() -> execute(plans(Long.MAX_VALUE, false)))
+        .isInstanceOf(AssertionFailedError.class)
+        .hasMessageContaining("plan of 'byLastname.sql' changed, accept it with -D");
+    assertThat(Files.readString(snapshot)).isEqualTo(changed);
+  }
+
+  @Test
+  void test_06_changed_plan_in_update_mode_ok() throws Throwable {
+    execute(plans(Long.MAX_VALUE, true));
+    var snapshot = snapshotDirectory.resolve("byFirstname.sql.plan");
+    Files.writeString(snapshot, "SELECT\n    /* PUBLIC.PERSON_FIRSTNAME */\n");
+
+    execute(plans(Long.MAX_VALUE, true));
+
+    assertThat(Files.readString(snapshot)).contains("PUBLIC.PERSON.tableScan");
+  }
+
+  @Test
+  void test_07_cost_threshold_nok() {
+    assertThatThrownBy(() -> execute(plans(2, true)))
+        .isInstanceOf(AssertionFailedError.class)
+        .hasMessageContaining("cost 4 of 'byFirstname.sql' exceeds 2");
+  }
+
+  @Test
+  void test_08_explain_rolls_back_modifications_ok() throws SQLException {
+    try (var connection = DriverManager.getConnection("jdbc:h2:mem:" + UUID.randomUUID());
+        var statement = connection.createStatement()) {
+      statement.execute("create table person (id bigint primary key, lastname varchar(255))");
+      statement.execute("insert into person values (1, 'Doe')");
+
+      var plan =
+          NamedQueryPlans.explain(
+              connection,
+              "deleteByLastname.sql",
+              "delete from person where lastname = :lastname or lastname = ':literal'");
+
+      assertThat(plan.cost()).isPositive();
+      assertThat(connection.getAutoCommit()).isTrue();
+      try (var resultSet = statement.executeQuery("select count(*) from person")) {
+        resultSet.next();
+        assertThat(resultSet.getLong(1)).isEqualTo(1);
+      }
+    }
+  }
+
+  private NamedQueryPlans plans(long maxCost, boolean update) {
+    return new NamedQueryPlans(
+        SCHEMA, NAMED_QUERIES, snapshotDirectory, outputDirectory, maxCost, update);
+  }
+
+  private static List<DynamicTest> execute(NamedQueryPlans plans) throws Throwable {
+    try (Stream<DynamicTest> stream = plans.verify()) {
+      var tests = stream.toList();
+      for (DynamicTest test : tests) {
+        test.getExecutable().execute();
+      }
+      return tests;
+    }
+  }
+}
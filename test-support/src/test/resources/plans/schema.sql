@@ -0,0 +1,5 @@
+create table person (id bigint primary key, firstname varchar(255), lastname varchar(255), birthday date);
+create index person_lastname on person (lastname);
+insert into person values (1, 'John', 'Doe', date '1970-01-01');
+insert into person values (2, 'Jane', 'Doe', date '1980-01-01');
+insert into person values (3, 'Max', 'Mustermann', date '1990-01-01');